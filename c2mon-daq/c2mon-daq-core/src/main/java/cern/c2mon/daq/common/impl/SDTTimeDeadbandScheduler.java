@@ -177,7 +177,7 @@ public class SDTTimeDeadbandScheduler extends TimerTask {
             // they have never been compared
 
             // Cast the value to the proper type before sending it
-            Object newValueCasted = TypeConverter.cast(currentSDValue.getValue(), this.lastSourceDataTag.getDataType());
+            Object newValueCasted = TypeConverter.getConverter(this.lastSourceDataTag.getDataType()).cast(currentSDValue.getValue());
 
             ValueUpdate update = new ValueUpdate(newValueCasted, currentSDValue.getValueDescription(), currentSDValue.getTimestamp().getTime());
             filterType = this.dataTagValueFilter.isCandidateForFiltering(this.lastSourceDataTag, update, currentSDValue.getQuality());
@@ -63,6 +63,13 @@ public class DaqProperties {
      * running in double publication mode)
      */
     private String secondaryUrl = "tcp://localhost:61617";
+
+    /**
+     * Publish tag updates in the compact binary encoding instead of JSON.
+     * Requires a server that supports it; updates containing value types the
+     * binary encoding cannot represent are still sent as JSON
+     */
+    private boolean binaryEncoding = false;
   }
 
   /**
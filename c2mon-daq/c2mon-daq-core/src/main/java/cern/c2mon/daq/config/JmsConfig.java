@@ -34,7 +34,7 @@ public class JmsConfig {
   public JmsTemplate sourceUpdateJmsTemplate() {
     JmsTemplate template = new JmsTemplate(singleConnectionFactory());
     template.setDefaultDestination(new ActiveMQQueue(properties.getJms().getQueuePrefix() + ".update." + properties.getName()));
-    template.setMessageConverter(new DataTagValueUpdateConverter());
+    template.setMessageConverter(new DataTagValueUpdateConverter(properties.getJms().isBinaryEncoding()));
     return template;
   }
 
@@ -100,7 +100,7 @@ public class JmsConfig {
   public JmsTemplate secondSourceUpdateJmsTemplate() {
     JmsTemplate template = new JmsTemplate(secondSingleConnectionFactory());
     template.setDefaultDestination(new ActiveMQQueue(properties.getJms().getQueuePrefix() + ".update." + properties.getName()));
-    template.setMessageConverter(new DataTagValueUpdateConverter());
+    template.setMessageConverter(new DataTagValueUpdateConverter(properties.getJms().isBinaryEncoding()));
     return template;
   }
 
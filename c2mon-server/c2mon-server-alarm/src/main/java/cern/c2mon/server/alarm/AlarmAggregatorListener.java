@@ -35,6 +35,9 @@ public interface AlarmAggregatorListener {
    * Is called when a Tag update has been received, and associated
    * alarms have been evaluated.
    * 
+   * <p>The Tag and Alarms are immutable snapshots shared by all listeners,
+   * so they can be kept without copying them.
+   *
    * @param tag the updated Tag
    * @param alarms the new values of the associated alarms; 
    *          this list is <b>null</b> if no alarms are associated to the tag
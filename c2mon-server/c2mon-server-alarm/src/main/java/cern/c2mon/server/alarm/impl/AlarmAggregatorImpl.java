@@ -17,6 +17,7 @@
 package cern.c2mon.server.alarm.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -31,9 +32,13 @@ import cern.c2mon.server.cache.CacheRegistrationService;
 import cern.c2mon.server.cache.CacheSupervisionListener;
 import cern.c2mon.server.cache.TagFacadeGateway;
 import cern.c2mon.server.cache.TagLocationService;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.UpdateStage;
 import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.common.alarm.Alarm;
+import cern.c2mon.server.common.alarm.AlarmSnapshot;
 import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.server.common.tag.TagSnapshot;
 
 /**
  * Implementation of the {@link AlarmAggregator} (a singleton bean in 
@@ -69,6 +74,11 @@ public class AlarmAggregatorImpl implements AlarmAggregator, C2monCacheListener<
    * The gateway to all Tag caches.
    */
   private TagLocationService tagLocationService;
+
+  /**
+   * Records the latency of the tag updates once the alarms are evaluated.
+   */
+  private UpdateLatencyMonitor updateLatencyMonitor;
   
   /**
    * Autowired constructor.
@@ -76,14 +86,17 @@ public class AlarmAggregatorImpl implements AlarmAggregator, C2monCacheListener<
    * @param cacheRegistrationService the cache registration service (for registration to cache update notifications)  
    * @param tagFacadeGateway the Tag Facade gateway (for access to all Tag Facade beans) 
    * @param tagLocationService the Tag location service
+   * @param updateLatencyMonitor for recording the latency of the tag updates
    */
   @Autowired
   public AlarmAggregatorImpl(final CacheRegistrationService cacheRegistrationService,
-      final TagFacadeGateway tagFacadeGateway, final TagLocationService tagLocationService) {
+      final TagFacadeGateway tagFacadeGateway, final TagLocationService tagLocationService,
+      final UpdateLatencyMonitor updateLatencyMonitor) {
     super();
     this.cacheRegistrationService = cacheRegistrationService;    
     this.tagFacadeGateway = tagFacadeGateway;
     this.tagLocationService = tagLocationService;
+    this.updateLatencyMonitor = updateLatencyMonitor;
     listeners = new ArrayList<AlarmAggregatorListener>();
   }
 
@@ -110,31 +123,49 @@ public class AlarmAggregatorImpl implements AlarmAggregator, C2monCacheListener<
    * When an update to a Tag is received from the cache, evaluates the associated Alarms
    * and notifies the (alarm + tag) listeners. 
    * 
-   * <p>Notice that received Tag is a clone, but since the cache notification is synchronous
+   * <p>Notice that received Tag is a snapshot (or clone), but since the cache notification is synchronous
    * a lock is already held on this tag, which can therefore not be modified during this
    * call.
    * 
-   * @param tag a clone of the updated Tag received from the cache
+   * @param tag a snapshot of the updated Tag received from the cache
    */
   @Override
   public void notifyElementUpdated(final Tag tag) {      
-      List<Alarm> alarmList = evaluateAlarms(tag);            
+      List<Alarm> alarmList = evaluateAlarms(tag);
+      if (alarmList != null) {
+        updateLatencyMonitor.record(UpdateStage.ALARM_EVALUATION, tag);
+      }
       notifyListeners(tag, alarmList);          
   }
 
   /**
    * Notify the listeners of a tag update with associated alarms.
+   *
+   * <p>The tag and alarms are passed as immutable snapshots, shared by all listeners
+   * (the tag received from the cache is usually already a snapshot).
+   *
    * @param tag the Tag that has been updated
    * @param alarmList the associated list of evaluated alarms
    */
   private void notifyListeners(final Tag tag, final List<Alarm> alarmList) {
-    for (AlarmAggregatorListener listener : listeners) {
-      try {
-        listener.notifyOnUpdate((Tag) tag.clone(), alarmList);
-      } catch (CloneNotSupportedException e) {
-        log.error("Unexpected exception caught: clone should be implemented for this class! "
-            + "Alarm & tag listener was not notified: " + listener.getClass().getSimpleName());
+    Tag tagSnapshot;
+    List<Alarm> alarmSnapshots = null;
+    try {
+      tagSnapshot = TagSnapshot.of(tag);
+      if (alarmList != null) {
+        alarmSnapshots = new ArrayList<>(alarmList.size());
+        for (Alarm alarm : alarmList) {
+          alarmSnapshots.add(AlarmSnapshot.of(alarm));
+        }
+        alarmSnapshots = Collections.unmodifiableList(alarmSnapshots);
       }
+    } catch (CloneNotSupportedException e) {
+      log.error("Unexpected exception caught: clone should be implemented for this class! "
+          + "Alarm & tag listeners were not notified of update of tag " + tag.getId(), e);
+      return;
+    }
+    for (AlarmAggregatorListener listener : listeners) {
+      listener.notifyOnUpdate(tagSnapshot, alarmSnapshots);
     }
   }
 
@@ -16,15 +16,20 @@
  *****************************************************************************/
 package cern.c2mon.server.alarm.impl;
 
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.easymock.Capture;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -32,10 +37,15 @@ import cern.c2mon.server.alarm.AlarmAggregatorListener;
 import cern.c2mon.server.cache.CacheRegistrationService;
 import cern.c2mon.server.cache.TagFacadeGateway;
 import cern.c2mon.server.cache.TagLocationService;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.server.cache.latency.UpdateLatencyMonitorImpl;
 import cern.c2mon.server.common.alarm.Alarm;
 import cern.c2mon.server.common.alarm.AlarmCacheObject;
+import cern.c2mon.server.common.alarm.AlarmSnapshot;
 import cern.c2mon.server.common.datatag.DataTag;
 import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.server.common.tag.TagSnapshot;
 import cern.c2mon.shared.common.datatag.DataTagConstants;
 
 
@@ -77,7 +87,8 @@ public class AlarmAggregatorImplTest {
    tagFacadeGateway = createMock(TagFacadeGateway.class);
    tagLocationService = createMock(TagLocationService.class);
    cacheRegistrationService = createMock(CacheRegistrationService.class);   
-   alarmAggregator = new AlarmAggregatorImpl(cacheRegistrationService, tagFacadeGateway, tagLocationService);
+   alarmAggregator = new AlarmAggregatorImpl(cacheRegistrationService, tagFacadeGateway, tagLocationService,
+       new UpdateLatencyMonitorImpl(new CacheProperties()));
    
    //register 2 listeners
    listener1 = createMock(AlarmAggregatorListener.class);
@@ -104,8 +115,13 @@ public class AlarmAggregatorImplTest {
     alarmList.add(new AlarmCacheObject(10L));
     alarmList.add(new AlarmCacheObject(20L));    
     expect(tagFacadeGateway.evaluateAlarms(tag)).andReturn(alarmList);
-    listener1.notifyOnUpdate(tag, alarmList);
-    listener2.notifyOnUpdate(tag, alarmList);
+    //the listeners share the same snapshots of the tag and alarms
+    Capture<Tag> tag1 = new Capture<>();
+    Capture<Tag> tag2 = new Capture<>();
+    Capture<List<Alarm>> alarms1 = new Capture<>();
+    Capture<List<Alarm>> alarms2 = new Capture<>();
+    listener1.notifyOnUpdate(capture(tag1), capture(alarms1));
+    listener2.notifyOnUpdate(capture(tag2), capture(alarms2));
 
     replay(tagLocationService);
     replay(tagFacadeGateway);
@@ -118,6 +134,16 @@ public class AlarmAggregatorImplTest {
     verify(tagFacadeGateway);
     verify(listener1);
     verify(listener2);
+
+    assertTrue(tag1.getValue() instanceof TagSnapshot);
+    assertTrue(tag1.getValue() instanceof DataTag);
+    assertEquals(tag.getId(), tag1.getValue().getId());
+    assertSame(tag1.getValue(), tag2.getValue());
+    assertSame(alarms1.getValue(), alarms2.getValue());
+    assertEquals(2, alarms1.getValue().size());
+    assertTrue(alarms1.getValue().get(0) instanceof AlarmSnapshot);
+    assertEquals(Long.valueOf(10L), alarms1.getValue().get(0).getId());
+    assertEquals(Long.valueOf(20L), alarms1.getValue().get(1).getId());
   }
   
 }
@@ -30,7 +30,6 @@ import cern.c2mon.server.cache.CacheRegistrationService;
 import cern.c2mon.server.common.component.Lifecycle;
 import cern.c2mon.server.common.config.ServerConstants;
 import cern.c2mon.server.common.datatag.DataTag;
-import cern.c2mon.server.common.datatag.DataTagCacheObject;
 import cern.c2mon.server.common.tag.Tag;
 import cern.c2mon.shared.common.datatag.DataTagAddress;
 
@@ -83,7 +82,7 @@ public class BenchmarkListener implements C2monCacheListener<Tag>, SmartLifecycl
       log.warn("Received notification while component not running - will process anyway");
     }
     if (tag instanceof DataTag) {
-      DataTagCacheObject dataTag = (DataTagCacheObject) tag;
+      DataTag dataTag = (DataTag) tag;
       //TODO can remove this once all DAQ updates have DAQ t.s. set
       long daqTime = dataTag.getDaqTimestamp() == null ? dataTag.getTimestamp().getTime() : dataTag.getDaqTimestamp().getTime();
       long serverTime = dataTag.getCacheTimestamp().getTime();
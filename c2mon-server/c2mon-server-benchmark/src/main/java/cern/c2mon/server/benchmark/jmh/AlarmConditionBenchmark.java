@@ -0,0 +1,71 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.common.alarm.AlarmCondition;
+import cern.c2mon.server.common.alarm.ValueAlarmCondition;
+
+/**
+ * Cost of {@link AlarmCondition#evaluateState(Object)} for the two condition
+ * types, as done on each alarm evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlarmConditionBenchmark {
+
+  private AlarmCondition valueCondition;
+
+  private AlarmCondition rangeCondition;
+
+  private Object[] values;
+
+  private int next;
+
+  @Setup
+  public void setUp() {
+    valueCondition = new ValueAlarmCondition(Boolean.TRUE);
+    rangeCondition = InMemoryCaches.createRangeCondition();
+    values = new Object[] {100f, 950f, 500f, 1000f};
+  }
+
+  @Benchmark
+  public String valueCondition() {
+    return valueCondition.evaluateState((next++ & 1) == 0);
+  }
+
+  @Benchmark
+  public String rangeCondition() {
+    return rangeCondition.evaluateState(values[next++ & 3]);
+  }
+}
@@ -0,0 +1,107 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.cache.common.AbstractCache;
+import cern.c2mon.server.cache.common.CacheObjectCopier;
+import cern.c2mon.server.cache.config.CacheCopyMode;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.shared.common.Cacheable;
+
+/**
+ * Cost of {@link AbstractCache#getCopy(Object)} per cache object type and
+ * copy mode, and of the copy itself ({@link CacheObjectCopier}) without the
+ * cache access and locking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheCopyBenchmark {
+
+  private static final int SIZE = 10000;
+
+  @Param({"DATATAG", "RULETAG", "ALARM"})
+  private String cache;
+
+  @Param({"CLONE", "SERIALIZATION"})
+  private CacheCopyMode copyMode;
+
+  private InMemoryCaches caches;
+
+  private AbstractCache<Long, ? extends Cacheable> testedCache;
+
+  private long idOffset;
+
+  private Cacheable original;
+
+  private int next;
+
+  @Setup
+  public void setUp() {
+    CacheProperties properties = new CacheProperties();
+    properties.getCopyMode().put(cache, copyMode);
+    caches = new InMemoryCaches(properties, SIZE);
+    switch (cache) {
+      case "DATATAG":
+        testedCache = caches.getDataTagCache();
+        idOffset = InMemoryCaches.DATATAG_ID_OFFSET;
+        break;
+      case "RULETAG":
+        testedCache = caches.getRuleTagCache();
+        idOffset = InMemoryCaches.RULETAG_ID_OFFSET;
+        break;
+      default:
+        testedCache = caches.getAlarmCache();
+        idOffset = InMemoryCaches.ALARM_ID_OFFSET;
+    }
+    original = testedCache.get(idOffset);
+  }
+
+  @TearDown
+  public void tearDown() {
+    caches.shutdown();
+  }
+
+  @Benchmark
+  public Cacheable getCopy() {
+    next = (next + 1) % SIZE;
+    return testedCache.getCopy(idOffset + next);
+  }
+
+  @Benchmark
+  public Cacheable copy() {
+    return CacheObjectCopier.copy(original, copyMode);
+  }
+}
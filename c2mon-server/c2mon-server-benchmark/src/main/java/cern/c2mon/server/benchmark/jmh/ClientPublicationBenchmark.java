@@ -0,0 +1,80 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.client.util.TransferObjectFactory;
+import cern.c2mon.server.common.alarm.AlarmCacheObject;
+import cern.c2mon.server.common.alarm.TagWithAlarms;
+import cern.c2mon.server.common.alarm.TagWithAlarmsImpl;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.shared.client.serializer.TransferTagSerializer;
+import cern.c2mon.shared.client.tag.TransferTagValueImpl;
+
+/**
+ * Cost of preparing a tag update for publication to the clients: creation of
+ * the transfer object ({@link TransferObjectFactory}) and its JSON
+ * serialization ({@link TransferTagSerializer}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientPublicationBenchmark {
+
+  private TagWithAlarms tagWithAlarms;
+
+  private TransferTagValueImpl transferTag;
+
+  @Setup
+  public void setUp() {
+    DataTagCacheObject tag = InMemoryCaches.createDataTag(InMemoryCaches.DATATAG_ID_OFFSET);
+    AlarmCacheObject alarm = InMemoryCaches.createAlarm(InMemoryCaches.ALARM_ID_OFFSET, tag.getId());
+    tagWithAlarms = new TagWithAlarmsImpl(tag, Collections.singletonList(alarm));
+    transferTag = TransferObjectFactory.createTransferTagValue(tagWithAlarms);
+  }
+
+  @Benchmark
+  public Object createTransferTag() {
+    return TransferObjectFactory.createTransferTagValue(tagWithAlarms);
+  }
+
+  @Benchmark
+  public String toJson() {
+    return TransferTagSerializer.toJson(transferTag);
+  }
+
+  @Benchmark
+  public String createAndSerialize() {
+    return TransferTagSerializer.toJson(TransferObjectFactory.createTransferTagValue(tagWithAlarms));
+  }
+}
@@ -0,0 +1,127 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.common.thread.CompactThreadFactory;
+
+/**
+ * Cost of the executor threads created with a reduced stack (see
+ * {@link CompactThreadFactory}), compared to the default stack size of the
+ * JVM (stack size 0): latency of a task handed to an idle pool thread, and
+ * of the start of a new thread.
+ *
+ * <p>The memory footprint of the idle pool threads (growth of the address
+ * space and of the resident memory of the JVM, read from
+ * <code>/proc/self/status</code>) is logged at setup, on Linux only.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactThreadBenchmark {
+
+  private static final Path PROCESS_STATUS = Paths.get("/proc/self/status");
+
+  /**
+   * Stack size of the threads in KB; 0 for the default stack size.
+   */
+  @Param({"0", "256"})
+  private int stackSizeKb;
+
+  /**
+   * Number of idle threads in the pool, as in a DAQ update executor.
+   */
+  @Param({"250"})
+  private int poolSize;
+
+  private CompactThreadFactory threadFactory;
+
+  private ThreadPoolExecutor executor;
+
+  @Setup
+  public void setUp() throws IOException {
+    threadFactory = new CompactThreadFactory("Benchmark-" + stackSizeKb + "-", stackSizeKb);
+    long addressSpace = readStatusKb("VmSize");
+    long resident = readStatusKb("VmRSS");
+    executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    executor.prestartAllCoreThreads();
+    if (addressSpace >= 0) {
+      log.info("{} idle threads with stack size {} KB: address space +{} KB, resident memory +{} KB", poolSize, stackSizeKb,
+          readStatusKb("VmSize") - addressSpace, readStatusKb("VmRSS") - resident);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public Integer handOff() throws InterruptedException, ExecutionException {
+    return executor.submit(() -> stackSizeKb).get();
+  }
+
+  @Benchmark
+  public void startThread() throws InterruptedException {
+    Thread thread = threadFactory.newThread(() -> { });
+    thread.start();
+    thread.join();
+  }
+
+  /**
+   * @param field a field of /proc/self/status, in KB
+   * @return the value of the field, or -1 if not available
+   */
+  private static long readStatusKb(final String field) throws IOException {
+    if (!Files.isReadable(PROCESS_STATUS)) {
+      return -1;
+    }
+    for (String line : Files.readAllLines(PROCESS_STATUS, StandardCharsets.UTF_8)) {
+      if (line.startsWith(field + ":")) {
+        return Long.parseLong(line.substring(field.length() + 1).replace("kB", "").trim());
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,99 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.shared.common.rule.RuleInputValue;
+import cern.c2mon.shared.rule.RuleEvaluationException;
+import cern.c2mon.shared.rule.RuleFormatException;
+import cern.c2mon.shared.rule.RuleInputTagId;
+import cern.c2mon.shared.rule.SimpleRuleExpression;
+import cern.c2mon.shared.rule.parser.Parser;
+
+/**
+ * Cost of the evaluation of a {@link SimpleRuleExpression} on its compiled
+ * expression tree, compared to the evaluation by the parser on a copy of the
+ * tokens with the input values substituted (as done before the expressions
+ * were compiled, and still done when they cannot be).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledRuleBenchmark {
+
+  @Param({
+      "(#1 > 500) & (#2 < 100)",
+      "(#1 * 2) + (#2 / 4) - 10",
+      "(#1 > 500) | (#2 > 500) | (#3 > 500) | (#4 > 500)"
+  })
+  private String rule;
+
+  private SimpleRuleExpression expression;
+
+  private Object[] tokens;
+
+  private Map<Long, Object> inputTags;
+
+  @Setup
+  public void setUp() throws RuleFormatException {
+    expression = new SimpleRuleExpression(rule);
+    tokens = SimpleRuleExpression.tokenize(rule);
+    inputTags = new HashMap<>();
+    for (Long id : expression.getInputTagIds()) {
+      DataTagCacheObject tag = InMemoryCaches.createDataTag(id);
+      tag.setValue(id == 1L ? 600f : 50f);
+      inputTags.put(id, tag);
+    }
+  }
+
+  @Benchmark
+  public Object compiled() throws RuleEvaluationException {
+    return expression.evaluate(inputTags);
+  }
+
+  @Benchmark
+  public Object parser() throws RuleEvaluationException {
+    Object[] valueTokens = new Object[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      if (tokens[i] instanceof RuleInputTagId) {
+        valueTokens[i] = ((RuleInputValue) inputTags.get(((RuleInputTagId) tokens[i]).getId())).getValue();
+      } else {
+        valueTokens[i] = tokens[i];
+      }
+    }
+    return Parser.getInstance().eval(valueTokens);
+  }
+}
@@ -0,0 +1,118 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.DataTagValueUpdate;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+import cern.c2mon.shared.daq.datatag.DataTagValueUpdateBinaryCodec;
+import cern.c2mon.shared.daq.datatag.DataTagValueUpdateConverter;
+
+/**
+ * Cost of decoding and encoding a DAQ update message with the
+ * {@link DataTagValueUpdateConverter}, in the JSON and in the binary encoding,
+ * per message of a given number of tag values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaqUpdateDecodeBenchmark {
+
+  @Param({"1", "100"})
+  private int valuesPerMessage;
+
+  @Param({"json", "binary"})
+  private String encoding;
+
+  private DataTagValueUpdateConverter converter;
+
+  private ObjectMapper mapper;
+
+  private DataTagValueUpdate update;
+
+  private ActiveMQMessage message;
+
+  @Setup
+  public void setUp() throws JsonProcessingException, JMSException {
+    converter = new DataTagValueUpdateConverter();
+    mapper = new ObjectMapper();
+    update = new DataTagValueUpdate(1L);
+    for (int i = 0; i < valuesPerMessage; i++) {
+      long id = InMemoryCaches.DATATAG_ID_OFFSET + i;
+      update.addValue(new SourceDataTagValue(id, "BENCHMARK.TAG." + id, false, 100f + i, new SourceDataTagQuality(),
+          new Timestamp(System.currentTimeMillis()), DataTagAddress.PRIORITY_LOW, false, "value description",
+          DataTagAddress.TTL_FOREVER));
+    }
+    if (isBinary()) {
+      ActiveMQBytesMessage bytesMessage = new ActiveMQBytesMessage();
+      bytesMessage.setStringProperty(DataTagValueUpdateConverter.ENCODING_PROPERTY, DataTagValueUpdateConverter.BINARY_ENCODING);
+      bytesMessage.writeBytes(DataTagValueUpdateBinaryCodec.encode(update));
+      message = bytesMessage;
+    } else {
+      ActiveMQTextMessage textMessage = new ActiveMQTextMessage();
+      textMessage.setText(mapper.writeValueAsString(update));
+      message = textMessage;
+    }
+  }
+
+  @Benchmark
+  public Object decode() throws JMSException {
+    if (isBinary()) {
+      // rewind the body, consumed by the previous invocation
+      ((ActiveMQBytesMessage) message).reset();
+    }
+    return converter.fromMessage(message);
+  }
+
+  @Benchmark
+  public Object encode() throws JsonProcessingException {
+    if (isBinary()) {
+      return DataTagValueUpdateBinaryCodec.encode(update);
+    }
+    return mapper.writeValueAsString(update);
+  }
+
+  private boolean isBinary() {
+    return DataTagValueUpdateConverter.BINARY_ENCODING.equals(encoding);
+  }
+}
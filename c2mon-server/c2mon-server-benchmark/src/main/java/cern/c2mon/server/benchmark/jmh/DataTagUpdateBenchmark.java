@@ -0,0 +1,104 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.cache.C2monCacheListener;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.server.cache.datatag.AbstractDataTagFacade;
+import cern.c2mon.server.common.datatag.DataTag;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Cost of {@link AbstractDataTagFacade#updateFromSource(Long, SourceDataTagValue)}
+ * on an in-memory DataTag cache: lookup, type conversion, filtering, update of the
+ * cache object and notification of one (synchronous, empty) listener.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataTagUpdateBenchmark {
+
+  private static final int SIZE = 10000;
+
+  /**
+   * Passing snapshots or clones to the listeners.
+   */
+  @Param({"true", "false"})
+  private boolean listenerSnapshots;
+
+  private InMemoryCaches caches;
+
+  private int next;
+
+  private long value;
+
+  @Setup
+  public void setUp() {
+    CacheProperties properties = new CacheProperties();
+    properties.setListenerSnapshots(listenerSnapshots);
+    caches = new InMemoryCaches(properties, SIZE);
+    caches.getDataTagCache().registerSynchronousListener(new C2monCacheListener<DataTag>() {
+      @Override
+      public void notifyElementUpdated(final DataTag cacheable) {
+      }
+
+      @Override
+      public void confirmStatus(final DataTag cacheable) {
+      }
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    caches.shutdown();
+  }
+
+  /**
+   * Each call updates the next tag with a new value, so no update is filtered out.
+   */
+  @Benchmark
+  public Event<Boolean> updateFromSource() {
+    next = (next + 1) % SIZE;
+    long id = InMemoryCaches.DATATAG_ID_OFFSET + next;
+    SourceDataTagValue update = new SourceDataTagValue(id, "BENCHMARK.TAG." + id, false, Double.valueOf(value++ % 1000),
+        new SourceDataTagQuality(), new Timestamp(System.currentTimeMillis()), DataTagAddress.PRIORITY_LOW, false, null,
+        DataTagAddress.TTL_FOREVER);
+    return caches.getDataTagFacade().updateFromSource(id, update);
+  }
+}
@@ -0,0 +1,213 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.sql.Timestamp;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+
+import cern.c2mon.server.cache.alarm.AlarmCacheImpl;
+import cern.c2mon.server.cache.cluster.ClusterCacheImpl;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.server.cache.datatag.DataTagCacheImpl;
+import cern.c2mon.server.cache.datatag.DataTagCacheObjectFacadeImpl;
+import cern.c2mon.server.cache.datatag.DataTagFacadeImpl;
+import cern.c2mon.server.cache.datatag.QualityConverterImpl;
+import cern.c2mon.server.cache.rule.RuleTagCacheImpl;
+import cern.c2mon.server.common.alarm.AlarmCacheObject;
+import cern.c2mon.server.common.alarm.AlarmCondition;
+import cern.c2mon.server.common.alarm.RangeAlarmCondition;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+import cern.c2mon.shared.common.datatag.DataTagDeadband;
+
+/**
+ * DataTag, RuleTag and Alarm caches running in memory only (no DB loading
+ * or persistence), filled with realistic cache objects, for the JMH benchmarks.
+ *
+ * <p>The DataTag ids are {@link #DATATAG_ID_OFFSET} + i, the RuleTag ids
+ * {@link #RULETAG_ID_OFFSET} + i and the Alarm ids {@link #ALARM_ID_OFFSET} + i
+ * (i = 0..size-1). Each DataTag has one attached Alarm and one rule.
+ */
+public final class InMemoryCaches {
+
+  public static final long DATATAG_ID_OFFSET = 100000L;
+
+  public static final long RULETAG_ID_OFFSET = 200000L;
+
+  public static final long ALARM_ID_OFFSET = 300000L;
+
+  private final CacheManager cacheManager;
+
+  private final DataTagCacheImpl dataTagCache;
+
+  private final RuleTagCacheImpl ruleTagCache;
+
+  private final AlarmCacheImpl alarmCache;
+
+  private final DataTagFacadeImpl dataTagFacade;
+
+  private final int size;
+
+  /**
+   * Creates and fills the caches.
+   *
+   * @param properties the cache properties (preloading is always skipped)
+   * @param size the number of DataTags, RuleTags and Alarms
+   */
+  public InMemoryCaches(final CacheProperties properties, final int size) {
+    this.size = size;
+    properties.setSkipPreloading(true);
+
+    Configuration configuration = new Configuration();
+    configuration.setName("c2mon-benchmark-" + System.nanoTime());
+    configuration.setUpdateCheck(false);
+    cacheManager = new CacheManager(configuration);
+
+    ClusterCacheImpl clusterCache = new ClusterCacheImpl(createEhcache("clusterCache"), properties);
+    dataTagCache = new DataTagCacheImpl(clusterCache, createEhcache("tagCache"), null, null, null, properties);
+    dataTagCache.init();
+    ruleTagCache = new RuleTagCacheImpl(clusterCache, createEhcache("ruleCache"), null, null, null, dataTagCache, properties);
+    ruleTagCache.init();
+    alarmCache = new AlarmCacheImpl(clusterCache, createEhcache("alarmCache"), null, null, null, properties);
+    alarmCache.init();
+
+    dataTagFacade = new DataTagFacadeImpl(new DataTagCacheObjectFacadeImpl(), dataTagCache, new QualityConverterImpl(),
+        null, alarmCache, null, null);
+
+    for (int i = 0; i < size; i++) {
+      dataTagCache.putQuiet(createDataTag(DATATAG_ID_OFFSET + i));
+      ruleTagCache.putQuiet(createRuleTag(RULETAG_ID_OFFSET + i, DATATAG_ID_OFFSET + i, DATATAG_ID_OFFSET + (i + 1) % size));
+      alarmCache.putQuiet(createAlarm(ALARM_ID_OFFSET + i, DATATAG_ID_OFFSET + i));
+    }
+  }
+
+  private Ehcache createEhcache(final String name) {
+    Cache cache = new Cache(new CacheConfiguration(name, 0).eternal(true));
+    cacheManager.addCache(cache);
+    return cache;
+  }
+
+  /**
+   * @param id the tag id
+   * @return a valid Float DataTag, with address and attached rule and alarm
+   */
+  public static DataTagCacheObject createDataTag(final long id) {
+    DataTagCacheObject dataTag = new DataTagCacheObject(id, "BENCHMARK.TAG." + id, "Float", DataTagConstants.MODE_OPERATIONAL);
+    dataTag.setDescription("Benchmark data tag " + id);
+    dataTag.setUnit("kV");
+    dataTag.setLogged(true);
+    dataTag.setEquipmentId(10L);
+    dataTag.setProcessId(1L);
+    dataTag.setAddress(new DataTagAddress(null, 60000, DataTagDeadband.DEADBAND_NONE, 0f, 0, DataTagAddress.PRIORITY_LOW, false));
+    dataTag.setMinValue(0f);
+    dataTag.setMaxValue(1000f);
+    dataTag.setValue(1f);
+    dataTag.setValueDescription("initial value");
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    dataTag.setSourceTimestamp(now);
+    dataTag.setDaqTimestamp(now);
+    dataTag.setCacheTimestamp(now);
+    dataTag.getDataTagQuality().validate();
+    dataTag.getAlarmIds().add(ALARM_ID_OFFSET + (id - DATATAG_ID_OFFSET));
+    dataTag.getRuleIds().add(RULETAG_ID_OFFSET + (id - DATATAG_ID_OFFSET));
+    dataTag.getMetadata().addMetadata("location", "building 1");
+    dataTag.getMetadata().addMetadata("responsible", 1234);
+    return dataTag;
+  }
+
+  /**
+   * @param id the rule id
+   * @param inputTagId1 first input tag of the rule
+   * @param inputTagId2 second input tag of the rule
+   * @return a valid Integer RuleTag, computing a state from two input tags
+   */
+  public static RuleTagCacheObject createRuleTag(final long id, final long inputTagId1, final long inputTagId2) {
+    RuleTagCacheObject ruleTag = new RuleTagCacheObject(id, "BENCHMARK.RULE." + id, "Integer", DataTagConstants.MODE_OPERATIONAL,
+        "(#" + inputTagId1 + " > 500) | (#" + inputTagId2 + " > 500)[2], (#" + inputTagId1 + " > 100)[1], true[0]");
+    ruleTag.setValue(0);
+    ruleTag.setCacheTimestamp(new Timestamp(System.currentTimeMillis()));
+    ruleTag.getDataTagQuality().validate();
+    ruleTag.getProcessIds().add(1L);
+    ruleTag.getEquipmentIds().add(10L);
+    return ruleTag;
+  }
+
+  /**
+   * @param id the alarm id
+   * @param tagId the tag the alarm is attached to
+   * @return a terminated Alarm, active if the tag value is above 900
+   */
+  public static AlarmCacheObject createAlarm(final long id, final long tagId) {
+    AlarmCacheObject alarm = new AlarmCacheObject(id);
+    alarm.setDataTagId(tagId);
+    alarm.setFaultFamily("BENCHMARK");
+    alarm.setFaultMember("MEMBER" + tagId);
+    alarm.setFaultCode(1);
+    alarm.setCondition(createRangeCondition());
+    alarm.getMetadata().addMetadata("responsible", 1234);
+    return alarm;
+  }
+
+  /**
+   * @return alarm condition active for values above 900
+   */
+  public static AlarmCondition createRangeCondition() {
+    return new RangeAlarmCondition(900f, null);
+  }
+
+  /**
+   * Stops the Ehcache manager.
+   */
+  public void shutdown() {
+    // the caches are initialised without loader: remove the null loaders
+    // registered by init(), which Ehcache fails to dispose
+    for (String name : cacheManager.getCacheNames()) {
+      cacheManager.getCache(name).unregisterCacheLoader(null);
+    }
+    cacheManager.shutdown();
+  }
+
+  public DataTagCacheImpl getDataTagCache() {
+    return dataTagCache;
+  }
+
+  public RuleTagCacheImpl getRuleTagCache() {
+    return ruleTagCache;
+  }
+
+  public AlarmCacheImpl getAlarmCache() {
+    return alarmCache;
+  }
+
+  public DataTagFacadeImpl getDataTagFacade() {
+    return dataTagFacade;
+  }
+
+  /**
+   * @return number of objects in each cache
+   */
+  public int getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,58 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point running the JMH benchmarks of this package. Accepts the usual
+ * JMH command line options (e.g. a benchmark regexp or <code>-rff</code>);
+ * results are written in JSON format, so that runs of different versions can
+ * be compared. When run with <code>mvn compile exec:exec</code>, the results
+ * are written to <code>target/jmh-result-&lt;version&gt;.json</code> (the
+ * <code>jmh.result</code> property of the pom); otherwise, unless
+ * <code>-rff</code> is given, to <code>jmh-result.json</code> in the working
+ * directory.
+ */
+public final class JmhBenchmarks {
+
+  private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  private JmhBenchmarks() {
+  }
+
+  public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (commandLine.getIncludes().isEmpty()) {
+      options.include(JmhBenchmarks.class.getPackage().getName() + ".");
+    }
+    if (!commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      options.result(DEFAULT_RESULT_FILE);
+    }
+    new Runner(options.build()).run();
+  }
+}
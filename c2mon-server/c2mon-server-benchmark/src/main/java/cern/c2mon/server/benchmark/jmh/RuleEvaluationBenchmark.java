@@ -0,0 +1,90 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.shared.rule.RuleEvaluationException;
+import cern.c2mon.shared.rule.RuleExpression;
+import cern.c2mon.shared.rule.RuleFormatException;
+import cern.c2mon.shared.rule.SimpleRuleExpression;
+
+/**
+ * Cost of {@link RuleExpression#evaluate(Map)} on typical rules, with the
+ * input tags passed as cache objects (as done by the rule evaluator). The
+ * conditions of a conditioned rule are each a {@link SimpleRuleExpression}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleEvaluationBenchmark {
+
+  /**
+   * Typical rules: simple expression, summary of states, threshold on an
+   * analog value and a larger summary also handling invalid inputs.
+   */
+  @Param({
+      "(#1 > 500) & (#2 < 100)",
+      "(#1 = true) | (#2 = true)[2], true[0]",
+      "(#1 > 500) & (#2 < 100)[2], (#1 > 100)[1], true[0]",
+      "(#1 = true) | (#2 = true) | (#3 = true) | (#4 = true)[2], (#5 = $INVALID) | (#6 = $INVALID)[1], true[0]"
+  })
+  private String rule;
+
+  private RuleExpression expression;
+
+  private Map<Long, Object> inputTags;
+
+  @Setup
+  public void setUp() throws RuleFormatException {
+    expression = RuleExpression.createExpression(rule);
+    inputTags = new HashMap<>();
+    for (Long id : expression.getInputTagIds()) {
+      DataTagCacheObject tag = InMemoryCaches.createDataTag(id);
+      if (rule.contains("#" + id + " = true")) {
+        tag.setDataType("Boolean");
+        tag.setValue(Boolean.FALSE);
+      } else {
+        tag.setValue(id == 1L ? 600f : 50f);
+      }
+      inputTags.put(id, tag);
+    }
+  }
+
+  @Benchmark
+  public Object evaluate() throws RuleEvaluationException {
+    return expression.evaluate(inputTags);
+  }
+}
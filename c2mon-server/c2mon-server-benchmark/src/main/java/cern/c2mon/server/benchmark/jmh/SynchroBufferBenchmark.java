@@ -0,0 +1,78 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.shared.util.buffer.SynchroBuffer;
+
+/**
+ * Cost of pushing objects into a {@link SynchroBuffer} while its checking thread
+ * pulls them to a listener, as done for the supervision and rule buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SynchroBufferBenchmark {
+
+  /** Distinct keys pushed; the lower the count, the more duplicates. */
+  @Param({"100", "100000"})
+  private int keys;
+
+  @Param({"1", "3"})
+  private int duplicatePolicy;
+
+  private SynchroBuffer buffer;
+
+  private final AtomicLong pulled = new AtomicLong();
+
+  private long next;
+
+  @Setup
+  public void setUp() {
+    buffer = new SynchroBuffer(100, 500, 100, duplicatePolicy, 1000000, true);
+    buffer.setSynchroBufferListener(event -> pulled.addAndGet(event.getPulled().size()));
+    buffer.enable();
+  }
+
+  @TearDown
+  public void tearDown() {
+    buffer.close();
+  }
+
+  @Benchmark
+  public void push() {
+    buffer.push(Long.valueOf(next++ % keys));
+  }
+}
@@ -0,0 +1,77 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.c2mon.shared.common.type.TypeConverter;
+import cern.c2mon.shared.common.type.ValueConverter;
+
+/**
+ * Cost of converting an incoming value to the data type of its tag, as done
+ * for each update from the DAQ: with the shared {@link ValueConverter} of the
+ * data type, compared to resolving the type name with
+ * <code>Class.forName</code> on each value (the previous implementation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueConversionBenchmark {
+
+  /**
+   * Data type of the tag; the value is a Double, so Float is converted,
+   * Double is not and the unknown type is left as is.
+   */
+  @Param({"Float", "Double", "cern.c2mon.BenchmarkType"})
+  private String dataType;
+
+  private Object value = 100.5d;
+
+  @Benchmark
+  public Object converter() {
+    ValueConverter converter = TypeConverter.getConverter(dataType);
+    return converter.isKnownType() ? converter.cast(value) : value;
+  }
+
+  @Benchmark
+  public Object resolveTypePerValue() {
+    return resolveType(dataType) != null ? TypeConverter.castToType(value, resolveType(dataType)) : value;
+  }
+
+  private static Class<?> resolveType(final String typeName) {
+    String fullPath = !typeName.contains(".") ? "java.lang." + typeName : typeName;
+    try {
+      return Class.forName(fullPath);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache;
+
+import java.util.Collection;
+
+import cern.c2mon.shared.common.Cacheable;
+
+/**
+ * C2monCacheListener that can also be notified of several updates at once,
+ * when a batch of cache objects is updated together (for instance all the
+ * values of a DAQ message). Listeners not implementing this interface are
+ * called once per cache object of the batch.
+ *
+ * @param <T> the type the listener expects
+ */
+public interface C2monBatchCacheListener<T extends Cacheable> extends C2monCacheListener<T> {
+
+  /**
+   * Callback when several cache objects are modified by a single batch update.
+   * The passed objects can be queried but should in general not be modified.
+   *
+   * @param cacheables the objects in the cache that have been updated, in the
+   *                   order of the updates
+   */
+  void notifyElementsUpdated(Collection<T> cacheables);
+}
@@ -16,6 +16,8 @@
  *****************************************************************************/
 package cern.c2mon.server.cache;
 
+import java.util.Map;
+
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
 import cern.c2mon.server.common.component.Lifecycle;
 import cern.c2mon.shared.common.Cacheable;
@@ -115,6 +117,18 @@ public interface C2monCacheWithListeners<K, T extends Cacheable> extends C2monCa
    * (a copy is passed; should not be modified as shared across listeners)
    */
   void notifyListenersOfUpdate(T cacheable);
+
+  /**
+   * Puts several updated objects back into the cache and notifies the listeners
+   * of all the updates at once: listeners implementing {@link C2monBatchCacheListener}
+   * receive a single batch notification, the others are notified once per object.
+   *
+   * <p>Must be called with the write locks held on all the keys, so that no object
+   * is modified before being copied for the listeners.
+   *
+   * @param cacheables the updated cache objects, by key (in the order of the updates)
+   */
+  void putAll(Map<K, T> cacheables);
   
   /**
    * Loads the cache element from the DB into the cache. Any existing cache element will
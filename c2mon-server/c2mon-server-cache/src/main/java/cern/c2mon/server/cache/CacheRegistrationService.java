@@ -142,6 +142,19 @@ public interface CacheRegistrationService {
    */
   Lifecycle registerBufferedListenerToTags(C2monBufferedCacheListener<Tag> bufferedTimCacheListener);
 
+  /**
+   * As {@link #registerBufferedListenerToTags(C2monBufferedCacheListener)}, with the
+   * possibility to only receive the latest update of each tag since the previous call
+   * ({@link BufferMode#CONFLATING}). The conflating buffer is bounded, so updates may
+   * be dropped if it fills up. Listeners needing every update (e.g. history logging)
+   * must use {@link BufferMode#EXACT}.
+   *
+   * @param bufferedTimCacheListener the listener to register (called on single thread)
+   * @param mode how the updates are buffered between two calls of the listener
+   * @return a Lifecycle object to allow the registered listener to stop/start its thread as required
+   */
+  Lifecycle registerBufferedListenerToTags(C2monBufferedCacheListener<Tag> bufferedTimCacheListener, BufferMode mode);
+
   /**
    * Registers for all updates to C2MON alarms. Notice this includes all invalidations
    * of alarms due to DAQ/Equipment supervision events. This listener is called on it's 
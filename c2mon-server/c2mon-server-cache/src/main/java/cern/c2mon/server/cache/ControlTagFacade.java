@@ -17,6 +17,8 @@
 package cern.c2mon.server.cache;
 
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
 
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
 import cern.c2mon.server.common.control.ControlTag;
@@ -86,4 +88,16 @@ public interface ControlTagFacade extends CommonTagFacade<ControlTag> {
    * @throws CacheElementNotFoundException if the Tag cannot be found in the cache
    */
   Event<Boolean> updateFromSource(final Long controlTagId, final SourceDataTagValue sourceDataTagValue);
+
+  /**
+   * Updates several ControlTags in the cache from the passed SourceDataTagValues, for
+   * instance all the values received in a single message. The tags are locked in
+   * ascending id order and the listeners are notified of the updates in batches.
+   * Values for tags that are not in the cache are ignored.
+   *
+   * @param sourceDataTagValues the values received from the data acquisition layer
+   * @return for each value, in the passed order, true if the tag was updated,
+   * together with the cache timestamp of the update
+   */
+  List<Event<Boolean>> updateFromSource(Collection<SourceDataTagValue> sourceDataTagValues);
 }
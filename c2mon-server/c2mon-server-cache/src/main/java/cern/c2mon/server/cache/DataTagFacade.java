@@ -17,6 +17,8 @@
 package cern.c2mon.server.cache;
 
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
@@ -69,6 +71,18 @@ public interface DataTagFacade extends CommonTagFacade<DataTag> {
    * @throws CacheElementNotFoundException if the Tag cannot be found in the cache
    */
   Event<Boolean> updateFromSource(Long dataTagId, SourceDataTagValue sourceDataTagValue);
+
+  /**
+   * Updates several DataTags in the cache from the passed SourceDataTagValues, for
+   * instance all the values received in a single message. The tags are locked in
+   * ascending id order and the listeners are notified of the updates in batches.
+   * Values for tags that are not in the cache are ignored.
+   *
+   * @param sourceDataTagValues the values received from the data acquisition layer
+   * @return for each value, in the passed order, true if the tag was updated,
+   * together with the cache timestamp of the update
+   */
+  List<Event<Boolean>> updateFromSource(Collection<SourceDataTagValue> sourceDataTagValues);
   
   /**
    * Same as other updateAndValidate method but takes a tag id as parameter and does the cache lookup
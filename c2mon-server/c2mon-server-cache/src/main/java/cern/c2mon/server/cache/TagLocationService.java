@@ -62,6 +62,18 @@ public interface TagLocationService {
    * @return a reference to the Tag object in the cache 
    */
   Tag get(Long id);
+
+  /**
+   * Returns the cache containing the tag with the given id (data, rule or
+   * control tag cache), for callers that look up the same tags repeatedly
+   * and can keep a reference to the cache. If it fails to locate a tag with
+   * the given id in any of these, it throws an unchecked
+   * <java>CacheElementNotFound</java> exception.
+   *
+   * @param id the Tag id
+   * @return the tag cache containing the tag
+   */
+  C2monCache<Long, ? extends Tag> getTagCache(Long id);
   
   /**
    * A {@link Tag} can also be retrieved with its unique name
@@ -0,0 +1,51 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache;
+
+import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Records the latency of DataTag updates at the different stages of the
+ * update pipeline, per {@link UpdateStage} and priority class (the priority
+ * of the tag address). Recording is lock-free and can be called on the
+ * update threads.
+ *
+ * <p>Only updates originating from a DAQ are recorded: rule tags are ignored
+ * (the latency of a rule evaluation is recorded against its input tag).
+ */
+public interface UpdateLatencyMonitor {
+
+  /**
+   * Records the time elapsed between the DAQ timestamp of the incoming value
+   * and the given time.
+   *
+   * @param stage the stage reached by the update
+   * @param sourceDataTagValue the value received from the DAQ
+   * @param time the time at which the stage was reached (in ms)
+   */
+  void record(UpdateStage stage, SourceDataTagValue sourceDataTagValue, long time);
+
+  /**
+   * Records the time elapsed between the DAQ timestamp of the tag and now.
+   * Does nothing if the tag is not a DataTag.
+   *
+   * @param stage the stage reached by the update
+   * @param tag the updated tag (or a copy of it)
+   */
+  void record(UpdateStage stage, Tag tag);
+}
@@ -0,0 +1,47 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache;
+
+/**
+ * The stages of the processing of a DataTag update in the server, at which
+ * the {@link UpdateLatencyMonitor} records the time elapsed since the update
+ * left the DAQ (DAQ timestamp). The latencies are cumulative: the time spent
+ * in a stage is the difference with the previous stage.
+ */
+public enum UpdateStage {
+
+  /** The update message has been received and decoded from JMS. */
+  RECEPTION,
+
+  /** The new value has been written to the cache (cache timestamp). */
+  CACHE_UPDATE,
+
+  /** The rules using the tag have been evaluated. */
+  RULE_EVALUATION,
+
+  /** The alarms attached to the tag have been evaluated. */
+  ALARM_EVALUATION,
+
+  /** The tag has been published to the clients. */
+  PUBLICATION,
+
+  /** The tag has been written to the history database. */
+  HISTORY,
+
+  /** The tag has been passed to the Elasticsearch persistence manager. */
+  ELASTICSEARCH
+}
@@ -21,6 +21,7 @@ import java.util.Collection;
 
 import javax.annotation.PostConstruct;
 
+import cern.c2mon.server.cache.config.CacheCopyMode;
 import cern.c2mon.server.cache.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.Ehcache;
@@ -42,6 +43,7 @@ import cern.c2mon.server.cache.common.AbstractCache;
 import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import cern.c2mon.server.cache.loading.AlarmLoaderDAO;
 import cern.c2mon.server.common.alarm.Alarm;
+import cern.c2mon.server.common.alarm.AlarmSnapshot;
 import cern.c2mon.server.common.config.C2monCacheName;
 import cern.c2mon.shared.client.alarm.AlarmQuery;
 
@@ -89,6 +91,16 @@ public class AlarmCacheImpl extends AbstractCache<Long, Alarm> implements AlarmC
     return C2monCacheName.ALARM;
   }
 
+  @Override
+  protected CacheCopyMode getDefaultCopyMode() {
+    return CacheCopyMode.CLONE;
+  }
+
+  @Override
+  protected Alarm createSnapshot(final Alarm alarm) throws CloneNotSupportedException {
+    return AlarmSnapshot.of(alarm);
+  }
+
   @Override
   protected String getCacheInitializedKey() {
     return cacheInitializedKey;
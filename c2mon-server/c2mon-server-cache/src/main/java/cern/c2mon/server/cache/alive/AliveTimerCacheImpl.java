@@ -18,6 +18,7 @@ package cern.c2mon.server.cache.alive;
 
 import javax.annotation.PostConstruct;
 
+import cern.c2mon.server.cache.config.CacheCopyMode;
 import cern.c2mon.server.cache.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.Ehcache;
@@ -76,6 +77,11 @@ public class AliveTimerCacheImpl extends AbstractCache<Long, AliveTimer> impleme
     return C2monCacheName.ALIVETIMER;
   }
 
+  @Override
+  protected CacheCopyMode getDefaultCopyMode() {
+    return CacheCopyMode.CLONE;
+  }
+
   @Override
   protected String getCacheInitializedKey() {
     return cacheInitializedKey;
@@ -35,6 +35,9 @@ import org.springframework.stereotype.Service;
 import cern.c2mon.server.cache.ClusterCache;
 import cern.c2mon.server.cache.CommandTagCache;
 import cern.c2mon.server.cache.common.AbstractCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.cache.index.NameIndex;
+import cern.c2mon.server.cache.index.NameIndexedEhcache;
 import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import cern.c2mon.server.cache.loading.SimpleCacheLoaderDAO;
 import cern.c2mon.server.common.config.C2monCacheName;
@@ -86,6 +89,22 @@ public class CommandTagCacheImpl extends AbstractCache<Long, CommandTag> impleme
       throw new IllegalArgumentException("Attempting to retrieve a CommandTag from the cache with a NULL or empty name parameter.");
     }
 
+    NameIndex nameIndex = NameIndexedEhcache.getNameIndex(getCache());
+    if (nameIndex != null) {
+      //the index ignores case, whereas the command name must match exactly
+      for (Long key : nameIndex.findExact(name)) {
+        try {
+          if (name.equals(get(key).getName())) {
+            return key;
+          }
+        } catch (CacheElementNotFoundException e) {
+          log.debug("Command tag {} removed from the cache while searching by name", key);
+        }
+      }
+      log.info("Failed to find a command tag with name " + name + " in the cache.");
+      return null;
+    }
+
     try {
       Attribute<String> commandTagName = getCache().getSearchAttribute("commandTagName");
       Query query = getCache().createQuery();
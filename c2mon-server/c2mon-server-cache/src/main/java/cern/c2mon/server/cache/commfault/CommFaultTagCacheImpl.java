@@ -18,6 +18,7 @@ package cern.c2mon.server.cache.commfault;
 
 import javax.annotation.PostConstruct;
 
+import cern.c2mon.server.cache.config.CacheCopyMode;
 import cern.c2mon.server.cache.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.Ehcache;
@@ -74,6 +75,11 @@ public class CommFaultTagCacheImpl extends AbstractCache<Long, CommFaultTag> imp
     return C2monCacheName.COMMFAULT;
   }
 
+  @Override
+  protected CacheCopyMode getDefaultCopyMode() {
+    return CacheCopyMode.CLONE;
+  }
+
   @Override
   protected String getCacheInitializedKey() {
     return cacheInitializedKey;
@@ -16,14 +16,13 @@
  *****************************************************************************/
 package cern.c2mon.server.cache.common;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingDeque;
 
+import cern.c2mon.server.cache.config.CacheCopyMode;
 import cern.c2mon.server.cache.config.CacheProperties;
 import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import lombok.extern.slf4j.Slf4j;
@@ -35,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 
+import cern.c2mon.server.cache.C2monBatchCacheListener;
 import cern.c2mon.server.cache.C2monBufferedCacheListener;
 import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.cache.ClusterCache;
@@ -42,7 +42,9 @@ import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
 import cern.c2mon.server.cache.listener.BufferedKeyCacheListener;
 import cern.c2mon.server.cache.listener.CacheListener;
 import cern.c2mon.server.cache.listener.DefaultBufferedCacheListener;
+import cern.c2mon.server.cache.listener.AbstractBufferedCacheListener;
 import cern.c2mon.server.cache.listener.MultiThreadedCacheListener;
+import cern.c2mon.server.cache.listener.PartitionedCacheListener;
 import cern.c2mon.server.cache.loading.SimpleCacheLoaderDAO;
 import cern.c2mon.server.common.component.Lifecycle;
 import cern.c2mon.server.common.config.C2monCacheName;
@@ -101,6 +103,17 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
    */
   private RegisteredEventListeners registeredEventListeners; //only for monitoring
 
+  /**
+   * Copy strategy used by {@link #getCopy(Object)}, resolved on first use.
+   */
+  private volatile CacheCopyMode copyMode;
+
+  /**
+   * Number of lock-free copy attempts before {@link #getCopy(Object)} falls
+   * back to the key read lock.
+   */
+  private static final int OPTIMISTIC_COPY_ATTEMPTS = 3;
+
   public AbstractCache(final ClusterCache clusterCache,
                        final Ehcache cache,
                        final CacheLoader cacheLoader,
@@ -114,6 +127,8 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     this.c2monCacheLoader = c2monCacheLoader;
     this.cacheLoaderDAO = cacheLoaderDAO;
     this.properties = properties;
+    //in clustered mode the locks are also used for cache coherence
+    setOptimisticReads(properties.isOptimisticReads() && !"multi".equalsIgnoreCase(properties.getMode()));
   }
 
   /**
@@ -184,7 +199,8 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
 
   /**
    * Find an object in the cache given the object id and create a deep copy.
-   * The copy is relealized through serialization and NOT by cloning.
+   * The copy is realized through the {@link CacheCopyMode} configured for this
+   * cache, i.e. either by cloning or through serialization.
    *
    * @param id the unique id of the cache object (should not be NULL)
    * @return Copy to the {@link Cacheable} object
@@ -193,26 +209,19 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
    * @throws UnsupportedOperationException If something goes wrong whilst creating a deep clone
    *         through serialization
    */
-  @SuppressWarnings("unchecked")
   public final T getCopy(final K id) {
     if (id != null) {
+      if (isOptimisticReads()) {
+        T copy = tryOptimisticCopy(id);
+        if (copy != null) {
+          return copy;
+        }
+      }
       cache.acquireReadLockOnKey(id);
 
       try {
         T reference = get(id);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeObject(reference);
-
-        ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-        ObjectInputStream ois = new ObjectInputStream(bais);
-        return (T) ois.readObject();
-      } catch (CacheElementNotFoundException cenfe) {
-        throw cenfe;
-      }
-      catch (Exception ex) {
-        log.error("Unable to get a serialized copy of the cache element as serialization is not supported for this object.", ex);
-        throw new UnsupportedOperationException("The getCopy() method is not supported for this cache element since the cache object is not entirely serializable. Please revisit your object.", ex);
+        return CacheObjectCopier.copy(reference, getCopyMode());
       } finally {
         cache.releaseReadLockOnKey(id);
       }
@@ -224,6 +233,76 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     }
   }
 
+  /**
+   * Tries to copy the cache object without taking the key read lock. The copy
+   * is only returned if no writer held the key write lock while it was being
+   * created; otherwise the attempt is repeated a few times before giving up.
+   *
+   * @param id the unique id of the cache object
+   * @return a consistent copy, or null if the caller should fall back to
+   *         a locked copy
+   * @throws CacheElementNotFoundException if the element if not found in the cache
+   */
+  private T tryOptimisticCopy(final K id) {
+    KeyVersionStamps stamps = getWriteStamps();
+    for (int attempt = 0; attempt < OPTIMISTIC_COPY_ATTEMPTS; attempt++) {
+      long stamp = stamps.tryOptimisticRead(id);
+      if (stamp == KeyVersionStamps.WRITE_LOCKED) {
+        return null;
+      }
+      T copy;
+      try {
+        copy = CacheObjectCopier.copy(get(id), getCopyMode());
+      } catch (CacheElementNotFoundException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        //object was modified while being copied; check the stamp below
+        if (stamps.validate(id, stamp)) {
+          throw e;
+        }
+        continue;
+      }
+      if (stamps.validate(id, stamp)) {
+        return copy;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the copy strategy used by {@link #getCopy(Object)}. Is taken from
+   * the {@link CacheProperties#getCopyMode()} entry of this cache if present,
+   * and from {@link #getDefaultCopyMode()} otherwise.
+   *
+   * @return the copy mode of this cache
+   */
+  public CacheCopyMode getCopyMode() {
+    if (copyMode == null) {
+      CacheCopyMode mode = getDefaultCopyMode();
+      if (properties.getCopyMode() != null) {
+        for (Map.Entry<String, CacheCopyMode> entry : properties.getCopyMode().entrySet()) {
+          if (entry.getKey().equalsIgnoreCase(getCacheName().name()) && entry.getValue() != null) {
+            mode = entry.getValue();
+          }
+        }
+      }
+      log.debug("Using copy mode {} for cache {}", mode, getCacheName());
+      copyMode = mode;
+    }
+    return copyMode;
+  }
+
+  /**
+   * Copy mode used if none is configured for this cache. Caches whose
+   * objects provide a complete deep clone implementation should override
+   * this to return {@link CacheCopyMode#CLONE}.
+   *
+   * @return {@link CacheCopyMode#SERIALIZATION}
+   */
+  protected CacheCopyMode getDefaultCopyMode() {
+    return CacheCopyMode.SERIALIZATION;
+  }
+
   /**
    * Puts an object in the cache, without notifying the cache listeners.
    * Wraps the call to the underlying Ehcache.
@@ -244,6 +323,21 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     notifyListenersOfUpdate(value);
   }
 
+  /**
+   * Put several objects in the cache, then notify the listeners of all of
+   * them at once (a {@link C2monBatchCacheListener} receives a single batch).
+   * The value objects themselves are put into the cache (not copies).
+   * Must be called with the write locks held on all the keys.
+   * @param cacheables the updated objects, by key; the listeners are
+   *                   notified in the iteration order of the map
+   */
+  public void putAll(final Map<K, T> cacheables) {
+    for (Map.Entry<K, T> entry : cacheables.entrySet()) {
+      super.put(entry.getKey(), entry.getValue());
+    }
+    notifyListenersOfUpdates(cacheables.values());
+  }
+
   public void notifyListenersOfUpdate(final K id) {
     notifyListenersOfUpdate(this.getCopy(id));
   }
@@ -254,15 +348,15 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
    *
    * Notifies the listeners that an update occurred for this DataTag. Should
    * be called *within a lock on the cache object* so the object is not modified
-   * before being passed to the listeners (using a clone).
+   * before being passed to the listeners (using a single copy shared by all
+   * listeners, see {@link #copyForListeners(Cacheable)}).
    *
    * @param cacheable the cache object that has been updated
    */
   public void notifyListenersOfUpdate(final T cacheable) {
     registeredEventListeners.notifyElementUpdated(new Element(cacheable.getId(), null), false); //only for monitoring via Ehcache: not using Ehcache listeners o.w.
     try {
-      @SuppressWarnings("unchecked")
-      T cloned = (T) cacheable.clone();
+      T cloned = copyForListeners(cacheable);
       for (C2monCacheListener< ? super T> listener : cacheListeners) {
         listener.notifyElementUpdated(cloned);
       }
@@ -272,10 +366,40 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     }
   }
 
+  /**
+   * Notifies the listeners of the update of several cache objects, passing a
+   * single collection of copies to the {@link C2monBatchCacheListener}s. Should
+   * be called within the locks on all the cache objects.
+   *
+   * @param cacheables the cache objects that have been updated
+   */
+  private void notifyListenersOfUpdates(final Collection<T> cacheables) {
+    List<T> clones = new ArrayList<>(cacheables.size());
+    try {
+      for (T cacheable : cacheables) {
+        registeredEventListeners.notifyElementUpdated(new Element(cacheable.getId(), null), false);
+        clones.add(copyForListeners(cacheable));
+      }
+    } catch (CloneNotSupportedException e) {
+      log.error("CloneNotSupportedException caught while cloning a cache element - this should never happen!", e);
+      throw new RuntimeException("CloneNotSupportedException caught while cloning a cache element - this should never happen!", e);
+    }
+    for (C2monCacheListener< ? super T> listener : cacheListeners) {
+      if (listener instanceof C2monBatchCacheListener) {
+        @SuppressWarnings("unchecked")
+        C2monBatchCacheListener<T> batchListener = (C2monBatchCacheListener<T>) listener;
+        batchListener.notifyElementsUpdated(clones);
+      } else {
+        for (T cloned : clones) {
+          listener.notifyElementUpdated(cloned);
+        }
+      }
+    }
+  }
+
   public void notifyListenerStatusConfirmation(final T cacheable, final long timestamp) {
     try {
-      @SuppressWarnings("unchecked")
-      T cloned = (T) cacheable.clone();
+      T cloned = copyForListeners(cacheable);
       for (C2monCacheListener< ? super T> listener : cacheListeners) {
         listener.confirmStatus(cloned);
       }
@@ -285,6 +409,40 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     }
   }
 
+  /**
+   * Copies a cache object before passing it to the listeners. The copy is
+   * an immutable snapshot if enabled and provided by the cache (see
+   * {@link #createSnapshot(Cacheable)}), otherwise a clone.
+   *
+   * @param cacheable the cache object to copy
+   * @return the copy passed to all listeners
+   * @throws CloneNotSupportedException if the cache object cannot be copied
+   */
+  private T copyForListeners(final T cacheable) throws CloneNotSupportedException {
+    if (properties.isListenerSnapshots()) {
+      return createSnapshot(cacheable);
+    }
+    @SuppressWarnings("unchecked")
+    T cloned = (T) cacheable.clone();
+    return cloned;
+  }
+
+  /**
+   * Creates the copy of a cache object that is shared by all the listeners
+   * notified of its update. Caches which objects have an immutable snapshot
+   * type should override this method, so the listeners can share and keep the
+   * copy without cloning it again. Returns a clone by default.
+   *
+   * @param cacheable the cache object to copy
+   * @return the copy passed to all listeners
+   * @throws CloneNotSupportedException if the cache object cannot be copied
+   */
+  protected T createSnapshot(final T cacheable) throws CloneNotSupportedException {
+    @SuppressWarnings("unchecked")
+    T cloned = (T) cacheable.clone();
+    return cloned;
+  }
+
   public void registerSynchronousListener(C2monCacheListener<? super T> cacheListener) {
     cacheListeners.add(cacheListener);
   }
@@ -343,7 +501,7 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
   public T loadFromDb(final K id) {
     T result;
 
-    cache.acquireWriteLockOnKey(id);
+    acquireWriteLockOnKey(id);
     try {
       if (!cache.isKeyInCache(id)) {
 
@@ -366,7 +524,7 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
         return get(id);
       }
     } finally {
-      cache.releaseWriteLockOnKey(id);
+      releaseWriteLockOnKey(id);
     }
   }
 
@@ -411,8 +569,12 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     for (C2monCacheListener listener : cacheListeners) {
       if (listener instanceof MultiThreadedCacheListener) {
         queueSizes.add(((MultiThreadedCacheListener) listener).getTaskQueueSize());
+      } else if (listener instanceof PartitionedCacheListener) {
+        queueSizes.add(((PartitionedCacheListener) listener).getTaskQueueSize());
       } else if (listener instanceof CacheListener) {
         queueSizes.add(((CacheListener) listener).getTaskQueueSize());
+      } else if (listener instanceof AbstractBufferedCacheListener) {
+        queueSizes.add(((AbstractBufferedCacheListener) listener).getTaskQueueSize());
       }
     }
     return queueSizes;
@@ -428,10 +590,37 @@ public abstract class AbstractCache<K, T extends Cacheable> extends BasicCache<K
     for (C2monCacheListener listener : cacheListeners) {
       if (listener instanceof MultiThreadedCacheListener) {
         threadPoolSizes.add(((MultiThreadedCacheListener) listener).getActiveThreadPoolNumber());
+      } else if (listener instanceof PartitionedCacheListener) {
+        threadPoolSizes.add(((PartitionedCacheListener) listener).getPartitionCount());
       }
     }
     return threadPoolSizes;
   }
 
+  /**
+   * For management purposes.
+   * @return the dispatch statistics of the partitioned listeners to this cache
+   *         (queue size per partition, average and maximum dispatch latency,
+   *         time publishers were blocked by a full ring buffer) and of the
+   *         conflating buffered listeners (conflated and dropped updates)
+   */
+  @ManagedOperation(description="Get partitioned and conflating listener dispatch statistics.")
+  public List<String> getListenerDispatchStatistics() {
+    ArrayList<String> statistics = new ArrayList<String>();
+    for (C2monCacheListener listener : cacheListeners) {
+      if (listener instanceof PartitionedCacheListener) {
+        PartitionedCacheListener partitionedListener = (PartitionedCacheListener) listener;
+        statistics.add(String.format("partition queue sizes=%s, average latency=%dus, max latency=%dus, blocked publishers=%dms",
+            partitionedListener.getPartitionQueueSizes(), partitionedListener.getAverageDispatchLatency(),
+            partitionedListener.getMaxDispatchLatency(), partitionedListener.getBlockedProducerTime()));
+      } else if (listener instanceof AbstractBufferedCacheListener && ((AbstractBufferedCacheListener) listener).isConflating()) {
+        AbstractBufferedCacheListener bufferedListener = (AbstractBufferedCacheListener) listener;
+        statistics.add(String.format("buffer size=%d, conflated updates=%d, dropped updates=%d",
+            bufferedListener.getTaskQueueSize(), bufferedListener.getConflatedUpdateCount(), bufferedListener.getDroppedUpdateCount()));
+      }
+    }
+    return statistics;
+  }
+
 
 }
@@ -63,6 +63,19 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
    */
   private int lockAttemptThreshold = 60;
 
+  /**
+   * Write stamps of the keys, maintained by the write lock methods and used
+   * by optimistic readers.
+   */
+  private final KeyVersionStamps writeStamps = new KeyVersionStamps(1024);
+
+  /**
+   * If true, {@link #get(Object)} does not take the key read lock and
+   * copies are created optimistically. Must stay disabled in clustered mode,
+   * where the locks are also needed for cache coherence across the servers.
+   */
+  private volatile boolean optimisticReads = false;
+
   /**
    * An inexpensive check to see if the key exists in the cache.
    *
@@ -114,6 +127,10 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
    * explicitly load an element from the DB use the loadFromDb(Long id) method
    * below.
    *
+   * <p>
+   * If optimistic reads are enabled, the reference is retrieved without
+   * taking the key read lock, so the call never blocks behind a writer.
+   *
    * @param id the id (key) of the cache element
    * @return a reference to the object stored in the cache
    */
@@ -122,7 +139,10 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
     T result = null;
     if (id != null) {
 
-      acquireReadLockOnKey(id);
+      boolean locked = !optimisticReads;
+      if (locked) {
+        acquireReadLockOnKey(id);
+      }
       try {
         Element element = cache.get(id);
         if (element != null) {
@@ -134,7 +154,9 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
         log.error("getReference() - Caught cache exception thrown by Ehcache while accessing object with id " + id, cacheException);
         throw new RuntimeException("An error occured when accessing the cache object with id " + id, cacheException);
       } finally {
-        releaseReadLockOnKey(id);
+        if (locked) {
+          releaseReadLockOnKey(id);
+        }
       }
     } else {
       log.error("getReference() - Trying to access cache with a NULL key - throwing an exception!");
@@ -229,6 +251,7 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
     }
 
     cache.acquireWriteLockOnKey(id);
+    writeStamps.writeLocked(id);
 
     if (log.isTraceEnabled()) {
       log.trace(cache.getName() + " Got WRITE lock for id=" + String.valueOf(id));
@@ -241,6 +264,7 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
    */
   public void releaseWriteLockOnKey(K id) {
     if (id != null) {
+      writeStamps.writeUnlocked(id);
       cache.releaseWriteLockOnKey(id);
 
       if (log.isTraceEnabled()) {
@@ -287,10 +311,37 @@ public abstract class BasicCache<K, T extends Serializable> extends ApplicationO
    */
   public boolean tryWriteLockOnKey(K id, Long timeout) {
     try {
-      return cache.tryWriteLockOnKey(id, timeout);
+      boolean locked = cache.tryWriteLockOnKey(id, timeout);
+      if (locked) {
+        writeStamps.writeLocked(id);
+      }
+      return locked;
     } catch (InterruptedException e) {
       log.debug("Thread interrupted for id=" + String.valueOf(id) + " (" + this.getClass() + ")");
       return false;
     }
   }
+
+  /**
+   * Enables or disables optimistic reads for this cache.
+   *
+   * @param optimisticReads true to read without taking the key read lock
+   */
+  protected void setOptimisticReads(final boolean optimisticReads) {
+    this.optimisticReads = optimisticReads;
+  }
+
+  /**
+   * @return true if optimistic reads are enabled for this cache
+   */
+  public boolean isOptimisticReads() {
+    return optimisticReads;
+  }
+
+  /**
+   * @return the write stamps of this cache, for optimistic readers
+   */
+  KeyVersionStamps getWriteStamps() {
+    return writeStamps;
+  }
 }
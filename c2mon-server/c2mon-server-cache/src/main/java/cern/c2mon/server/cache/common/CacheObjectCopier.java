@@ -0,0 +1,105 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import cern.c2mon.server.cache.config.CacheCopyMode;
+import cern.c2mon.shared.common.Cacheable;
+
+/**
+ * Creates deep copies of cache objects, either through their structural
+ * {@code clone()} implementation or through Java serialization.
+ *
+ * <p>Cloning avoids the byte stream round trip and is the preferred option
+ * for all cache objects with a complete clone implementation (tags, alarms
+ * and alive timers). Serialization is kept as fallback for objects which do
+ * not support cloning.
+ */
+@Slf4j
+public final class CacheObjectCopier {
+
+  private CacheObjectCopier() {
+    // static helper
+  }
+
+  /**
+   * Creates a deep copy of the given cache object.
+   *
+   * @param original the object to copy
+   * @param mode the copy strategy to use
+   * @param <T> the cache object type
+   * @return a copy of the object, or null if the original is null
+   * @throws UnsupportedOperationException if the object can neither be cloned
+   *         nor serialized
+   */
+  public static <T extends Cacheable> T copy(final T original, final CacheCopyMode mode) {
+    if (original == null) {
+      return null;
+    }
+    if (mode == CacheCopyMode.CLONE) {
+      return cloneCopy(original);
+    }
+    return serializedCopy(original);
+  }
+
+  /**
+   * Creates a copy through {@link Cacheable#clone()}, falling back to
+   * serialization if cloning is not supported by the object.
+   *
+   * @param original the object to copy (not null)
+   * @param <T> the cache object type
+   * @return the clone
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Cacheable> T cloneCopy(final T original) {
+    try {
+      return (T) original.clone();
+    } catch (CloneNotSupportedException e) {
+      log.debug("Cloning not supported for {} - falling back to serialization", original.getClass().getSimpleName());
+      return serializedCopy(original);
+    }
+  }
+
+  /**
+   * Creates a copy by serializing and deserializing the object.
+   *
+   * @param original the object to copy (not null)
+   * @param <T> the cache object type
+   * @return the deserialized copy
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Cacheable> T serializedCopy(final T original) {
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(original);
+
+      ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+      ObjectInputStream ois = new ObjectInputStream(bais);
+      return (T) ois.readObject();
+    } catch (Exception ex) {
+      log.error("Unable to get a serialized copy of the cache element as serialization is not supported for this object.", ex);
+      throw new UnsupportedOperationException("The getCopy() method is not supported for this cache element since the cache object is not entirely serializable. Please revisit your object.", ex);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.common;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import sun.misc.Unsafe;
+
+/**
+ * Striped write stamps used for optimistic reads of cache objects.
+ *
+ * <p>Each stripe counts the writers currently holding a write lock on one of
+ * its keys, and a version which is incremented every time such a write lock
+ * is released. A reader takes a stamp before copying a cache object and
+ * validates it afterwards: the copy is only consistent if no writer was
+ * active in between. Keys sharing a stripe may cause unnecessary retries,
+ * but never an inconsistent read.
+ *
+ * <p>As in {@link java.util.concurrent.locks.StampedLock#validate(long)}, a
+ * load fence is issued before the stamp is validated, so that the plain
+ * reads of the copy cannot be reordered after the validation.
+ */
+final class KeyVersionStamps {
+
+  /**
+   * Returned by {@link #tryOptimisticRead(Object)} if a writer is active.
+   */
+  static final long WRITE_LOCKED = -1L;
+
+  private static final Unsafe UNSAFE = getUnsafe();
+
+  /**
+   * For stripe i, index 2i holds the number of active writers and index
+   * 2i + 1 the version.
+   */
+  private final AtomicLongArray stamps;
+
+  private final int mask;
+
+  /**
+   * @param stripes number of stripes (rounded up to a power of two)
+   */
+  KeyVersionStamps(final int stripes) {
+    int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    stamps = new AtomicLongArray(2 * size);
+    mask = size - 1;
+  }
+
+  private int stripe(final Object key) {
+    int h = key.hashCode();
+    return ((h ^ (h >>> 16)) & mask) << 1;
+  }
+
+  /**
+   * @param key the cache key
+   * @return a stamp to validate after reading, or {@link #WRITE_LOCKED}
+   */
+  long tryOptimisticRead(final Object key) {
+    int stripe = stripe(key);
+    long version = stamps.get(stripe + 1);
+    return stamps.get(stripe) == 0 ? version : WRITE_LOCKED;
+  }
+
+  /**
+   * @param key the cache key
+   * @param stamp the stamp returned by {@link #tryOptimisticRead(Object)}
+   * @return true if no writer was active on the stripe since the stamp was taken
+   */
+  boolean validate(final Object key, final long stamp) {
+    UNSAFE.loadFence();
+    int stripe = stripe(key);
+    return stamp != WRITE_LOCKED && stamps.get(stripe) == 0 && stamps.get(stripe + 1) == stamp;
+  }
+
+  /**
+   * Must be called once a write lock on the key has been acquired.
+   */
+  void writeLocked(final Object key) {
+    stamps.incrementAndGet(stripe(key));
+  }
+
+  /**
+   * Must be called before the write lock on the key is released.
+   */
+  void writeUnlocked(final Object key) {
+    int stripe = stripe(key);
+    stamps.incrementAndGet(stripe + 1);
+    stamps.decrementAndGet(stripe);
+  }
+
+  private static Unsafe getUnsafe() {
+    try {
+      Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return (Unsafe) field.get(null);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+}
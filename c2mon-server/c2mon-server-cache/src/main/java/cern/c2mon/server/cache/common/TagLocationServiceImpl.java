@@ -19,6 +19,12 @@ package cern.c2mon.server.cache.common;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import javax.annotation.PostConstruct;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +36,7 @@ import cern.c2mon.server.cache.DataTagCache;
 import cern.c2mon.server.cache.RuleTagCache;
 import cern.c2mon.server.cache.TagLocationService;
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.cache.store.LongKeyStore;
 import cern.c2mon.server.common.tag.Tag;
 
 /**
@@ -60,6 +67,15 @@ public class TagLocationServiceImpl implements TagLocationService {
    * Reference to rule tag cache.
    */
   private RuleTagCache ruleTagCache;
+
+  /**
+   * Remembers in which cache a tag was last found, so that lookups by id do
+   * not have to probe the three caches one after the other. An entry is only
+   * a hint: it is checked against the cache before use and corrected if the
+   * tag has moved or disappeared. Entries are dropped when the tag is
+   * removed from the cache.
+   */
+  private final LongKeyStore<C2monCache<Long, ? extends Tag>> cacheRoutes = new LongKeyStore<>(16, 16, 1024);
   
   /**
    * 
@@ -77,41 +93,98 @@ public class TagLocationServiceImpl implements TagLocationService {
     this.controlTagCache = controlTagCache;
     this.ruleTagCache = ruleTagCache;
   }
+
+  /**
+   * Registers to the removals from the tag caches, to drop the routes of the
+   * removed tags.
+   */
+  @PostConstruct
+  public void init() {
+    registerRouteEviction(dataTagCache);
+    registerRouteEviction(ruleTagCache);
+    registerRouteEviction(controlTagCache);
+  }
+
+  private void registerRouteEviction(final C2monCache<Long, ? extends Tag> tagCache) {
+    if (tagCache instanceof BasicCache) {
+      ((BasicCache<?, ?>) tagCache).getCache().getCacheEventNotificationService().registerListener(new RouteEviction(tagCache));
+    }
+  }
   
   @SuppressWarnings("unchecked")
   private <T extends Tag> C2monCache<Long, T> getCache(final Long id) {
-    if (dataTagCache.hasKey(id)) {       
-      return (C2monCache<Long, T>) dataTagCache;
+    C2monCache<Long, ? extends Tag> route = cacheRoutes.get(id);
+    if (route != null && route.hasKey(id)) {
+      return (C2monCache<Long, T>) route;
+    }
+    return locateCache(id);
+  }
+
+  /**
+   * Probes the data, rule and control tag caches (in this order) and records
+   * the cache the tag was found in.
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends Tag> C2monCache<Long, T> locateCache(final Long id) {
+    C2monCache<Long, ? extends Tag> cache;
+    if (dataTagCache.hasKey(id)) {
+      cache = dataTagCache;
     } else if (ruleTagCache.hasKey(id)) {
-      return (C2monCache<Long, T>) ruleTagCache;
+      cache = ruleTagCache;
     } else if (controlTagCache.hasKey(id)) {
-      return (C2monCache<Long, T>) controlTagCache;
+      cache = controlTagCache;
     } else {
+      cacheRoutes.remove(id);
       throw new CacheElementNotFoundException("TagLocationService failed to locate tag with id " + id + " in any of the rule, control or datatag caches.");
     }
+    cacheRoutes.put(id, cache);
+    return (C2monCache<Long, T>) cache;
   }
-  
+
   @Override
   public Tag getCopy(final Long id) {
-    return getCache(id).getCopy(id);    
+    C2monCache<Long, ? extends Tag> route = cacheRoutes.get(id);
+    if (route != null) {
+      try {
+        return route.getCopy(id);
+      } catch (CacheElementNotFoundException e) {
+        LOGGER.trace("Tag {} no longer in the cache it was last found in - locating it again", id);
+      }
+    }
+    return locateCache(id).getCopy(id);
   }
-  
+
   @Override
   public Tag get(final Long id) {
-    return getCache(id).get(id);
+    C2monCache<Long, ? extends Tag> route = cacheRoutes.get(id);
+    if (route != null) {
+      try {
+        return route.get(id);
+      } catch (CacheElementNotFoundException e) {
+        LOGGER.trace("Tag {} no longer in the cache it was last found in - locating it again", id);
+      }
+    }
+    return locateCache(id).get(id);
   }
   
+  @Override
+  public C2monCache<Long, ? extends Tag> getTagCache(final Long id) {
+    return getCache(id);
+  }
+
   @Override
   public Tag get(final String tagName) {
-    if (dataTagCache.hasTagWithName(tagName)) {       
-      return dataTagCache.get(tagName);
-    } else if (ruleTagCache.hasTagWithName(tagName)) {
-      return ruleTagCache.get(tagName);
-    } else if (controlTagCache.hasTagWithName(tagName)) {
-      return controlTagCache.get(tagName);
-    } else {
+    Tag tag = dataTagCache.get(tagName);
+    if (tag == null) {
+      tag = ruleTagCache.get(tagName);
+    }
+    if (tag == null) {
+      tag = controlTagCache.get(tagName);
+    }
+    if (tag == null) {
       throw new CacheElementNotFoundException("TagLocationService failed to locate tag with name " + tagName + " in any of the rule, control or datatag caches.");
     }
+    return tag;
   }
   
   @Override
@@ -147,7 +220,11 @@ public class TagLocationServiceImpl implements TagLocationService {
 
   @Override
   public void remove(Long id) {
-    getCache(id).remove(id);
+    try {
+      getCache(id).remove(id);
+    } finally {
+      cacheRoutes.remove(id);
+    }
   }
 
   @Override
@@ -169,4 +246,42 @@ public class TagLocationServiceImpl implements TagLocationService {
   public void releaseWriteLockOnKey(Long id) {
     getCache(id).releaseWriteLockOnKey(id);
   }
+
+  /**
+   * Drops the route of a tag removed from the cache it points to.
+   */
+  private final class RouteEviction extends CacheEventListenerAdapter {
+
+    private final C2monCache<Long, ? extends Tag> tagCache;
+
+    RouteEviction(final C2monCache<Long, ? extends Tag> tagCache) {
+      this.tagCache = tagCache;
+    }
+
+    @Override
+    public void notifyElementRemoved(final Ehcache cache, final Element element) throws CacheException {
+      evict(element);
+    }
+
+    @Override
+    public void notifyElementExpired(final Ehcache cache, final Element element) {
+      evict(element);
+    }
+
+    @Override
+    public void notifyElementEvicted(final Ehcache cache, final Element element) {
+      evict(element);
+    }
+
+    @Override
+    public void notifyRemoveAll(final Ehcache cache) {
+      cacheRoutes.clear();
+    }
+
+    private void evict(final Element element) {
+      if (element.getObjectKey() instanceof Long) {
+        cacheRoutes.remove((Long) element.getObjectKey(), tagCache);
+      }
+    }
+  }
 }
@@ -36,6 +36,7 @@ public class AlarmCacheConfig {
   @Bean
   public C2monCacheLoader alarmCacheLoader(Ehcache alarmEhcache, AlarmLoaderDAO alarmLoaderDAO) {
     Integer batchSize = properties.getBatchSize();
-    return new BatchCacheLoader<>(alarmEhcache, alarmLoaderDAO, batchSize, "AlarmCacheLoader-");
+    return new BatchCacheLoader<>(alarmEhcache, alarmLoaderDAO, batchSize, "AlarmCacheLoader-",
+        properties.isStreaming());
   }
 }
@@ -26,6 +26,8 @@ public class CacheManagerConfig {
     switch (cacheMode) {
       case "single-nonpersistent":
         return getEhCacheManagerFactoryBean("ehcache/ehcache-single-nonpersistent.xml");
+      case "single-primitive":
+        return getEhCacheManagerFactoryBean("ehcache/ehcache-single-primitive.xml");
       case "single":
         return getEhCacheManagerFactoryBean("ehcache/ehcache-single.xml");
       case "multi":
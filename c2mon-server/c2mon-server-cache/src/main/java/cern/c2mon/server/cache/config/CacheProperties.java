@@ -1,8 +1,14 @@
 package cern.c2mon.server.cache.config;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import cern.c2mon.server.cache.listener.ConflatingUpdateBuffer;
+import cern.c2mon.server.cache.listener.PartitionedCacheListener;
+
 /**
  * @author Justin Lewis Salmon
  */
@@ -25,6 +31,11 @@ public class CacheProperties {
    *
    * single-nonpersitent: Standalone non-persistent mode. Requires
    * ehcache-core.jar. Does not support Ehcache fast cache loading.
+   *
+   * single-primitive: As single-nonpersistent, but the data, rule and
+   * control tag caches are held in a primitive long-keyed store with striped
+   * locks instead of the Ehcache memory store (lower footprint and GC
+   * pressure for large tag counts).
    */
   private String mode = "single-nonpersistent";
 
@@ -39,4 +50,82 @@ public class CacheProperties {
    * How long (in ms) the buffered cache listener should sleep between pulls
    */
   private int bufferedListenerPullFrequency = 5000;
+
+  /**
+   * Pass an immutable snapshot of the updated Tags and Alarms to the cache
+   * listeners, shared by all listeners, instead of a clone of the cache object
+   */
+  private boolean listenerSnapshots = true;
+
+  /**
+   * Maximum number of tags kept by the buffer of a conflating buffered
+   * listener (see BufferMode.CONFLATING)
+   */
+  private int conflatingBufferCapacity = 100000;
+
+  /**
+   * What a conflating buffered listener does with an update of a new tag if
+   * its buffer is full: DROP_OLDEST or DROP_NEWEST
+   */
+  private ConflatingUpdateBuffer.OverflowPolicy conflatingBufferOverflowPolicy = ConflatingUpdateBuffer.OverflowPolicy.DROP_OLDEST;
+
+  /**
+   * Copy strategy used by getCopy(), per cache. The key is the cache name as
+   * listed in C2monCacheName (case insensitive), e.g.
+   * c2mon.server.cache.copyMode.datatag=serialization
+   *
+   * Available options:
+   *
+   * clone: structural copy through the clone() implementation of the cache
+   * object. Default for all tag, alarm and alive timer caches.
+   *
+   * serialization: deep copy through Java serialization. Default for all
+   * other caches.
+   */
+  private Map<String, CacheCopyMode> copyMode = new HashMap<>();
+
+  /**
+   * Enable/disable optimistic reads: get() and getCopy() do not take the key
+   * read lock, copies are validated against concurrent writers instead. Is
+   * always disabled in "multi" mode.
+   */
+  private boolean optimisticReads = true;
+
+  /**
+   * Enable/disable the in-memory name index of the tag and command caches,
+   * used for the searches by name instead of Ehcache queries. Is always
+   * disabled in "multi" mode.
+   */
+  private boolean nameIndex = true;
+
+  /**
+   * Enable/disable the partitioned dispatcher for listeners registered on
+   * several threads to all tags (e.g. the rule evaluator). If enabled, the
+   * updates of a given tag are passed to the listener in order; otherwise
+   * they are taken from a shared queue by all threads.
+   */
+  private boolean partitionedListeners = true;
+
+  /**
+   * Number of updates buffered per partition of a partitioned listener
+   */
+  private int listenerRingBufferSize = 8192;
+
+  /**
+   * How the threads of a partitioned listener wait for updates:
+   * BUSY_SPIN, YIELDING, SLEEPING or BLOCKING
+   */
+  private PartitionedCacheListener.WaitStrategy listenerWaitStrategy = PartitionedCacheListener.WaitStrategy.BLOCKING;
+
+  /**
+   * Enable/disable the latency histograms of the update pipeline (time since
+   * the DAQ timestamp at each processing stage, per priority class)
+   */
+  private boolean latencyStatistics = true;
+
+  /**
+   * Interval in milliseconds between two latency summaries in the log (0 to
+   * disable the summary; the histograms remain available via JMX)
+   */
+  private long latencySummaryInterval = 60000;
 }
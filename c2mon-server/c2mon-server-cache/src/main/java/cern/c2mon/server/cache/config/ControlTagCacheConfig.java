@@ -4,6 +4,7 @@ import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import cern.c2mon.server.cache.loading.common.EhcacheLoaderImpl;
 import cern.c2mon.server.cache.common.SimpleC2monCacheLoader;
 import cern.c2mon.server.cache.loading.ControlTagLoaderDAO;
+import cern.c2mon.server.cache.index.NameIndexedEhCacheFactoryBean;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import org.springframework.cache.ehcache.EhCacheFactoryBean;
@@ -15,11 +16,8 @@ import org.springframework.context.annotation.Bean;
 public class ControlTagCacheConfig {
 
   @Bean
-  public EhCacheFactoryBean controlTagEhcache(CacheManager cacheManager) {
-    EhCacheFactoryBean factory = new EhCacheFactoryBean();
-    factory.setCacheName("controlCache");
-    factory.setCacheManager(cacheManager);
-    return factory;
+  public EhCacheFactoryBean controlTagEhcache(CacheManager cacheManager, CacheProperties cacheProperties) {
+    return new NameIndexedEhCacheFactoryBean(cacheManager, "controlCache", "tagName", cacheProperties);
   }
 
   @Bean
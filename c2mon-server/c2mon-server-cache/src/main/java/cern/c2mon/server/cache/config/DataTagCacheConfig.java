@@ -5,6 +5,7 @@ import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import cern.c2mon.server.cache.loading.common.EhcacheLoaderImpl;
 import cern.c2mon.server.cache.loading.DataTagLoaderDAO;
 import cern.c2mon.server.cache.loading.config.CacheLoadingProperties;
+import cern.c2mon.server.cache.index.NameIndexedEhCacheFactoryBean;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,11 +22,8 @@ public class DataTagCacheConfig {
   private CacheLoadingProperties properties;
 
   @Bean
-  public EhCacheFactoryBean dataTagEhcache(CacheManager cacheManager) {
-    EhCacheFactoryBean factory = new EhCacheFactoryBean();
-    factory.setCacheName("tagCache");
-    factory.setCacheManager(cacheManager);
-    return factory;
+  public EhCacheFactoryBean dataTagEhcache(CacheManager cacheManager, CacheProperties cacheProperties) {
+    return new NameIndexedEhCacheFactoryBean(cacheManager, "tagCache", "tagName", cacheProperties);
   }
 
   @Bean
@@ -36,6 +34,7 @@ public class DataTagCacheConfig {
   @Bean
   public C2monCacheLoader dataTagCacheLoader(Ehcache dataTagEhcache, DataTagLoaderDAO dataTagLoaderDAO) {
     Integer batchSize = properties.getBatchSize();
-    return new BatchCacheLoader<>(dataTagEhcache, dataTagLoaderDAO, batchSize, "DataTagCacheLoader-");
+    return new BatchCacheLoader<>(dataTagEhcache, dataTagLoaderDAO, batchSize, "DataTagCacheLoader-",
+        properties.isStreaming());
   }
 }
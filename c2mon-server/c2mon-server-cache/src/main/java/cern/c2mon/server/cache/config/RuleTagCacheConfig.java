@@ -5,6 +5,7 @@ import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import cern.c2mon.server.cache.loading.common.EhcacheLoaderImpl;
 import cern.c2mon.server.cache.loading.RuleTagLoaderDAO;
 import cern.c2mon.server.cache.loading.config.CacheLoadingProperties;
+import cern.c2mon.server.cache.index.NameIndexedEhCacheFactoryBean;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,11 +22,8 @@ public class RuleTagCacheConfig {
   private CacheLoadingProperties properties;
 
   @Bean
-  public EhCacheFactoryBean ruleTagEhcache(CacheManager cacheManager) {
-    EhCacheFactoryBean factory = new EhCacheFactoryBean();
-    factory.setCacheName("ruleCache");
-    factory.setCacheManager(cacheManager);
-    return factory;
+  public EhCacheFactoryBean ruleTagEhcache(CacheManager cacheManager, CacheProperties cacheProperties) {
+    return new NameIndexedEhCacheFactoryBean(cacheManager, "ruleCache", "tagName", cacheProperties);
   }
 
   @Bean
@@ -36,6 +34,7 @@ public class RuleTagCacheConfig {
   @Bean
   public C2monCacheLoader ruleTagCacheLoader(Ehcache ruleTagEhcache, RuleTagLoaderDAO ruleTagLoaderDAO) {
     Integer batchSize = properties.getBatchSize();
-    return new BatchCacheLoader<>(ruleTagEhcache, ruleTagLoaderDAO, batchSize, "RuleTagCacheLoader-");
+    return new BatchCacheLoader<>(ruleTagEhcache, ruleTagLoaderDAO, batchSize, "RuleTagCacheLoader-",
+        properties.isStreaming());
   }
 }
@@ -17,6 +17,12 @@
 package cern.c2mon.server.cache.datatag;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import lombok.extern.slf4j.Slf4j;
@@ -42,9 +48,9 @@ import cern.c2mon.shared.common.datatag.SourceDataTag;
 import cern.c2mon.shared.common.datatag.SourceDataTagValue;
 import cern.c2mon.shared.common.datatag.TagQualityStatus;
 import cern.c2mon.shared.common.type.TypeConverter;
+import cern.c2mon.shared.common.type.ValueConverter;
 import cern.c2mon.shared.daq.config.DataTagUpdate;
 
-import static cern.c2mon.shared.common.type.TypeConverter.isKnownClass;
 
 /**
  * {@link DataTagFacade} and {@link ControlTagFacade} have some functionalities in common which
@@ -58,6 +64,12 @@ import static cern.c2mon.shared.common.type.TypeConverter.isKnownClass;
 @Slf4j
 public abstract class AbstractDataTagFacade<T extends DataTag> extends AbstractTagFacade<T> {
 
+  /**
+   * Time to wait for the write lock of a tag while holding the locks of
+   * other tags of the same batch update (in ms).
+   */
+  private static final long BATCH_LOCK_TIMEOUT = 0L;
+
   /**
    * Interface to cache module.
    */
@@ -389,18 +401,7 @@ public abstract class AbstractDataTagFacade<T extends DataTag> extends AbstractT
     tagCache.acquireWriteLockOnKey(dataTagId);
     try {
       T dataTag = tagCache.get(dataTagId);
-
-      // Before updating the new value to the cache convert the value to the proper type.
-      // In the process of the deserialization the dataType can still divert from the defined dataType.
-      // If the dataType is an arbitrary object do nothing because the server don't work with this kind of values at all.
-      if(sourceDataTagValue != null
-          && sourceDataTagValue.getValue() != null
-          && isKnownClass(dataTag.getDataType())){
-        Object convertedValue = TypeConverter.cast(sourceDataTagValue.getValue(), dataTag.getDataType());
-        sourceDataTagValue.setValue(convertedValue);
-      }
-
-      Event<Boolean> returnEvent = updateFromSource(dataTag, sourceDataTagValue);
+      Event<Boolean> returnEvent = convertAndUpdateFromSource(dataTag, sourceDataTagValue);
       if (returnEvent.getReturnValue()) {
         tagCache.put(dataTagId, dataTag);
       }
@@ -410,6 +411,118 @@ public abstract class AbstractDataTagFacade<T extends DataTag> extends AbstractT
     }
   }
 
+  /**
+   * Updates several DataTags in the cache from the passed SourceDataTagValues,
+   * with the same logic as {@link #updateFromSource(Long, SourceDataTagValue)}.
+   *
+   * <p>The tags are locked in ascending id order. The locks are accumulated as
+   * long as they can be taken without waiting, after which the updated tags
+   * are put back in the cache, the listeners are notified of all their updates
+   * at once and the locks are released, before waiting for the next lock. Several
+   * values for the same tag are applied in the order they are passed.
+   *
+   * <p>Values for tags that are not in the cache are ignored.
+   *
+   * @param sourceDataTagValues the values received from the data acquisition layer
+   * @return for each value, in the passed order, true if the tag was updated,
+   * together with the cache timestamp of the update
+   */
+  public final List<Event<Boolean>> updateFromSource(final Collection<SourceDataTagValue> sourceDataTagValues) {
+    List<SourceDataTagValue> values = new ArrayList<>(sourceDataTagValues);
+    List<Event<Boolean>> returnEvents = new ArrayList<>(values.size());
+    List<Integer> order = new ArrayList<>(values.size());
+    for (int i = 0; i < values.size(); i++) {
+      returnEvents.add(new Event<>(System.currentTimeMillis(), Boolean.FALSE));
+      if (values.get(i) != null) {
+        order.add(i);
+      } else {
+        log.error("Attempting to update a dataTag with a null source value - ignoring update.");
+      }
+    }
+    // stable sort: values of the same tag keep their order
+    order.sort(Comparator.comparing(i -> values.get(i).getId()));
+
+    List<Long> lockedIds = new ArrayList<>();
+    Map<Long, T> updatedTags = new LinkedHashMap<>();
+    try {
+      for (Integer index : order) {
+        Long dataTagId = values.get(index).getId();
+        boolean locked = false;
+        if (!lockedIds.isEmpty()) {
+          // a repeated tag must be put before its next update, and we never wait for a lock while holding others
+          if (!dataTagId.equals(lockedIds.get(lockedIds.size() - 1)) && tagCache.tryWriteLockOnKey(dataTagId, BATCH_LOCK_TIMEOUT)) {
+            locked = true;
+          } else {
+            putAndRelease(lockedIds, updatedTags);
+          }
+        }
+        if (!locked) {
+          tagCache.acquireWriteLockOnKey(dataTagId);
+        }
+        lockedIds.add(dataTagId);
+
+        try {
+          T dataTag = tagCache.get(dataTagId);
+          Event<Boolean> returnEvent = convertAndUpdateFromSource(dataTag, values.get(index));
+          if (returnEvent.getReturnValue()) {
+            updatedTags.put(dataTagId, dataTag);
+          }
+          returnEvents.set(index, returnEvent);
+        } catch (CacheElementNotFoundException cacheEx) {
+          log.warn("Received unrecognized tag #" + dataTagId + ": ignoring the update");
+        }
+      }
+    } finally {
+      putAndRelease(lockedIds, updatedTags);
+    }
+    return returnEvents;
+  }
+
+  /**
+   * Puts the updated tags back in the cache, notifying the listeners, and
+   * releases the write locks held by the batch update. Both collections are
+   * emptied.
+   *
+   * @param lockedIds the ids of the tags locked by the batch update
+   * @param updatedTags the tags modified by the batch update
+   */
+  private void putAndRelease(final List<Long> lockedIds, final Map<Long, T> updatedTags) {
+    try {
+      if (!updatedTags.isEmpty()) {
+        tagCache.putAll(updatedTags);
+      }
+    } finally {
+      for (Long lockedId : lockedIds) {
+        tagCache.releaseWriteLockOnKey(lockedId);
+      }
+      lockedIds.clear();
+      updatedTags.clear();
+    }
+  }
+
+  /**
+   * Converts the value received from the source to the data type of the tag,
+   * then updates the tag (see {@link #updateFromSource(DataTag, SourceDataTagValue)}).
+   * Call within the write lock on the tag.
+   *
+   * @param dataTag is modified by the method
+   * @param sourceDataTagValue the source value received from the DAQ
+   * @return true if an update was performed (i.e. the value was not filtered out)
+   */
+  private Event<Boolean> convertAndUpdateFromSource(final T dataTag, final SourceDataTagValue sourceDataTagValue) {
+    // Before updating the new value to the cache convert the value to the proper type.
+    // In the process of the deserialization the dataType can still divert from the defined dataType.
+    // If the dataType is an arbitrary object do nothing because the server don't work with this kind of values at all.
+    if (sourceDataTagValue != null && sourceDataTagValue.getValue() != null && dataTag.getDataType() != null) {
+      ValueConverter converter = TypeConverter.getConverter(dataTag.getDataType());
+      if (converter.isKnownType()) {
+        sourceDataTagValue.setValue(converter.cast(sourceDataTagValue.getValue()));
+      }
+    }
+
+    return updateFromSource(dataTag, sourceDataTagValue);
+  }
+
   /**
    * To be called internally only within a dataTag synchronized block. Should not be made public.
    */
@@ -0,0 +1,222 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory, case insensitive index from names to cache keys.
+ * <p>
+ * The lower case names are kept in two sorted maps, one on the names and one
+ * on the reversed names. Exact, prefix ("abc*") and suffix ("*abc") queries are
+ * answered from a range of one of these maps, so their cost depends on the
+ * number of names sharing the literal prefix or suffix rather than on the size
+ * of the cache. Patterns starting and ending with a wildcard ("*abc*") are
+ * answered by a scan of the sorted names, which is still much cheaper than an
+ * Ehcache search as no cache element or attribute needs to be read.
+ * <p>
+ * Reads are lock-free. Updates are serialized, but are cheap if the name of
+ * the key did not change, which is the case for all value updates.
+ */
+public class NameIndex {
+
+  /**
+   * Current (original case) name of each indexed key.
+   */
+  private final Map<Long, String> namesByKey = new ConcurrentHashMap<>();
+
+  /**
+   * Lower case name to keys.
+   */
+  private final ConcurrentSkipListMap<String, Set<Long>> names = new ConcurrentSkipListMap<>();
+
+  /**
+   * Reversed lower case name to keys.
+   */
+  private final ConcurrentSkipListMap<String, Set<Long>> reversedNames = new ConcurrentSkipListMap<>();
+
+  /**
+   * Indexes the key under the given name, replacing its previous name if any.
+   *
+   * @param key the cache key
+   * @param name the name of the cache object; the key is removed from the index if null
+   */
+  public void put(final Long key, final String name) {
+    if (name == null) {
+      remove(key);
+      return;
+    }
+    if (name.equals(namesByKey.get(key))) {
+      return;
+    }
+    synchronized (this) {
+      String previous = namesByKey.put(key, name);
+      if (previous != null) {
+        unindex(key, previous);
+      }
+      String lowerCase = name.toLowerCase();
+      index(names, lowerCase, key);
+      index(reversedNames, reverse(lowerCase), key);
+    }
+  }
+
+  /**
+   * Removes the key from the index.
+   *
+   * @param key the cache key
+   */
+  public void remove(final Long key) {
+    if (!namesByKey.containsKey(key)) {
+      return;
+    }
+    synchronized (this) {
+      String previous = namesByKey.remove(key);
+      if (previous != null) {
+        unindex(key, previous);
+      }
+    }
+  }
+
+  /**
+   * Removes all keys from the index.
+   */
+  public synchronized void clear() {
+    namesByKey.clear();
+    names.clear();
+    reversedNames.clear();
+  }
+
+  /**
+   * @return the number of indexed keys
+   */
+  public int size() {
+    return namesByKey.size();
+  }
+
+  /**
+   * Returns the keys indexed under the given name (ignoring case).
+   *
+   * @param name the name to look for
+   * @return the keys, empty if none
+   */
+  public List<Long> findExact(final String name) {
+    Set<Long> keys = names.get(name.trim().toLowerCase());
+    return keys == null ? Collections.<Long>emptyList() : new ArrayList<>(keys);
+  }
+
+  /**
+   * Returns the keys whose name matches the given pattern, sorted by name.
+   *
+   * @param pattern the name pattern
+   * @param maxResults the maximum number of keys returned
+   * @return the matching keys, empty if none
+   */
+  public List<Long> find(final NamePattern pattern, final int maxResults) {
+    List<Long> result = new ArrayList<>();
+    if (pattern.isExact()) {
+      Set<Long> keys = names.get(pattern.getPrefix());
+      if (keys != null) {
+        addKeys(keys, result, maxResults);
+      }
+    } else if (pattern.isMatchAll()) {
+      for (Set<Long> keys : names.values()) {
+        if (!addKeys(keys, result, maxResults)) {
+          break;
+        }
+      }
+    } else {
+      String prefix = pattern.getPrefix();
+      String suffix = pattern.getSuffix();
+      if (!prefix.isEmpty() && prefix.length() >= suffix.length()) {
+        collect(names.tailMap(prefix, true), prefix, pattern, false, result, maxResults);
+      } else if (!suffix.isEmpty()) {
+        String reversedSuffix = reverse(suffix);
+        collect(reversedNames.tailMap(reversedSuffix, true), reversedSuffix, pattern, true, result, maxResults);
+      } else {
+        collect(names, "", pattern, false, result, maxResults);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds the keys of the matching names of the given range, which is
+   * traversed as long as the names start with the given literal.
+   */
+  private static void collect(final NavigableMap<String, Set<Long>> range, final String literal, final NamePattern pattern,
+                              final boolean reversed, final List<Long> result, final int maxResults) {
+    for (Map.Entry<String, Set<Long>> entry : range.entrySet()) {
+      String indexedName = entry.getKey();
+      if (!indexedName.startsWith(literal)) {
+        break;
+      }
+      String name = reversed ? reverse(indexedName) : indexedName;
+      if (pattern.matchesLowerCase(name) && !addKeys(entry.getValue(), result, maxResults)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * @return false if the maximum number of results has been reached
+   */
+  private static boolean addKeys(final Set<Long> keys, final List<Long> result, final int maxResults) {
+    for (Long key : keys) {
+      if (result.size() >= maxResults) {
+        return false;
+      }
+      result.add(key);
+    }
+    return result.size() < maxResults;
+  }
+
+  private static void index(final ConcurrentSkipListMap<String, Set<Long>> map, final String name, final Long key) {
+    Set<Long> keys = map.get(name);
+    if (keys == null) {
+      keys = ConcurrentHashMap.newKeySet();
+      map.put(name, keys);
+    }
+    keys.add(key);
+  }
+
+  private void unindex(final Long key, final String name) {
+    String lowerCase = name.toLowerCase();
+    unindex(names, lowerCase, key);
+    unindex(reversedNames, reverse(lowerCase), key);
+  }
+
+  private static void unindex(final ConcurrentSkipListMap<String, Set<Long>> map, final String name, final Long key) {
+    Set<Long> keys = map.get(name);
+    if (keys != null) {
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        map.remove(name);
+      }
+    }
+  }
+
+  private static String reverse(final String name) {
+    return new StringBuilder(name).reverse().toString();
+  }
+}
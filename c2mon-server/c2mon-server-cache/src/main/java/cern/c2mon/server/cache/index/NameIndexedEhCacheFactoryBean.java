@@ -0,0 +1,67 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.index;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import org.springframework.cache.ehcache.EhCacheFactoryBean;
+
+import cern.c2mon.server.cache.config.CacheProperties;
+
+/**
+ * {@link EhCacheFactoryBean} which decorates the cache with a
+ * {@link NameIndexedEhcache}. The decorated cache replaces the configured
+ * one in the cache manager, so that the cache loaders and the C2MON cache
+ * both write through the index.
+ *
+ * <p>The index is only created if enabled in the {@link CacheProperties} and
+ * never in "multi" mode, as a local index would miss the updates made by the
+ * other servers of the cluster.
+ */
+@Slf4j
+public class NameIndexedEhCacheFactoryBean extends EhCacheFactoryBean {
+
+  private final String nameAttribute;
+
+  private final boolean enabled;
+
+  /**
+   * @param cacheManager the cache manager the cache is configured in
+   * @param cacheName the name of the cache
+   * @param nameAttribute the search attribute holding the name of the cache objects
+   * @param properties the cache properties
+   */
+  public NameIndexedEhCacheFactoryBean(final CacheManager cacheManager, final String cacheName,
+                                       final String nameAttribute, final CacheProperties properties) {
+    setCacheManager(cacheManager);
+    setCacheName(cacheName);
+    this.nameAttribute = nameAttribute;
+    this.enabled = properties.isNameIndex() && !"multi".equalsIgnoreCase(properties.getMode());
+  }
+
+  @Override
+  protected Ehcache decorateCache(final Ehcache cache) {
+    Ehcache decorated = super.decorateCache(cache);
+    if (!enabled || decorated instanceof NameIndexedEhcache) {
+      //already indexed if the cache manager is shared with another context
+      return decorated;
+    }
+    log.info("Creating name index on attribute {} of cache {}", nameAttribute, cache.getName());
+    return new NameIndexedEhcache(decorated, nameAttribute);
+  }
+}
@@ -0,0 +1,268 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.index;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.SearchAttribute;
+import net.sf.ehcache.constructs.EhcacheDecoratorAdapter;
+import net.sf.ehcache.search.attribute.AttributeExtractor;
+
+/**
+ * Ehcache decorator maintaining a {@link NameIndex} of the cache content.
+ * The name of each cache object is read with the extractor of one of the
+ * search attributes configured for the cache (e.g. "tagName").
+ *
+ * <p>All writes to the cache, including the quiet ones used by the cache
+ * loaders, have to go through this decorator for the index to be complete.
+ * This is achieved by replacing the underlying cache in the cache manager
+ * (see {@link NameIndexedEhCacheFactoryBean}).
+ */
+@Slf4j
+public class NameIndexedEhcache extends EhcacheDecoratorAdapter {
+
+  private final NameIndex nameIndex = new NameIndex();
+
+  private final String nameAttribute;
+
+  private final AttributeExtractor nameExtractor;
+
+  /**
+   * @param underlyingCache the decorated cache
+   * @param nameAttribute the search attribute holding the name of the cache objects
+   * @throws IllegalArgumentException if the search attribute is not configured for the cache
+   */
+  public NameIndexedEhcache(final Ehcache underlyingCache, final String nameAttribute) {
+    super(underlyingCache);
+    SearchAttribute attribute = underlyingCache.getCacheConfiguration().getSearchAttributes().get(nameAttribute);
+    if (attribute == null) {
+      throw new IllegalArgumentException("Search attribute " + nameAttribute + " is not configured for cache " + underlyingCache.getName());
+    }
+    this.nameAttribute = nameAttribute;
+    this.nameExtractor = attribute.constructExtractor();
+    for (Object key : underlyingCache.getKeys()) {
+      index(underlyingCache.getQuiet(key));
+    }
+  }
+
+  /**
+   * Returns the name index of the given cache.
+   *
+   * @param cache a cache, possibly decorated
+   * @return the name index, or null if the cache is not indexed
+   */
+  public static NameIndex getNameIndex(final Ehcache cache) {
+    return cache instanceof NameIndexedEhcache ? ((NameIndexedEhcache) cache).nameIndex : null;
+  }
+
+  private void index(final Element element) {
+    if (element == null || element.getObjectValue() == null) {
+      return;
+    }
+    Object key = element.getObjectKey();
+    if (!(key instanceof Long)) {
+      log.warn("Name index of cache {} only supports Long keys - ignoring key {}", getName(), key);
+      return;
+    }
+    Object name = nameExtractor.attributeFor(element, nameAttribute);
+    nameIndex.put((Long) key, name == null ? null : name.toString());
+  }
+
+  private void unindex(final Object key) {
+    if (key instanceof Long) {
+      nameIndex.remove((Long) key);
+    }
+  }
+
+  //***************************
+  // WRITES
+  //***************************
+
+  @Override
+  public void put(final Element element) throws CacheException {
+    super.put(element);
+    index(element);
+  }
+
+  @Override
+  public void put(final Element element, final boolean doNotNotifyCacheReplicators) throws CacheException {
+    super.put(element, doNotNotifyCacheReplicators);
+    index(element);
+  }
+
+  @Override
+  public void putQuiet(final Element element) throws CacheException {
+    super.putQuiet(element);
+    index(element);
+  }
+
+  @Override
+  public void putWithWriter(final Element element) throws CacheException {
+    super.putWithWriter(element);
+    index(element);
+  }
+
+  @Override
+  public void putAll(final Collection<Element> elements) throws CacheException {
+    super.putAll(elements);
+    for (Element element : elements) {
+      index(element);
+    }
+  }
+
+  @Override
+  public Element putIfAbsent(final Element element) {
+    Element previous = super.putIfAbsent(element);
+    if (previous == null) {
+      index(element);
+    }
+    return previous;
+  }
+
+  @Override
+  public Element putIfAbsent(final Element element, final boolean doNotNotifyCacheReplicators) {
+    Element previous = super.putIfAbsent(element, doNotNotifyCacheReplicators);
+    if (previous == null) {
+      index(element);
+    }
+    return previous;
+  }
+
+  @Override
+  public Element replace(final Element element) {
+    Element previous = super.replace(element);
+    if (previous != null) {
+      index(element);
+    }
+    return previous;
+  }
+
+  @Override
+  public boolean replace(final Element old, final Element element) {
+    boolean replaced = super.replace(old, element);
+    if (replaced) {
+      index(element);
+    }
+    return replaced;
+  }
+
+  @Override
+  public boolean remove(final Object key) {
+    boolean removed = super.remove(key);
+    unindex(key);
+    return removed;
+  }
+
+  @Override
+  public boolean remove(final Serializable key) {
+    return remove((Object) key);
+  }
+
+  @Override
+  public boolean remove(final Object key, final boolean doNotNotifyCacheReplicators) {
+    boolean removed = super.remove(key, doNotNotifyCacheReplicators);
+    unindex(key);
+    return removed;
+  }
+
+  @Override
+  public boolean remove(final Serializable key, final boolean doNotNotifyCacheReplicators) {
+    return remove((Object) key, doNotNotifyCacheReplicators);
+  }
+
+  @Override
+  public Element removeAndReturnElement(final Object key) {
+    Element previous = super.removeAndReturnElement(key);
+    unindex(key);
+    return previous;
+  }
+
+  @Override
+  public boolean removeElement(final Element element) {
+    boolean removed = super.removeElement(element);
+    if (removed) {
+      unindex(element.getObjectKey());
+    }
+    return removed;
+  }
+
+  @Override
+  public boolean removeQuiet(final Object key) {
+    boolean removed = super.removeQuiet(key);
+    unindex(key);
+    return removed;
+  }
+
+  @Override
+  public boolean removeQuiet(final Serializable key) {
+    return removeQuiet((Object) key);
+  }
+
+  @Override
+  public boolean removeWithWriter(final Object key) {
+    boolean removed = super.removeWithWriter(key);
+    unindex(key);
+    return removed;
+  }
+
+  @Override
+  public void removeAll(final Collection<?> keys) {
+    super.removeAll(keys);
+    for (Object key : keys) {
+      unindex(key);
+    }
+  }
+
+  @Override
+  public void removeAll(final Collection<?> keys, final boolean doNotNotifyCacheReplicators) {
+    super.removeAll(keys, doNotNotifyCacheReplicators);
+    for (Object key : keys) {
+      unindex(key);
+    }
+  }
+
+  @Override
+  public void removeAll() {
+    super.removeAll();
+    nameIndex.clear();
+  }
+
+  @Override
+  public void removeAll(final boolean doNotNotifyCacheReplicators) {
+    super.removeAll(doNotNotifyCacheReplicators);
+    nameIndex.clear();
+  }
+
+  /**
+   * Decorators are equal to the decorated cache (as for the Ehcache {@code Cache}),
+   * which is required for replacing the latter in the cache manager.
+   */
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof Ehcache && getGuid().equals(((Ehcache) obj).getGuid());
+  }
+
+  @Override
+  public int hashCode() {
+    return getGuid().hashCode();
+  }
+}
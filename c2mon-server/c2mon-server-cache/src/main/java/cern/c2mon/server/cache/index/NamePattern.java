@@ -0,0 +1,168 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.index;
+
+import java.util.regex.Pattern;
+
+/**
+ * A case insensitive name pattern, in which '?' matches a single character
+ * and '*' any sequence of characters. A wildcard character is matched
+ * literally if preceded by a backslash, as is a double backslash.
+ * <p>
+ * The semantics are the ones of the Ehcache {@code ilike} search criteria
+ * (the pattern is trimmed, the names are compared in lower case), so that
+ * the {@link NameIndex} returns the same tags as a search on the
+ * {@code tagName} attribute.
+ *
+ * @see net.sf.ehcache.search.expression.ILike
+ */
+public final class NamePattern {
+
+  /**
+   * The pattern as passed to {@link #compile(String)}.
+   */
+  private final String pattern;
+
+  /**
+   * Regular expression equivalent to the pattern, matched against lower case names.
+   */
+  private final Pattern regex;
+
+  /**
+   * Lower case literal characters before the first wildcard.
+   */
+  private final String prefix;
+
+  /**
+   * Lower case literal characters after the last wildcard.
+   */
+  private final String suffix;
+
+  /**
+   * True if the pattern contains no wildcard, in which case the prefix is
+   * the complete (lower case) name.
+   */
+  private final boolean exact;
+
+  /**
+   * True if the pattern consists of '*' characters only.
+   */
+  private final boolean matchAll;
+
+  private NamePattern(final String pattern, final Pattern regex, final String prefix, final String suffix,
+                      final boolean exact, final boolean matchAll) {
+    this.pattern = pattern;
+    this.regex = regex;
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.exact = exact;
+    this.matchAll = matchAll;
+  }
+
+  /**
+   * Parses the given name pattern.
+   *
+   * @param pattern the pattern including '?' and '*'
+   * @return the compiled pattern
+   * @throws IllegalArgumentException if the pattern is null or empty, or contains
+   *         an illegal escape sequence
+   */
+  public static NamePattern compile(final String pattern) {
+    if (pattern == null || pattern.trim().isEmpty()) {
+      throw new IllegalArgumentException("Name pattern must not be null or empty.");
+    }
+    String trimmed = pattern.trim();
+
+    StringBuilder regex = new StringBuilder("^");
+    StringBuilder literal = new StringBuilder();
+    String prefix = null;
+    boolean matchAll = true;
+
+    for (int i = 0; i < trimmed.length(); i++) {
+      char c = trimmed.charAt(i);
+      if (c == '\\') {
+        if (i + 1 == trimmed.length()) {
+          throw new IllegalArgumentException("Illegal escape at the end of name pattern: " + pattern);
+        }
+        char next = trimmed.charAt(++i);
+        if (next != '*' && next != '?' && next != '\\') {
+          throw new IllegalArgumentException("Illegal escape character (" + next + ") in name pattern: " + pattern);
+        }
+        appendLiteral(next, regex, literal);
+        matchAll = false;
+      } else if (c == '*' || c == '?') {
+        if (prefix == null) {
+          prefix = literal.toString();
+        }
+        literal.setLength(0);
+        regex.append(c == '*' ? ".*" : ".");
+        matchAll &= c == '*';
+      } else {
+        appendLiteral(c, regex, literal);
+        matchAll = false;
+      }
+    }
+    regex.append('$');
+
+    boolean exact = prefix == null;
+    return new NamePattern(trimmed, Pattern.compile(regex.toString(), Pattern.DOTALL),
+        exact ? literal.toString() : prefix, literal.toString(), exact, matchAll);
+  }
+
+  private static void appendLiteral(final char c, final StringBuilder regex, final StringBuilder literal) {
+    String lowerCase = Character.toString(c).toLowerCase();
+    regex.append(Pattern.quote(lowerCase));
+    literal.append(lowerCase);
+  }
+
+  /**
+   * @param name a name (in any case)
+   * @return true if the name matches this pattern
+   */
+  public boolean matches(final String name) {
+    return name != null && matchesLowerCase(name.toLowerCase());
+  }
+
+  /**
+   * @param lowerCaseName a name in lower case
+   * @return true if the name matches this pattern
+   */
+  boolean matchesLowerCase(final String lowerCaseName) {
+    return matchAll || regex.matcher(lowerCaseName).matches();
+  }
+
+  String getPrefix() {
+    return prefix;
+  }
+
+  String getSuffix() {
+    return suffix;
+  }
+
+  boolean isExact() {
+    return exact;
+  }
+
+  boolean isMatchAll() {
+    return matchAll;
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+}
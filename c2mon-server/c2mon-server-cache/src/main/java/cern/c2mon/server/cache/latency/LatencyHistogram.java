@@ -0,0 +1,96 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.latency;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histogram of one stage and priority class. Values are recorded
+ * lock-free into a HdrHistogram {@link Recorder}; the recorded intervals are
+ * accumulated into a total histogram (since start-up or the last reset) and
+ * into a histogram since the last summary when {@link #collect()} is called.
+ */
+class LatencyHistogram {
+
+  /**
+   * Latencies above this value (1 hour in ms) are recorded as this value.
+   */
+  static final long HIGHEST_TRACKABLE_LATENCY = 3600000L;
+
+  private static final int SIGNIFICANT_DIGITS = 2;
+
+  private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+
+  private final Histogram total = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+
+  private final Histogram sinceLastSummary = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+
+  /**
+   * Recycled by the recorder at each interval.
+   */
+  private Histogram interval;
+
+  /**
+   * Records a latency (wait-free, can be called concurrently).
+   *
+   * @param latency the latency in ms; negative values (clock differences
+   *                between DAQ and server) are recorded as 0
+   */
+  void record(final long latency) {
+    recorder.recordValue(Math.min(Math.max(latency, 0L), HIGHEST_TRACKABLE_LATENCY));
+  }
+
+  /**
+   * Moves the values recorded since the last call into the total and
+   * since-last-summary histograms.
+   */
+  synchronized void collect() {
+    interval = recorder.getIntervalHistogram(interval);
+    total.add(interval);
+    sinceLastSummary.add(interval);
+  }
+
+  /**
+   * @return a copy of the histogram of all values since start-up or the last
+   *         reset (including the values recorded so far)
+   */
+  synchronized Histogram getTotal() {
+    collect();
+    return total.copy();
+  }
+
+  /**
+   * @return a copy of the histogram of the values recorded since the last call
+   *         to this method
+   */
+  synchronized Histogram takeSinceLastSummary() {
+    collect();
+    Histogram copy = sinceLastSummary.copy();
+    sinceLastSummary.reset();
+    return copy;
+  }
+
+  /**
+   * Discards all recorded values.
+   */
+  synchronized void reset() {
+    collect();
+    total.reset();
+    sinceLastSummary.reset();
+  }
+}
@@ -0,0 +1,42 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.latency;
+
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+
+/**
+ * Priority classes for which separate latency histograms are kept, based on
+ * the priority of the DataTag address.
+ */
+enum PriorityClass {
+
+  HIGH, MEDIUM, LOW;
+
+  /**
+   * @param priority the priority of the tag address (DataTagConstants.PRIORITY_*)
+   * @return the class of the priority
+   */
+  static PriorityClass of(final int priority) {
+    if (priority >= DataTagConstants.PRIORITY_HIGH) {
+      return HIGH;
+    } else if (priority >= DataTagConstants.PRIORITY_MEDIUM) {
+      return MEDIUM;
+    } else {
+      return LOW;
+    }
+  }
+}
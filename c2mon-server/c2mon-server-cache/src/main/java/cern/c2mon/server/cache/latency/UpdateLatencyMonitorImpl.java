@@ -0,0 +1,228 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.latency;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.UpdateStage;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.server.common.config.ServerConstants;
+import cern.c2mon.server.common.datatag.DataTag;
+import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Implementation of the {@link UpdateLatencyMonitor}, keeping one
+ * {@link LatencyHistogram} per stage and priority class.
+ *
+ * <p>The histograms are exposed via JMX (since start-up or the last reset) and
+ * a summary of the latencies recorded in the last interval is logged
+ * periodically (see {@link CacheProperties#getLatencySummaryInterval()}).
+ */
+@Slf4j
+@Service("updateLatencyMonitor")
+@ManagedResource(objectName = "cern.c2mon:name=updateLatencyMonitor")
+public class UpdateLatencyMonitorImpl implements UpdateLatencyMonitor, SmartLifecycle {
+
+  private final CacheProperties properties;
+
+  /**
+   * Histograms indexed by stage and priority class ordinals.
+   */
+  private final LatencyHistogram[][] histograms;
+
+  /**
+   * For logging the periodic summary.
+   */
+  private Timer timer;
+
+  /**
+   * Lifecycle flag.
+   */
+  private volatile boolean running = false;
+
+  @Autowired
+  public UpdateLatencyMonitorImpl(final CacheProperties properties) {
+    this.properties = properties;
+    histograms = new LatencyHistogram[UpdateStage.values().length][PriorityClass.values().length];
+    for (LatencyHistogram[] stageHistograms : histograms) {
+      for (int i = 0; i < stageHistograms.length; i++) {
+        stageHistograms[i] = new LatencyHistogram();
+      }
+    }
+  }
+
+  @Override
+  public void record(final UpdateStage stage, final SourceDataTagValue sourceDataTagValue, final long time) {
+    if (properties.isLatencyStatistics()) {
+      Timestamp daqTimestamp = sourceDataTagValue.getDaqTimestamp() == null ? sourceDataTagValue.getTimestamp() : sourceDataTagValue.getDaqTimestamp();
+      if (daqTimestamp != null) {
+        getHistogram(stage, PriorityClass.of(sourceDataTagValue.getPriority())).record(time - daqTimestamp.getTime());
+      }
+    }
+  }
+
+  @Override
+  public void record(final UpdateStage stage, final Tag tag) {
+    if (properties.isLatencyStatistics() && tag instanceof DataTag) {
+      DataTag dataTag = (DataTag) tag;
+      Timestamp daqTimestamp = dataTag.getDaqTimestamp() == null ? dataTag.getTimestamp() : dataTag.getDaqTimestamp();
+      if (daqTimestamp != null) {
+        int priority = dataTag.getAddress() == null ? DataTagConstants.PRIORITY_LOW : dataTag.getAddress().getPriority();
+        getHistogram(stage, PriorityClass.of(priority)).record(System.currentTimeMillis() - daqTimestamp.getTime());
+      }
+    }
+  }
+
+  private LatencyHistogram getHistogram(final UpdateStage stage, final PriorityClass priorityClass) {
+    return histograms[stage.ordinal()][priorityClass.ordinal()];
+  }
+
+  /**
+   * For management purposes.
+   * @return the latency percentiles per stage and priority class since start-up
+   *         or the last reset (only for stages with recorded updates)
+   */
+  @ManagedOperation(description = "Get the update latency percentiles per stage and priority class (ms since the DAQ timestamp).")
+  public List<String> getLatencyStatistics() {
+    List<String> statistics = new ArrayList<>();
+    for (UpdateStage stage : UpdateStage.values()) {
+      for (PriorityClass priorityClass : PriorityClass.values()) {
+        Histogram histogram = getHistogram(stage, priorityClass).getTotal();
+        if (histogram.getTotalCount() > 0) {
+          statistics.add(format(stage, priorityClass, histogram));
+        }
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * For management purposes.
+   * @param stage the name of the update stage (see {@link UpdateStage})
+   * @param priorityClass HIGH, MEDIUM or LOW
+   * @param percentile the percentile, e.g. 99.9
+   * @return the latency at the given percentile in ms, since start-up or the last reset
+   */
+  @ManagedOperation(description = "Get the update latency (ms) at the given percentile for a stage and priority class (HIGH, MEDIUM or LOW).")
+  public long getLatencyPercentile(final String stage, final String priorityClass, final double percentile) {
+    return getHistogram(UpdateStage.valueOf(stage.toUpperCase()), PriorityClass.valueOf(priorityClass.toUpperCase()))
+        .getTotal().getValueAtPercentile(percentile);
+  }
+
+  /**
+   * For management purposes: discards all recorded latencies.
+   */
+  @ManagedOperation(description = "Reset the update latency statistics.")
+  public void resetLatencyStatistics() {
+    for (LatencyHistogram[] stageHistograms : histograms) {
+      for (LatencyHistogram histogram : stageHistograms) {
+        histogram.reset();
+      }
+    }
+  }
+
+  /**
+   * Logs the latencies recorded since the last summary.
+   */
+  void logSummary() {
+    for (UpdateStage stage : UpdateStage.values()) {
+      for (PriorityClass priorityClass : PriorityClass.values()) {
+        Histogram histogram = getHistogram(stage, priorityClass).takeSinceLastSummary();
+        if (histogram.getTotalCount() > 0) {
+          log.info(format(stage, priorityClass, histogram));
+        }
+      }
+    }
+  }
+
+  private static String format(final UpdateStage stage, final PriorityClass priorityClass, final Histogram histogram) {
+    return String.format("%s %s priority: count=%d, p50=%dms, p90=%dms, p99=%dms, p99.9=%dms, max=%dms",
+        stage, priorityClass, histogram.getTotalCount(), histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+        histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public void stop(final Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (properties.isLatencyStatistics() && properties.getLatencySummaryInterval() > 0) {
+      log.debug("Starting update latency summary");
+      timer = new Timer("LatencySummary", true);
+      timer.scheduleAtFixedRate(new SummaryTask(), properties.getLatencySummaryInterval(), properties.getLatencySummaryInterval());
+    }
+    running = true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (timer != null) {
+      log.debug("Stopping update latency summary");
+      timer.cancel();
+      timer = null;
+    }
+    running = false;
+  }
+
+  @Override
+  public int getPhase() {
+    return ServerConstants.PHASE_STOP_LAST;
+  }
+
+  /**
+   * Logs the summary of the last interval.
+   */
+  private class SummaryTask extends TimerTask {
+
+    @Override
+    public void run() {
+      try {
+        logSummary();
+      } catch (Exception e) {
+        log.error("Exception caught while logging the update latency summary", e);
+      }
+    }
+  }
+}
@@ -18,13 +18,13 @@ package cern.c2mon.server.cache.listener;
 
 import java.util.Collection;
 import java.util.LinkedList;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import cern.c2mon.server.cache.BufferMode;
+import cern.c2mon.server.cache.C2monBatchCacheListener;
 import cern.c2mon.server.cache.C2monBufferedCacheListener;
-import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.common.component.Lifecycle;
 import cern.c2mon.shared.common.Cacheable;
 
@@ -32,13 +32,17 @@ import cern.c2mon.shared.common.Cacheable;
  * Abstract listener implementation that batches the notifications before
  * calling the BufferedListener
  *
+ * <p>By default, all notifications are kept until the next call (see
+ * {@link BufferMode#EXACT}). Listeners only interested in the latest state
+ * can use a {@link ConflatingUpdateBuffer} instead.
+ *
  * @author Mark Brightwell
  * @param <T> the type of cache object received
  * @param <S> the type of object passed to the listener
  *
  */
 @Slf4j
-public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> implements C2monCacheListener<T>, Lifecycle {
+public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> implements C2monBatchCacheListener<T>, Lifecycle {
 
   /**
    * Max number of objects passed to the listener.
@@ -53,10 +57,10 @@ public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> impl
   private int frequency;
 
   /**
-   * Queues keeping the keys for supported methods.
+   * Buffers keeping the objects for supported methods.
    */
-  private final LinkedBlockingQueue<S> onUpdateQueue = new LinkedBlockingQueue<>();
-  private final LinkedBlockingQueue<S> statusConfirmationQueue = new LinkedBlockingQueue<>();
+  private final UpdateBuffer<S> onUpdateQueue;
+  private final UpdateBuffer<S> statusConfirmationQueue;
 
   /**
    * Wrapped listener.
@@ -76,8 +80,30 @@ public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> impl
    * @param frequency the frequency (in ms) at which the buffer should be emptied
    */
   public AbstractBufferedCacheListener(C2monBufferedCacheListener<S> bufferedCacheListener, int frequency) {
+    this(bufferedCacheListener, frequency, new QueueUpdateBuffer<S>(), new QueueUpdateBuffer<S>());
+  }
+
+  /**
+   * Constructor for a listener keeping only the latest update of each cache
+   * object (see {@link BufferMode#CONFLATING}).
+   *
+   * @param bufferedCacheListener listener expecting collections of cache objects
+   * @param frequency the frequency (in ms) at which the buffer should be emptied
+   * @param capacity the maximum number of cache objects kept per buffer
+   * @param overflowPolicy what to do with an update if the buffer is full
+   */
+  public AbstractBufferedCacheListener(C2monBufferedCacheListener<S> bufferedCacheListener, int frequency,
+                                       int capacity, ConflatingUpdateBuffer.OverflowPolicy overflowPolicy) {
+    this(bufferedCacheListener, frequency, new ConflatingUpdateBuffer<S>(capacity, overflowPolicy),
+        new ConflatingUpdateBuffer<S>(capacity, overflowPolicy));
+  }
+
+  private AbstractBufferedCacheListener(C2monBufferedCacheListener<S> bufferedCacheListener, int frequency,
+                                        UpdateBuffer<S> onUpdateQueue, UpdateBuffer<S> statusConfirmationQueue) {
     this.bufferedCacheListener = bufferedCacheListener;
     this.frequency = frequency;
+    this.onUpdateQueue = onUpdateQueue;
+    this.statusConfirmationQueue = statusConfirmationQueue;
     enabled = false;
   }
 
@@ -87,7 +113,7 @@ public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> impl
   public void confirmStatus(T cacheable) {
     if (enabled) {
       try {
-        statusConfirmationQueue.put(getDerivedObject(cacheable));
+        statusConfirmationQueue.add(cacheable.getId(), getDerivedObject(cacheable));
       } catch (InterruptedException e) {
         log.error("Interrupted while waiting to insert into queue", e);
       }
@@ -102,7 +128,7 @@ public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> impl
   public void notifyElementUpdated(T cacheable) {
     if (enabled) {
       try {
-        onUpdateQueue.put(getDerivedObject(cacheable));
+        onUpdateQueue.add(cacheable.getId(), getDerivedObject(cacheable));
       } catch (InterruptedException e) {
         log.error("Interrupted while waiting to insert key into queue", e);
       }
@@ -117,6 +143,7 @@ public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> impl
    * A simple wrapper method around {@link AbstractBufferedCacheListener#notifyElementUpdated(Cacheable)}
    * @param cacheableList A list of {@link Cacheable} objects
    */
+  @Override
   public void notifyElementsUpdated(Collection<T> cacheableList) {
     for (T cacheable : cacheableList) {
       notifyElementUpdated(cacheable);
@@ -164,6 +191,45 @@ public abstract class AbstractBufferedCacheListener<T extends Cacheable, S> impl
     }
   }
 
+  /**
+   * For management purposes.
+   * @return the number of updates waiting to be passed to the listener
+   */
+  public int getTaskQueueSize() {
+    return onUpdateQueue.size() + statusConfirmationQueue.size();
+  }
+
+  /**
+   * For management purposes.
+   * @return the number of updates replaced by a more recent one (conflating buffer only)
+   */
+  public long getConflatedUpdateCount() {
+    if (!isConflating()) {
+      return 0;
+    }
+    return ((ConflatingUpdateBuffer<S>) onUpdateQueue).getConflatedCount()
+        + ((ConflatingUpdateBuffer<S>) statusConfirmationQueue).getConflatedCount();
+  }
+
+  /**
+   * For management purposes.
+   * @return the number of updates dropped because the buffer was full (conflating buffer only)
+   */
+  public long getDroppedUpdateCount() {
+    if (!isConflating()) {
+      return 0;
+    }
+    return ((ConflatingUpdateBuffer<S>) onUpdateQueue).getDroppedCount()
+        + ((ConflatingUpdateBuffer<S>) statusConfirmationQueue).getDroppedCount();
+  }
+
+  /**
+   * @return true if the buffers only keep the latest update of each cache object
+   */
+  public boolean isConflating() {
+    return onUpdateQueue instanceof ConflatingUpdateBuffer;
+  }
+
   private synchronized void flush() {
     if (!onUpdateQueue.isEmpty()) {
       LinkedList<S> updateKeys = new LinkedList<>();
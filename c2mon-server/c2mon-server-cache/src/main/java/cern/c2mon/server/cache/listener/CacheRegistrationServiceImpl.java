@@ -22,6 +22,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import cern.c2mon.server.cache.AlarmCache;
+import cern.c2mon.server.cache.BufferMode;
 import cern.c2mon.server.cache.C2monBufferedCacheListener;
 import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.cache.CacheRegistrationService;
@@ -42,7 +43,10 @@ import cern.c2mon.shared.util.threadhandler.ThreadHandler;
  * <p>Internally, registration on a single thread uses the
  * {@link ThreadHandler} implementation while registrations
  * on several threads use the {@link MultiThreadedCacheListener}
- * and the Java concurrency library.
+ * and the Java concurrency library. Registrations to all tags on several
+ * threads use the {@link PartitionedCacheListener} if enabled in the
+ * {@link CacheProperties}, so that the updates of a tag are received
+ * in order.
  *
  * @author Mark Brightwell
  *
@@ -109,6 +113,11 @@ public class CacheRegistrationServiceImpl implements CacheRegistrationService {
   public Lifecycle registerToAllTags(final C2monCacheListener<Tag> tagCacheListener, final int threads) {
     if (threads == 1) {
       return registerToAllTags(tagCacheListener);
+    } else if (properties.isPartitionedListeners()) {
+      PartitionedCacheListener<Tag> partitionedCacheListener = new PartitionedCacheListener<>(tagCacheListener, threads,
+          properties.getListenerRingBufferSize(), properties.getListenerWaitStrategy());
+      registerListenerToTags(partitionedCacheListener);
+      return partitionedCacheListener;
     } else {
       MultiThreadedCacheListener<Tag> threadedCacheListener = new MultiThreadedCacheListener<Tag>(tagCacheListener, QUEUE_SIZE_DEFAULT, threads);
       registerListenerToTags(threadedCacheListener);
@@ -168,8 +177,19 @@ public class CacheRegistrationServiceImpl implements CacheRegistrationService {
 
   @Override
   public Lifecycle registerBufferedListenerToTags(final C2monBufferedCacheListener<Tag> bufferListener) {
+    return registerBufferedListenerToTags(bufferListener, BufferMode.EXACT);
+  }
+
+  @Override
+  public Lifecycle registerBufferedListenerToTags(final C2monBufferedCacheListener<Tag> bufferListener, final BufferMode mode) {
     int frequency = properties.getBufferedListenerPullFrequency();
-    DefaultBufferedCacheListener<Tag> bufferedCacheListener = new DefaultBufferedCacheListener<>(bufferListener, frequency);
+    DefaultBufferedCacheListener<Tag> bufferedCacheListener;
+    if (mode == BufferMode.CONFLATING) {
+      bufferedCacheListener = new DefaultBufferedCacheListener<>(bufferListener, frequency,
+          properties.getConflatingBufferCapacity(), properties.getConflatingBufferOverflowPolicy());
+    } else {
+      bufferedCacheListener = new DefaultBufferedCacheListener<>(bufferListener, frequency);
+    }
     registerListenerToTags(bufferedCacheListener);
     return bufferedCacheListener;
   }
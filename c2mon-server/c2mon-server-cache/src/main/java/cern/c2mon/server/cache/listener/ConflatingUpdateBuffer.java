@@ -0,0 +1,125 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.listener;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded {@link UpdateBuffer} keeping only the latest update of each cache
+ * object. A new update of an object already in the buffer replaces the
+ * previous one and keeps its position, so the objects are passed to the
+ * listener in the order of their first pending update.
+ *
+ * <p>If the buffer is full, an update of an object not yet in the buffer is
+ * handled according to the {@link OverflowPolicy}. The number of conflated
+ * and dropped updates is counted.
+ *
+ * @param <S> the type of object passed to the listener
+ */
+public class ConflatingUpdateBuffer<S> implements UpdateBuffer<S> {
+
+  /**
+   * What to do with an update if the buffer is full.
+   */
+  public enum OverflowPolicy {
+    /** drop the pending update of the object waiting the longest in the buffer */
+    DROP_OLDEST,
+    /** drop the new update */
+    DROP_NEWEST
+  }
+
+  private final LinkedHashMap<Long, S> buffer = new LinkedHashMap<>();
+
+  private final int capacity;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final AtomicLong conflatedCount = new AtomicLong();
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  /**
+   * @param capacity the maximum number of cache objects in the buffer
+   * @param overflowPolicy what to do with an update if the buffer is full
+   */
+  public ConflatingUpdateBuffer(final int capacity, final OverflowPolicy overflowPolicy) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Buffer capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  @Override
+  public synchronized void add(final Long key, final S object) {
+    if (buffer.containsKey(key)) {
+      buffer.put(key, object);
+      conflatedCount.incrementAndGet();
+      return;
+    }
+    if (buffer.size() >= capacity) {
+      droppedCount.incrementAndGet();
+      if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+        return;
+      }
+      Iterator<Long> oldest = buffer.keySet().iterator();
+      oldest.next();
+      oldest.remove();
+    }
+    buffer.put(key, object);
+  }
+
+  @Override
+  public synchronized int drainTo(final Collection<? super S> target, final int maxElements) {
+    int count = 0;
+    Iterator<Map.Entry<Long, S>> iterator = buffer.entrySet().iterator();
+    while (count < maxElements && iterator.hasNext()) {
+      target.add(iterator.next().getValue());
+      iterator.remove();
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized int size() {
+    return buffer.size();
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return buffer.isEmpty();
+  }
+
+  /**
+   * @return the number of updates replaced by a more recent one
+   */
+  public long getConflatedCount() {
+    return conflatedCount.get();
+  }
+
+  /**
+   * @return the number of updates dropped because the buffer was full
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+}
@@ -38,6 +38,20 @@ public class DefaultBufferedCacheListener<T extends Cacheable> extends AbstractB
     super(bufferedCacheListener, frequency);
   }
 
+  /**
+   * Constructor for a listener only receiving the latest update of each
+   * cache object.
+   *
+   * @param bufferedCacheListener listener expecting collections of cache objects
+   * @param frequency the frequency (in ms) at which the buffer should be emptied
+   * @param capacity the maximum number of cache objects kept in the buffer
+   * @param overflowPolicy what to do with an update if the buffer is full
+   */
+  public DefaultBufferedCacheListener(final C2monBufferedCacheListener<T> bufferedCacheListener, int frequency,
+                                      int capacity, ConflatingUpdateBuffer.OverflowPolicy overflowPolicy) {
+    super(bufferedCacheListener, frequency, capacity, overflowPolicy);
+  }
+
   /**
    * Returns the cache object itself.
    */
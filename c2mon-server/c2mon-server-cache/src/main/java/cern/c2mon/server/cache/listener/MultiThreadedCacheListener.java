@@ -16,6 +16,7 @@
  *****************************************************************************/
 package cern.c2mon.server.cache.listener;
 
+import java.util.Collection;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -23,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 
 import lombok.extern.slf4j.Slf4j;
 
+import cern.c2mon.server.cache.C2monBatchCacheListener;
 import cern.c2mon.server.cache.CacheRegistrationService;
 import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.common.component.Lifecycle;
@@ -40,13 +42,16 @@ import cern.c2mon.shared.common.Cacheable;
  * <p>The number of threads used should be chosen according to the cache
  * the listener will be subscribed to and the expected operational load
  * of the system for that cache.
+ *
+ * <p>A batch of updates is queued and processed as a single task, passed as a
+ * whole to the wrapped listener if it is a {@link C2monBatchCacheListener}.
  * 
  * @author Mark Brightwell
  * @param <T> type of cache object expected by listener
  *
  */
 @Slf4j
-public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCacheListener<T>, Lifecycle {
+public class MultiThreadedCacheListener<T extends Cacheable> implements C2monBatchCacheListener<T>, Lifecycle {
   
   /**
    * The number of milliseconds a thread waits between checking for shutdown requests.
@@ -66,7 +71,7 @@ public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCac
   /**
    * Used for remembering which method to call (instead of reflection), in the map below.
    */
-  private enum SupportedMethods { ON_UPDATE, STATUS_CONFIRMATION }
+  private enum SupportedMethods { ON_UPDATE, ON_BATCH_UPDATE, STATUS_CONFIRMATION }
   
   /**
    * The pool of threads calling the C2monCacheListener (the threads are submitted
@@ -134,6 +139,20 @@ public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCac
     }
   }
 
+  @Override
+  public void notifyElementsUpdated(Collection<T> cacheables) {
+    try {
+      if (!shutdownRequestMade) {
+        taskQueue.put(new ObjectAndMethod(cacheables));
+      } else {
+        log.warn("Attempt at notifying of element update after shutdown started "
+            + "- should not happen and indicates incorrect shutdown sequence!");
+      }
+    } catch (InterruptedException interEx) {
+      log.error("InterruptedExcetion caught while waiting for MultiThreadedListener queue to free space: ", interEx);
+    }
+  }
+
   /**
    * Is running until a shutdown request is made.
    */
@@ -205,6 +224,11 @@ public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCac
      * Object in notification.
      */
     private T cacheable;
+
+    /**
+     * Objects in a batch notification.
+     */
+    private Collection<T> cacheables;
     
     /**
      * Method to call.
@@ -221,6 +245,16 @@ public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCac
       this.cacheable = cacheable;
       this.method = method;
     }
+
+    /**
+     * Constructor for a batch notification.
+     * @param cacheables the objects
+     */
+    private ObjectAndMethod(final Collection<T> cacheables) {
+      super();
+      this.cacheables = cacheables;
+      this.method = SupportedMethods.ON_BATCH_UPDATE;
+    }
         
   }
   
@@ -269,6 +303,8 @@ public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCac
         SupportedMethods method = objectAndMethod.method;
         if (method.equals(SupportedMethods.ON_UPDATE)) {
           c2monCacheListener.notifyElementUpdated(objectAndMethod.cacheable);
+        } else if (method.equals(SupportedMethods.ON_BATCH_UPDATE)) {
+          notifyBatch(objectAndMethod.cacheables);
         } else {
           c2monCacheListener.confirmStatus(objectAndMethod.cacheable);
         }
@@ -276,5 +312,20 @@ public class MultiThreadedCacheListener<T extends Cacheable> implements C2monCac
         log.error("Exception caught when notifying listener: the update could not be processed.", e);
       }           
     }
+
+    /**
+     * Passes the batch as a whole if supported by the wrapped listener,
+     * else one object at a time.
+     * @param cacheables the objects in the batch
+     */
+    private void notifyBatch(final Collection<T> cacheables) {
+      if (c2monCacheListener instanceof C2monBatchCacheListener) {
+        ((C2monBatchCacheListener<T>) c2monCacheListener).notifyElementsUpdated(cacheables);
+      } else {
+        for (T cacheable : cacheables) {
+          c2monCacheListener.notifyElementUpdated(cacheable);
+        }
+      }
+    }
   }
 }
@@ -0,0 +1,547 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import cern.c2mon.server.cache.C2monCacheListener;
+import cern.c2mon.server.cache.CacheRegistrationService;
+import cern.c2mon.server.common.component.Lifecycle;
+import cern.c2mon.shared.common.Cacheable;
+
+/**
+ * Cache listener implementation calling the wrapped {@link C2monCacheListener}
+ * on a fixed number of threads, like the {@link MultiThreadedCacheListener},
+ * but guaranteeing that the updates of a given cache object are passed to the
+ * listener in the order in which they were received.
+ *
+ * <p>The updates are partitioned by cache object id. Each partition has a
+ * pre-allocated ring buffer and a single consumer thread, which processes
+ * all updates available in the ring in one batch. Several threads may
+ * publish to the same partition. No object is allocated per update as long
+ * as the ring has free slots.
+ *
+ * <p>If a ring is full, the publishing thread waits for the consumer to free
+ * a slot, unless it is itself the consumer thread of a partitioned listener
+ * (e.g. a rule evaluation thread updating a rule tag): these threads never
+ * wait, to avoid a dead-lock, and put the update in an unbounded overflow
+ * queue of the partition instead. Once an overflow queue is in use, all
+ * following updates of that partition go through it until it is empty,
+ * so the ordering is preserved.
+ *
+ * <p>This class is used internally in the server core to wrap a module
+ * listener. The module should preferably register by using the
+ * {@link CacheRegistrationService} bean.
+ *
+ * @param <T> type of cache object expected by listener
+ */
+@Slf4j
+public class PartitionedCacheListener<T extends Cacheable> implements C2monCacheListener<T>, Lifecycle {
+
+  /**
+   * How a consumer thread waits for updates when its ring is empty.
+   */
+  public enum WaitStrategy {
+    /** keep polling the ring: lowest latency, occupies a CPU per partition */
+    BUSY_SPIN,
+    /** poll the ring, yielding the CPU between attempts */
+    YIELDING,
+    /** poll the ring, sleeping for a short time between attempts */
+    SLEEPING,
+    /** park the thread until it is woken up by the next update */
+    BLOCKING
+  }
+
+  /**
+   * Marks the consumer threads of all partitioned listeners, which must
+   * never wait for a full ring.
+   */
+  private static final ThreadLocal<Boolean> CONSUMER_THREAD = new ThreadLocal<>();
+
+  /**
+   * Maximum time a consumer thread parks with the sleeping or blocking strategy,
+   * after which it checks the ring again in any case.
+   */
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  /**
+   * Maximum number of updates processed by a consumer before its sequence is published.
+   */
+  private static final int MAX_BATCH_SIZE = 256;
+
+  /**
+   * Time to wait for the consumer threads to terminate on shutdown.
+   */
+  private static final long SHUTDOWN_TIMEOUT = 5000;
+
+  /**
+   * Used for remembering which method to call.
+   */
+  private enum SupportedMethods { ON_UPDATE, STATUS_CONFIRMATION }
+
+  /**
+   * The wrapped listener.
+   */
+  private final C2monCacheListener<T> c2monCacheListener;
+
+  private final List<Partition> partitions;
+
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Total time spent by publishing threads waiting for a full ring.
+   */
+  private final AtomicLong blockedProducerNanos = new AtomicLong();
+
+  /**
+   * Shutdown request made.
+   */
+  private volatile boolean shutdownRequestMade = false;
+
+  /**
+   * The listener can only be started and stopped once.
+   */
+  private volatile boolean running = false;
+
+  /**
+   * Constructor.
+   * @param c2monCacheListener the listener wrapped by this class (the module listener)
+   * @param partitionCount the number of partitions, i.e. of threads calling the listener
+   * @param ringBufferSize the number of updates each partition can buffer (rounded up to a power of two)
+   * @param waitStrategy how the consumer threads wait for updates
+   */
+  public PartitionedCacheListener(final C2monCacheListener<T> c2monCacheListener, final int partitionCount,
+                                  final int ringBufferSize, final WaitStrategy waitStrategy) {
+    if (partitionCount < 1 || ringBufferSize < 1) {
+      throw new IllegalArgumentException("Partition count and ring buffer size must be positive");
+    }
+    this.c2monCacheListener = c2monCacheListener;
+    this.waitStrategy = waitStrategy;
+    int capacity = 1;
+    while (capacity < ringBufferSize) {
+      capacity <<= 1;
+    }
+    partitions = new ArrayList<>(partitionCount);
+    String name = c2monCacheListener.getClass().getSimpleName();
+    for (int i = 0; i < partitionCount; i++) {
+      Partition partition = new Partition(capacity);
+      Thread thread = new Thread(partition, "PartitionedListener-" + name + "-" + i);
+      partition.consumerThread = thread;
+      partitions.add(partition);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  @Override
+  public void notifyElementUpdated(final T cacheable) {
+    publish(cacheable, SupportedMethods.ON_UPDATE);
+  }
+
+  @Override
+  public void confirmStatus(final T cacheable) {
+    publish(cacheable, SupportedMethods.STATUS_CONFIRMATION);
+  }
+
+  private void publish(final T cacheable, final SupportedMethods method) {
+    if (shutdownRequestMade) {
+      log.warn("Attempt at notifying of element update after shutdown started "
+          + "- should not happen and indicates incorrect shutdown sequence!");
+      return;
+    }
+    partitionOf(cacheable).publish(cacheable, method);
+  }
+
+  private Partition partitionOf(final T cacheable) {
+    Long id = cacheable.getId();
+    if (id == null || partitions.size() == 1) {
+      return partitions.get(0);
+    }
+    long h = id * 0x9E3779B97F4A7C15L;
+    return partitions.get((int) ((h >>> 32) % partitions.size()));
+  }
+
+  /**
+   * Calls the listener method recorded with the update.
+   */
+  private void callCorrectMethod(final T cacheable, final SupportedMethods method) {
+    try {
+      if (method == SupportedMethods.ON_UPDATE) {
+        c2monCacheListener.notifyElementUpdated(cacheable);
+      } else {
+        c2monCacheListener.confirmStatus(cacheable);
+      }
+    } catch (Exception e) {
+      log.error("Exception caught when notifying listener: the update could not be processed.", e);
+    }
+  }
+
+  /**
+   * Is running until a shutdown request is made.
+   */
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Can only be started once at server start-up.
+   */
+  @Override
+  public void start() {
+    running = true;
+  }
+
+  /**
+   * Waits for all buffered updates to be processed, then stops the consumer
+   * threads. Will have no effect if called a second time.
+   */
+  @Override
+  public synchronized void stop() {
+    if (shutdownRequestMade) {
+      return;
+    }
+    log.debug("Shutting down partitioned cache listener.");
+    running = false;
+    shutdownRequestMade = true;
+    for (Partition partition : partitions) {
+      LockSupport.unpark(partition.consumerThread);
+    }
+    for (Partition partition : partitions) {
+      try {
+        partition.consumerThread.join(SHUTDOWN_TIMEOUT);
+      } catch (InterruptedException ex) {
+        log.error("Interrupted while waiting for shutdown to complete", ex);
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * For management purposes.
+   * @return the number of partitions (and consumer threads) of this listener
+   */
+  public int getPartitionCount() {
+    return partitions.size();
+  }
+
+  /**
+   * For management purposes.
+   * @return the number of updates waiting in all partitions
+   */
+  public int getTaskQueueSize() {
+    int size = 0;
+    for (Partition partition : partitions) {
+      size += partition.size();
+    }
+    return size;
+  }
+
+  /**
+   * For management purposes.
+   * @return the number of updates waiting in each partition
+   */
+  public List<Integer> getPartitionQueueSizes() {
+    List<Integer> sizes = new ArrayList<>(partitions.size());
+    for (Partition partition : partitions) {
+      sizes.add(partition.size());
+    }
+    return sizes;
+  }
+
+  /**
+   * For management purposes.
+   * @return the average time between the publication of an update and the call
+   *         of the listener, in microseconds
+   */
+  public long getAverageDispatchLatency() {
+    long count = 0;
+    long nanos = 0;
+    for (Partition partition : partitions) {
+      count += partition.dispatchCount;
+      nanos += partition.dispatchLatencyNanos;
+    }
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(nanos / count);
+  }
+
+  /**
+   * For management purposes.
+   * @return the maximum time between the publication of an update and the call
+   *         of the listener, in microseconds
+   */
+  public long getMaxDispatchLatency() {
+    long max = 0;
+    for (Partition partition : partitions) {
+      max = Math.max(max, partition.maxDispatchLatencyNanos);
+    }
+    return TimeUnit.NANOSECONDS.toMicros(max);
+  }
+
+  /**
+   * For management purposes.
+   * @return the total time publishing threads waited for a full ring buffer, in milliseconds
+   */
+  public long getBlockedProducerTime() {
+    return TimeUnit.NANOSECONDS.toMillis(blockedProducerNanos.get());
+  }
+
+  /**
+   * Update that could not be put in a full ring buffer.
+   */
+  private final class OverflowUpdate {
+    private final T cacheable;
+    private final SupportedMethods method;
+    private final long publishTime;
+
+    private OverflowUpdate(final T cacheable, final SupportedMethods method, final long publishTime) {
+      this.cacheable = cacheable;
+      this.method = method;
+      this.publishTime = publishTime;
+    }
+  }
+
+  /**
+   * A ring buffer with multiple publishers and a single consumer thread.
+   *
+   * <p>Publishers claim a sequence number, write the slot, then publish the
+   * sequence number in the slot. The consumer processes the contiguous range
+   * of published slots following its own sequence and releases the slots by
+   * advancing it.
+   */
+  private final class Partition implements Runnable {
+
+    private final int mask;
+
+    private final Object[] objects;
+
+    private final SupportedMethods[] methods;
+
+    private final long[] publishTimes;
+
+    /**
+     * Sequence number published in each slot.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Last sequence number claimed by a publisher.
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /**
+     * Last sequence number processed by the consumer.
+     */
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    private final ConcurrentLinkedQueue<OverflowUpdate> overflow = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger overflowSize = new AtomicInteger();
+
+    private volatile Thread consumerThread;
+
+    /**
+     * Set by the consumer before parking with the blocking strategy.
+     */
+    private volatile boolean consumerWaiting = false;
+
+    /** Statistics, only written by the consumer thread. */
+    private volatile long dispatchCount;
+    private volatile long dispatchLatencyNanos;
+    private volatile long maxDispatchLatencyNanos;
+
+    private Partition(final int capacity) {
+      mask = capacity - 1;
+      objects = new Object[capacity];
+      methods = new SupportedMethods[capacity];
+      publishTimes = new long[capacity];
+      published = new AtomicLongArray(capacity);
+      for (int i = 0; i < capacity; i++) {
+        published.set(i, -1);
+      }
+    }
+
+    private int size() {
+      return (int) (claimed.get() - consumed.get()) + overflowSize.get();
+    }
+
+    private void publish(final T cacheable, final SupportedMethods method) {
+      long publishTime = System.nanoTime();
+      long blockedSince = 0;
+      int attempts = 0;
+      while (true) {
+        if (overflowSize.get() == 0) {
+          long sequence = tryClaim();
+          if (sequence >= 0) {
+            int index = (int) sequence & mask;
+            objects[index] = cacheable;
+            methods[index] = method;
+            publishTimes[index] = publishTime;
+            published.set(index, sequence);
+            if (consumerWaiting) {
+              LockSupport.unpark(consumerThread);
+            }
+            break;
+          }
+        }
+        if (overflowSize.get() > 0 || Boolean.TRUE.equals(CONSUMER_THREAD.get()) || shutdownRequestMade) {
+          overflowSize.incrementAndGet();
+          overflow.add(new OverflowUpdate(cacheable, method, publishTime));
+          if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+          }
+          break;
+        }
+        if (blockedSince == 0) {
+          blockedSince = System.nanoTime();
+        }
+        backOff(attempts++);
+      }
+      if (blockedSince != 0) {
+        blockedProducerNanos.addAndGet(System.nanoTime() - blockedSince);
+      }
+    }
+
+    /**
+     * @return the claimed sequence number, or -1 if the ring is full
+     */
+    private long tryClaim() {
+      long current;
+      long next;
+      do {
+        current = claimed.get();
+        next = current + 1;
+        if (next - objects.length > consumed.get()) {
+          return -1;
+        }
+      } while (!claimed.compareAndSet(current, next));
+      return next;
+    }
+
+    private void backOff(final int attempts) {
+      if (attempts < 100) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(SLEEP_NANOS);
+      }
+    }
+
+    @Override
+    public void run() {
+      CONSUMER_THREAD.set(Boolean.TRUE);
+      while (true) {
+        if (processRing() || processOverflow()) {
+          continue;
+        }
+        if (shutdownRequestMade && consumed.get() == claimed.get() && overflowSize.get() == 0) {
+          break;
+        }
+        waitForUpdates();
+      }
+    }
+
+    /**
+     * Processes the published updates following the consumer sequence.
+     * @return true if at least one update was processed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean processRing() {
+      long next = consumed.get() + 1;
+      long last = next - 1;
+      while (last - next + 1 < MAX_BATCH_SIZE && published.get((int) (last + 1) & mask) == last + 1) {
+        last++;
+      }
+      if (last < next) {
+        return false;
+      }
+      for (long sequence = next; sequence <= last; sequence++) {
+        int index = (int) sequence & mask;
+        T cacheable = (T) objects[index];
+        SupportedMethods method = methods[index];
+        long publishTime = publishTimes[index];
+        objects[index] = null;
+        recordLatency(publishTime);
+        callCorrectMethod(cacheable, method);
+      }
+      consumed.set(last);
+      return true;
+    }
+
+    /**
+     * Processes the overflow queue once the ring has been emptied (including
+     * the slots claimed but not published yet, which precede the overflow).
+     * @return true if at least one update was processed
+     */
+    private boolean processOverflow() {
+      if (consumed.get() != claimed.get()) {
+        return false;
+      }
+      boolean processed = false;
+      OverflowUpdate update;
+      while ((update = overflow.poll()) != null) {
+        recordLatency(update.publishTime);
+        callCorrectMethod(update.cacheable, update.method);
+        overflowSize.decrementAndGet();
+        processed = true;
+      }
+      return processed;
+    }
+
+    private boolean hasUpdates() {
+      return published.get((int) (consumed.get() + 1) & mask) == consumed.get() + 1 || overflowSize.get() > 0;
+    }
+
+    private void recordLatency(final long publishTime) {
+      long latency = System.nanoTime() - publishTime;
+      dispatchCount++;
+      dispatchLatencyNanos += latency;
+      if (latency > maxDispatchLatencyNanos) {
+        maxDispatchLatencyNanos = latency;
+      }
+    }
+
+    private void waitForUpdates() {
+      switch (waitStrategy) {
+        case BUSY_SPIN:
+          break;
+        case YIELDING:
+          Thread.yield();
+          break;
+        case SLEEPING:
+          LockSupport.parkNanos(SLEEP_NANOS);
+          break;
+        default:
+          consumerWaiting = true;
+          if (!hasUpdates() && !shutdownRequestMade) {
+            LockSupport.parkNanos(MAX_PARK_NANOS);
+          }
+          consumerWaiting = false;
+      }
+    }
+  }
+}
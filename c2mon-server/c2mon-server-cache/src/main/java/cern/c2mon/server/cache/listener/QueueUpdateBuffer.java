@@ -0,0 +1,50 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.listener;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link UpdateBuffer} keeping every update, in an unbounded queue.
+ *
+ * @param <S> the type of object passed to the listener
+ */
+class QueueUpdateBuffer<S> implements UpdateBuffer<S> {
+
+  private final LinkedBlockingQueue<S> queue = new LinkedBlockingQueue<>();
+
+  @Override
+  public void add(final Long key, final S object) throws InterruptedException {
+    queue.put(object);
+  }
+
+  @Override
+  public int drainTo(final Collection<? super S> target, final int maxElements) {
+    return queue.drainTo(target, maxElements);
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+}
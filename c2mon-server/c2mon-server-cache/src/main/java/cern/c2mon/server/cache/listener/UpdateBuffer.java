@@ -0,0 +1,56 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.listener;
+
+import java.util.Collection;
+
+/**
+ * Buffer keeping the updates of a buffered cache listener until they are
+ * passed to the wrapped listener.
+ *
+ * @param <S> the type of object passed to the listener
+ */
+interface UpdateBuffer<S> {
+
+  /**
+   * Adds an update to the buffer.
+   *
+   * @param key the id of the updated cache object
+   * @param object the object to pass to the listener
+   * @throws InterruptedException if interrupted while waiting for space in the buffer
+   */
+  void add(Long key, S object) throws InterruptedException;
+
+  /**
+   * Removes at most the given number of updates from the buffer, oldest first.
+   *
+   * @param target the collection the updates are added to
+   * @param maxElements the maximum number of updates to remove
+   * @return the number of updates removed
+   */
+  int drainTo(Collection<? super S> target, int maxElements);
+
+  /**
+   * @return the number of updates in the buffer
+   */
+  int size();
+
+  /**
+   * @return true if the buffer contains no update
+   */
+  boolean isEmpty();
+}
@@ -17,7 +17,15 @@
 package cern.c2mon.server.cache.rule;
 
 import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -231,11 +239,64 @@ public class RuleTagFacadeImpl extends AbstractTagFacade<RuleTag> implements Rul
       if (exp == null) {
         throw new ConfigurationException(ConfigurationException.INVALID_PARAMETER_VALUE, "Parameter \"ruleText\" is not a gramatically correct rule expression (Expression is null)");
       }
+      List<Long> cycle = findCycle(ruleTag);
+      if (cycle != null) {
+        throw new ConfigurationException(ConfigurationException.INVALID_PARAMETER_VALUE, "Parameter \"ruleText\" creates a cycle of rules depending on each other: "
+            + cycle);
+      }
     } else {
       throw new ConfigurationException(ConfigurationException.INVALID_PARAMETER_VALUE, "Parameter \"ruleText\" is null for rule " + ruleTag.getId() + " - unable to configure it correctly.");
     }
   }
 
+  /**
+   * Looks for a path from the rule back to itself through the rules it
+   * depends on (the rules in its input tags, their own input rules, ...), as
+   * the rule evaluation requires the rules to form a directed acyclic graph.
+   * The other rules are taken from the cache.
+   *
+   * @param ruleTag the rule to check, with its new configuration
+   * @return the ids of the rules of the cycle, starting and ending with the
+   *         rule, or null if the rule is not part of a cycle
+   */
+  private List<Long> findCycle(final RuleTag ruleTag) {
+    // breadth-first search of the input rules, remembering from which rule each was reached
+    Map<Long, Long> reachedFrom = new HashMap<>();
+    Deque<Long> toVisit = new ArrayDeque<>();
+    toVisit.add(ruleTag.getId());
+    while (!toVisit.isEmpty()) {
+      Long ruleId = toVisit.poll();
+      Collection<Long> inputIds = ruleId.equals(ruleTag.getId()) ? ruleTag.getRuleInputTagIds() : getRuleInputTagIds(ruleId);
+      for (Long inputId : inputIds) {
+        if (inputId.equals(ruleTag.getId())) {
+          LinkedList<Long> cycle = new LinkedList<>();
+          cycle.add(inputId);
+          for (Long id = ruleId; id != null; id = reachedFrom.get(id)) {
+            cycle.addFirst(id);
+          }
+          return cycle;
+        }
+        if (!reachedFrom.containsKey(inputId) && tagCache.hasKey(inputId)) {
+          reachedFrom.put(inputId, ruleId);
+          toVisit.add(inputId);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param ruleId the id of a rule in the cache
+   * @return the input tag ids of the rule (empty if no longer in the cache)
+   */
+  private Collection<Long> getRuleInputTagIds(final Long ruleId) {
+    try {
+      return tagCache.get(ruleId).getRuleInputTagIds();
+    } catch (CacheElementNotFoundException e) {
+      return Collections.emptyList();
+    }
+  }
+
   @Override
   protected void invalidateQuietly(final RuleTag tag, final TagQualityStatus statusToAdd, final String statusDescription,
       final Timestamp timestamp) {
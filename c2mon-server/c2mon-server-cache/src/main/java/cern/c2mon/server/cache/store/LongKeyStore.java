@@ -0,0 +1,328 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent store with primitive {@code long} keys, used as backend for the
+ * tag caches in "single-primitive" cache mode.
+ *
+ * <p>The key space is split over a fixed number of segments, each holding a
+ * {@link LongObjectHashMap} guarded by a {@link StampedLock}. Reads are
+ * optimistic and only fall back to the segment read lock if a writer
+ * modified the segment in the meantime.
+ *
+ * <p>Independently of the internal segment locks, the store provides striped
+ * per-key read/write locks, which replace the Ehcache key locks used by
+ * {@code BasicCache}. These may be held by the caller across several store
+ * operations.
+ *
+ * @param <V> the value type
+ */
+public final class LongKeyStore<V> {
+
+  private final Segment<V>[] segments;
+
+  private final int segmentMask;
+
+  private final ReentrantReadWriteLock[] keyLocks;
+
+  private final int keyLockMask;
+
+  /**
+   * @param concurrencyLevel number of segments (rounded up to a power of two)
+   * @param lockStripes number of key lock stripes (rounded up to a power of two)
+   * @param expectedSize expected number of entries, used for presizing
+   */
+  @SuppressWarnings("unchecked")
+  public LongKeyStore(final int concurrencyLevel, final int lockStripes, final int expectedSize) {
+    int segmentCount = powerOfTwo(concurrencyLevel);
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>(expectedSize / segmentCount);
+    }
+    segmentMask = segmentCount - 1;
+
+    int stripes = powerOfTwo(lockStripes);
+    keyLocks = new ReentrantReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      keyLocks[i] = new ReentrantReadWriteLock();
+    }
+    keyLockMask = stripes - 1;
+  }
+
+  private static int powerOfTwo(final int value) {
+    return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+
+  private Segment<V> segmentFor(final long key) {
+    // use the upper hash bits, the lower ones select the slot inside the segment map
+    return segments[(LongObjectHashMap.hash(key) >>> 16) & segmentMask];
+  }
+
+  /**
+   * @param key the key
+   * @return the value stored for the key, or null
+   */
+  public V get(final long key) {
+    return segmentFor(key).get(key);
+  }
+
+  /**
+   * @param key the key
+   * @param value the value (not null)
+   * @return the previous value, or null
+   */
+  public V put(final long key, final V value) {
+    return segmentFor(key).put(key, value);
+  }
+
+  /**
+   * Stores the value only if no value is present for the key.
+   *
+   * @param key the key
+   * @param value the value (not null)
+   * @return the value already present, or null if the new value was stored
+   */
+  public V putIfAbsent(final long key, final V value) {
+    return segmentFor(key).putIfAbsent(key, value);
+  }
+
+  /**
+   * @param key the key
+   * @return the removed value, or null
+   */
+  public V remove(final long key) {
+    return segmentFor(key).remove(key);
+  }
+
+  /**
+   * Replaces the value only if a value is present for the key.
+   *
+   * @param key the key
+   * @param value the new value (not null)
+   * @return the previous value, or null if nothing was stored
+   */
+  public V replace(final long key, final V value) {
+    return segmentFor(key).replace(key, null, value);
+  }
+
+  /**
+   * Replaces the value only if the current value equals the expected one.
+   *
+   * @param key the key
+   * @param expected the expected current value
+   * @param value the new value (not null)
+   * @return true if the value was replaced
+   */
+  public boolean replace(final long key, final V expected, final V value) {
+    return expected != null && segmentFor(key).replace(key, expected, value) != null;
+  }
+
+  /**
+   * Removes the entry only if the current value equals the expected one.
+   *
+   * @param key the key
+   * @param expected the expected current value
+   * @return true if the entry was removed
+   */
+  public boolean remove(final long key, final V expected) {
+    return expected != null && segmentFor(key).remove(key, expected);
+  }
+
+  public boolean containsKey(final long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return the number of entries (not an atomic snapshot)
+   */
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * @return a copy of all keys currently in the store
+   */
+  public List<Long> keys() {
+    final List<Long> keys = new ArrayList<>(size());
+    forEach((key, value) -> keys.add(key));
+    return keys;
+  }
+
+  /**
+   * Visits all entries, one segment at a time under its read lock.
+   *
+   * @param visitor called for each entry; must not modify the store
+   */
+  public void forEach(final EntryVisitor<? super V> visitor) {
+    for (Segment<V> segment : segments) {
+      segment.forEach(visitor);
+    }
+  }
+
+  /**
+   * @param key the key
+   * @return the read/write lock protecting this key (shared with other keys of the same stripe)
+   */
+  public ReentrantReadWriteLock getLock(final long key) {
+    return keyLocks[LongObjectHashMap.hash(key) & keyLockMask];
+  }
+
+  /**
+   * Callback used to iterate over the store entries without boxing the keys.
+   *
+   * @param <V> the value type
+   */
+  public interface EntryVisitor<V> {
+    void visit(long key, V value);
+  }
+
+  /**
+   * A map segment and the lock guarding it.
+   */
+  private static final class Segment<V> {
+
+    private final StampedLock lock = new StampedLock();
+
+    private final LongObjectHashMap<V> map;
+
+    Segment(final int initialCapacity) {
+      map = new LongObjectHashMap<>(initialCapacity);
+    }
+
+    V get(final long key) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp != 0L) {
+        V value = map.get(key);
+        if (lock.validate(stamp)) {
+          return value;
+        }
+      }
+      stamp = lock.readLock();
+      try {
+        return map.get(key);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    V put(final long key, final V value) {
+      long stamp = lock.writeLock();
+      try {
+        return map.put(key, value);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    V putIfAbsent(final long key, final V value) {
+      long stamp = lock.writeLock();
+      try {
+        V current = map.get(key);
+        if (current == null) {
+          map.put(key, value);
+        }
+        return current;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * @param expected the expected current value, or null to replace any value
+     * @return the replaced value, or null if nothing was replaced
+     */
+    V replace(final long key, final V expected, final V value) {
+      long stamp = lock.writeLock();
+      try {
+        V current = map.get(key);
+        if (current == null || (expected != null && !expected.equals(current))) {
+          return null;
+        }
+        map.put(key, value);
+        return current;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    boolean remove(final long key, final V expected) {
+      long stamp = lock.writeLock();
+      try {
+        V current = map.get(key);
+        if (current != null && expected.equals(current)) {
+          map.remove(key);
+          return true;
+        }
+        return false;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    V remove(final long key) {
+      long stamp = lock.writeLock();
+      try {
+        return map.remove(key);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    int size() {
+      long stamp = lock.readLock();
+      try {
+        return map.size();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    void clear() {
+      long stamp = lock.writeLock();
+      try {
+        map.clear();
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    void forEach(final EntryVisitor<? super V> visitor) {
+      long stamp = lock.readLock();
+      try {
+        map.forEach(visitor);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+}
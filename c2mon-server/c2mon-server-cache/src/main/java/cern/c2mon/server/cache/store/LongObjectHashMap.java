@@ -0,0 +1,207 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map with primitive {@code long} keys and linear
+ * probing. Avoids the boxed key and the per-entry node objects of a
+ * {@link java.util.HashMap}.
+ *
+ * <p>This class is not thread-safe. Concurrent access is handled by
+ * {@link LongKeyStore}, which splits the key space over several instances
+ * of this map.
+ *
+ * @param <V> the value type
+ */
+final class LongObjectHashMap<V> {
+
+  /**
+   * Maximum fill ratio before the table is doubled.
+   */
+  private static final float LOAD_FACTOR = 0.6f;
+
+  private long[] keys;
+
+  /**
+   * A null value marks a free slot.
+   */
+  private Object[] values;
+
+  private int size;
+
+  private int resizeThreshold;
+
+  LongObjectHashMap(final int initialCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(4, (int) (initialCapacity / LOAD_FACTOR)) - 1) << 1;
+    allocate(capacity);
+  }
+
+  private void allocate(final int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Spreads the key bits, since tag ids are mostly sequential.
+   */
+  static int hash(final long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value stored for the key, or null
+   */
+  @SuppressWarnings("unchecked")
+  V get(final long key) {
+    long[] k = keys;
+    Object[] v = values;
+    if (k.length != v.length) {
+      // racing with a rehash: the optimistic reader has to retry anyway
+      return null;
+    }
+    int mask = v.length - 1;
+    int index = hash(key) & mask;
+    // bounded loop, so that a reader racing with a writer always terminates
+    for (int i = 0; i <= mask; i++) {
+      Object value = v[index];
+      if (value == null) {
+        return null;
+      }
+      if (k[index] == key) {
+        return (V) value;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * @param key the key
+   * @param value the value, must not be null
+   * @return the previous value stored for the key, or null
+   */
+  @SuppressWarnings("unchecked")
+  V put(final long key, final V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values are not supported");
+    }
+    int mask = values.length - 1;
+    int index = hash(key) & mask;
+    while (values[index] != null) {
+      if (keys[index] == key) {
+        V previous = (V) values[index];
+        values[index] = value;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+    keys[index] = key;
+    values[index] = value;
+    if (++size > resizeThreshold) {
+      rehash(values.length << 1);
+    }
+    return null;
+  }
+
+  /**
+   * @param key the key to remove
+   * @return the removed value, or null if the key was not present
+   */
+  @SuppressWarnings("unchecked")
+  V remove(final long key) {
+    int mask = values.length - 1;
+    int index = hash(key) & mask;
+    while (values[index] != null) {
+      if (keys[index] == key) {
+        V previous = (V) values[index];
+        values[index] = null;
+        size--;
+        shiftBack(index, mask);
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Moves the entries following a freed slot back, so that no tombstones
+   * are needed to keep the probe sequences intact.
+   */
+  private void shiftBack(int free, final int mask) {
+    int index = (free + 1) & mask;
+    while (values[index] != null) {
+      int ideal = hash(keys[index]) & mask;
+      // move the entry if its ideal slot is not within (free, index]
+      if (((index - ideal) & mask) >= ((index - free) & mask)) {
+        keys[free] = keys[index];
+        values[free] = values[index];
+        values[index] = null;
+        free = index;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void rehash(final int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    long[] newKeys = new long[capacity];
+    Object[] newValues = new Object[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int index = hash(oldKeys[i]) & mask;
+        while (newValues[index] != null) {
+          index = (index + 1) & mask;
+        }
+        newKeys[index] = oldKeys[i];
+        newValues[index] = oldValues[i];
+      }
+    }
+    keys = newKeys;
+    values = newValues;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Calls the visitor for each entry of the map.
+   */
+  @SuppressWarnings("unchecked")
+  void forEach(final LongKeyStore.EntryVisitor<? super V> visitor) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        visitor.visit(keys[i], (V) values[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.util.Properties;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.constructs.CacheDecoratorFactory;
+
+/**
+ * Ehcache decorator factory creating {@link PrimitiveKeyEhcache} instances.
+ * Referenced from the "single-primitive" Ehcache configuration, e.g.
+ *
+ * <pre>
+ * &lt;cacheDecoratorFactory class="cern.c2mon.server.cache.store.PrimitiveKeyCacheDecoratorFactory"
+ *                        properties="concurrencyLevel=64,lockStripes=2048,initialCapacity=65536"/&gt;
+ * </pre>
+ *
+ * The decorated cache keeps the name of the underlying cache, so it replaces
+ * the latter in the cache manager.
+ */
+@Slf4j
+public class PrimitiveKeyCacheDecoratorFactory extends CacheDecoratorFactory {
+
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+
+  private static final int DEFAULT_LOCK_STRIPES = 2048;
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  @Override
+  public Ehcache createDecoratedEhcache(final Ehcache cache, final Properties properties) {
+    int concurrencyLevel = getInt(properties, "concurrencyLevel", DEFAULT_CONCURRENCY_LEVEL);
+    int lockStripes = getInt(properties, "lockStripes", DEFAULT_LOCK_STRIPES);
+    int initialCapacity = getInt(properties, "initialCapacity", DEFAULT_INITIAL_CAPACITY);
+    log.info("Using primitive key store for cache {} (concurrencyLevel={}, lockStripes={}, initialCapacity={})",
+        cache.getName(), concurrencyLevel, lockStripes, initialCapacity);
+    return new PrimitiveKeyEhcache(cache, new LongKeyStore<>(concurrencyLevel, lockStripes, initialCapacity));
+  }
+
+  @Override
+  public Ehcache createDefaultDecoratedEhcache(final Ehcache cache, final Properties properties) {
+    return createDecoratedEhcache(cache, properties);
+  }
+
+  private static int getInt(final Properties properties, final String name, final int defaultValue) {
+    if (properties == null) {
+      return defaultValue;
+    }
+    String value = properties.getProperty(name);
+    return value == null ? defaultValue : Integer.parseInt(value.trim());
+  }
+}
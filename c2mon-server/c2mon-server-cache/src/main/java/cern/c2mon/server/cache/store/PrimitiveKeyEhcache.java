@@ -0,0 +1,396 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.SearchAttribute;
+import net.sf.ehcache.constructs.EhcacheDecoratorAdapter;
+import net.sf.ehcache.search.Attribute;
+import net.sf.ehcache.search.Query;
+import net.sf.ehcache.search.attribute.AttributeExtractor;
+import net.sf.ehcache.search.attribute.KeyObjectAttributeExtractor;
+import net.sf.ehcache.search.attribute.ValueObjectAttributeExtractor;
+
+/**
+ * Ehcache decorator which keeps the cache content in a {@link LongKeyStore}
+ * instead of the Ehcache memory store. Values are stored directly against
+ * their primitive id, without the boxed key and the {@link Element} wrapper,
+ * and the Ehcache key locks are replaced by the striped locks of the store.
+ *
+ * <p>Since {@code BasicCache} and its subclasses only access the cache through
+ * the {@link Ehcache} interface, they work unchanged on top of this decorator.
+ * Searches are evaluated by scanning the store with the search attributes
+ * configured for the underlying cache. Everything not related to the cache
+ * content (configuration, loaders, statistics, event listeners) is delegated
+ * to the underlying cache, which itself remains empty.
+ *
+ * <p>Only {@link Long} keys are supported. The store is not persistent, so
+ * this decorator must not be used for caches relying on the Ehcache disk
+ * store.
+ */
+@Slf4j
+public class PrimitiveKeyEhcache extends EhcacheDecoratorAdapter {
+
+  private final LongKeyStore<Object> store;
+
+  /**
+   * Attribute extractors for searching, created from the cache configuration.
+   */
+  private final Map<String, AttributeExtractor> extractors = new HashMap<>();
+
+  /**
+   * @param underlyingCache the decorated cache
+   * @param store the store holding the cache content
+   */
+  public PrimitiveKeyEhcache(final Ehcache underlyingCache, final LongKeyStore<Object> store) {
+    super(underlyingCache);
+    this.store = store;
+    extractors.put(Query.KEY.getAttributeName(), new KeyObjectAttributeExtractor());
+    extractors.put(Query.VALUE.getAttributeName(), new ValueObjectAttributeExtractor());
+    for (SearchAttribute attribute : underlyingCache.getCacheConfiguration().getSearchAttributes().values()) {
+      extractors.put(attribute.getName(), attribute.constructExtractor());
+    }
+  }
+
+  private static long toKey(final Object key) {
+    if (key instanceof Long) {
+      return (Long) key;
+    }
+    if (key == null) {
+      throw new NullPointerException("Null keys are not supported");
+    }
+    throw new IllegalArgumentException("Only Long keys are supported by the primitive key store, got " + key.getClass().getName());
+  }
+
+  private static Element toElement(final Object key, final Object value) {
+    return value == null ? null : new Element(key, value);
+  }
+
+  //***************************
+  // READS
+  //***************************
+
+  @Override
+  public Element get(final Object key) {
+    return toElement(key, store.get(toKey(key)));
+  }
+
+  @Override
+  public Element get(final Serializable key) {
+    return get((Object) key);
+  }
+
+  @Override
+  public Element getQuiet(final Object key) {
+    return get(key);
+  }
+
+  @Override
+  public Element getQuiet(final Serializable key) {
+    return get((Object) key);
+  }
+
+  @Override
+  public Map<Object, Element> getAll(final Collection<?> keys) {
+    Map<Object, Element> result = new HashMap<>();
+    for (Object key : keys) {
+      result.put(key, get(key));
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isKeyInCache(final Object key) {
+    return key instanceof Long && store.containsKey((Long) key);
+  }
+
+  @Override
+  public boolean isElementInMemory(final Object key) {
+    return isKeyInCache(key);
+  }
+
+  @Override
+  public boolean isElementInMemory(final Serializable key) {
+    return isKeyInCache(key);
+  }
+
+  @Override
+  public boolean isElementOnDisk(final Object key) {
+    return false;
+  }
+
+  @Override
+  public boolean isElementOnDisk(final Serializable key) {
+    return false;
+  }
+
+  @Override
+  public List getKeys() {
+    return store.keys();
+  }
+
+  @Override
+  public List getKeysNoDuplicateCheck() {
+    return store.keys();
+  }
+
+  @Override
+  public List getKeysWithExpiryCheck() {
+    return store.keys();
+  }
+
+  @Override
+  public int getSize() {
+    return store.size();
+  }
+
+  @Override
+  public long getMemoryStoreSize() {
+    return store.size();
+  }
+
+  //***************************
+  // WRITES
+  //***************************
+
+  @Override
+  public void put(final Element element) {
+    put(element, false);
+  }
+
+  @Override
+  public void put(final Element element, final boolean doNotNotifyCacheReplicators) {
+    Object previous = store.put(toKey(element.getObjectKey()), element.getObjectValue());
+    if (previous == null) {
+      getCacheEventNotificationService().notifyElementPut(element, false);
+    } else {
+      getCacheEventNotificationService().notifyElementUpdated(element, false);
+    }
+  }
+
+  @Override
+  public void putQuiet(final Element element) {
+    store.put(toKey(element.getObjectKey()), element.getObjectValue());
+  }
+
+  @Override
+  public void putWithWriter(final Element element) {
+    put(element);
+  }
+
+  @Override
+  public void putAll(final Collection<Element> elements) {
+    for (Element element : elements) {
+      put(element);
+    }
+  }
+
+  @Override
+  public Element putIfAbsent(final Element element) {
+    return putIfAbsent(element, false);
+  }
+
+  @Override
+  public Element putIfAbsent(final Element element, final boolean doNotNotifyCacheReplicators) {
+    Object current = store.putIfAbsent(toKey(element.getObjectKey()), element.getObjectValue());
+    if (current == null) {
+      getCacheEventNotificationService().notifyElementPut(element, false);
+    }
+    return toElement(element.getObjectKey(), current);
+  }
+
+  @Override
+  public Element replace(final Element element) {
+    Object previous = store.replace(toKey(element.getObjectKey()), element.getObjectValue());
+    return toElement(element.getObjectKey(), previous);
+  }
+
+  @Override
+  public boolean replace(final Element old, final Element element) {
+    return store.replace(toKey(element.getObjectKey()), old.getObjectValue(), element.getObjectValue());
+  }
+
+  @Override
+  public boolean remove(final Object key) {
+    return remove(key, false);
+  }
+
+  @Override
+  public boolean remove(final Serializable key) {
+    return remove((Object) key, false);
+  }
+
+  @Override
+  public boolean remove(final Serializable key, final boolean doNotNotifyCacheReplicators) {
+    return remove((Object) key, doNotNotifyCacheReplicators);
+  }
+
+  @Override
+  public boolean remove(final Object key, final boolean doNotNotifyCacheReplicators) {
+    Object previous = store.remove(toKey(key));
+    if (previous != null) {
+      getCacheEventNotificationService().notifyElementRemoved(new Element(key, previous), false);
+    }
+    return previous != null;
+  }
+
+  @Override
+  public Element removeAndReturnElement(final Object key) {
+    Object previous = store.remove(toKey(key));
+    if (previous != null) {
+      Element element = new Element(key, previous);
+      getCacheEventNotificationService().notifyElementRemoved(element, false);
+      return element;
+    }
+    return null;
+  }
+
+  @Override
+  public boolean removeElement(final Element element) {
+    if (store.remove(toKey(element.getObjectKey()), element.getObjectValue())) {
+      getCacheEventNotificationService().notifyElementRemoved(element, false);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean removeQuiet(final Object key) {
+    return store.remove(toKey(key)) != null;
+  }
+
+  @Override
+  public boolean removeQuiet(final Serializable key) {
+    return removeQuiet((Object) key);
+  }
+
+  @Override
+  public boolean removeWithWriter(final Object key) {
+    return remove(key);
+  }
+
+  @Override
+  public void removeAll(final Collection<?> keys) {
+    removeAll(keys, false);
+  }
+
+  @Override
+  public void removeAll(final Collection<?> keys, final boolean doNotNotifyCacheReplicators) {
+    for (Object key : keys) {
+      remove(key);
+    }
+  }
+
+  @Override
+  public void removeAll() {
+    removeAll(false);
+  }
+
+  @Override
+  public void removeAll(final boolean doNotNotifyCacheReplicators) {
+    store.clear();
+    getCacheEventNotificationService().notifyRemoveAll(false);
+  }
+
+  //***************************
+  // KEY LOCKS
+  //***************************
+
+  @Override
+  public void acquireReadLockOnKey(final Object key) {
+    store.getLock(toKey(key)).readLock().lock();
+  }
+
+  @Override
+  public void releaseReadLockOnKey(final Object key) {
+    store.getLock(toKey(key)).readLock().unlock();
+  }
+
+  @Override
+  public void acquireWriteLockOnKey(final Object key) {
+    store.getLock(toKey(key)).writeLock().lock();
+  }
+
+  @Override
+  public void releaseWriteLockOnKey(final Object key) {
+    store.getLock(toKey(key)).writeLock().unlock();
+  }
+
+  @Override
+  public boolean tryReadLockOnKey(final Object key, final long timeout) throws InterruptedException {
+    return store.getLock(toKey(key)).readLock().tryLock(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public boolean tryWriteLockOnKey(final Object key, final long timeout) throws InterruptedException {
+    return store.getLock(toKey(key)).writeLock().tryLock(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public boolean isReadLockedByCurrentThread(final Object key) {
+    return store.getLock(toKey(key)).getReadHoldCount() > 0;
+  }
+
+  @Override
+  public boolean isWriteLockedByCurrentThread(final Object key) {
+    return store.getLock(toKey(key)).isWriteLockedByCurrentThread();
+  }
+
+  //***************************
+  // SEARCH
+  //***************************
+
+  @Override
+  public Query createQuery() {
+    if (!isSearchable()) {
+      throw new CacheException("Cache " + getName() + " is not searchable");
+    }
+    return new ScanQuery(store, extractors);
+  }
+
+  @Override
+  public <T> Attribute<T> getSearchAttribute(final String attributeName) {
+    if (!extractors.containsKey(attributeName)) {
+      throw new CacheException("No such search attribute " + attributeName + " for cache " + getName());
+    }
+    return new Attribute<>(attributeName);
+  }
+
+  /**
+   * Decorators are equal to the decorated cache (as for the Ehcache {@code Cache}),
+   * which is required for replacing the latter in the cache manager.
+   */
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof Ehcache && getGuid().equals(((Ehcache) obj).getGuid());
+  }
+
+  @Override
+  public int hashCode() {
+    return getGuid().hashCode();
+  }
+}
@@ -0,0 +1,234 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.ehcache.Element;
+import net.sf.ehcache.search.Attribute;
+import net.sf.ehcache.search.Direction;
+import net.sf.ehcache.search.Query;
+import net.sf.ehcache.search.Result;
+import net.sf.ehcache.search.Results;
+import net.sf.ehcache.search.SearchException;
+import net.sf.ehcache.search.aggregator.Aggregator;
+import net.sf.ehcache.search.attribute.AttributeExtractor;
+import net.sf.ehcache.search.expression.Criteria;
+
+/**
+ * Ehcache {@link Query} evaluated by scanning all entries of a
+ * {@link LongKeyStore}. This corresponds to the unindexed search performed
+ * by Ehcache on an in-memory store.
+ *
+ * <p>Only the features used by the C2MON caches are supported: criteria,
+ * keys, values and a maximum result size.
+ */
+class ScanQuery implements Query {
+
+  private final LongKeyStore<Object> store;
+
+  private final Map<String, AttributeExtractor> extractors;
+
+  private Criteria criteria;
+
+  private boolean includeKeys;
+
+  private boolean includeValues;
+
+  private int maxResults = -1;
+
+  ScanQuery(final LongKeyStore<Object> store, final Map<String, AttributeExtractor> extractors) {
+    this.store = store;
+    this.extractors = extractors;
+  }
+
+  @Override
+  public Query includeKeys() {
+    includeKeys = true;
+    return this;
+  }
+
+  @Override
+  public Query includeValues() {
+    includeValues = true;
+    return this;
+  }
+
+  @Override
+  public Query includeAttribute(Attribute<?>... attributes) {
+    throw new SearchException("Attribute results are not supported by the primitive key store");
+  }
+
+  @Override
+  public Query includeAggregator(Aggregator... aggregators) {
+    throw new SearchException("Aggregators are not supported by the primitive key store");
+  }
+
+  @Override
+  public Query addOrderBy(Attribute<?> attribute, Direction direction) {
+    throw new SearchException("Ordering is not supported by the primitive key store");
+  }
+
+  @Override
+  public Query addGroupBy(Attribute<?>... attributes) {
+    throw new SearchException("Grouping is not supported by the primitive key store");
+  }
+
+  @Override
+  public Query maxResults(int maxResults) {
+    this.maxResults = maxResults;
+    return this;
+  }
+
+  @Override
+  public Query addCriteria(Criteria criteria) {
+    this.criteria = this.criteria == null ? criteria : this.criteria.and(criteria);
+    return this;
+  }
+
+  @Override
+  public Results execute() throws SearchException {
+    final List<Result> results = new ArrayList<>();
+    try {
+      store.forEach((key, value) -> {
+        if (maxResults >= 0 && results.size() >= maxResults) {
+          return;
+        }
+        Element element = new Element(key, value);
+        if (criteria == null || criteria.execute(element, extractors)) {
+          results.add(new ScanResult(includeKeys ? key : null, includeValues ? value : null));
+        }
+      });
+    } catch (RuntimeException e) {
+      throw new SearchException("Error while scanning the primitive key store", e);
+    }
+    return new ScanResults(results, includeKeys, includeValues);
+  }
+
+  @Override
+  public Query end() {
+    return this;
+  }
+
+  /**
+   * A single search hit.
+   */
+  private static final class ScanResult implements Result {
+
+    private final Object key;
+
+    private final Object value;
+
+    ScanResult(final Object key, final Object value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public Object getKey() {
+      if (key == null) {
+        throw new SearchException("Keys not included in query");
+      }
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      if (value == null) {
+        throw new SearchException("Values not included in query");
+      }
+      return value;
+    }
+
+    @Override
+    public <T> T getAttribute(Attribute<T> attribute) {
+      throw new SearchException("Attribute results are not supported by the primitive key store");
+    }
+
+    @Override
+    public List<Object> getAggregatorResults() {
+      throw new SearchException("Aggregators are not supported by the primitive key store");
+    }
+  }
+
+  /**
+   * The complete result list of a scan.
+   */
+  private static final class ScanResults implements Results {
+
+    private final List<Result> results;
+
+    private final boolean hasKeys;
+
+    private final boolean hasValues;
+
+    ScanResults(final List<Result> results, final boolean hasKeys, final boolean hasValues) {
+      this.results = Collections.unmodifiableList(results);
+      this.hasKeys = hasKeys;
+      this.hasValues = hasValues;
+    }
+
+    @Override
+    public void discard() {
+      // nothing to release
+    }
+
+    @Override
+    public List<Result> all() {
+      return results;
+    }
+
+    @Override
+    public List<Result> range(int start, int count) {
+      if (start < 0 || count < 0) {
+        throw new IllegalArgumentException("start and count must be positive");
+      }
+      if (start >= results.size()) {
+        return Collections.emptyList();
+      }
+      return results.subList(start, Math.min(results.size(), start + count));
+    }
+
+    @Override
+    public int size() {
+      return results.size();
+    }
+
+    @Override
+    public boolean hasKeys() {
+      return hasKeys && !results.isEmpty();
+    }
+
+    @Override
+    public boolean hasValues() {
+      return hasValues && !results.isEmpty();
+    }
+
+    @Override
+    public boolean hasAttributes() {
+      return false;
+    }
+
+    @Override
+    public boolean hasAggregators() {
+      return false;
+    }
+  }
+}
@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import cern.c2mon.server.cache.config.CacheCopyMode;
 import cern.c2mon.server.cache.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
@@ -30,10 +31,15 @@ import cern.c2mon.server.cache.C2monCacheWithSupervision;
 import cern.c2mon.server.cache.CacheSupervisionListener;
 import cern.c2mon.server.cache.ClusterCache;
 import cern.c2mon.server.cache.common.AbstractCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.cache.index.NameIndex;
+import cern.c2mon.server.cache.index.NameIndexedEhcache;
+import cern.c2mon.server.cache.index.NamePattern;
 import cern.c2mon.server.cache.loading.common.C2monCacheLoader;
 import cern.c2mon.server.cache.loading.SimpleCacheLoaderDAO;
 import cern.c2mon.server.common.tag.AbstractTagCacheObject;
 import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.server.common.tag.TagSnapshot;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.loader.CacheLoader;
 import net.sf.ehcache.search.Attribute;
@@ -79,6 +85,25 @@ public abstract class AbstractTagCache<T extends Tag> extends AbstractCache<Long
     listenerLock = new ReentrantReadWriteLock();
   }
 
+  /**
+   * Tag cache objects provide a complete deep clone implementation (only the
+   * immutable values, such as the tag value and the metadata values, are shared).
+   */
+  @Override
+  protected CacheCopyMode getDefaultCopyMode() {
+    return CacheCopyMode.CLONE;
+  }
+
+  /**
+   * Tags are passed to the listeners as an immutable {@link TagSnapshot},
+   * implementing the same Tag interface as the cache object.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  protected T createSnapshot(final T tag) throws CloneNotSupportedException {
+    return (T) TagSnapshot.of(tag);
+  }
+
 
   @Override
   public void notifyListenersOfSupervisionChange(final T tag) {
@@ -123,6 +148,11 @@ public abstract class AbstractTagCache<T extends Tag> extends AbstractCache<Long
       throw new IllegalArgumentException("Attempting to retrieve a Tag from the cache with a NULL or empty name parameter.");
     }
 
+    NameIndex nameIndex = NameIndexedEhcache.getNameIndex(getCache());
+    if (nameIndex != null) {
+      return !nameIndex.findExact(name).isEmpty();
+    }
+
     // This will prevent wildcard searches
     if (name.contains("*")) {
       name = name.replace("*", "\\*");
@@ -157,6 +187,12 @@ public abstract class AbstractTagCache<T extends Tag> extends AbstractCache<Long
       throw new IllegalArgumentException("Attempting to retrieve a Tag from the cache with a NULL or empty name parameter.");
     }
 
+    NameIndex nameIndex = NameIndexedEhcache.getNameIndex(getCache());
+    if (nameIndex != null) {
+      Collection<T> results = getIndexed(nameIndex.findExact(name));
+      return results.isEmpty() ? null : results.iterator().next();
+    }
+
     // This will prevent wildcard searches
     if (name.contains("*")) {
       name = name.replace("*", "\\*");
@@ -186,8 +222,10 @@ public abstract class AbstractTagCache<T extends Tag> extends AbstractCache<Long
    * A regular expression matcher. '?' and '*' may be used.
    * The search is always case insensitive.
    * <p>
-   * WARN: Expressions starting with a leading wildcard character are
-   * potentially very expensive (ie. full scan) for indexed caches
+   * If the cache is decorated with a {@link NameIndexedEhcache}, the search
+   * is answered from the name index. Otherwise, expressions starting with a
+   * leading wildcard character are potentially very expensive (ie. full scan)
+   * for indexed caches.
    *
    * @param regex The regular expression including '?' and '*'
    * @param maxResults the maximum amount of results that shall be returned
@@ -204,7 +242,14 @@ public abstract class AbstractTagCache<T extends Tag> extends AbstractCache<Long
       throw new IllegalArgumentException("Attempting to retrieve a Tag from the cache with a NULL or empty name parameter.");
     }
 
-    if (regex.equals("*")) {
+    NameIndex nameIndex = NameIndexedEhcache.getNameIndex(getCache());
+    if (nameIndex != null) {
+      resultList = getIndexed(nameIndex.find(NamePattern.compile(regex), maxResults));
+      if (resultList.size() >= maxResults) {
+        log.warn(String.format("findByNameWildcard() - Reached maximum result size %d for regex \"%s\" in cache %s", maxResults, regex, getCacheName()));
+      }
+    }
+    else if (regex.equals("*")) {
       int counter = 0;
       for (Long  key : getKeys()) {
         resultList.add(get(key));
@@ -249,4 +294,23 @@ public abstract class AbstractTagCache<T extends Tag> extends AbstractCache<Long
 
     return resultList;
   }
+
+  /**
+   * Returns the cache objects of the keys found in the name index, skipping
+   * the ones which have been removed in the meantime.
+   *
+   * @param keys keys returned by the name index
+   * @return references to the cache objects
+   */
+  private Collection<T> getIndexed(final Collection<Long> keys) {
+    Collection<T> resultList = new ArrayList<>(keys.size());
+    for (Long key : keys) {
+      try {
+        resultList.add(get(key));
+      } catch (CacheElementNotFoundException e) {
+        log.debug("Tag {} removed from cache {} while searching by name", key, getCacheName());
+      }
+    }
+    return resultList;
+  }
 }
@@ -0,0 +1,145 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.common;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import cern.c2mon.server.cache.config.CacheCopyMode;
+import cern.c2mon.server.common.alarm.AlarmCacheObject;
+import cern.c2mon.server.common.alive.AliveTimerCacheObject;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.server.test.CacheObjectComparison;
+import cern.c2mon.server.test.CacheObjectCreation;
+import cern.c2mon.shared.common.datatag.TagQualityStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that both copy modes of {@link CacheObjectCopier} produce
+ * equivalent, independent copies of the cache objects.
+ */
+public class CacheObjectCopierTest {
+
+  @Test
+  public void testCopyDataTag() {
+    DataTagCacheObject original = CacheObjectCreation.createTestDataTag();
+    for (CacheCopyMode mode : CacheCopyMode.values()) {
+      DataTagCacheObject copy = CacheObjectCopier.copy(original, mode);
+      assertNotSame(original, copy);
+      CacheObjectComparison.equals(original, copy);
+
+      copy.getAlarmIds().add(999L);
+      assertFalse(original.getAlarmIds().contains(999L));
+    }
+  }
+
+  @Test
+  public void testCopyRuleTag() {
+    RuleTagCacheObject original = CacheObjectCreation.createTestRuleTag();
+    for (CacheCopyMode mode : CacheCopyMode.values()) {
+      RuleTagCacheObject copy = CacheObjectCopier.copy(original, mode);
+      assertNotSame(original, copy);
+      CacheObjectComparison.equalsTag(original, copy);
+      assertEquals(original.getRuleText(), copy.getRuleText());
+      assertNotNull(copy.getRuleExpression());
+    }
+  }
+
+  @Test
+  public void testCopyAlarm() {
+    AlarmCacheObject original = CacheObjectCreation.createTestAlarm1();
+    for (CacheCopyMode mode : CacheCopyMode.values()) {
+      AlarmCacheObject copy = CacheObjectCopier.copy(original, mode);
+      assertNotSame(original, copy);
+      CacheObjectComparison.equals(original, copy);
+    }
+  }
+
+  /**
+   * Changes every mutable field of the copies: the original must not change.
+   */
+  @Test
+  public void testDataTagCopyIndependent() {
+    DataTagCacheObject original = CacheObjectCreation.createTestDataTag();
+    original.getMetadata().addMetadata("responsible", "original");
+    original.setDaqTimestamp(new Timestamp(1000));
+    original.setSourceTimestamp(new Timestamp(2000));
+    original.setCacheTimestamp(new Timestamp(3000));
+    original.getDataTagQuality().validate();
+    for (CacheCopyMode mode : CacheCopyMode.values()) {
+      DataTagCacheObject copy = CacheObjectCopier.copy(original, mode);
+      copy.getMetadata().addMetadata("responsible", "copy");
+      copy.getDaqTimestamp().setTime(0);
+      copy.getSourceTimestamp().setTime(0);
+      copy.getCacheTimestamp().setTime(0);
+      copy.getDataTagQuality().addInvalidStatus(TagQualityStatus.INACCESSIBLE);
+      copy.getRuleIds().add(999L);
+      copy.getAddress().setPriority(9);
+
+      assertEquals("original", original.getMetadata().getMetadata().get("responsible"));
+      assertEquals(1000, original.getDaqTimestamp().getTime());
+      assertEquals(2000, original.getSourceTimestamp().getTime());
+      assertEquals(3000, original.getCacheTimestamp().getTime());
+      assertTrue(original.isValid());
+      assertFalse(original.getRuleIds().contains(999L));
+      assertNotEquals(9, original.getAddress().getPriority());
+    }
+  }
+
+  @Test
+  public void testAlarmCopyIndependent() {
+    AlarmCacheObject original = CacheObjectCreation.createTestAlarm1();
+    original.getMetadata().addMetadata("responsible", "original");
+    original.setTimestamp(new Timestamp(1000));
+    for (CacheCopyMode mode : CacheCopyMode.values()) {
+      AlarmCacheObject copy = CacheObjectCopier.copy(original, mode);
+      copy.getMetadata().addMetadata("responsible", "copy");
+      copy.getTimestamp().setTime(0);
+
+      assertEquals("original", original.getMetadata().getMetadata().get("responsible"));
+      assertEquals(1000, original.getTimestamp().getTime());
+      assertNotSame(original.getCondition(), copy.getCondition());
+    }
+  }
+
+  @Test
+  public void testCopyAliveTimer() {
+    AliveTimerCacheObject original = new AliveTimerCacheObject(1L, 2L, "test", 3L, AliveTimerCacheObject.ALIVE_TYPE_PROCESS, 60000);
+    for (CacheCopyMode mode : CacheCopyMode.values()) {
+      AliveTimerCacheObject copy = CacheObjectCopier.copy(original, mode);
+      assertNotSame(original, copy);
+      assertEquals(original.getId(), copy.getId());
+      assertEquals(original.getAliveInterval(), copy.getAliveInterval());
+      assertEquals(original.getAliveType(), copy.getAliveType());
+      assertEquals(original.getRelatedName(), copy.getRelatedName());
+    }
+  }
+
+  @Test
+  public void testCopyNull() {
+    assertNull(CacheObjectCopier.copy(null, CacheCopyMode.CLONE));
+  }
+}
@@ -0,0 +1,69 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link KeyVersionStamps} used for optimistic cache reads.
+ */
+public class KeyVersionStampsTest {
+
+  @Test
+  public void testStampValidWithoutWriter() {
+    KeyVersionStamps stamps = new KeyVersionStamps(16);
+    long stamp = stamps.tryOptimisticRead(10L);
+    assertTrue(stamp != KeyVersionStamps.WRITE_LOCKED);
+    assertTrue(stamps.validate(10L, stamp));
+  }
+
+  @Test
+  public void testNoStampWhileWriteLocked() {
+    KeyVersionStamps stamps = new KeyVersionStamps(16);
+    stamps.writeLocked(10L);
+    assertEquals(KeyVersionStamps.WRITE_LOCKED, stamps.tryOptimisticRead(10L));
+    assertFalse(stamps.validate(10L, KeyVersionStamps.WRITE_LOCKED));
+    stamps.writeUnlocked(10L);
+    assertTrue(stamps.tryOptimisticRead(10L) != KeyVersionStamps.WRITE_LOCKED);
+  }
+
+  @Test
+  public void testStampInvalidatedByWrite() {
+    KeyVersionStamps stamps = new KeyVersionStamps(16);
+    long stamp = stamps.tryOptimisticRead(10L);
+    stamps.writeLocked(10L);
+    assertFalse(stamps.validate(10L, stamp));
+    stamps.writeUnlocked(10L);
+    assertFalse(stamps.validate(10L, stamp));
+  }
+
+  @Test
+  public void testNestedWriters() {
+    KeyVersionStamps stamps = new KeyVersionStamps(1);
+    stamps.writeLocked(1L);
+    stamps.writeLocked(2L);
+    stamps.writeUnlocked(1L);
+    assertEquals(KeyVersionStamps.WRITE_LOCKED, stamps.tryOptimisticRead(1L));
+    stamps.writeUnlocked(2L);
+    long stamp = stamps.tryOptimisticRead(1L);
+    assertTrue(stamps.validate(1L, stamp));
+  }
+}
@@ -17,6 +17,11 @@
 package cern.c2mon.server.cache.datatag;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.easymock.EasyMock;
@@ -27,6 +32,7 @@ import org.junit.Test;
 import cern.c2mon.server.cache.*;
 import cern.c2mon.server.common.datatag.DataTag;
 import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.thread.Event;
 import cern.c2mon.server.test.CacheObjectCreation;
 import cern.c2mon.shared.common.ConfigurationException;
 import cern.c2mon.shared.common.datatag.*;
@@ -273,6 +279,55 @@ public class DataTagFacadeImplTest {
   }
 
 
+  /**
+   * The tags of a batch are locked in id order, and a repeated tag is put in
+   * the cache before its second update.
+   */
+  @Test
+  public void testBatchUpdateFromSource() {
+    DataTagCacheObject dataTag2 = new DataTagCacheObject(2L, "test name 2", "Float", DataTagConstants.MODE_OPERATIONAL);
+    DataTagCacheObject dataTag3 = new DataTagCacheObject(3L, "test name 3", "Float", DataTagConstants.MODE_OPERATIONAL);
+    Timestamp oldTime = new Timestamp(System.currentTimeMillis() - 1000);
+    Timestamp newTime = new Timestamp(System.currentTimeMillis());
+    SourceDataTagValue firstValue3 = new SourceDataTagValue(3L, "test tag 3", false);
+    firstValue3.setValue(1f);
+    firstValue3.setDaqTimestamp(oldTime);
+    SourceDataTagValue value2 = new SourceDataTagValue(2L, "test tag 2", false);
+    value2.setValue(2f);
+    value2.setDaqTimestamp(oldTime);
+    SourceDataTagValue secondValue3 = new SourceDataTagValue(3L, "test tag 3", false);
+    secondValue3.setValue(3f);
+    secondValue3.setDaqTimestamp(newTime);
+
+    Map<Long, DataTag> firstBatch = new LinkedHashMap<>();
+    firstBatch.put(2L, dataTag2);
+    firstBatch.put(3L, dataTag3);
+    dataTagCache.acquireWriteLockOnKey(2L);
+    EasyMock.expect(dataTagCache.get(2L)).andReturn(dataTag2);
+    EasyMock.expect(dataTagCache.tryWriteLockOnKey(3L, 0L)).andReturn(true);
+    EasyMock.expect(dataTagCache.get(3L)).andReturn(dataTag3);
+    dataTagCache.putAll(firstBatch);
+    dataTagCache.releaseWriteLockOnKey(2L);
+    dataTagCache.releaseWriteLockOnKey(3L);
+    dataTagCache.acquireWriteLockOnKey(3L);
+    EasyMock.expect(dataTagCache.get(3L)).andReturn(dataTag3);
+    dataTagCache.putAll(Collections.<Long, DataTag>singletonMap(3L, dataTag3));
+    dataTagCache.releaseWriteLockOnKey(3L);
+
+    control.replay();
+
+    List<Event<Boolean>> updated = dataTagFacade.updateFromSource(Arrays.asList(firstValue3, value2, secondValue3));
+
+    control.verify();
+    assertEquals(3, updated.size());
+    for (Event<Boolean> event : updated) {
+      assertTrue(event.getReturnValue());
+    }
+    assertEquals(2f, dataTag2.getValue());
+    assertEquals(3f, dataTag3.getValue());
+    assertEquals(newTime, dataTag3.getDaqTimestamp());
+  }
+
   @Test
   public void testUpdateFromSource() {
     SourceDataTagValue sourceTag = new SourceDataTagValue(Long.valueOf(2), "test tag", false);
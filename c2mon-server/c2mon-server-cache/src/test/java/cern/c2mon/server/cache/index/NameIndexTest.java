@@ -0,0 +1,128 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link NameIndex} and the {@link NamePattern} matching.
+ */
+public class NameIndexTest {
+
+  private NameIndex index;
+
+  @Before
+  public void setUp() {
+    index = new NameIndex();
+    index.put(1L, "P_TEST:STATUS");
+    index.put(2L, "P_TEST:ALIVE");
+    index.put(3L, "E_TEST:STATUS");
+    index.put(4L, "cpu.load.avg");
+    index.put(5L, "CPU.LOAD");
+  }
+
+  private List<Long> find(final String pattern) {
+    return index.find(NamePattern.compile(pattern), 100);
+  }
+
+  private static void assertKeys(final List<Long> keys, final Long... expected) {
+    assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(keys));
+    assertEquals(expected.length, keys.size());
+  }
+
+  @Test
+  public void testExact() {
+    assertKeys(index.findExact("p_test:status"), 1L);
+    assertKeys(index.findExact(" P_TEST:ALIVE "), 2L);
+    assertKeys(index.findExact("P_TEST"));
+    assertKeys(find("cpu.LOAD"), 5L);
+  }
+
+  @Test
+  public void testPrefix() {
+    assertKeys(find("p_test:*"), 1L, 2L);
+    assertKeys(find("cpu.load*"), 4L, 5L);
+    assertKeys(find("p_test:?????"), 2L);
+  }
+
+  @Test
+  public void testSuffix() {
+    assertKeys(find("*:status"), 1L, 3L);
+    assertKeys(find("?_TEST:STATUS"), 1L, 3L);
+    assertKeys(find("*load"), 5L);
+  }
+
+  @Test
+  public void testInfix() {
+    assertKeys(find("*test*"), 1L, 2L, 3L);
+    assertKeys(find("*.load*"), 4L, 5L);
+    assertKeys(find("*TEST*ALIVE"), 2L);
+    assertKeys(find("*"), 1L, 2L, 3L, 4L, 5L);
+    assertKeys(find("*does_not_exist*"));
+  }
+
+  @Test
+  public void testMaxResults() {
+    assertEquals(2, index.find(NamePattern.compile("*"), 2).size());
+    assertEquals(1, index.find(NamePattern.compile("*TEST*"), 1).size());
+  }
+
+  @Test
+  public void testRenameAndRemove() {
+    index.put(1L, "P_OTHER:STATUS");
+    assertKeys(find("p_test:*"), 2L);
+    assertKeys(find("*:status"), 1L, 3L);
+
+    index.remove(3L);
+    assertKeys(find("*:status"), 1L);
+    assertEquals(4, index.size());
+
+    index.clear();
+    assertKeys(find("*"));
+  }
+
+  @Test
+  public void testEscapedWildcards() {
+    index.put(6L, "TAG*1");
+    assertKeys(find("TAG\\*1"), 6L);
+    assertKeys(find("TAG\\**"), 6L);
+    assertKeys(index.findExact("TAG*1"), 6L);
+  }
+
+  @Test
+  public void testPatternMatching() {
+    assertTrue(NamePattern.compile("a?c*").matches("ABCdef"));
+    assertFalse(NamePattern.compile("a?c*").matches("ac"));
+    assertTrue(NamePattern.compile("*").matches(""));
+    assertTrue(NamePattern.compile("a.b").matches("A.B"));
+    assertFalse(NamePattern.compile("a.b").matches("axb"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIllegalEscape() {
+    NamePattern.compile("a\\b");
+  }
+}
@@ -0,0 +1,112 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.latency;
+
+import java.sql.Timestamp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.UpdateStage;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link UpdateLatencyMonitorImpl}.
+ */
+public class UpdateLatencyMonitorImplTest {
+
+  private CacheProperties properties;
+
+  private UpdateLatencyMonitorImpl monitor;
+
+  @Before
+  public void setUp() {
+    properties = new CacheProperties();
+    monitor = new UpdateLatencyMonitorImpl(properties);
+  }
+
+  @Test
+  public void testRecordPerStageAndPriority() {
+    SourceDataTagValue value = createSourceValue(DataTagConstants.PRIORITY_HIGH);
+    long daqTime = value.getDaqTimestamp().getTime();
+    for (int i = 0; i < 99; i++) {
+      monitor.record(UpdateStage.RECEPTION, value, daqTime + 5);
+    }
+    monitor.record(UpdateStage.RECEPTION, value, daqTime + 200);
+
+    assertEquals(5, monitor.getLatencyPercentile("reception", "high", 50));
+    assertEquals(200, monitor.getLatencyPercentile("RECEPTION", "HIGH", 100));
+    assertEquals(0, monitor.getLatencyPercentile("RECEPTION", "LOW", 100));
+    assertEquals(0, monitor.getLatencyPercentile("CACHE_UPDATE", "HIGH", 100));
+    assertEquals(1, monitor.getLatencyStatistics().size());
+    assertTrue(monitor.getLatencyStatistics().get(0).startsWith("RECEPTION HIGH priority: count=100"));
+  }
+
+  @Test
+  public void testNegativeLatencyRecordedAsZero() {
+    SourceDataTagValue value = createSourceValue(DataTagConstants.PRIORITY_MEDIUM);
+    monitor.record(UpdateStage.CACHE_UPDATE, value, value.getDaqTimestamp().getTime() - 1000);
+    assertEquals(0, monitor.getLatencyPercentile("CACHE_UPDATE", "MEDIUM", 100));
+    assertTrue(monitor.getLatencyStatistics().get(0).startsWith("CACHE_UPDATE MEDIUM priority: count=1"));
+  }
+
+  @Test
+  public void testOnlyDataTagsRecorded() {
+    DataTagCacheObject dataTag = new DataTagCacheObject(1L);
+    dataTag.setDaqTimestamp(new Timestamp(System.currentTimeMillis() - 50));
+    monitor.record(UpdateStage.PUBLICATION, dataTag);
+    monitor.record(UpdateStage.PUBLICATION, new RuleTagCacheObject(2L));
+
+    assertEquals(1, monitor.getLatencyStatistics().size());
+    assertTrue(monitor.getLatencyPercentile("PUBLICATION", "LOW", 100) >= 50);
+  }
+
+  @Test
+  public void testDisabled() {
+    properties.setLatencyStatistics(false);
+    SourceDataTagValue value = createSourceValue(DataTagConstants.PRIORITY_LOW);
+    monitor.record(UpdateStage.RECEPTION, value, System.currentTimeMillis());
+    assertTrue(monitor.getLatencyStatistics().isEmpty());
+  }
+
+  @Test
+  public void testSummaryKeepsTotalAndResetClears() {
+    SourceDataTagValue value = createSourceValue(DataTagConstants.PRIORITY_LOW);
+    monitor.record(UpdateStage.RECEPTION, value, value.getDaqTimestamp().getTime() + 10);
+    monitor.logSummary();
+    monitor.record(UpdateStage.RECEPTION, value, value.getDaqTimestamp().getTime() + 20);
+    assertTrue(monitor.getLatencyStatistics().get(0).startsWith("RECEPTION LOW priority: count=2"));
+
+    monitor.resetLatencyStatistics();
+    assertTrue(monitor.getLatencyStatistics().isEmpty());
+  }
+
+  private static SourceDataTagValue createSourceValue(final int priority) {
+    SourceDataTagValue value = new SourceDataTagValue(1L, "test", false, 1f, new SourceDataTagQuality(),
+        new Timestamp(System.currentTimeMillis() - 100), priority, false, null, 3600000);
+    value.setDaqTimestamp(new Timestamp(System.currentTimeMillis()));
+    return value;
+  }
+}
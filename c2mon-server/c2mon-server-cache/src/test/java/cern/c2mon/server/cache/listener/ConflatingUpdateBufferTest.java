@@ -0,0 +1,82 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test of the {@link ConflatingUpdateBuffer}.
+ */
+public class ConflatingUpdateBufferTest {
+
+  @Test
+  public void testLatestUpdateKeptInFirstUpdateOrder() {
+    ConflatingUpdateBuffer<String> buffer = new ConflatingUpdateBuffer<>(10, ConflatingUpdateBuffer.OverflowPolicy.DROP_OLDEST);
+    buffer.add(1L, "a1");
+    buffer.add(2L, "b1");
+    buffer.add(1L, "a2");
+    buffer.add(1L, "a3");
+
+    List<String> drained = new ArrayList<>();
+    assertEquals(2, buffer.drainTo(drained, 100));
+    assertEquals("a3", drained.get(0));
+    assertEquals("b1", drained.get(1));
+    assertEquals(2, buffer.getConflatedCount());
+    assertEquals(0, buffer.getDroppedCount());
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void testDropOldestOnOverflow() {
+    ConflatingUpdateBuffer<String> buffer = new ConflatingUpdateBuffer<>(2, ConflatingUpdateBuffer.OverflowPolicy.DROP_OLDEST);
+    buffer.add(1L, "a");
+    buffer.add(2L, "b");
+    buffer.add(3L, "c");
+
+    List<String> drained = new ArrayList<>();
+    buffer.drainTo(drained, 100);
+    assertEquals(2, drained.size());
+    assertEquals("b", drained.get(0));
+    assertEquals("c", drained.get(1));
+    assertEquals(1, buffer.getDroppedCount());
+  }
+
+  @Test
+  public void testDropNewestOnOverflow() {
+    ConflatingUpdateBuffer<String> buffer = new ConflatingUpdateBuffer<>(2, ConflatingUpdateBuffer.OverflowPolicy.DROP_NEWEST);
+    buffer.add(1L, "a");
+    buffer.add(2L, "b");
+    buffer.add(3L, "c");
+    // an update of a buffered object is still accepted when full
+    buffer.add(2L, "b2");
+
+    List<String> drained = new ArrayList<>();
+    buffer.drainTo(drained, 1);
+    assertEquals(1, drained.size());
+    assertEquals("a", drained.get(0));
+    buffer.drainTo(drained, 100);
+    assertEquals("b2", drained.get(1));
+    assertEquals(2, drained.size());
+    assertEquals(1, buffer.getDroppedCount());
+    assertEquals(1, buffer.getConflatedCount());
+  }
+}
@@ -0,0 +1,152 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.listener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.C2monCacheListener;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.tag.Tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link PartitionedCacheListener} (so no Spring context).
+ */
+public class PartitionedCacheListenerTest {
+
+  private static final int TAGS = 20;
+
+  private static final int UPDATES_PER_TAG = 500;
+
+  private PartitionedCacheListener<Tag> partitionedListener;
+
+  /**
+   * Records the values received per tag and fails if they are out of order.
+   */
+  private class OrderCheckingListener implements C2monCacheListener<Tag> {
+
+    private final Map<Long, List<Integer>> received = new HashMap<>();
+
+    private final CountDownLatch latch;
+
+    private volatile boolean ordered = true;
+
+    OrderCheckingListener(final int expectedUpdates) {
+      latch = new CountDownLatch(expectedUpdates);
+    }
+
+    @Override
+    public void notifyElementUpdated(final Tag tag) {
+      List<Integer> values;
+      synchronized (received) {
+        values = received.get(tag.getId());
+        if (values == null) {
+          values = new ArrayList<>();
+          received.put(tag.getId(), values);
+        }
+      }
+      int value = (Integer) tag.getValue();
+      if (!values.isEmpty() && values.get(values.size() - 1) >= value) {
+        ordered = false;
+      }
+      values.add(value);
+      latch.countDown();
+    }
+
+    @Override
+    public void confirmStatus(final Tag tag) {
+      notifyElementUpdated(tag);
+    }
+  }
+
+  private static DataTagCacheObject update(final long id, final int value) {
+    DataTagCacheObject tag = new DataTagCacheObject(id);
+    tag.setValue(value);
+    return tag;
+  }
+
+  @Test
+  public void testPerTagOrdering() throws InterruptedException {
+    OrderCheckingListener listener = new OrderCheckingListener(TAGS * UPDATES_PER_TAG);
+    partitionedListener = new PartitionedCacheListener<>(listener, 4, 64, PartitionedCacheListener.WaitStrategy.BLOCKING);
+    partitionedListener.start();
+
+    for (int i = 0; i < UPDATES_PER_TAG; i++) {
+      for (long id = 0; id < TAGS; id++) {
+        partitionedListener.notifyElementUpdated(update(id, i));
+      }
+    }
+
+    assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+    assertTrue(listener.ordered);
+    assertEquals(TAGS, listener.received.size());
+    assertEquals(0, partitionedListener.getTaskQueueSize());
+  }
+
+  @Test
+  public void testOverflowFromConsumerThread() throws InterruptedException {
+    final int republished = 100;
+    final CountDownLatch latch = new CountDownLatch(republished + 1);
+    partitionedListener = new PartitionedCacheListener<>(new C2monCacheListener<Tag>() {
+      @Override
+      public void notifyElementUpdated(final Tag tag) {
+        //publishing from the consumer thread to a full ring must not block
+        if ((Integer) tag.getValue() == 0) {
+          for (int i = 1; i <= republished; i++) {
+            partitionedListener.notifyElementUpdated(update(tag.getId(), i));
+          }
+        }
+        latch.countDown();
+      }
+
+      @Override
+      public void confirmStatus(final Tag tag) {
+      }
+    }, 1, 4, PartitionedCacheListener.WaitStrategy.SLEEPING);
+
+    partitionedListener.notifyElementUpdated(update(1L, 0));
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testStopProcessesBufferedUpdates() throws InterruptedException {
+    OrderCheckingListener listener = new OrderCheckingListener(UPDATES_PER_TAG);
+    partitionedListener = new PartitionedCacheListener<>(listener, 2, 16, PartitionedCacheListener.WaitStrategy.YIELDING);
+    partitionedListener.start();
+    for (int i = 0; i < UPDATES_PER_TAG; i++) {
+      partitionedListener.confirmStatus(update(i % 3, i));
+    }
+    partitionedListener.stop();
+    assertEquals(0, listener.latch.getCount());
+    assertTrue(listener.ordered);
+  }
+
+  @After
+  public void shutdown() {
+    partitionedListener.stop();
+  }
+}
@@ -0,0 +1,84 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.rule;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.RuleTagCache;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.shared.common.ConfigurationException;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+
+/**
+ * Unit test of the rule configuration checks of the {@link RuleTagFacadeImpl}.
+ */
+public class RuleTagFacadeImplTest {
+
+  private RuleTagCache ruleTagCache;
+
+  private RuleTagFacadeImpl ruleTagFacade;
+
+  /**
+   * Rule 101 depends on rule 100, which depends on DataTag 1000.
+   */
+  @Before
+  public void setUp() {
+    ruleTagCache = createNiceMock(RuleTagCache.class);
+    ruleTagFacade = new RuleTagFacadeImpl(ruleTagCache, null, null, null, null);
+    expect(ruleTagCache.hasKey(100L)).andReturn(true).anyTimes();
+    expect(ruleTagCache.hasKey(101L)).andReturn(true).anyTimes();
+    expect(ruleTagCache.get(100L)).andReturn(createRule(100L, "#1000 > 0")).anyTimes();
+    expect(ruleTagCache.get(101L)).andReturn(createRule(101L, "#100 & true")).anyTimes();
+    replay(ruleTagCache);
+  }
+
+  @Test
+  public void testRuleHierarchyAccepted() {
+    ruleTagFacade.validateConfig(createRule(102L, "#101 | #100"));
+    ruleTagFacade.validateConfig(createRule(100L, "#1000 < 5"));
+  }
+
+  @Test
+  public void testCycleRejected() {
+    assertCycleRejected(createRule(100L, "(#1000 > 0) & #101"), "[100, 101, 100]");
+  }
+
+  @Test
+  public void testSelfReferenceRejected() {
+    assertCycleRejected(createRule(102L, "#102 | #101"), "[102, 102]");
+  }
+
+  private void assertCycleRejected(final RuleTagCacheObject rule, final String cycle) {
+    try {
+      ruleTagFacade.validateConfig(rule);
+      fail("Cycle of rules not detected");
+    } catch (ConfigurationException e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith(cycle));
+    }
+  }
+
+  private static RuleTagCacheObject createRule(final Long id, final String ruleText) {
+    return new RuleTagCacheObject(id, "RULE" + id, "Boolean", DataTagConstants.MODE_OPERATIONAL, ruleText);
+  }
+}
@@ -0,0 +1,97 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link LongKeyStore}.
+ */
+public class LongKeyStoreTest {
+
+  @Test
+  public void testPutGetRemove() {
+    LongKeyStore<String> store = new LongKeyStore<>(4, 16, 4);
+    assertNull(store.put(1L, "a"));
+    assertEquals("a", store.put(1L, "b"));
+    assertEquals("b", store.get(1L));
+    assertTrue(store.containsKey(1L));
+    assertEquals(1, store.size());
+    assertEquals("b", store.remove(1L));
+    assertNull(store.get(1L));
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testConditionalOperations() {
+    LongKeyStore<String> store = new LongKeyStore<>(4, 16, 4);
+    assertNull(store.replace(1L, "a"));
+    assertFalse(store.containsKey(1L));
+    assertNull(store.putIfAbsent(1L, "a"));
+    assertEquals("a", store.putIfAbsent(1L, "b"));
+    assertFalse(store.replace(1L, "x", "b"));
+    assertTrue(store.replace(1L, "a", "b"));
+    assertFalse(store.remove(1L, "a"));
+    assertTrue(store.remove(1L, "b"));
+    assertEquals(0, store.size());
+  }
+
+  /**
+   * Compares random operations against a HashMap, which also exercises
+   * the rehashing and the backward shift deletion of the open addressing map.
+   */
+  @Test
+  public void testRandomOperationsAgainstHashMap() {
+    LongKeyStore<Long> store = new LongKeyStore<>(2, 16, 4);
+    Map<Long, Long> reference = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200000; i++) {
+      long key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(reference.remove(key), store.remove(key));
+      } else {
+        assertEquals(reference.put(key, (long) i), store.put(key, (long) i));
+      }
+    }
+    assertEquals(reference.size(), store.size());
+    for (Map.Entry<Long, Long> entry : reference.entrySet()) {
+      assertEquals(entry.getValue(), store.get(entry.getKey()));
+    }
+    assertEquals(reference.size(), store.keys().size());
+    assertTrue(reference.keySet().containsAll(store.keys()));
+  }
+
+  @Test
+  public void testClear() {
+    LongKeyStore<String> store = new LongKeyStore<>(4, 16, 4);
+    for (long i = 0; i < 100; i++) {
+      store.put(i, "v" + i);
+    }
+    store.clear();
+    assertEquals(0, store.size());
+    assertNull(store.get(10L));
+  }
+}
@@ -0,0 +1,149 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.cache.store;
+
+import java.util.List;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.ConfigurationFactory;
+import net.sf.ehcache.search.Attribute;
+import net.sf.ehcache.search.Result;
+import net.sf.ehcache.search.Results;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.index.NameIndexedEhcache;
+import cern.c2mon.server.cache.index.NamePattern;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.test.CacheObjectCreation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link PrimitiveKeyEhcache} as configured in the
+ * "single-primitive" Ehcache configuration.
+ */
+public class PrimitiveKeyEhcacheTest {
+
+  private CacheManager cacheManager;
+
+  private Ehcache tagCache;
+
+  @Before
+  public void setUp() {
+    Configuration configuration = ConfigurationFactory.parseConfiguration(getClass().getResource("/ehcache/ehcache-single-primitive.xml"));
+    configuration.setName("primitive-key-test");
+    cacheManager = new CacheManager(configuration);
+    tagCache = cacheManager.getEhcache("tagCache");
+  }
+
+  @After
+  public void tearDown() {
+    cacheManager.shutdown();
+  }
+
+  @Test
+  public void testTagCachesAreDecorated() {
+    assertTrue(tagCache instanceof PrimitiveKeyEhcache);
+    assertTrue(cacheManager.getEhcache("ruleCache") instanceof PrimitiveKeyEhcache);
+    assertTrue(cacheManager.getEhcache("controlCache") instanceof PrimitiveKeyEhcache);
+    assertFalse(cacheManager.getEhcache("processCache") instanceof PrimitiveKeyEhcache);
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    DataTagCacheObject tag = CacheObjectCreation.createTestDataTag();
+    tagCache.put(new Element(tag.getId(), tag));
+
+    assertTrue(tagCache.isKeyInCache(tag.getId()));
+    assertSame(tag, tagCache.get(tag.getId()).getObjectValue());
+    assertEquals(1, tagCache.getSize());
+    List<?> keys = tagCache.getKeys();
+    assertEquals(tag.getId(), keys.get(0));
+
+    assertTrue(tagCache.remove(tag.getId()));
+    assertNull(tagCache.get(tag.getId()));
+    assertFalse(tagCache.isKeyInCache(tag.getId()));
+  }
+
+  @Test
+  public void testKeyLocks() {
+    Long id = 10L;
+    tagCache.acquireWriteLockOnKey(id);
+    try {
+      assertTrue(tagCache.isWriteLockedByCurrentThread(id));
+    } finally {
+      tagCache.releaseWriteLockOnKey(id);
+    }
+    assertFalse(tagCache.isWriteLockedByCurrentThread(id));
+
+    tagCache.acquireReadLockOnKey(id);
+    try {
+      assertTrue(tagCache.isReadLockedByCurrentThread(id));
+    } finally {
+      tagCache.releaseReadLockOnKey(id);
+    }
+  }
+
+  @Test
+  public void testSearch() {
+    DataTagCacheObject tag1 = CacheObjectCreation.createTestDataTag();
+    DataTagCacheObject tag2 = CacheObjectCreation.createTestDataTag2();
+    tagCache.putQuiet(new Element(tag1.getId(), tag1));
+    tagCache.putQuiet(new Element(tag2.getId(), tag2));
+
+    Attribute<String> tagName = tagCache.getSearchAttribute("tagName");
+    Results results = tagCache.createQuery().includeKeys().addCriteria(tagName.ilike(tag1.getName())).execute();
+    assertEquals(1, results.size());
+    assertTrue(results.hasKeys());
+    Result result = results.all().get(0);
+    assertEquals(tag1.getId(), result.getKey());
+
+    Attribute<Long> equipmentId = tagCache.getSearchAttribute("equipmentId");
+    results = tagCache.createQuery().includeKeys().addCriteria(equipmentId.eq(tag1.getEquipmentId())).maxResults(1).execute();
+    assertEquals(1, results.size());
+
+    results = tagCache.createQuery().includeKeys().addCriteria(tagName.ilike("no such tag")).execute();
+    assertFalse(results.hasKeys());
+  }
+
+  @Test
+  public void testNameIndexOnTopOfStore() {
+    DataTagCacheObject tag = CacheObjectCreation.createTestDataTag();
+    tagCache.put(new Element(tag.getId(), tag));
+
+    NameIndexedEhcache indexed = new NameIndexedEhcache(tagCache, "tagName");
+    cacheManager.replaceCacheWithDecoratedCache(tagCache, indexed);
+    assertSame(indexed, cacheManager.getEhcache("tagCache"));
+
+    List<Long> keys = NameIndexedEhcache.getNameIndex(indexed).find(NamePattern.compile("*" + tag.getName().substring(1)), 10);
+    assertEquals(1, keys.size());
+    assertEquals(tag.getId(), keys.get(0));
+
+    indexed.remove(tag.getId());
+    assertTrue(NameIndexedEhcache.getNameIndex(indexed).findExact(tag.getName()).isEmpty());
+    assertFalse(tagCache.isKeyInCache(tag.getId()));
+  }
+}
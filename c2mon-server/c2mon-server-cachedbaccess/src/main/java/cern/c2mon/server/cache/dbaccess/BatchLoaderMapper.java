@@ -18,6 +18,8 @@ package cern.c2mon.server.cache.dbaccess;
 
 import java.util.List;
 
+import org.apache.ibatis.session.ResultHandler;
+
 import cern.c2mon.server.cache.dbaccess.structure.DBBatch;
 import cern.c2mon.shared.common.Cacheable;
 
@@ -36,4 +38,13 @@ public interface BatchLoaderMapper<T extends Cacheable> extends SimpleLoaderMapp
    * @return the list of records
    */
   List<T> getRowBatch(DBBatch dbBatch);
+
+  /**
+   * Streams all records from the DB, ordered by id, to the result handler.
+   * The records are fetched through a single cursor and are not kept by the
+   * mapper.
+   *
+   * @param resultHandler called for each record
+   */
+  void streamAll(ResultHandler<T> resultHandler);
 }
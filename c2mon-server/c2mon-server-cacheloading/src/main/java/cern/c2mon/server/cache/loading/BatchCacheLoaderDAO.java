@@ -16,7 +16,9 @@
  *****************************************************************************/
 package cern.c2mon.server.cache.loading;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import cern.c2mon.shared.common.Cacheable;
 
@@ -49,4 +51,26 @@ public interface BatchCacheLoaderDAO<T extends Cacheable> extends SimpleCacheLoa
    */
   Map<Object, T> getBatchAsMap(Long firstRow, Long lastRow);
 
+  /**
+   * Streams all elements that need loading through a single DB cursor, passing
+   * them on in chunks of the given size (the last chunk may be smaller). The
+   * consumer is called on the calling thread.
+   *
+   * <p>The chunks contain the objects as read from the DB: {@link #getChunkAsMap}
+   * must be called on each of them before loading into the cache.
+   *
+   * @param chunkSize the maximum number of elements in a chunk
+   * @param chunkConsumer called for each chunk of elements read from the DB
+   */
+  void streamAll(int chunkSize, Consumer<List<T>> chunkConsumer);
+
+  /**
+   * Performs the post-DB-access logic on a chunk of elements returned by
+   * {@link #streamAll}.
+   *
+   * @param chunk elements as read from the DB
+   * @return a map of objects ready to load into the cache
+   */
+  Map<Object, T> getChunkAsMap(List<T> chunk);
+
 }
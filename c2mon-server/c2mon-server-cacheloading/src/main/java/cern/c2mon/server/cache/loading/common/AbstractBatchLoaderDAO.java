@@ -16,12 +16,16 @@
  *****************************************************************************/
 package cern.c2mon.server.cache.loading.common;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,4 +87,62 @@ public abstract class AbstractBatchLoaderDAO<T extends Cacheable> extends Abstra
     return returnMap;
   }
 
+  @Override
+  public void streamAll(final int chunkSize, final Consumer<List<T>> chunkConsumer) {
+    ChunkingResultHandler resultHandler = new ChunkingResultHandler(chunkSize, chunkConsumer);
+    batchLoaderMapper.streamAll(resultHandler);
+    resultHandler.flush();
+  }
+
+  @Override
+  public Map<Object, T> getChunkAsMap(final List<T> chunk) {
+    Map<Object, T> returnMap = new ConcurrentHashMap<>(chunk.size());
+    for (T element : chunk) {
+      returnMap.put(element.getId(), doPostDbLoading(element));
+    }
+    return returnMap;
+  }
+
+  /**
+   * Collects the rows returned by the mapper into chunks and passes
+   * every full chunk on to the consumer.
+   */
+  private class ChunkingResultHandler implements ResultHandler<T> {
+
+    private final int chunkSize;
+
+    private final Consumer<List<T>> chunkConsumer;
+
+    private List<T> chunk;
+
+    ChunkingResultHandler(final int chunkSize, final Consumer<List<T>> chunkConsumer) {
+      this.chunkSize = chunkSize;
+      this.chunkConsumer = chunkConsumer;
+      this.chunk = new ArrayList<>(chunkSize);
+    }
+
+    @Override
+    public void handleResult(final ResultContext<? extends T> resultContext) {
+      T element = resultContext.getResultObject();
+      if (element == null) {
+        log.warn("Null value retrieved from DB by Mapper {} at row {}",
+            batchLoaderMapper.getClass().getSimpleName(), resultContext.getResultCount());
+        return;
+      }
+      chunk.add(element);
+      if (chunk.size() >= chunkSize) {
+        flush();
+      }
+    }
+
+    /**
+     * Passes on the elements collected so far, if any.
+     */
+    void flush() {
+      if (!chunk.isEmpty()) {
+        chunkConsumer.accept(chunk);
+        chunk = new ArrayList<>(chunkSize);
+      }
+    }
+  }
 }
@@ -16,9 +16,13 @@
  *****************************************************************************/
 package cern.c2mon.server.cache.loading.common;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import cern.c2mon.server.cache.loading.BatchCacheLoaderDAO;
 import cern.c2mon.shared.common.Cacheable;
@@ -51,6 +55,11 @@ public class BatchCacheLoader<T extends Cacheable> implements C2monCacheLoader {
    */
   private static final int THREAD_TIMEOUT = 5; //in seconds
 
+  /**
+   * Interval between two progress reports when streaming the cache objects
+   */
+  private static final long PROGRESS_INTERVAL = 10000; //in milliseconds
+
   /**
    * The max number of cache object fetched in one query from the DB and loaded
    * into the cache in a single thread (covers this many ids, but all need not
@@ -72,6 +81,12 @@ public class BatchCacheLoader<T extends Cacheable> implements C2monCacheLoader {
    */
   private final BatchCacheLoaderDAO<T> batchCacheLoaderDAO;
 
+  /**
+   * Stream all cache objects through a single DB cursor instead of
+   * querying row ranges.
+   */
+  private final boolean streaming;
+
   /**
    * Constructor (used in Spring XML to instantiate the loaders
    * for the different caches).
@@ -85,14 +100,37 @@ public class BatchCacheLoader<T extends Cacheable> implements C2monCacheLoader {
                           final BatchCacheLoaderDAO<T> cacheLoaderDAO,
                           final int batchSize,
                           final String threadNamePrefix) {
+    this(cache, cacheLoaderDAO, batchSize, threadNamePrefix, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param cache the cache to load from the DB
+   * @param cacheLoaderDAO the DAO for accessing the DB
+   * @param batchSize the number of object loaded in a single task
+   * @param threadNamePrefix the name of thread pool
+   * @param streaming if true, the cache objects are streamed from the DB
+   *                  through a single cursor and bulk-loaded in batchSize chunks
+   */
+  public BatchCacheLoader(final Ehcache cache,
+                          final BatchCacheLoaderDAO<T> cacheLoaderDAO,
+                          final int batchSize,
+                          final String threadNamePrefix,
+                          final boolean streaming) {
     this.batchSize = batchSize;
     this.batchCacheLoaderDAO = cacheLoaderDAO;
     this.cache = cache;
     this.threadNamePrefix = threadNamePrefix;
+    this.streaming = streaming;
   }
 
   @Override
   public void preload() {
+    if (streaming) {
+      streamingPreload();
+      return;
+    }
     log.debug("preload() - Start preloading data for cache " + cache.getName());
     Integer lastRow = batchCacheLoaderDAO.getMaxRow(); // 0 if no cache objects!
 
@@ -120,6 +158,141 @@ public class BatchCacheLoader<T extends Cacheable> implements C2monCacheLoader {
     log.debug("preload() - Finished preload for cache " + cache.getName());
   }
 
+  /**
+   * Reads all cache objects through a single DB cursor and hands them over in
+   * chunks to the loader threads, which perform the post-DB-loading logic and
+   * put each chunk into the cache in one call. The number of chunks waiting
+   * for a loader thread is bounded, so the DB is read at the pace of the
+   * loading.
+   */
+  private void streamingPreload() {
+    log.info("preload() - Start streaming data into cache {}", cache.getName());
+
+    cacheLoadingThreadPoolTaskExecutor.setThreadNamePrefix(this.threadNamePrefix);
+    cacheLoadingThreadPoolTaskExecutor.initialize();
+
+    ThreadPoolExecutor executor = cacheLoadingThreadPoolTaskExecutor.getThreadPoolExecutor();
+    ChunkDispatcher dispatcher = new ChunkDispatcher(executor);
+    try {
+      batchCacheLoaderDAO.streamAll(batchSize, dispatcher);
+      dispatcher.awaitCompletion();
+    } catch (RejectedExecutionException e) {
+      log.error("Exception caught while streaming a server cache from the database. The cache.loader.queue.size must be "
+          + "at least twice the number of cache loading threads.");
+      throw e;
+    } catch (InterruptedException e) {
+      log.error("Interrupted while waiting for cache loading threads to terminate.", e);
+      Thread.currentThread().interrupt();
+    } finally {
+      cacheLoadingThreadPoolTaskExecutor.shutdown();
+    }
+
+    long elapsed = Math.max(1, System.currentTimeMillis() - dispatcher.startTime);
+    log.info("preload() - Finished streaming {} objects into cache {} in {} ms ({} objects/s)",
+        dispatcher.loaded.get(), cache.getName(), elapsed, dispatcher.loaded.get() * 1000 / elapsed);
+  }
+
+  /**
+   * Submits the chunks read from the DB to the loader threads, blocking the
+   * reading thread while too many chunks are pending, and reports the loading
+   * rate at regular intervals.
+   */
+  private class ChunkDispatcher implements Consumer<List<T>> {
+
+    private final ThreadPoolExecutor executor;
+
+    private final Semaphore pendingChunks;
+
+    private final List<Future<Object>> futures = new ArrayList<>();
+
+    private final AtomicLong loaded = new AtomicLong();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private long lastReportTime = startTime;
+
+    private long lastReportCount = 0;
+
+    ChunkDispatcher(final ThreadPoolExecutor executor) {
+      this.executor = executor;
+      this.pendingChunks = new Semaphore(Math.max(1, executor.getMaximumPoolSize()) * 2);
+    }
+
+    @Override
+    public void accept(final List<T> chunk) {
+      pendingChunks.acquireUninterruptibly();
+      try {
+        futures.add(executor.submit(new ChunkLoaderTask(chunk, this)));
+      } catch (RejectedExecutionException e) {
+        pendingChunks.release();
+        throw e;
+      }
+      reportProgress();
+    }
+
+    private void reportProgress() {
+      long now = System.currentTimeMillis();
+      if (now - lastReportTime >= PROGRESS_INTERVAL) {
+        long count = loaded.get();
+        log.info("preload() - Loaded {} objects into cache {} ({} objects/s)",
+            count, cache.getName(), (count - lastReportCount) * 1000 / (now - lastReportTime));
+        lastReportTime = now;
+        lastReportCount = count;
+      }
+    }
+
+    /**
+     * Waits for all submitted chunks to be loaded, logging any loading failure.
+     */
+    void awaitCompletion() throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(1800);
+      for (Future<Object> future : futures) {
+        try {
+          future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+          log.error("Exception caught while loading a chunk of cache " + cache.getName(), e.getCause());
+        } catch (TimeoutException e) {
+          log.error("Timeout while waiting for the loading of cache {} to terminate.", cache.getName());
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Task that performs the post-DB-loading logic on a chunk of cache objects
+   * streamed from the DB and puts them into the cache in a single call.
+   *
+   * <p>Returns null on successful completion.
+   */
+  private class ChunkLoaderTask implements Callable<Object> {
+
+    private final List<T> chunk;
+
+    private final ChunkDispatcher dispatcher;
+
+    ChunkLoaderTask(final List<T> chunk, final ChunkDispatcher dispatcher) {
+      this.chunk = chunk;
+      this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public Object call() {
+      try {
+        Map<Object, T> cacheLoaderMap = batchCacheLoaderDAO.getChunkAsMap(chunk);
+        List<Element> elements = new ArrayList<>(cacheLoaderMap.size());
+        for (Map.Entry<Object, T> entry : cacheLoaderMap.entrySet()) {
+          elements.add(new Element(entry.getKey(), entry.getValue()));
+        }
+        cache.putAll(elements);
+        dispatcher.loaded.addAndGet(elements.size());
+        return null;
+      } finally {
+        dispatcher.pendingChunks.release();
+      }
+    }
+  }
+
   /**
    * Task that loads a batch of cache objects into
    * the cache. A batch must be specified by a first
@@ -30,4 +30,12 @@ public class CacheLoadingProperties {
    * thrown at startup)
    */
   private int queueSize = 1000;
+
+  /**
+   * Preload the batch-loaded caches (DataTag, RuleTag, Alarm) by streaming all
+   * rows through a single DB cursor, instead of querying row ranges on each
+   * loader thread. The rows are mapped and bulk-inserted into the cache in
+   * chunks of batchSize on the loader threads, and the loading rate is logged.
+   */
+  private boolean streaming = false;
 }
@@ -21,6 +21,11 @@ import cern.c2mon.server.cache.loading.config.CacheLoadingModule;
 import cern.c2mon.server.common.config.CommonModule;
 import cern.c2mon.server.common.datatag.DataTag;
 import cern.c2mon.server.test.DatabasePopulationRule;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -67,4 +72,19 @@ public class DataTagLoaderDAOTest {
     assertTrue(dataTagLoaderDAO.getBatchAsMap(1L, 10L).size() == 10);
     assertTrue(dataTagLoaderDAO.getBatchAsMap(11L, 16L).size() == 6);
   }
+
+  @Test
+  public void testStreamAll() {
+    List<List<DataTag>> chunks = new ArrayList<>();
+    dataTagLoaderDAO.streamAll(10, chunks::add);
+
+    Map<Object, DataTag> streamed = new HashMap<>();
+    for (List<DataTag> chunk : chunks) {
+      assertTrue(chunk.size() <= 10);
+      streamed.putAll(dataTagLoaderDAO.getChunkAsMap(chunk));
+    }
+    Map<Object, DataTag> batch = dataTagLoaderDAO.getBatchAsMap(1L, dataTagLoaderDAO.getMaxRow().longValue());
+    assertEquals(batch.keySet(), streamed.keySet());
+    assertEquals(batch.size(), chunks.stream().mapToInt(List::size).sum());
+  }
 }
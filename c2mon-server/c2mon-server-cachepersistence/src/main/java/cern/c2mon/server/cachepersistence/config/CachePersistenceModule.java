@@ -24,6 +24,9 @@ import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import cern.c2mon.server.common.config.ServerProperties;
+import cern.c2mon.server.common.thread.CompactThreadFactory;
+
 /**
  * This class is responsible for configuring the Spring context and beans for
  * the cache persistence module.
@@ -49,6 +52,9 @@ public class CachePersistenceModule {
   @Autowired
   private CachePersistenceProperties properties;
 
+  @Autowired
+  private ServerProperties serverProperties;
+
   @Bean
   public ThreadPoolTaskExecutor cachePersistenceThreadPoolTaskExecutor() {
     ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -58,6 +64,9 @@ public class CachePersistenceModule {
     executor.setQueueCapacity(properties.getQueueCapacity());
     executor.setAllowCoreThreadTimeOut(true);
     executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+    if (serverProperties.getThreads().isCompact()) {
+      executor.setThreadFactory(new CompactThreadFactory(THREAD_NAME_PREFIX, serverProperties.getThreads().getStackSize()));
+    }
     executor.initialize();
     return executor;
   }
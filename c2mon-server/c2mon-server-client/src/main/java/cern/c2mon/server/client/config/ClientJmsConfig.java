@@ -3,6 +3,8 @@ package cern.c2mon.server.client.config;
 import cern.c2mon.server.client.request.ClientRequestDelegator;
 import cern.c2mon.server.client.request.ClientRequestErrorHandler;
 import cern.c2mon.server.common.config.ServerConstants;
+import cern.c2mon.server.common.config.ServerProperties;
+import cern.c2mon.server.common.thread.CompactThreadFactory;
 import cern.c2mon.shared.util.jms.ActiveJmsSender;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.command.ActiveMQQueue;
@@ -28,6 +30,9 @@ public class ClientJmsConfig {
   @Autowired
   private ClientProperties properties;
 
+  @Autowired
+  private ServerProperties serverProperties;
+
   @Bean
   public ActiveMQConnectionFactory clientActiveMQConnectionFactory() {
     String url = properties.getJms().getUrl();
@@ -84,6 +89,10 @@ public class ClientJmsConfig {
 
   @Bean
   public ThreadPoolExecutor clientExecutor() {
+    if (serverProperties.getThreads().isCompact()) {
+      return new ThreadPoolExecutor(1, 1000, 60000, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+          new CompactThreadFactory("ClientRequest-", serverProperties.getThreads().getStackSize()));
+    }
     return new ThreadPoolExecutor(1, 1000, 60000, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
   }
 }
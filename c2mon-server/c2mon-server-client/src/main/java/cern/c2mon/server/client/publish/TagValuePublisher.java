@@ -37,6 +37,8 @@ import cern.c2mon.server.alarm.AlarmAggregatorListener;
 import cern.c2mon.server.cache.AliveTimerFacade;
 import cern.c2mon.server.cache.TagFacadeGateway;
 import cern.c2mon.server.cache.TagLocationService;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.UpdateStage;
 import cern.c2mon.server.client.util.TransferObjectFactory;
 import cern.c2mon.server.common.alarm.Alarm;
 import cern.c2mon.server.common.alarm.TagWithAlarms;
@@ -103,6 +105,9 @@ public class TagValuePublisher implements AlarmAggregatorListener, Configuration
 
   private ClientProperties properties;
 
+  /** Records the latency of the published updates */
+  private final UpdateLatencyMonitor updateLatencyMonitor;
+
   /**
    * Default Constructor
    * @param jmsSender Used for sending JMS messages and waiting for a response
@@ -111,6 +116,7 @@ public class TagValuePublisher implements AlarmAggregatorListener, Configuration
    * @param configurationUpdate Used to register this <code>ConfigurationUpdateListener</code>
    * @param pTagFacadeGateway Reference to the tag facade gateway singleton
    * @param tagLocationService Reference to the tag location service
+   * @param updateLatencyMonitor Records the latency of the published updates
    */
   @Autowired
   public TagValuePublisher(@Qualifier("clientTopicPublisher") final JmsSender jmsSender,
@@ -119,7 +125,8 @@ public class TagValuePublisher implements AlarmAggregatorListener, Configuration
                            final ConfigurationUpdate configurationUpdate,
                            final TagFacadeGateway pTagFacadeGateway,
                            final TagLocationService tagLocationService,
-                           final ClientProperties properties) {
+                           final ClientProperties properties,
+                           final UpdateLatencyMonitor updateLatencyMonitor) {
     this.aliveTimerFacade = aliveTimerFacade;
     this.jmsSender = jmsSender;
     this.alarmAggregator = alarmAggregator;
@@ -128,6 +135,7 @@ public class TagValuePublisher implements AlarmAggregatorListener, Configuration
     this.tagLocationService = tagLocationService;
     this.republisher = RepublisherFactory.createRepublisher(this, "Tag");
     this.properties = properties;
+    this.updateLatencyMonitor = updateLatencyMonitor;
   }
 
   /**
@@ -171,6 +179,7 @@ public class TagValuePublisher implements AlarmAggregatorListener, Configuration
     TagWithAlarms tagWithAlarms = new TagWithAlarmsImpl(tag, alarms);
     try {
       publish(tagWithAlarms);
+      updateLatencyMonitor.record(UpdateStage.PUBLICATION, tag);
     } catch (JmsException e) {
       log.error("notifyOnUpdate - Error publishing tag update to topic for tag " + tagWithAlarms.getTag().getId() + " - submitting for republication", e);
       republisher.publicationFailed(tagWithAlarms);
@@ -0,0 +1,194 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.common.alarm;
+
+import java.sql.Timestamp;
+
+import cern.c2mon.server.common.alarm.AlarmCacheObject.AlarmChangeState;
+import cern.c2mon.server.common.metadata.Metadata;
+
+/**
+ * Immutable copy of an Alarm, taken once when the Alarm is updated in the
+ * cache and passed to all the listeners of this update (see
+ * {@link cern.c2mon.server.common.tag.TagSnapshot}).
+ *
+ * <p>The alarm condition and metadata are shared with the cache object, as
+ * these are only ever replaced (on reconfiguration), never modified.
+ */
+public final class AlarmSnapshot implements Alarm {
+
+  private static final long serialVersionUID = 6610923581846153224L;
+
+  private final Long id;
+
+  private final Long tagId;
+
+  private final String faultFamily;
+
+  private final String faultMember;
+
+  private final int faultCode;
+
+  private final AlarmCondition condition;
+
+  private final Metadata metadata;
+
+  private final String state;
+
+  private final AlarmChangeState alarmChangeState;
+
+  private final Timestamp timestamp;
+
+  private final String info;
+
+  private final boolean publishedToLaser;
+
+  private final AlarmPublication lastPublication;
+
+  private AlarmSnapshot(final Alarm alarm) throws CloneNotSupportedException {
+    this.id = alarm.getId();
+    this.tagId = alarm.getTagId();
+    this.faultFamily = alarm.getFaultFamily();
+    this.faultMember = alarm.getFaultMember();
+    this.faultCode = alarm.getFaultCode();
+    this.condition = alarm.getCondition();
+    this.metadata = alarm.getMetadata();
+    this.state = alarm.getState();
+    this.alarmChangeState = alarm.getAlarmChangeState();
+    this.timestamp = alarm.getTimestamp() == null ? null : (Timestamp) alarm.getTimestamp().clone();
+    this.info = alarm.getInfo();
+    this.publishedToLaser = alarm.isPublishedToLaser();
+    this.lastPublication = alarm.getLastPublication() == null ? null : (AlarmPublication) alarm.getLastPublication().clone();
+  }
+
+  /**
+   * Creates the snapshot of an Alarm.
+   *
+   * @param alarm the Alarm to copy, or a snapshot (which is then returned as such)
+   * @return the snapshot
+   * @throws CloneNotSupportedException if the last publication of the Alarm cannot be cloned
+   */
+  public static Alarm of(final Alarm alarm) throws CloneNotSupportedException {
+    if (alarm instanceof AlarmSnapshot) {
+      return alarm;
+    }
+    return new AlarmSnapshot(alarm);
+  }
+
+  /**
+   * @return this snapshot, as it cannot be modified
+   */
+  @Override
+  public Object clone() {
+    return this;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  @Override
+  public Long getTagId() {
+    return tagId;
+  }
+
+  @Override
+  public String getFaultFamily() {
+    return faultFamily;
+  }
+
+  @Override
+  public String getFaultMember() {
+    return faultMember;
+  }
+
+  @Override
+  public int getFaultCode() {
+    return faultCode;
+  }
+
+  @Override
+  public AlarmCondition getCondition() {
+    return condition;
+  }
+
+  @Override
+  public Metadata getMetadata() {
+    return metadata;
+  }
+
+  @Override
+  public String getState() {
+    return state;
+  }
+
+  @Override
+  public AlarmChangeState getAlarmChangeState() {
+    return alarmChangeState;
+  }
+
+  @Override
+  public Timestamp getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String getInfo() {
+    return info;
+  }
+
+  @Override
+  public boolean isActive() {
+    return state != null && state.equals(AlarmCondition.ACTIVE);
+  }
+
+  @Override
+  public boolean isPublishedToLaser() {
+    return publishedToLaser;
+  }
+
+  @Override
+  public AlarmPublication getLastPublication() {
+    return lastPublication;
+  }
+
+  @Override
+  public void hasBeenPublished(final Timestamp laserPublicationTime) {
+    throw new UnsupportedOperationException("An Alarm snapshot cannot be modified");
+  }
+
+  @Override
+  public void notYetPublished() {
+    throw new UnsupportedOperationException("An Alarm snapshot cannot be modified");
+  }
+
+  @Override
+  public boolean equals(final Object object) {
+    return object instanceof AlarmSnapshot && id.equals(((AlarmSnapshot) object).getId());
+  }
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return id + "\t" + tagId + "\t" + timestamp + "\t" + faultFamily + "\t" + faultMember + "\t" + faultCode + "\t" + state + "\t" + info;
+  }
+}
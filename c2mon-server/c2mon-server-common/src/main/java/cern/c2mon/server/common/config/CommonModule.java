@@ -10,6 +10,8 @@ import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.io.support.ResourcePropertySource;
 
+import cern.c2mon.server.common.thread.ThreadContentionMonitor;
+
 import java.io.IOException;
 
 /**
@@ -30,6 +32,11 @@ public class CommonModule implements ApplicationListener<ApplicationEnvironmentP
     return new PropertySourcesPlaceholderConfigurer();
   }
 
+  @Bean
+  public ThreadContentionMonitor threadContentionMonitor(ServerProperties properties) {
+    return new ThreadContentionMonitor(properties);
+  }
+
   /**
    * Listens for the {@link ApplicationEnvironmentPreparedEvent} and injects
    * ${c2mon.server.properties} into the environment with the highest precedence
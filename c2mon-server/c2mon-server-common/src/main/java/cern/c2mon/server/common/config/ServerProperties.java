@@ -46,4 +46,37 @@ public class ServerProperties {
      */
     private boolean embedded = true;
   }
+
+  /**
+   * Thread properties of the executors running blocking work (DAQ update
+   * and client request JMS consumers, cache persistence)
+   */
+  private final Threads threads = new Threads();
+
+  @Data
+  public static class Threads {
+
+    /**
+     * Run these executors with compact threads, i.e. with a reduced stack
+     * size. Most of their threads are blocked in JMS receive or JDBC calls
+     * and need little stack
+     */
+    private boolean compact = false;
+
+    /**
+     * Stack size (in KB) of the compact threads
+     */
+    private int stackSize = 256;
+
+    /**
+     * Sample the threads blocked on synchronized sections, and publish the
+     * most contended sections over JMX (threadContentionMonitor)
+     */
+    private boolean contentionDiagnostics = false;
+
+    /**
+     * Interval (in ms) between two samples of the blocked threads
+     */
+    private int contentionSampleInterval = 100;
+  }
 }
@@ -51,4 +51,23 @@ public class Metadata implements Serializable, Cloneable {
   public void removeMetadata(String key) {
     metadata.remove(key);
   }
+
+  /**
+   * The metadata values are not cloned (expected to be primitive types or
+   * Strings).
+   *
+   * @return a copy of this object, with its own metadata map
+   */
+  @Override
+  public Metadata clone() {
+    try {
+      Metadata clone = (Metadata) super.clone();
+      if (metadata != null) {
+        clone.metadata = new HashMap<>(metadata);
+      }
+      return clone;
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("Metadata should be cloneable", e);
+    }
+  }
 }
@@ -0,0 +1,506 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.common.tag;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import cern.c2mon.server.common.control.ControlTag;
+import cern.c2mon.server.common.datatag.DataTag;
+import cern.c2mon.server.common.metadata.Metadata;
+import cern.c2mon.server.common.rule.RuleTag;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+import cern.c2mon.shared.common.datatag.DataTagQuality;
+import cern.c2mon.shared.rule.RuleExpression;
+
+/**
+ * Immutable copy of a Tag, taken once when the Tag is updated in the cache
+ * and passed to all the listeners of this update.
+ *
+ * <p>Since a snapshot can no longer change, listeners can share it (and keep it,
+ * e.g. in a buffer) without taking their own copy: {@link #clone()} returns the
+ * snapshot itself. Use {@link #of(Tag)} to create the snapshot of a Data, Control
+ * or Rule Tag; it implements the same Tag interface as the original object.
+ *
+ * <p>The objects returned by the getters must not be modified. The metadata and the
+ * rule expression are shared with the cache object, as these are only ever replaced
+ * (on reconfiguration), never modified.
+ */
+public abstract class TagSnapshot implements Tag {
+
+  private static final long serialVersionUID = -2983471625306215524L;
+
+  private final Long id;
+
+  private final String name;
+
+  private final String description;
+
+  private final String dataType;
+
+  private final short mode;
+
+  private final boolean logged;
+
+  private final String unit;
+
+  private final Metadata metadata;
+
+  private final String dipAddress;
+
+  private final String japcAddress;
+
+  private final Object value;
+
+  private final String valueDescription;
+
+  private final Timestamp cacheTimestamp;
+
+  private final DataTagQuality dataTagQuality;
+
+  private final boolean simulated;
+
+  private final Collection<Long> alarmIds;
+
+  private final Collection<Long> ruleIds;
+
+  /**
+   * Copies the Tag fields.
+   *
+   * @param tag the Tag to copy (should not be modified during this call)
+   * @throws CloneNotSupportedException if the quality of the Tag cannot be cloned
+   */
+  protected TagSnapshot(final Tag tag) throws CloneNotSupportedException {
+    this.id = tag.getId();
+    this.name = tag.getName();
+    this.description = tag.getDescription();
+    this.dataType = tag.getDataType();
+    this.mode = tag.getMode();
+    this.logged = tag.isLogged();
+    this.unit = tag.getUnit();
+    this.metadata = tag.getMetadata();
+    this.dipAddress = tag.getDipAddress();
+    this.japcAddress = tag.getJapcAddress();
+    this.value = tag.getValue();
+    this.valueDescription = tag.getValueDescription();
+    this.cacheTimestamp = copy(tag.getCacheTimestamp());
+    this.dataTagQuality = tag.getDataTagQuality() == null ? null : tag.getDataTagQuality().clone();
+    this.simulated = tag.isSimulated();
+    this.alarmIds = copy(tag.getAlarmIds());
+    this.ruleIds = copy(tag.getRuleIds());
+  }
+
+  /**
+   * Creates the snapshot of a Tag.
+   *
+   * @param tag a Data, Control or Rule Tag, or a snapshot (which is then returned as such)
+   * @return the snapshot, implementing the same Tag interface as the passed Tag
+   * @throws CloneNotSupportedException if the quality of the Tag cannot be cloned
+   * @throws IllegalArgumentException if the Tag type is not supported
+   */
+  public static Tag of(final Tag tag) throws CloneNotSupportedException {
+    if (tag instanceof TagSnapshot) {
+      return tag;
+    } else if (tag instanceof ControlTag) {
+      return new ControlTagSnapshot((ControlTag) tag);
+    } else if (tag instanceof DataTag) {
+      return new DataTagSnapshot((DataTag) tag);
+    } else if (tag instanceof RuleTag) {
+      return new RuleTagSnapshot((RuleTag) tag);
+    } else {
+      throw new IllegalArgumentException("Unable to create a snapshot of Tag type " + tag.getClass().getName());
+    }
+  }
+
+  /**
+   * @return this snapshot, as it cannot be modified
+   */
+  @Override
+  public Object clone() {
+    return this;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  @Override
+  public String getDataType() {
+    return dataType;
+  }
+
+  @Override
+  public String getJapcAddress() {
+    return japcAddress;
+  }
+
+  @Override
+  public short getMode() {
+    return mode;
+  }
+
+  @Override
+  public boolean isInOperation() {
+    return mode == DataTagConstants.MODE_OPERATIONAL;
+  }
+
+  @Override
+  public boolean isInMaintenance() {
+    return mode == DataTagConstants.MODE_MAINTENANCE;
+  }
+
+  @Override
+  public boolean isInTest() {
+    return mode == DataTagConstants.MODE_TEST;
+  }
+
+  @Override
+  public boolean isInUnconfigured() {
+    return mode == DataTagConstants.MODE_NOTCONFIGURED;
+  }
+
+  @Override
+  public Object getValue() {
+    return value;
+  }
+
+  @Override
+  public String getValueDescription() {
+    return valueDescription;
+  }
+
+  @Override
+  public DataTagQuality getDataTagQuality() {
+    return dataTagQuality;
+  }
+
+  @Override
+  public String getUnit() {
+    return unit;
+  }
+
+  @Override
+  public Metadata getMetadata() {
+    return metadata;
+  }
+
+  @Override
+  public boolean isValid() {
+    return dataTagQuality.isValid();
+  }
+
+  @Override
+  public boolean isExistingTag() {
+    return dataTagQuality.isExistingTag();
+  }
+
+  @Override
+  public boolean isSimulated() {
+    return simulated;
+  }
+
+  @Override
+  public Collection<Long> getRuleIds() {
+    return ruleIds;
+  }
+
+  @Override
+  public Collection<Long> getCopyRuleIds() {
+    return new ArrayList<>(ruleIds);
+  }
+
+  @Override
+  public Timestamp getCacheTimestamp() {
+    return cacheTimestamp;
+  }
+
+  @Override
+  public Collection<Long> getAlarmIds() {
+    return alarmIds;
+  }
+
+  @Override
+  public Collection<Long> getCopyAlarmIds() {
+    return new ArrayList<>(alarmIds);
+  }
+
+  @Override
+  public String getDipAddress() {
+    return dipAddress;
+  }
+
+  @Override
+  public boolean isLogged() {
+    return logged;
+  }
+
+  /**
+   * Only compare ids, as for the cache objects.
+   */
+  @Override
+  public boolean equals(final Object object) {
+    return object instanceof TagSnapshot && id.equals(((TagSnapshot) object).getId());
+  }
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[id=" + id + ", name=" + name + ", value=" + value + ", timestamp=" + getTimestamp() + "]";
+  }
+
+  private static Timestamp copy(final Timestamp timestamp) {
+    return timestamp == null ? null : (Timestamp) timestamp.clone();
+  }
+
+  private static Collection<Long> copy(final Collection<Long> ids) {
+    if (ids == null || ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(new ArrayList<>(ids));
+  }
+
+  private static Set<Long> copy(final Set<Long> ids) {
+    if (ids == null || ids.isEmpty()) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(new HashSet<>(ids));
+  }
+
+  /**
+   * Snapshot of a {@link DataTag}.
+   */
+  public static class DataTagSnapshot extends TagSnapshot implements DataTag {
+
+    private static final long serialVersionUID = 4419861235711906023L;
+
+    private final Timestamp sourceTimestamp;
+
+    private final Timestamp daqTimestamp;
+
+    private final Long equipmentId;
+
+    private final Long subEquipmentId;
+
+    private final Long processId;
+
+    private final DataTagAddress address;
+
+    private final Comparable minValue;
+
+    private final Comparable maxValue;
+
+    private DataTagSnapshot(final DataTag tag) throws CloneNotSupportedException {
+      super(tag);
+      this.sourceTimestamp = copy(tag.getSourceTimestamp());
+      this.daqTimestamp = copy(tag.getDaqTimestamp());
+      this.equipmentId = tag.getEquipmentId();
+      this.subEquipmentId = tag.getSubEquipmentId();
+      this.processId = tag.getProcessId();
+      this.address = tag.getAddress() == null ? null : tag.getAddress().clone();
+      this.minValue = tag.getMinValue();
+      this.maxValue = tag.getMaxValue();
+    }
+
+    @Override
+    public Timestamp getTimestamp() {
+      if (sourceTimestamp != null) {
+        return sourceTimestamp;
+      } else if (daqTimestamp != null) {
+        return daqTimestamp;
+      } else {
+        return getCacheTimestamp();
+      }
+    }
+
+    @Override
+    public Timestamp getSourceTimestamp() {
+      return sourceTimestamp;
+    }
+
+    @Override
+    public Timestamp getDaqTimestamp() {
+      return daqTimestamp;
+    }
+
+    @Override
+    public Long getEquipmentId() {
+      return equipmentId;
+    }
+
+    @Override
+    public Long getSubEquipmentId() {
+      return subEquipmentId;
+    }
+
+    @Override
+    public Long getProcessId() {
+      return processId;
+    }
+
+    @Override
+    public DataTagAddress getAddress() {
+      return address;
+    }
+
+    @Override
+    public Comparable getMinValue() {
+      return minValue;
+    }
+
+    @Override
+    public Comparable getMaxValue() {
+      return maxValue;
+    }
+
+    @Override
+    public Set<Long> getEquipmentIds() {
+      return equipmentId == null ? Collections.<Long>emptySet() : Collections.singleton(equipmentId);
+    }
+
+    @Override
+    public Set<Long> getSubEquipmentIds() {
+      return subEquipmentId == null ? Collections.<Long>emptySet() : Collections.singleton(subEquipmentId);
+    }
+
+    @Override
+    public Set<Long> getProcessIds() {
+      return processId == null ? Collections.<Long>emptySet() : Collections.singleton(processId);
+    }
+  }
+
+  /**
+   * Snapshot of a {@link ControlTag}.
+   */
+  public static final class ControlTagSnapshot extends DataTagSnapshot implements ControlTag {
+
+    private static final long serialVersionUID = -6203117458871395012L;
+
+    private ControlTagSnapshot(final ControlTag tag) throws CloneNotSupportedException {
+      super(tag);
+    }
+  }
+
+  /**
+   * Snapshot of a {@link RuleTag}.
+   */
+  public static final class RuleTagSnapshot extends TagSnapshot implements RuleTag {
+
+    private static final long serialVersionUID = 1754203388213645907L;
+
+    private final String ruleText;
+
+    private final RuleExpression ruleExpression;
+
+    private final Collection<Long> ruleInputTagIds;
+
+    private final Set<Long> equipmentIds;
+
+    private final Set<Long> subEquipmentIds;
+
+    private final Set<Long> processIds;
+
+    private RuleTagSnapshot(final RuleTag tag) throws CloneNotSupportedException {
+      super(tag);
+      this.ruleText = tag.getRuleText();
+      this.ruleExpression = tag.getRuleExpression();
+      this.ruleInputTagIds = copy(tag.getRuleInputTagIds());
+      this.equipmentIds = copy(tag.getEquipmentIds());
+      this.subEquipmentIds = copy(tag.getSubEquipmentIds());
+      this.processIds = copy(tag.getProcessIds());
+    }
+
+    @Override
+    public Timestamp getTimestamp() {
+      return getCacheTimestamp();
+    }
+
+    @Override
+    public String getRuleText() {
+      return ruleText;
+    }
+
+    @Override
+    public RuleExpression getRuleExpression() {
+      return ruleExpression;
+    }
+
+    @Override
+    public Collection<Long> getRuleInputTagIds() {
+      return ruleInputTagIds;
+    }
+
+    @Override
+    public Collection<Long> getCopyRuleInputTagIds() {
+      return new ArrayList<>(ruleInputTagIds);
+    }
+
+    @Override
+    public Set<Long> getEquipmentIds() {
+      return equipmentIds;
+    }
+
+    @Override
+    public Set<Long> getSubEquipmentIds() {
+      return subEquipmentIds;
+    }
+
+    @Override
+    public Set<Long> getProcessIds() {
+      return processIds;
+    }
+
+    @Override
+    public Long getLowestProcessId() {
+      return processIds.isEmpty() ? 0L : Collections.min(processIds);
+    }
+
+    @Override
+    public void setEquipmentIds(final Set<Long> equipmentIds) {
+      throw new UnsupportedOperationException("A Tag snapshot cannot be modified");
+    }
+
+    @Override
+    public void setSubEquipmentIds(final Set<Long> subEquipmentIds) {
+      throw new UnsupportedOperationException("A Tag snapshot cannot be modified");
+    }
+
+    @Override
+    public void setProcessIds(final Set<Long> processIds) {
+      throw new UnsupportedOperationException("A Tag snapshot cannot be modified");
+    }
+  }
+}
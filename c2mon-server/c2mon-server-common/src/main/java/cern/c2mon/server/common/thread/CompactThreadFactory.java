@@ -0,0 +1,50 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.common.thread;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cern.c2mon.server.common.config.ServerProperties;
+
+/**
+ * Creates threads with a reduced stack size, for the executors whose threads
+ * spend most of their time blocked in JMS or JDBC calls (see
+ * {@link ServerProperties.Threads#isCompact()}).
+ */
+public class CompactThreadFactory implements ThreadFactory {
+
+  private final String threadNamePrefix;
+
+  private final long stackSize;
+
+  private final AtomicInteger threadCount = new AtomicInteger(0);
+
+  /**
+   * @param threadNamePrefix the name prefix of the threads, followed by a count
+   * @param stackSizeKb the stack size of the threads, in KB
+   */
+  public CompactThreadFactory(final String threadNamePrefix, final int stackSizeKb) {
+    this.threadNamePrefix = threadNamePrefix;
+    this.stackSize = stackSizeKb * 1024L;
+  }
+
+  @Override
+  public Thread newThread(final Runnable runnable) {
+    return new Thread(null, runnable, threadNamePrefix + threadCount.incrementAndGet(), stackSize);
+  }
+}
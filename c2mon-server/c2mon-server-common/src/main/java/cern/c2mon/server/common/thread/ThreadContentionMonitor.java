@@ -0,0 +1,168 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.common.thread;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import cern.c2mon.server.common.config.ServerProperties;
+
+/**
+ * Diagnostics of the <code>synchronized</code> sections blocking the server
+ * threads. If enabled, samples the threads blocked on a monitor at a fixed
+ * interval and counts the code locations they are blocked at, so that the
+ * sections holding up the executor threads can be found at runtime.
+ */
+@Slf4j
+@ManagedResource(objectName = "cern.c2mon:name=threadContentionMonitor")
+public class ThreadContentionMonitor {
+
+  /**
+   * Number of hotspots published.
+   */
+  private static final int MAX_HOTSPOTS = 20;
+
+  private final ServerProperties.Threads properties;
+
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Number of samples in which a thread was blocked, by blocking location.
+   */
+  private final ConcurrentMap<String, LongAdder> blockedSamples = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService sampler;
+
+  public ThreadContentionMonitor(final ServerProperties properties) {
+    this.properties = properties.getThreads();
+  }
+
+  /**
+   * Starts sampling, if enabled.
+   */
+  @PostConstruct
+  public void init() {
+    if (properties.isContentionDiagnostics()) {
+      if (threadMXBean.isThreadContentionMonitoringSupported()) {
+        threadMXBean.setThreadContentionMonitoringEnabled(true);
+      }
+      sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ThreadContentionSampler");
+        thread.setDaemon(true);
+        return thread;
+      });
+      sampler.scheduleAtFixedRate(this::sample, properties.getContentionSampleInterval(),
+          properties.getContentionSampleInterval(), TimeUnit.MILLISECONDS);
+      log.info("Sampling blocked threads every {} ms", properties.getContentionSampleInterval());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (sampler != null) {
+      sampler.shutdown();
+    }
+  }
+
+  /**
+   * Records the location of each thread currently blocked on a monitor.
+   */
+  void sample() {
+    try {
+      for (ThreadInfo info : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), 1)) {
+        if (info != null && info.getThreadState() == Thread.State.BLOCKED && info.getStackTrace().length > 0) {
+          recordBlocked(info.getStackTrace()[0], info.getLockName());
+        }
+      }
+    } catch (RuntimeException e) {
+      log.error("Exception caught while sampling the blocked threads", e);
+    }
+  }
+
+  /**
+   * @param location the code location the thread is blocked at
+   * @param lockName the monitor it is waiting for
+   */
+  void recordBlocked(final StackTraceElement location, final String lockName) {
+    String key = location + " on " + lockName;
+    LongAdder count = blockedSamples.get(key);
+    if (count == null) {
+      count = blockedSamples.computeIfAbsent(key, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  /**
+   * @return the locations threads were most often found blocked at, with the
+   *         number of samples, most frequent first
+   */
+  @ManagedAttribute(description = "Synchronized sections most often blocking the threads (number of samples)")
+  public List<String> getContentionHotspots() {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>();
+    for (Map.Entry<String, LongAdder> entry : blockedSamples.entrySet()) {
+      entries.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().sum()));
+    }
+    entries.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+    List<String> hotspots = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(MAX_HOTSPOTS, entries.size()))) {
+      hotspots.add(entry.getValue() + " " + entry.getKey());
+    }
+    return hotspots;
+  }
+
+  /**
+   * @return the total time (in ms) the threads of each pool spent blocked on
+   *         monitors, by thread name without its number (-1 if contention
+   *         monitoring is not enabled)
+   */
+  @ManagedAttribute(description = "Time (ms) threads were blocked on synchronized sections, by thread pool")
+  public Map<String, Long> getBlockedTimeByPool() {
+    Map<String, Long> blockedTimes = new TreeMap<>();
+    for (ThreadInfo info : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+      if (info != null) {
+        String pool = info.getThreadName().replaceAll("\\d+$", "");
+        blockedTimes.merge(pool, info.getBlockedTime(), (t1, t2) -> t1 < 0 ? t1 : t1 + t2);
+      }
+    }
+    return blockedTimes;
+  }
+
+  @ManagedOperation(description = "Clears the contention hotspots")
+  public void resetContentionHotspots() {
+    blockedSamples.clear();
+  }
+}
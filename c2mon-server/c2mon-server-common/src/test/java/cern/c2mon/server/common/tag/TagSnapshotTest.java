@@ -0,0 +1,97 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.common.tag;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import cern.c2mon.server.common.control.ControlTag;
+import cern.c2mon.server.common.control.ControlTagCacheObject;
+import cern.c2mon.server.common.datatag.DataTag;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.rule.RuleTag;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+import cern.c2mon.shared.common.datatag.TagQualityStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link TagSnapshot}.
+ */
+public class TagSnapshotTest {
+
+  @Test
+  public void testDataTagSnapshotIsIndependentOfCacheObject() throws CloneNotSupportedException {
+    DataTagCacheObject dataTag = new DataTagCacheObject(10L, "tag", "Float", DataTagConstants.MODE_OPERATIONAL);
+    dataTag.setValue(1f);
+    dataTag.setSourceTimestamp(new Timestamp(1000));
+    dataTag.setEquipmentId(20L);
+    dataTag.getAlarmIds().add(30L);
+
+    Tag snapshot = TagSnapshot.of(dataTag);
+    assertTrue(snapshot instanceof DataTag);
+    assertFalse(snapshot instanceof ControlTag);
+
+    dataTag.setValue(2f);
+    dataTag.setSourceTimestamp(new Timestamp(2000));
+    dataTag.getDataTagQuality().addInvalidStatus(TagQualityStatus.INACCESSIBLE);
+    dataTag.getAlarmIds().add(31L);
+
+    assertEquals(1f, snapshot.getValue());
+    assertEquals(1000, snapshot.getTimestamp().getTime());
+    assertEquals(1000, ((DataTag) snapshot).getSourceTimestamp().getTime());
+    assertFalse(snapshot.getDataTagQuality().isInvalidStatusSet(TagQualityStatus.INACCESSIBLE));
+    assertEquals(1, snapshot.getAlarmIds().size());
+    assertEquals(Long.valueOf(20L), ((DataTag) snapshot).getEquipmentId());
+    assertTrue(snapshot.getEquipmentIds().contains(20L));
+  }
+
+  @Test
+  public void testSnapshotIsShared() throws CloneNotSupportedException {
+    Tag snapshot = TagSnapshot.of(new DataTagCacheObject(10L, "tag", "Float", DataTagConstants.MODE_OPERATIONAL));
+    assertSame(snapshot, snapshot.clone());
+    assertSame(snapshot, TagSnapshot.of(snapshot));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshotCollectionsAreUnmodifiable() throws CloneNotSupportedException {
+    DataTagCacheObject dataTag = new DataTagCacheObject(10L, "tag", "Float", DataTagConstants.MODE_OPERATIONAL);
+    dataTag.getRuleIds().add(40L);
+    TagSnapshot.of(dataTag).getRuleIds().clear();
+  }
+
+  @Test
+  public void testControlAndRuleTagSnapshots() throws CloneNotSupportedException {
+    Tag controlSnapshot = TagSnapshot.of(new ControlTagCacheObject(11L, "control", "Long", DataTagConstants.MODE_OPERATIONAL));
+    assertTrue(controlSnapshot instanceof ControlTag);
+
+    RuleTagCacheObject ruleTag = new RuleTagCacheObject(12L, "rule", "Integer", DataTagConstants.MODE_OPERATIONAL,
+        "(#100 = true)&(#101 > 20)[2],true[3]");
+    ruleTag.getProcessIds().add(5L);
+    ruleTag.getProcessIds().add(3L);
+    Tag ruleSnapshot = TagSnapshot.of(ruleTag);
+    assertTrue(ruleSnapshot instanceof RuleTag);
+    assertEquals(ruleTag.getRuleText(), ((RuleTag) ruleSnapshot).getRuleText());
+    assertEquals(2, ((RuleTag) ruleSnapshot).getRuleInputTagIds().size());
+    assertEquals(Long.valueOf(3L), ((RuleTag) ruleSnapshot).getLowestProcessId());
+  }
+}
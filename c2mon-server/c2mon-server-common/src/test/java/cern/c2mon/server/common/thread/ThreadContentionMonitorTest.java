@@ -0,0 +1,57 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.common.thread;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import cern.c2mon.server.common.config.ServerProperties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link ThreadContentionMonitor}.
+ */
+public class ThreadContentionMonitorTest {
+
+  @Test
+  public void testHotspotsMostFrequentFirst() {
+    ThreadContentionMonitor monitor = new ThreadContentionMonitor(new ServerProperties());
+    StackTraceElement cacheLock = new StackTraceElement("Cache", "acquireWriteLock", "Cache.java", 10);
+    StackTraceElement facadeLock = new StackTraceElement("Facade", "update", "Facade.java", 20);
+    monitor.recordBlocked(facadeLock, "java.lang.Object@1");
+    monitor.recordBlocked(cacheLock, "java.lang.Object@2");
+    monitor.recordBlocked(cacheLock, "java.lang.Object@2");
+
+    List<String> hotspots = monitor.getContentionHotspots();
+    assertEquals(2, hotspots.size());
+    assertTrue(hotspots.get(0).startsWith("2 Cache.acquireWriteLock"));
+    assertTrue(hotspots.get(1).startsWith("1 Facade.update"));
+
+    monitor.resetContentionHotspots();
+    assertTrue(monitor.getContentionHotspots().isEmpty());
+  }
+
+  @Test
+  public void testCompactThreadsNamed() {
+    CompactThreadFactory factory = new CompactThreadFactory("Test-", 256);
+    assertEquals("Test-1", factory.newThread(() -> { }).getName());
+    assertEquals("Test-2", factory.newThread(() -> { }).getName());
+  }
+}
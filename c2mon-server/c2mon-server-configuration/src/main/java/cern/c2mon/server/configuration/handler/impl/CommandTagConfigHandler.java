@@ -96,6 +96,8 @@ public class CommandTagConfigHandler {
       CommandTag<?> commandTag = commandTagCache.get(id);
       commandTagUpdate = commandTagFacade.updateConfig(commandTag, properties);
       commandTagDAO.updateCommandTag(commandTag);
+      // put back into the cache, to update the name index
+      commandTagCache.putQuiet(commandTag);
     } finally {
       commandTagCache.releaseWriteLockOnKey(id);
     }
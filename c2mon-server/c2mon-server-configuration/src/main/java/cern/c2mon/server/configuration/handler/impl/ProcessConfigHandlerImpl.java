@@ -22,6 +22,7 @@ import java.util.Properties;
 
 import cern.c2mon.server.configuration.config.ConfigurationProperties;
 import cern.c2mon.server.daq.JmsContainerManager;
+import cern.c2mon.server.daq.update.SourceUpdateManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -85,12 +86,18 @@ public class ProcessConfigHandlerImpl implements ProcessConfigHandler {
    */
   private JmsContainerManager jmsContainerManager;
 
+  /**
+   * Reference to the bean checking the PIK of incoming DAQ updates.
+   */
+  private SourceUpdateManager sourceUpdateManager;
+
   @Autowired
   public ProcessConfigHandlerImpl(EquipmentConfigHandler equipmentConfigHandler,
                                   ControlTagConfigHandler controlTagConfigHandler,
                                   ProcessCache processCache,
                                   ProcessFacade processFacade,
                                   JmsContainerManager jmsContainerManager,
+                                  SourceUpdateManager sourceUpdateManager,
                                   ConfigurationProperties properties) {
     super();
     this.equipmentConfigHandler = equipmentConfigHandler;
@@ -98,6 +105,7 @@ public class ProcessConfigHandlerImpl implements ProcessConfigHandler {
     this.processCache = processCache;
     this.processFacade = processFacade;
     this.jmsContainerManager = jmsContainerManager;
+    this.sourceUpdateManager = sourceUpdateManager;
     this.allowRunningProcessRemoval = properties.isAllowRunningProcessRemoval();
   }
 
@@ -152,6 +160,7 @@ public class ProcessConfigHandlerImpl implements ProcessConfigHandler {
           processFacade.removeAliveTimer(processId);
           jmsContainerManager.unsubscribe(process);
           processCache.remove(processId);
+          sourceUpdateManager.removeProcessPIK(processId);
          }
         return processChange;
       } catch (RuntimeException ex) {
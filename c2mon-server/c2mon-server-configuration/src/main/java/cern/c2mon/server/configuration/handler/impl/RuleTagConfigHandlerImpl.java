@@ -80,6 +80,7 @@ public class RuleTagConfigHandlerImpl implements RuleTagConfigHandler {
   public void removeRuleTag(final Long id, final ConfigurationElementReport elementReport) {    
     ruleTagConfigTransacted.doRemoveRuleTag(id, elementReport);    
     ruleTagCache.remove(id); //will be skipped if rollback exception thrown in do method    
+    ruleEvaluator.removeRule(id);
   }
 
   @Override
@@ -1730,6 +1730,37 @@ public class ConfigurationLoaderTest {
     verify(communicationManager);
   }
 
+  @Test
+  public void renameCommandTag() throws IllegalAccessException, TransformerException, InstantiationException, NoSimpleValueParseException, ParserConfigurationException, NoSuchFieldException {
+    expect(communicationManager.sendConfiguration(eq(5L), isA(List.class))).andReturn(new ConfigurationChangeEventReport());
+    replay(communicationManager);
+
+    // SETUP:
+    configurationLoader.applyConfiguration(TestConfigurationProvider.createProcess());
+    configurationLoader.applyConfiguration(TestConfigurationProvider.createEquipment());
+    configurationLoader.applyConfiguration(TestConfigurationProvider.createCommandTag());
+    processFacade.start(5L, "hostname", new Timestamp(System.currentTimeMillis()));
+    assertEquals(Long.valueOf(500L), commandTagCache.getCommandTagId("CommandTag"));
+
+    // TEST:
+    Configuration configuration = new Configuration();
+    configuration.addEntity(CommandTag.update(500L).name("RenamedCommandTag").build());
+    ConfigurationReport report = configurationLoader.applyConfiguration(configuration);
+
+    assertEquals(ConfigConstants.Status.OK, report.getStatus());
+    assertEquals("RenamedCommandTag", commandTagCache.get(500L).getName());
+    assertEquals(Long.valueOf(500L), commandTagCache.getCommandTagId("RenamedCommandTag"));
+    assertNull(commandTagCache.getCommandTagId("CommandTag"));
+
+    verify(communicationManager);
+
+    // remove the process and equipments from the server
+    processFacade.stop(5L, new Timestamp(System.currentTimeMillis()));
+    report = configurationLoader.applyConfiguration(TestConfigurationProvider.deleteProcess());
+    assertEquals(ConfigConstants.Status.OK, report.getStatus());
+    assertFalse(commandTagCache.hasKey(500L));
+  }
+
   @Test
   public void updateCommandTag() throws IllegalAccessException, TransformerException, InstantiationException, NoSimpleValueParseException, ParserConfigurationException, NoSuchFieldException {
     // called once when updating the equipment;
@@ -24,6 +24,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import cern.c2mon.server.common.config.ServerProperties;
+import cern.c2mon.server.common.thread.CompactThreadFactory;
+
 /**
  * This class is responsible for configuring the Spring context for the
  * daq module.
@@ -43,6 +46,9 @@ public class DaqModule {
   @Autowired
   private DaqProperties properties;
 
+  @Autowired
+  private ServerProperties serverProperties;
+
   @Bean
   public ThreadPoolTaskExecutor daqThreadPoolTaskExecutor() {
     ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -51,6 +57,9 @@ public class DaqModule {
     executor.setKeepAliveSeconds(properties.getJms().getUpdate().getKeepAliveSeconds());
     executor.setAllowCoreThreadTimeOut(true);
     executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+    if (serverProperties.getThreads().isCompact()) {
+      executor.setThreadFactory(new CompactThreadFactory(THREAD_NAME_PREFIX, serverProperties.getThreads().getStackSize()));
+    }
     return executor;
   }
 }
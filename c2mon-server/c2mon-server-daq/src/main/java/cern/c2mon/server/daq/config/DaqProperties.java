@@ -1,5 +1,8 @@
 package cern.c2mon.server.daq.config;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import cern.c2mon.shared.daq.config.DaqJmsProperties;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -16,6 +19,17 @@ public class DaqProperties {
    */
   private final Jms jms = new Jms();
 
+  /**
+   * Maximum number of Processes whose values are refreshed from the DAQ
+   * caches concurrently (e.g. after a server restart)
+   */
+  private int refreshParallelism = 4;
+
+  /**
+   * Number of refreshed values written to the cache in one batch
+   */
+  private int refreshBatchSize = 1000;
+
   @Data
   public class Jms extends DaqJmsProperties {
 
@@ -49,6 +63,110 @@ public class DaqProperties {
       int receiveTimeout = 1000;
       int numExecutorThreads = 250;
       int keepAliveSeconds = 60;
+
+      /**
+       * Adjust the number of consumers of each Process to its observed load
+       * after the warm-up time, instead of raising all of them to
+       * maxConsumers (between initialConsumers and maxConsumers, within
+       * the threadBudget). Not applied with admissionControl or ingestLanes,
+       * where the consumers wait for other threads to write their values
+       */
+      private boolean autoscaling = false;
+
+      /**
+       * Interval (in ms) at which the consumers are rescaled
+       */
+      private int autoscalingInterval = 10000;
+
+      /**
+       * Maximum number of consumers of all Processes together when
+       * autoscaling (0 for numExecutorThreads)
+       */
+      private int threadBudget = 0;
+
+      /**
+       * Fraction of the time the consumers of a Process should be busy;
+       * the autoscaling adds consumers above this utilization
+       */
+      private double targetUtilization = 0.7;
+
+      /**
+       * Messages received by a consumer task before it is rescheduled, for
+       * Processes whose consumers are all busy (maxMessagesPerTask otherwise)
+       */
+      private int busyMaxMessagesPerTask = 10;
+
+      /**
+       * Number of single-writer lanes writing the incoming DataTag values
+       * to the cache, each for a partition of the tags (0 to write them on
+       * the JMS consumer threads). If set, each Process queue is read by a
+       * single consumer, so that the updates are applied in order
+       */
+      private int ingestLanes = 0;
+
+      /**
+       * Maximum number of values written to the cache in one batch by an
+       * ingest lane
+       */
+      private int ingestLaneMaxBatch = 1000;
+
+      /**
+       * Maximum time (in ms) a JMS consumer thread waits for its values to be
+       * written by the ingest lanes; the message is then rolled back
+       */
+      private int ingestLaneTimeout = 60000;
+
+      /**
+       * Priorities of the DataTag values conflated with newer values of the
+       * same tag received in the same batch (e.g. 2,5 for the low and medium
+       * priorities); none by default. Values of logged tags, or sent with
+       * guaranteed delivery, are never conflated
+       */
+      private Set<Integer> conflatedPriorities = new HashSet<>();
+
+      /**
+       * Queue the incoming values by priority class (control tags, high and
+       * low priority) before processing, so that control tags and high
+       * priority values are not delayed by bulk low priority traffic
+       */
+      private boolean admissionControl = false;
+
+      /**
+       * Number of threads processing the queued values, if admission control
+       * is enabled (at least 1)
+       */
+      private int admissionWorkers = 8;
+
+      /**
+       * Maximum time (in ms) a JMS consumer thread waits for its values to be
+       * admitted and processed; the message is then rolled back
+       */
+      private int admissionTimeout = 60000;
+
+      /**
+       * Maximum number of messages waiting in the queue of each priority
+       * class. The JMS consumer threads wait for their control tag and high
+       * priority values, so these queues never hold more messages than there
+       * are consumers; only the low priority queue (conflate or shed policy)
+       * fills up to this capacity
+       */
+      private int admissionQueueCapacity = 1000;
+
+      /**
+       * Share of the messages processed from the control tag, high and low
+       * priority queues, and of the batches of low priority values set aside
+       * on overload (optional fourth entry, same as the low priority queue by
+       * default)
+       */
+      private int[] admissionWeights = {4, 2, 1};
+
+      /**
+       * Handling of the low priority values if their queue is full: conflate
+       * (keep the last value of each tag aside), shed (drop) or block. With
+       * conflate and shed, the low priority values are acknowledged once
+       * queued, before they are written, and are lost on crash or shutdown
+       */
+      private String lowPriorityOverload = "conflate";
     }
 
     /**
@@ -16,16 +16,31 @@
  *****************************************************************************/
 package cern.c2mon.server.daq.out;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
 import cern.c2mon.server.cache.DataTagFacade;
 import cern.c2mon.server.cache.ProcessCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.server.daq.update.UpdateConflator;
 import cern.c2mon.shared.common.datatag.SourceDataTagValue;
 import cern.c2mon.shared.daq.datatag.SourceDataTagValueRequest;
 import cern.c2mon.shared.daq.datatag.SourceDataTagValueResponse;
@@ -33,6 +48,11 @@ import cern.c2mon.shared.daq.datatag.SourceDataTagValueResponse;
 /**
  * Implementation of Data refresh service.
  *
+ * <p>When refreshing all Processes, up to <code>c2mon.server.daq.refreshParallelism</code>
+ * Processes are refreshed concurrently. The values received are written to the
+ * cache in batches (conflated if enabled, see {@link UpdateConflator}), and the
+ * progress of each Process is published on JMX.
+ *
  * @author Mark Brightwell
  *
  */
@@ -50,21 +70,56 @@ public class DataRefreshManagerImpl implements DataRefreshManager {
   /** For refreshing all tags. */
   private final ProcessCache processCache;
 
+  /** For conflating the refreshed values, if enabled */
+  private final UpdateConflator updateConflator;
+
+  private final DaqProperties properties;
+
+  /** State of the last refresh of each Process, by Process name (for JMX) */
+  private final ConcurrentMap<String, String> refreshProgress = new ConcurrentHashMap<>();
+
   @Autowired
   public DataRefreshManagerImpl(DataTagFacade dataTagFacade, ProcessCommunicationManager processCommunicationManager,
-      ProcessCache processCache) {
+      ProcessCache processCache, UpdateConflator updateConflator, DaqProperties properties) {
     super();
     this.dataTagFacade = dataTagFacade;
     this.processCommunicationManager = processCommunicationManager;
     this.processCache = processCache;
+    this.updateConflator = updateConflator;
+    this.properties = properties;
   }
 
   @Override
   @ManagedOperation(description="Refresh values for a given DAQ from the DAQ cache; provide DAQ id.")
   public void refreshValuesForProcess(final Long id) {
-    SourceDataTagValueResponse latestValues = processCommunicationManager.requestDataTagValues(
-        new SourceDataTagValueRequest(SourceDataTagValueRequest.DataTagRequestType.PROCESS, id));
-    updateCache(latestValues);
+    String name = processName(id);
+    long start = System.currentTimeMillis();
+    refreshProgress.put(name, "requesting values from DAQ");
+    try {
+      SourceDataTagValueResponse latestValues = processCommunicationManager.requestDataTagValues(
+          new SourceDataTagValueRequest(SourceDataTagValueRequest.DataTagRequestType.PROCESS, id));
+      List<SourceDataTagValue> values = new ArrayList<>(latestValues.getAllDataTagValueObjects());
+      int updated = updateCache(name, values);
+      refreshProgress.put(name, "refreshed " + updated + " of " + values.size() + " values in "
+          + (System.currentTimeMillis() - start) + " ms");
+    } catch (RuntimeException e) {
+      refreshProgress.put(name, "failed: " + e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * @param id the id of a Process
+   * @return the name of the Process, under which its refresh progress is
+   *         published, or its id if it is not in the cache (the values are
+   *         requested from the DAQ anyway, as before)
+   */
+  private String processName(final Long id) {
+    try {
+      return processCache.get(id).getName();
+    } catch (CacheElementNotFoundException e) {
+      return "#" + id;
+    }
   }
 
   @ManagedOperation(description="Refresh values for a given DAQ from the DAQ cache; provide DAQ name.")
@@ -72,29 +127,95 @@ public class DataRefreshManagerImpl implements DataRefreshManager {
     refreshValuesForProcess(processCache.getProcessId(name));
   }
 
+  /**
+   * Refreshes the Processes concurrently, and waits for all refreshes to
+   * complete.
+   */
   @Override
   public void refreshTagsForAllProcess() {
-    for (Long key : processCache.getKeys()) {
-      try {
-        refreshValuesForProcess(key);
-      } catch (Exception e) {
-        log.error("Exception caught while refreshing values for process {} (#{})", processCache.get(key).getName(), key, e);
+    List<Long> keys = processCache.getKeys();
+    if (keys.isEmpty()) {
+      return;
+    }
+    AtomicInteger threadCount = new AtomicInteger(0);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(properties.getRefreshParallelism(), keys.size())),
+        runnable -> new Thread(runnable, "DataRefresh-" + threadCount.incrementAndGet()));
+    try {
+      List<Future<?>> refreshes = new ArrayList<>(keys.size());
+      for (Long key : keys) {
+        refreshes.add(executor.submit(() -> {
+          try {
+            refreshValuesForProcess(key);
+          } catch (Exception e) {
+            log.error("Exception caught while refreshing values for process {} (#{})", processName(key), key, e);
+          }
+        }));
       }
+      for (Future<?> refresh : refreshes) {
+        refresh.get();
+      }
+    } catch (InterruptedException e) {
+      log.warn("Interrupted while refreshing the values of all processes", e);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.error("Exception caught while refreshing the values of all processes", e);
+    } finally {
+      executor.shutdownNow();
     }
   }
 
   /**
-   * Updates the cache with the passed values (obtained from the DAQ layer during a data refresh).
-   * @param latestValues values to update the cache with
+   * For management only.
+   *
+   * @return the state of the last refresh of each Process
+   */
+  @ManagedAttribute(description="State of the last refresh of each DAQ from the DAQ cache")
+  public Map<String, String> getRefreshProgress() {
+    return new TreeMap<>(refreshProgress);
+  }
+
+  /**
+   * Updates the cache with the passed values (obtained from the DAQ layer during a data refresh),
+   * in batches. If the update of a batch fails, its values are written one by one,
+   * so that a single bad value does not prevent the refresh of the others.
+   * @param name the name of the Process, for reporting progress
+   * @param updates values to update the cache with
+   * @return the number of tags updated in the cache
    */
-  private void updateCache(final SourceDataTagValueResponse latestValues) {
-    Collection<SourceDataTagValue> updates = latestValues.getAllDataTagValueObjects();
-    for (SourceDataTagValue value : updates) {
+  private int updateCache(final String name, final List<SourceDataTagValue> updates) {
+    int batchSize = Math.max(1, properties.getRefreshBatchSize());
+    int updated = 0;
+    for (int from = 0; from < updates.size(); from += batchSize) {
+      List<SourceDataTagValue> batch = updates.subList(from, Math.min(from + batchSize, updates.size()));
       try {
-        dataTagFacade.updateFromSource(value.getId(), value);
+        updated += countUpdated(updateConflator.updateFromSource(batch, dataTagFacade::updateFromSource));
       } catch (Exception e) {
-        log.error("Exception caught while refreshing a Tag with the latest DAQ cache value (id=" + value.getId() + ")", e);
+        log.warn("Exception caught while refreshing " + batch.size() + " Tags with the latest DAQ cache values"
+            + " - refreshing them one by one", e);
+        for (SourceDataTagValue value : batch) {
+          try {
+            if (dataTagFacade.updateFromSource(value.getId(), value).getReturnValue()) {
+              updated++;
+            }
+          } catch (CacheElementNotFoundException notFound) {
+            log.warn("Tag " + value.getId() + " refreshed from the DAQ cache is not in the server cache");
+          } catch (Exception valueException) {
+            log.error("Exception caught while refreshing Tag " + value.getId() + " with the latest DAQ cache value", valueException);
+          }
+        }
+      }
+      refreshProgress.put(name, "written " + Math.min(from + batchSize, updates.size()) + " of " + updates.size() + " values");
+    }
+    return updated;
+  }
+
+  private static int countUpdated(final List<Event<Boolean>> results) {
+    int updated = 0;
+    for (Event<Boolean> result : results) {
+      if (result.getReturnValue()) {
+        updated++;
       }
     }
+    return updated;
   }
 }
@@ -0,0 +1,145 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cern.c2mon.server.daq.update.UpdateLoadMonitor.ConsumerLoad;
+
+/**
+ * Computes the number of JMS consumers of each Process from the load observed
+ * over the last interval.
+ *
+ * <p>A Process needs enough consumers to keep them busy at most
+ * <code>targetUtilization</code> of the time. If its consumers were all busy
+ * almost all of the time, messages are assumed to be queuing in the broker and
+ * the number of consumers is doubled. Consumers are removed gradually (by at
+ * most a quarter per interval). If the Processes together need more consumers
+ * than the thread budget, the budget is shared fairly (max-min fairness), so a
+ * single busy Process cannot take the threads of the others.
+ */
+final class ConsumerScalingPolicy {
+
+  /**
+   * Utilization above which the consumers of a Process are considered
+   * saturated (messages are then likely waiting in the broker).
+   */
+  static final double SATURATED_UTILIZATION = 0.9;
+
+  private final int minConsumers;
+
+  private final int maxConsumers;
+
+  private final int threadBudget;
+
+  private final double targetUtilization;
+
+  /**
+   * @param minConsumers minimum number of consumers of a Process
+   * @param maxConsumers maximum number of consumers of a Process
+   * @param threadBudget maximum number of consumers of all Processes
+   * @param targetUtilization fraction of the time the consumers should be busy
+   */
+  ConsumerScalingPolicy(final int minConsumers, final int maxConsumers, final int threadBudget, final double targetUtilization) {
+    this.minConsumers = minConsumers;
+    this.maxConsumers = Math.max(minConsumers, maxConsumers);
+    this.threadBudget = threadBudget;
+    this.targetUtilization = targetUtilization;
+  }
+
+  /**
+   * @param currentConsumers the current number of consumers, for each Process
+   * @param loads the load of each Process over the interval (no entry if no messages)
+   * @param intervalNanos the length of the interval
+   * @param peakActiveThreads the highest number of update threads active at once
+   *                          during the interval; no Process is given more
+   *                          consumers if it reached the thread budget
+   * @return the new number of consumers, for each Process of currentConsumers
+   */
+  Map<Long, Integer> scale(final Map<Long, Integer> currentConsumers, final Map<Long, ConsumerLoad> loads,
+                           final long intervalNanos, final int peakActiveThreads) {
+    boolean budgetReached = peakActiveThreads >= threadBudget;
+    Map<Long, Integer> demands = new HashMap<>();
+    for (Map.Entry<Long, Integer> entry : currentConsumers.entrySet()) {
+      int current = entry.getValue();
+      int demand = demand(current, loads.get(entry.getKey()), intervalNanos);
+      if (budgetReached) {
+        demand = Math.max(minConsumers, Math.min(demand, current));
+      }
+      demands.put(entry.getKey(), demand);
+    }
+    return share(demands);
+  }
+
+  /**
+   * @param consumers the number of consumers of the Process
+   * @param load the load of the Process over the interval, may be null
+   * @param intervalNanos the length of the interval
+   * @return true if the consumers were busy almost all of the time
+   */
+  boolean isSaturated(final int consumers, final ConsumerLoad load, final long intervalNanos) {
+    return load != null && load.getBusyNanos() >= SATURATED_UTILIZATION * intervalNanos * consumers;
+  }
+
+  /**
+   * @return the number of consumers needed by one Process, within the
+   *         per-Process limits
+   */
+  private int demand(final int current, final ConsumerLoad load, final long intervalNanos) {
+    long needed = 0;
+    if (load != null) {
+      needed = (long) Math.ceil(load.getBusyNanos() / (intervalNanos * targetUtilization));
+      if (isSaturated(current, load, intervalNanos)) {
+        needed = Math.max(needed, 2L * current);
+      }
+    }
+    if (needed < current) {
+      needed = Math.max(needed, current - Math.max(1, current / 4));
+    }
+    return (int) Math.max(minConsumers, Math.min(maxConsumers, needed));
+  }
+
+  /**
+   * Reduces the demands to the thread budget if needed: each Process gets
+   * its minimum, then the rest of the budget is shared, the Processes
+   * needing less than an equal share getting what they need.
+   */
+  private Map<Long, Integer> share(final Map<Long, Integer> demands) {
+    long total = 0;
+    for (int demand : demands.values()) {
+      total += demand;
+    }
+    if (total <= threadBudget) {
+      return demands;
+    }
+
+    List<Map.Entry<Long, Integer>> entries = new ArrayList<>(demands.entrySet());
+    entries.sort(Map.Entry.comparingByValue());
+    Map<Long, Integer> shares = new HashMap<>();
+    int remaining = Math.max(0, threadBudget - minConsumers * entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      int extra = entries.get(i).getValue() - minConsumers;
+      int granted = Math.min(extra, remaining / (entries.size() - i));
+      remaining -= granted;
+      shares.put(entries.get(i).getKey(), minConsumers + granted);
+    }
+    return shares;
+  }
+}
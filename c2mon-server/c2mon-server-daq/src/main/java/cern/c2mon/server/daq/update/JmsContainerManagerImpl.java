@@ -41,6 +41,7 @@ import cern.c2mon.server.cache.ClusterCache;
 import cern.c2mon.server.cache.ProcessCache;
 import cern.c2mon.server.common.config.ServerConstants;
 import cern.c2mon.server.common.process.Process;
+import cern.c2mon.server.daq.update.UpdateLoadMonitor.ConsumerLoad;
 import org.springframework.stereotype.Component;
 
 /**
@@ -113,6 +114,16 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
 
   private DaqProperties properties;
 
+  /**
+   * Load of the update messages, for the consumer autoscaling.
+   */
+  private UpdateLoadMonitor updateLoadMonitor;
+
+  /**
+   * Timer rescaling the consumers of each container (only if autoscaling is enabled).
+   */
+  private volatile Timer consumerScaler;
+
   /**
    * Constructor.
    */
@@ -122,7 +133,8 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
                                  final @Qualifier("sourceUpdateManager") SessionAwareMessageListener<Message> listener,
                                  final @Qualifier("clusterCache") ClusterCache clusterCache,
                                  final ThreadPoolTaskExecutor daqThreadPoolTaskExecutor,
-                                 final DaqProperties properties) {
+                                 final DaqProperties properties,
+                                 final UpdateLoadMonitor updateLoadMonitor) {
     super();
     this.processCache = processCache;
     this.updateConnectionFactory = updateConnectionFactory;
@@ -130,6 +142,7 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
     this.clusterCache = clusterCache;
     this.daqThreadPoolTaskExecutor = daqThreadPoolTaskExecutor;
     this.properties = properties;
+    this.updateLoadMonitor = updateLoadMonitor;
   }
 
 
@@ -141,6 +154,14 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
     }
   }
 
+  /**
+   * @return true if the updates of each Process must be received in order,
+   *         by a single consumer (see {@link UpdateIngestLanes})
+   */
+  private boolean isOrderedIngest() {
+    return properties.getJms().getUpdate().getIngestLanes() > 0;
+  }
+
   @Override
   public void subscribe(final Process process) {
     LOGGER.trace("Subscribing to updates from Process " + process.getId());
@@ -164,8 +185,13 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
     container.setConnectionFactory(updateConnectionFactory);
     container.setDestination(new ActiveMQQueue(properties.getJms().getQueuePrefix() + ".update." + process.getName()));
     container.setMessageListener(listener);
-    container.setConcurrentConsumers(properties.getJms().getUpdate().getInitialConsumers());
-    container.setMaxConcurrentConsumers(consumersMax);
+    if (isOrderedIngest()) {
+      container.setConcurrentConsumers(1);
+      container.setMaxConcurrentConsumers(1);
+    } else {
+      container.setConcurrentConsumers(properties.getJms().getUpdate().getInitialConsumers());
+      container.setMaxConcurrentConsumers(consumersMax);
+    }
     container.setSessionTransacted(properties.getJms().getUpdate().isTransacted());
     container.setCacheLevel(DefaultMessageListenerContainer.CACHE_CONSUMER);
     container.setAutoStartup(false);
@@ -271,29 +297,33 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
       LOGGER.info("Finished starting Process JMS listeners.");
 
       //start thread that will increase the listener thread number after warm up time
-      //(this thread expires if stop is called)
-      new Thread(new Runnable() {
-
-        @Override
-        public void run() {
-          int counter = 0;
-          try {
-            while (counter < properties.getJms().getUpdate().getConsumerWarmupTime() && running) {
-              Thread.sleep(1000);
-              counter++;
+      //(this thread expires if stop is called); not needed with a single consumer per Process
+      if (!isOrderedIngest()) {
+        new Thread(new Runnable() {
+
+          @Override
+          public void run() {
+            int counter = 0;
+            try {
+              while (counter < properties.getJms().getUpdate().getConsumerWarmupTime() && running) {
+                Thread.sleep(1000);
+                counter++;
+              }
+            } catch (InterruptedException e) {
+              LOGGER.error("Interrupted during warm-up phase; starting all listener threads.", e);
             }
-          } catch (InterruptedException e) {
-            LOGGER.error("Interrupted during warm-up phase; starting all listener threads.", e);
-          }
-          if (running) {
-            LOGGER.info("Increasing max concurrent update consumers to operational value.");
-            for (Map.Entry<Long, DefaultMessageListenerContainer> entry : jmsContainers.entrySet()) {
-              entry.getValue().setMaxConcurrentConsumers(properties.getJms().getUpdate().getMaxConsumers());
+            if (running && isAutoscaling()) {
+              startConsumerScaler();
+            } else if (running) {
+              LOGGER.info("Increasing max concurrent update consumers to operational value.");
+              for (Map.Entry<Long, DefaultMessageListenerContainer> entry : jmsContainers.entrySet()) {
+                entry.getValue().setMaxConcurrentConsumers(properties.getJms().getUpdate().getMaxConsumers());
+              }
             }
           }
-        }
 
-      }, "JmsContainer").start();
+        }, "JmsContainer").start();
+      }
 
       //start thread that will periodically check if a Process has been added or removed from a distributed cluster
       subscriptionChecker = new Timer();
@@ -301,6 +331,41 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
     }
   }
 
+  /**
+   * The busy time of a consumer is the time spent in onMessage, which is only
+   * the time spent writing the values if the consumer writes them itself. With
+   * admission control, the consumers mostly wait for the admission workers, and
+   * more consumers would only queue behind them, so the consumers are not
+   * rescaled (with the ingest lanes, each Process has a single consumer anyway).
+   *
+   * @return true if the consumers are rescaled to the observed load
+   */
+  private boolean isAutoscaling() {
+    DaqProperties.Jms.Update update = properties.getJms().getUpdate();
+    if (update.isAutoscaling() && update.isAdmissionControl()) {
+      LOGGER.warn("Autoscaling of the update consumers is not supported with admission control - disabled.");
+      return false;
+    }
+    return update.isAutoscaling();
+  }
+
+  /**
+   * Starts rescaling the consumers of each container to the observed load.
+   */
+  private synchronized void startConsumerScaler() {
+    if (running && consumerScaler == null) {
+      DaqProperties.Jms.Update update = properties.getJms().getUpdate();
+      int threadBudget = update.getThreadBudget() > 0 ? update.getThreadBudget() : update.getNumExecutorThreads();
+      LOGGER.info("Starting autoscaling of the update consumers (budget of {} threads).", threadBudget);
+      ConsumerScalingPolicy policy = new ConsumerScalingPolicy(update.getInitialConsumers(), update.getMaxConsumers(),
+          threadBudget, update.getTargetUtilization());
+      updateLoadMonitor.drainLoads();
+      updateLoadMonitor.drainPeakActiveThreads();
+      consumerScaler = new Timer("JmsConsumerScaler", true);
+      consumerScaler.schedule(new ConsumerScalingTask(policy), update.getAutoscalingInterval(), update.getAutoscalingInterval());
+    }
+  }
+
   //TODO increase JMS retries in ActiveMQ to > #consumers in one server (ow may not get picked up by other server)
   /**
    * Permanent shutdown.
@@ -310,6 +375,9 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
     try {
       LOGGER.info("Stopping JMS update containers listening for tag updates from the DAQ layer.");
       subscriptionChecker.cancel();
+      if (consumerScaler != null) {
+        consumerScaler.cancel();
+      }
       ThreadPoolExecutor shutdownExecutor = new ThreadPoolExecutor(10, 10, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
         String threadName = "StopDaqUpdate";
         return new Thread(r, threadName);
@@ -387,6 +455,55 @@ public class JmsContainerManagerImpl implements JmsContainerManager, SmartLifecy
     }
   }
 
+  /**
+   * Adjusts the max consumers and messages per task of each container to the
+   * load observed since the last run (see {@link ConsumerScalingPolicy}).
+   */
+  private class ConsumerScalingTask extends TimerTask {
+
+    private final ConsumerScalingPolicy policy;
+
+    private long lastRun = System.nanoTime();
+
+    ConsumerScalingTask(final ConsumerScalingPolicy policy) {
+      this.policy = policy;
+    }
+
+    @Override
+    public void run() {
+      try {
+        long now = System.nanoTime();
+        long interval = now - lastRun;
+        lastRun = now;
+        Map<Long, ConsumerLoad> loads = updateLoadMonitor.drainLoads();
+        int peakActiveThreads = updateLoadMonitor.drainPeakActiveThreads();
+
+        Map<Long, Integer> currentConsumers = new HashMap<>();
+        for (Map.Entry<Long, DefaultMessageListenerContainer> entry : jmsContainers.entrySet()) {
+          currentConsumers.put(entry.getKey(), entry.getValue().getMaxConcurrentConsumers());
+        }
+        Map<Long, Integer> consumers = policy.scale(currentConsumers, loads, interval, peakActiveThreads);
+
+        DaqProperties.Jms.Update update = properties.getJms().getUpdate();
+        for (Map.Entry<Long, Integer> entry : consumers.entrySet()) {
+          DefaultMessageListenerContainer container = jmsContainers.get(entry.getKey());
+          if (container == null) {
+            continue;
+          }
+          int current = currentConsumers.get(entry.getKey());
+          if (entry.getValue() != current) {
+            LOGGER.debug("Scaling max update consumers of Process #{} from {} to {}", entry.getKey(), current, entry.getValue());
+            container.setMaxConcurrentConsumers(entry.getValue());
+          }
+          container.setMaxMessagesPerTask(policy.isSaturated(current, loads.get(entry.getKey()), interval)
+              ? update.getBusyMaxMessagesPerTask() : update.getMaxMessagesPerTask());
+        }
+      } catch (Exception e) {
+        LOGGER.error("Unexpected exception caught while scaling the update consumers", e);
+      }
+    }
+  }
+
   /**
    * For shutting down many containers.
    */
@@ -33,5 +33,13 @@ public interface SourceUpdateManager {
    */
   void processUpdates(DataTagValueUpdate dataTagValueUpdate);
 
+  /**
+   * Forgets the PIK held for a Process, so that later updates sent with
+   * this PIK are checked against the Process cache again. Called when
+   * the Process is removed from the server.
+   *
+   * @param processId the id of the removed Process
+   */
+  void removeProcessPIK(Long processId);
 
 }
@@ -16,9 +16,14 @@
  *****************************************************************************/
 package cern.c2mon.server.daq.update;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PostConstruct;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.Session;
@@ -35,10 +40,14 @@ import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
+import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.cache.ControlTagFacade;
 import cern.c2mon.server.cache.DataTagFacade;
 import cern.c2mon.server.cache.ProcessCache;
 import cern.c2mon.server.cache.ProcessFacade;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.UpdateStage;
+import cern.c2mon.server.cache.config.CacheProperties;
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
 import cern.c2mon.server.common.process.Process;
 import cern.c2mon.server.common.thread.Event;
@@ -100,8 +109,48 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
    */
   private final ProcessCache processCache;
 
+  /**
+   * Local copy of the PIK of each connected Process, kept up to date by a
+   * synchronous listener on the Process cache (so refreshed on Process
+   * connection, disconnection and reconfiguration). Updates with a matching
+   * PIK are accepted without locking or reading the Process.
+   */
+  private final ConcurrentMap<Long, Long> processPIKs = new ConcurrentHashMap<>();
+
+  /**
+   * False in "multi" mode, where the Process may be updated by another
+   * server without notifying the local listener: the PIK is then always
+   * checked against the Process cache.
+   */
+  private final boolean localPIKs;
+
   private final ServerProperties properties;
 
+  /**
+   * Records the latency of the updates at reception and cache update.
+   */
+  private final UpdateLatencyMonitor updateLatencyMonitor;
+
+  /**
+   * Records the processing time of the messages, for scaling the JMS consumers.
+   */
+  private final UpdateLoadMonitor updateLoadMonitor;
+
+  /**
+   * Writes the DataTag values to the cache, if the ingest lanes are enabled.
+   */
+  private final UpdateIngestLanes updateIngestLanes;
+
+  /**
+   * Conflates the values of the same DataTag received in a message, if enabled.
+   */
+  private final UpdateConflator updateConflator;
+
+  /**
+   * Queues the incoming values by priority class, if enabled.
+   */
+  private final UpdateAdmission updateAdmission;
+
   /**
    * For management only. Number of JMS threads
    * currently active.
@@ -135,7 +184,13 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
                                  final DataTagValueUpdateConverter dataTagValueUpdateConverter,
                                  final ProcessFacade processFacade,
                                  final ProcessCache processCache,
-                                 final ServerProperties properties) {
+                                 final ServerProperties properties,
+                                 final CacheProperties cacheProperties,
+                                 final UpdateLatencyMonitor updateLatencyMonitor,
+                                 final UpdateLoadMonitor updateLoadMonitor,
+                                 final UpdateIngestLanes updateIngestLanes,
+                                 final UpdateConflator updateConflator,
+                                 final UpdateAdmission updateAdmission) {
     super();
     this.dataTagFacade = dataTagFacade;
     this.controlTagFacade = controlTagFacade;
@@ -144,6 +199,26 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
     this.processFacade = processFacade;
     this.processCache = processCache;
     this.properties = properties;
+    this.localPIKs = !"multi".equalsIgnoreCase(cacheProperties.getMode());
+    this.updateLatencyMonitor = updateLatencyMonitor;
+    this.updateLoadMonitor = updateLoadMonitor;
+    this.updateIngestLanes = updateIngestLanes;
+    this.updateConflator = updateConflator;
+    this.updateAdmission = updateAdmission;
+  }
+
+  /**
+   * Registers for Process updates, to keep the local PIKs up to date, and
+   * starts the admission stage if enabled.
+   */
+  @PostConstruct
+  public void init() {
+    if (localPIKs) {
+      processCache.registerSynchronousListener(new ProcessPIKListener());
+    }
+    if (updateAdmission.isEnabled()) {
+      updateAdmission.start(this::processControlTags, this::processDataTags);
+    }
   }
 
   /**
@@ -153,6 +228,11 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
    * (since this method is specified as listener method in the JCA container; the transaction
    * manager manages the acknowledgment).
    *
+   * <p>Without admission control, the consecutive values of the same kind (control tags or
+   * DataTags) are written to the cache in one batch each, so that the values keep the order of the
+   * message across the two kinds; within a batch, the tags are locked and written in ascending id
+   * order.
+   *
    * @param dataTagValueUpdate the incoming collection of updates (could be null if some error
    * occurred in converting the message; in this case, log the problem and ignore this update)
    * @throws NullPointerException if passed DataTagValueUpdate is null
@@ -163,17 +243,29 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
       activeUpdateThreads.getAndIncrement();
       Collection<SourceDataTagValue> values = dataTagValueUpdate.getValues();
       if (values != null ) {
-
-        for(SourceDataTagValue sourceDataTagValue : values){
-
-          //if the incoming value is a control tag (i.e. alive or commFault)
-          if (sourceDataTagValue.isControlTag()) {
-            processControl(sourceDataTagValue);
-          } else {
-            //else is a normal DataTag update
-            processDataTag(sourceDataTagValue);
+        if (updateAdmission.isEnabled()) {
+          // control tags and high priority values first
+          updateAdmission.process(values);
+        } else {
+          List<SourceDataTagValue> batch = new ArrayList<>(values.size());
+          boolean controlTags = false;
+          for(SourceDataTagValue sourceDataTagValue : values){
+            //control tags (i.e. alive or commFault) and normal DataTags are written
+            //in separate batches, in the order of the message
+            if (!batch.isEmpty() && sourceDataTagValue.isControlTag() != controlTags) {
+              processBatch(batch, controlTags);
+              batch = new ArrayList<>();
+            }
+            controlTags = sourceDataTagValue.isControlTag();
+            batch.add(sourceDataTagValue);
+          }
+          if (!batch.isEmpty()) {
+            processBatch(batch, controlTags);
           }
-          //log in file
+        }
+
+        //log in file
+        for (SourceDataTagValue sourceDataTagValue : values) {
           sourceDataTagValue.log();
         }
       }
@@ -199,8 +291,10 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
 
   @Override
   public void onMessage(final Message message, final Session session) throws JMSException {
+    long start = System.nanoTime();
     try {
       DataTagValueUpdate update = (DataTagValueUpdate) converter.fromMessage(message);
+      recordReception(update);
 
       // We do the process PIK checking in order to accept or not the update
       if(this.checkProcessPIK(update)) {
@@ -210,6 +304,9 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
         log.warn("Received update(s) for Process #" + update.getProcessId()
             + " with wrong PIK: Ignoring " + update.getValues().size() + " updates");
       }
+      if (update.getProcessId() != null) {
+        updateLoadMonitor.record(update.getProcessId(), System.nanoTime() - start, activeUpdateThreads.get() + 1);
+      }
     } catch (MessageConversionException ex) {
       String errorMessage = "Error processing incoming update from DAQ: message is being discarded!";
       log.error(errorMessage, ex);
@@ -221,41 +318,69 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
   }
 
   /**
-   * Performs all operations needed on reception of a control tag. Currently very similar to
-   * processDataTag method and uses the {@link DataTagFacade} to update the ControlTagCacheObject as it
-   * coincides with the underlying DataTagCacheObject. In the future, may with to implement a
-   * controlTagFacade if the handling of the Control tags is modified.
+   * @param sourceDataTagValues consecutive incoming values of the same kind
+   * @param controlTags true if the values are control tag values
+   */
+  private void processBatch(final List<SourceDataTagValue> sourceDataTagValues, final boolean controlTags) {
+    if (controlTags) {
+      processControlTags(sourceDataTagValues);
+    } else {
+      processDataTags(sourceDataTagValues);
+    }
+  }
+
+  /**
+   * Records the reception latency of all values of the update.
    *
-   * <p>Does not synchronize on the control tag, as this is taken care of in the DataTagFacade.
+   * @param dataTagValueUpdate the update decoded from the JMS message
+   */
+  private void recordReception(final DataTagValueUpdate dataTagValueUpdate) {
+    if (dataTagValueUpdate.getValues() != null) {
+      long receptionTime = System.currentTimeMillis();
+      for (SourceDataTagValue sourceDataTagValue : dataTagValueUpdate.getValues()) {
+        updateLatencyMonitor.record(UpdateStage.RECEPTION, sourceDataTagValue, receptionTime);
+      }
+    }
+  }
+
+  /**
+   * Performs all operations needed on reception of control tags. Currently very similar to
+   * processDataTags method and uses the {@link ControlTagFacade} to update the ControlTagCacheObjects
+   * in a single batch. The control tags updated in the cache are then passed to the supervision manager.
    *
+   * <p>Does not synchronize on the control tags, as this is taken care of in the facade.
    *
-   * @param sourceDataTagValue the incoming control tag
+   * @param sourceDataTagValues the incoming control tag values
    */
-  private void processControl(final SourceDataTagValue sourceDataTagValue) {
-    try {
-      log.trace("Processing incoming update for control tag #" + sourceDataTagValue.getId());
-
-      Event<Boolean> updatedInCache = controlTagFacade.updateFromSource(sourceDataTagValue.getId(), sourceDataTagValue);
-      if (updatedInCache.getReturnValue()) {
+  private void processControlTags(final List<SourceDataTagValue> sourceDataTagValues) {
+    log.trace("Processing incoming update for {} control tags", sourceDataTagValues.size());
+
+    List<Event<Boolean>> updatedInCache = controlTagFacade.updateFromSource(sourceDataTagValues);
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      if (updatedInCache.get(i).getReturnValue()) {
+        SourceDataTagValue sourceDataTagValue = sourceDataTagValues.get(i);
+        updateLatencyMonitor.record(UpdateStage.CACHE_UPDATE, sourceDataTagValue, updatedInCache.get(i).getEventTime());
         supervisionManager.processControlTag(sourceDataTagValue); //filter out events that were updated later in the cache
       }
-    } catch (CacheElementNotFoundException cacheEx) {
-      log.warn("Received unrecognized control tag #" + sourceDataTagValue.getId() + ": ignoring the update");
     }
   }
 
   /**
-   * Performs the necessary operations on reception of a data tag.
-   * @param sourceDataTagValue the incoming data tag value
-   * @throw NullPointerException if passed null SourceDataTagValue
+   * Performs the necessary operations on reception of data tags, updating them in
+   * the cache in a single batch (or on the ingest lanes, if enabled). Successive
+   * values of the same tag are conflated first, if enabled.
+   * @param sourceDataTagValues the incoming data tag values
    */
-  private void processDataTag(final SourceDataTagValue sourceDataTagValue) {
-    try {
-      log.trace("Processing incoming update for datatag #" + sourceDataTagValue.getId());
-      dataTagFacade.updateFromSource(sourceDataTagValue.getId(), sourceDataTagValue);
-
-    } catch (CacheElementNotFoundException cacheEx) {
-      log.warn("Received unrecognized data tag #" + sourceDataTagValue.getId() + ": ignoring the update");
+  private void processDataTags(final List<SourceDataTagValue> sourceDataTagValues) {
+    log.trace("Processing incoming update for {} datatags", sourceDataTagValues.size());
+
+    // the event time is the cache timestamp of the update
+    List<Event<Boolean>> updatedInCache = updateConflator.updateFromSource(sourceDataTagValues,
+        values -> updateIngestLanes.isEnabled() ? updateIngestLanes.updateFromSource(values) : dataTagFacade.updateFromSource(values));
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      if (updatedInCache.get(i).getReturnValue()) {
+        updateLatencyMonitor.record(UpdateStage.CACHE_UPDATE, sourceDataTagValues.get(i), updatedInCache.get(i).getEventTime());
+      }
     }
   }
 
@@ -269,13 +394,33 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
   }
 
   /**
-   * Function to check all possible process PIK scenarios
+   * Function to check all possible process PIK scenarios.
+   *
+   * <p>Updates sent with the PIK of the connected Process are accepted
+   * without locking (except in "multi" mode); all other cases are checked against the Process cache
+   * under the Process lock.
+   *
+   * @param dataTagValueUpdate Update with all information
+   * @return {@link #IGNORE_UPDATE} if PIK registered in server but no PIK or wrong PIK sent
+   *         {@link #ACCEPT_UPDATE} in any other case
+   */
+  Boolean checkProcessPIK(final DataTagValueUpdate dataTagValueUpdate) {
+    Long processPIK = dataTagValueUpdate.getProcessPIK();
+    if (localPIKs && processPIK != null && processPIK.equals(processPIKs.get(dataTagValueUpdate.getProcessId()))) {
+      return ACCEPT_UPDATE;
+    }
+    return checkProcessPIKInCache(dataTagValueUpdate);
+  }
+
+  /**
+   * Checks the PIK of the update against the Process in the cache, saving the
+   * PIK of the update if none is registered in the server.
    *
    * @param dataTagValueUpdate Update with all information
    * @return {@link #IGNORE_UPDATE} if PIK registered in server but no PIK or wrong PIK sent
    *         {@link #ACCEPT_UPDATE} in any other case
    */
-  private Boolean checkProcessPIK(final DataTagValueUpdate dataTagValueUpdate) {
+  private Boolean checkProcessPIKInCache(final DataTagValueUpdate dataTagValueUpdate) {
     Process process;
 
     processCache.acquireWriteLockOnKey(dataTagValueUpdate.getProcessId());
@@ -299,6 +444,10 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
           // TODO: Send disconnection
           return IGNORE_UPDATE;
         }
+        // the local PIK was missing (e.g. after a server restart): set it
+        if (localPIKs) {
+          processPIKs.put(process.getId(), process.getProcessPIK());
+        }
       }
       // If no PIK register in server cache (ie. corrupted) save the PIK and Accept
       else {
@@ -327,4 +476,32 @@ public class SourceUpdateManagerImpl implements SourceUpdateManager, SessionAwar
     // If no problems we accept the update
     return ACCEPT_UPDATE;
   }
+
+  @Override
+  public void removeProcessPIK(final Long processId) {
+    processPIKs.remove(processId);
+  }
+
+  /**
+   * Keeps the local PIKs in line with the Process cache. Notified on the thread
+   * updating the cache, while the Process lock is held (as is the local PIK
+   * set in {@link SourceUpdateManagerImpl#checkProcessPIKInCache}), so the
+   * local PIK always follows the latest Process update.
+   */
+  private class ProcessPIKListener implements C2monCacheListener<Process> {
+
+    @Override
+    public void notifyElementUpdated(final Process process) {
+      if (process.getProcessPIK() != null) {
+        processPIKs.put(process.getId(), process.getProcessPIK());
+      } else {
+        processPIKs.remove(process.getId());
+      }
+    }
+
+    @Override
+    public void confirmStatus(final Process process) {
+      notifyElementUpdated(process);
+    }
+  }
 }
@@ -0,0 +1,460 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Admission stage of the incoming values, protecting the control tags and
+ * high priority values from bulk low priority traffic. The values of a message
+ * are queued by priority class (control tags, high priority, low priority) in
+ * bounded queues, drained by a pool of worker threads in weighted round-robin
+ * (<code>admissionWeights</code>, 4:2:1 by default).
+ *
+ * <p>High priority values are the values with {@link DataTagAddress#PRIORITY_HIGH}
+ * or sent with guaranteed delivery. The calling JMS thread waits for the
+ * control tag and high priority values to be processed, so that messages are
+ * only acknowledged once these are written; if they are not processed within
+ * <code>admissionTimeout</code>, or the stage is shut down, an exception is
+ * thrown and the message is rolled back. If the queue of one of these classes
+ * is full, the JMS thread waits for room.
+ *
+ * <p>The low priority values are handled according to the
+ * <code>lowPriorityOverload</code> policy:
+ * <ul>
+ * <li>{@link #CONFLATE} (default): the JMS thread does not wait for the values
+ * to be processed, so the queue holds values rather than blocked callers. If
+ * the queue is full, the values are set aside, only the last received value
+ * of each tag, and written in their own turn of the round-robin, with the
+ * weight of the low priority queue unless a fourth weight is set
+ * <li>{@link #SHED}: as above, but the values are dropped if the queue is full
+ * <li>{@link #BLOCK}: the JMS thread waits, as for the other classes
+ * </ul>
+ *
+ * <p>With the conflate and shed policies, the low priority values are
+ * acknowledged once queued or set aside, before they are written: the values
+ * still queued or set aside are lost on a crash or on shutdown. Only active if
+ * <code>c2mon.server.daq.jms.update.admissionControl</code> is set.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "cern.c2mon:name=updateAdmission")
+public class UpdateAdmission {
+
+  public static final String CONFLATE = "conflate";
+
+  public static final String SHED = "shed";
+
+  public static final String BLOCK = "block";
+
+  private static final int CONTROL = 0;
+
+  private static final int HIGH = 1;
+
+  private static final int LOW = 2;
+
+  private static final String[] CLASS_NAMES = {"control", "high", "low"};
+
+  /**
+   * Turn of the values set aside in the round-robin, after the queues.
+   */
+  private static final int OVERFLOW = CLASS_NAMES.length;
+
+  private final DaqProperties.Jms.Update properties;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition notEmpty = lock.newCondition();
+
+  private final Condition notFull = lock.newCondition();
+
+  private final List<ArrayDeque<AdmissionTask>> queues = new ArrayList<>(CLASS_NAMES.length);
+
+  /**
+   * Remaining tasks each class (and the values set aside) may run in the
+   * current round.
+   */
+  private final int[] credits = new int[CLASS_NAMES.length + 1];
+
+  /**
+   * Low priority values over the capacity of the queue, last received of
+   * each tag (conflate policy).
+   */
+  private final Map<Long, SourceDataTagValue> overflow = new LinkedHashMap<>();
+
+  private final LongAdder shedValues = new LongAdder();
+
+  private final LongAdder conflatedValues = new LongAdder();
+
+  private Consumer<List<SourceDataTagValue>> controlTagProcessor;
+
+  private Consumer<List<SourceDataTagValue>> dataTagProcessor;
+
+  private final List<Thread> workers = new ArrayList<>();
+
+  private volatile boolean running;
+
+  @Autowired
+  public UpdateAdmission(final DaqProperties properties) {
+    this.properties = properties.getJms().getUpdate();
+    for (int i = 0; i < CLASS_NAMES.length; i++) {
+      queues.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * @return true if the incoming values go through the admission stage
+   */
+  public boolean isEnabled() {
+    return properties.isAdmissionControl();
+  }
+
+  /**
+   * Starts the worker threads.
+   *
+   * @param controlTagProcessor processes the control tag values
+   * @param dataTagProcessor processes the DataTag values
+   * @throws IllegalArgumentException if less than one worker is configured
+   */
+  public void start(final Consumer<List<SourceDataTagValue>> controlTagProcessor,
+                    final Consumer<List<SourceDataTagValue>> dataTagProcessor) {
+    if (properties.getAdmissionWorkers() < 1) {
+      throw new IllegalArgumentException("At least one admission worker is needed if admission control is enabled (admissionWorkers = "
+          + properties.getAdmissionWorkers() + ")");
+    }
+    this.controlTagProcessor = controlTagProcessor;
+    this.dataTagProcessor = dataTagProcessor;
+    running = true;
+    for (int i = 0; i < properties.getAdmissionWorkers(); i++) {
+      Thread worker = new Thread(this::drain, "UpdateAdmission-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    log.info("Admission control of the incoming values enabled, with {} workers", workers.size());
+  }
+
+  /**
+   * Stops the worker threads; values still queued are not processed, and their
+   * callers (as well as any later ones) receive an exception. The low priority
+   * values already acknowledged (queued without a waiting caller, or set
+   * aside) are lost.
+   */
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    failQueued();
+  }
+
+  /**
+   * Fails the queued tasks and wakes up the callers waiting for room, once
+   * stopped.
+   */
+  private void failQueued() {
+    lock.lock();
+    try {
+      IllegalStateException stopped = new IllegalStateException("Admission stage stopped");
+      int lostValues = overflow.size();
+      for (ArrayDeque<AdmissionTask> queue : queues) {
+        AdmissionTask task;
+        while ((task = queue.poll()) != null) {
+          if (!isAwaited(task.priorityClass)) {
+            lostValues += task.values.size();
+          }
+          task.result.completeExceptionally(stopped);
+        }
+      }
+      overflow.clear();
+      if (lostValues > 0) {
+        log.warn("Admission stage stopped - {} acknowledged low priority values were not written", lostValues);
+      }
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queues the values by priority class, and waits for their processing
+   * (except for the low priority values, unless the overload policy is
+   * {@link #BLOCK}).
+   *
+   * @param values the incoming values of a message
+   * @throws IllegalStateException if the values were not processed in time, or
+   *         the stage is stopped
+   */
+  public void process(final Collection<SourceDataTagValue> values) {
+    List<List<SourceDataTagValue>> valuesByClass = new ArrayList<>(CLASS_NAMES.length);
+    for (int i = 0; i < CLASS_NAMES.length; i++) {
+      valuesByClass.add(new ArrayList<>());
+    }
+    for (SourceDataTagValue value : values) {
+      valuesByClass.get(priorityClass(value)).add(value);
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getAdmissionTimeout());
+    List<CompletableFuture<Void>> futures = new ArrayList<>(CLASS_NAMES.length);
+    try {
+      for (int i = 0; i < CLASS_NAMES.length; i++) {
+        if (!valuesByClass.get(i).isEmpty()) {
+          CompletableFuture<Void> future = submit(i, valuesByClass.get(i), deadline);
+          if (isAwaited(i)) {
+            futures.add(future);
+          }
+        }
+      }
+      for (CompletableFuture<Void> future : futures) {
+        future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for admission of the incoming values", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Error while processing the incoming values", e.getCause());
+    } catch (TimeoutException e) {
+      throw new IllegalStateException("Incoming values not processed by the admission stage in time", e);
+    }
+  }
+
+  /**
+   * @param priorityClass a priority class
+   * @return true if the JMS thread waits for the values of the class to be
+   *         processed before the message is acknowledged
+   */
+  private boolean isAwaited(final int priorityClass) {
+    return priorityClass != LOW || BLOCK.equals(properties.getLowPriorityOverload());
+  }
+
+  private static int priorityClass(final SourceDataTagValue value) {
+    if (value.isControlTag()) {
+      return CONTROL;
+    }
+    return value.getPriority() == DataTagAddress.PRIORITY_HIGH || value.isGuaranteedDelivery() ? HIGH : LOW;
+  }
+
+  /**
+   * Queues the values of a class, applying the overload policy if the queue
+   * is full.
+   *
+   * @param deadline the time until which to wait for room, as {@link System#nanoTime()}
+   * @return completed once the values are processed (or shed, or set aside)
+   * @throws TimeoutException if no room was made in time
+   */
+  private CompletableFuture<Void> submit(final int priorityClass, final List<SourceDataTagValue> values, final long deadline)
+      throws InterruptedException, TimeoutException {
+    AdmissionTask task = new AdmissionTask(priorityClass, values);
+    lock.lock();
+    try {
+      ArrayDeque<AdmissionTask> queue = queues.get(priorityClass);
+      while (running && queue.size() >= properties.getAdmissionQueueCapacity()) {
+        if (priorityClass == LOW && SHED.equals(properties.getLowPriorityOverload())) {
+          shedValues.add(values.size());
+          log.trace("Shedding {} low priority values", values.size());
+          return CompletableFuture.completedFuture(null);
+        }
+        if (priorityClass == LOW && CONFLATE.equals(properties.getLowPriorityOverload())) {
+          for (SourceDataTagValue value : values) {
+            if (overflow.put(value.getId(), value) != null) {
+              conflatedValues.increment();
+            }
+          }
+          notEmpty.signal();
+          return CompletableFuture.completedFuture(null);
+        }
+        if (notFull.awaitNanos(deadline - System.nanoTime()) <= 0) {
+          throw new TimeoutException();
+        }
+      }
+      if (!running) {
+        task.result.completeExceptionally(new IllegalStateException("Admission stage stopped"));
+        return task.result;
+      }
+      queue.add(task);
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+    return task.result;
+  }
+
+  /**
+   * Worker loop. A task is always completed, whatever its processing throws;
+   * the tasks still queued are failed once the workers stop.
+   */
+  private void drain() {
+    try {
+      while (running) {
+        AdmissionTask task;
+        try {
+          task = next();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        try {
+          if (task.priorityClass == CONTROL) {
+            controlTagProcessor.accept(task.values);
+          } else {
+            dataTagProcessor.accept(task.values);
+          }
+          task.result.complete(null);
+        } catch (Throwable e) {
+          log.error("Exception caught while processing " + task.values.size() + " incoming "
+              + CLASS_NAMES[task.priorityClass] + " priority values", e);
+          task.result.completeExceptionally(e);
+        }
+      }
+    } finally {
+      if (!running) {
+        failQueued();
+      }
+    }
+  }
+
+  /**
+   * Weighted round-robin over the queues and the values set aside.
+   *
+   * @return the next task to process
+   */
+  private AdmissionTask next() throws InterruptedException {
+    lock.lock();
+    try {
+      while (true) {
+        for (int refill = 0; refill < 2; refill++) {
+          for (int i = 0; i < CLASS_NAMES.length; i++) {
+            if (credits[i] > 0 && !queues.get(i).isEmpty()) {
+              credits[i]--;
+              notFull.signalAll();
+              return queues.get(i).poll();
+            }
+          }
+          if (credits[OVERFLOW] > 0 && !overflow.isEmpty()) {
+            credits[OVERFLOW]--;
+            AdmissionTask task = new AdmissionTask(LOW, new ArrayList<>(overflow.values()));
+            overflow.clear();
+            return task;
+          }
+          for (int i = 0; i < credits.length; i++) {
+            credits[i] = weight(i);
+          }
+        }
+        notEmpty.await();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param slot a priority class, or {@link #OVERFLOW}
+   * @return the number of tasks the slot may run in a round
+   */
+  private int weight(final int slot) {
+    int[] weights = properties.getAdmissionWeights();
+    if (slot < weights.length) {
+      return Math.max(1, weights[slot]);
+    }
+    return slot == OVERFLOW ? weight(LOW) : 1;
+  }
+
+  /**
+   * For management only.
+   *
+   * @return the number of messages waiting in each priority class queue, and
+   *         the number of values set aside
+   */
+  @ManagedAttribute(description = "Number of messages waiting in each priority class queue, and values set aside on overload")
+  public Map<String, Integer> getQueueDepths() {
+    Map<String, Integer> depths = new LinkedHashMap<>();
+    lock.lock();
+    try {
+      for (int i = 0; i < CLASS_NAMES.length; i++) {
+        depths.put(CLASS_NAMES[i], queues.get(i).size());
+      }
+      depths.put("overflow", overflow.size());
+    } finally {
+      lock.unlock();
+    }
+    return depths;
+  }
+
+  @ManagedAttribute(description = "Number of low priority values dropped on overload")
+  public long getShedValues() {
+    return shedValues.sum();
+  }
+
+  @ManagedAttribute(description = "Number of low priority values replaced by a newer value of the tag on overload")
+  public long getConflatedValues() {
+    return conflatedValues.sum();
+  }
+
+  @ManagedOperation(description = "Resets the shed and conflated counters")
+  public void resetCounters() {
+    shedValues.reset();
+    conflatedValues.reset();
+  }
+
+  /**
+   * Values of one message for one priority class, with the result of their
+   * processing.
+   */
+  private static final class AdmissionTask {
+
+    private final int priorityClass;
+
+    private final List<SourceDataTagValue> values;
+
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    private AdmissionTask(final int priorityClass, final List<SourceDataTagValue> values) {
+      this.priorityClass = priorityClass;
+      this.values = values;
+    }
+  }
+}
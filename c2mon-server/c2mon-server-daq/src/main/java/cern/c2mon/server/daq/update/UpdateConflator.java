@@ -0,0 +1,222 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import cern.c2mon.server.cache.DataTagCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Conflates the incoming values of a DataTag received in the same batch: only
+ * the newest value of the tag is written to the cache, so that the rules,
+ * alarms and clients are only notified once per batch. A batch is the DataTag
+ * values of a message, or of all messages written together by an ingest lane.
+ *
+ * <p>Values are only conflated if their priority is listed in
+ * <code>c2mon.server.daq.jms.update.conflatedPriorities</code>. The values
+ * sent with guaranteed delivery and the values of logged tags are never
+ * conflated, so that their full history is kept. Neither are the values of
+ * tags not in the cache, which are left to the cache update to reject.
+ *
+ * <p>The newest value is the one the cache would keep: the latest by DAQ
+ * timestamp (or by source timestamp if not set), the last received if equal.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "cern.c2mon:name=updateConflator")
+public class UpdateConflator {
+
+  private final DataTagCache dataTagCache;
+
+  private final Set<Integer> conflatedPriorities;
+
+  /**
+   * Number of DataTag values received, and conflated into a newer value.
+   */
+  private final LongAdder receivedValues = new LongAdder();
+
+  private final LongAdder conflatedValues = new LongAdder();
+
+  @Autowired
+  public UpdateConflator(final DataTagCache dataTagCache, final DaqProperties properties) {
+    this.dataTagCache = dataTagCache;
+    this.conflatedPriorities = properties.getJms().getUpdate().getConflatedPriorities();
+  }
+
+  /**
+   * @return true if conflation is enabled for at least one priority
+   */
+  public boolean isEnabled() {
+    return !conflatedPriorities.isEmpty();
+  }
+
+  /**
+   * Writes the newest value of each conflatable tag of the batch, and all
+   * other values, with the given writer.
+   *
+   * @param sourceDataTagValues the incoming DataTag values, in the order received
+   * @param writer updates the cache with the values, returning the results in
+   *               the order of the values
+   * @return the results of the cache updates, in the order of the values; the
+   *         result of a conflated value is <code>false</code> (not updated)
+   */
+  public List<Event<Boolean>> updateFromSource(final List<SourceDataTagValue> sourceDataTagValues,
+                                               final Function<List<SourceDataTagValue>, List<Event<Boolean>>> writer) {
+    receivedValues.add(sourceDataTagValues.size());
+    return conflateBatch(sourceDataTagValues, writer);
+  }
+
+  /**
+   * Same as {@link #updateFromSource(List, Function)}, for values already
+   * counted as received (i.e. the batches of the ingest lanes).
+   */
+  List<Event<Boolean>> conflateBatch(final List<SourceDataTagValue> sourceDataTagValues,
+                                     final Function<List<SourceDataTagValue>, List<Event<Boolean>>> writer) {
+    boolean[] superseded = findSuperseded(sourceDataTagValues);
+    if (superseded == null) {
+      return writer.apply(sourceDataTagValues);
+    }
+
+    List<SourceDataTagValue> written = new ArrayList<>(sourceDataTagValues.size());
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      if (!superseded[i]) {
+        written.add(sourceDataTagValues.get(i));
+      }
+    }
+    conflatedValues.add(sourceDataTagValues.size() - written.size());
+    log.trace("Conflated {} incoming values into {}", sourceDataTagValues.size(), written.size());
+
+    List<Event<Boolean>> writtenResults = writer.apply(written);
+    List<Event<Boolean>> results = new ArrayList<>(sourceDataTagValues.size());
+    Event<Boolean> notUpdated = new Event<>(System.currentTimeMillis(), Boolean.FALSE);
+    int nextWritten = 0;
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      results.add(superseded[i] ? notUpdated : writtenResults.get(nextWritten++));
+    }
+    return results;
+  }
+
+  /**
+   * @return for each value, true if a newer value of the tag is written in its
+   *         place; null if no value is conflated
+   */
+  private boolean[] findSuperseded(final List<SourceDataTagValue> sourceDataTagValues) {
+    if (sourceDataTagValues.size() < 2 || !isEnabled()) {
+      return null;
+    }
+    // index of the newest value of each tag; -1 if all values of the tag are kept
+    Map<Long, Integer> newestOfTag = new HashMap<>();
+    Set<Long> conflatableTags = new HashSet<>();
+    boolean[] superseded = null;
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      SourceDataTagValue value = sourceDataTagValues.get(i);
+      if (!isConflatable(value)) {
+        continue;
+      }
+      Integer previous = newestOfTag.putIfAbsent(value.getId(), i);
+      if (previous != null && previous >= 0) {
+        // the cache is looked up once per tag, on its first duplicate
+        if (!conflatableTags.contains(value.getId())) {
+          if (!isConflatableTag(value.getId())) {
+            newestOfTag.put(value.getId(), -1);
+            continue;
+          }
+          conflatableTags.add(value.getId());
+        }
+        if (superseded == null) {
+          superseded = new boolean[sourceDataTagValues.size()];
+        }
+        if (isOlder(value, sourceDataTagValues.get(previous))) {
+          superseded[i] = true;
+        } else {
+          superseded[previous] = true;
+          newestOfTag.put(value.getId(), i);
+        }
+      }
+    }
+    return superseded;
+  }
+
+  private boolean isConflatable(final SourceDataTagValue value) {
+    return !value.isGuaranteedDelivery() && conflatedPriorities.contains(value.getPriority());
+  }
+
+  /**
+   * @return true if the tag is in the cache and not logged; all values of an
+   *         unknown tag are passed on to the writer, which rejects them
+   */
+  private boolean isConflatableTag(final Long tagId) {
+    try {
+      return !dataTagCache.get(tagId).isLogged();
+    } catch (CacheElementNotFoundException e) {
+      log.trace("Tag {} not found in the cache - its values are not conflated", tagId);
+      return false;
+    }
+  }
+
+  /**
+   * Same comparison as the cache update filter: the DAQ timestamps if both
+   * are set, the source timestamps otherwise.
+   */
+  private static boolean isOlder(final SourceDataTagValue value, final SourceDataTagValue other) {
+    Timestamp timestamp;
+    Timestamp otherTimestamp;
+    if (value.getDaqTimestamp() != null && other.getDaqTimestamp() != null) {
+      timestamp = value.getDaqTimestamp();
+      otherTimestamp = other.getDaqTimestamp();
+    } else {
+      timestamp = value.getTimestamp();
+      otherTimestamp = other.getTimestamp();
+    }
+    return timestamp != null && otherTimestamp != null && timestamp.before(otherTimestamp);
+  }
+
+  @ManagedAttribute(description = "Number of incoming DataTag values received")
+  public long getReceivedValues() {
+    return receivedValues.sum();
+  }
+
+  @ManagedAttribute(description = "Number of incoming DataTag values conflated into a newer value of the tag")
+  public long getConflatedValues() {
+    return conflatedValues.sum();
+  }
+
+  @ManagedOperation(description = "Resets the conflation counters")
+  public void resetCounters() {
+    receivedValues.reset();
+    conflatedValues.reset();
+  }
+}
@@ -0,0 +1,323 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import cern.c2mon.server.cache.DataTagFacade;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Single-writer ingest lanes for the incoming DataTag values. The tags are
+ * partitioned between the lanes by id, and each lane applies the values of its
+ * tags in the order received, on its own thread: values of the same tag are
+ * never written concurrently, and never overtake each other.
+ *
+ * <p>A lane writes all values queued since its previous write in a single batch
+ * to the cache (see {@link DataTagFacade#updateFromSource(java.util.Collection)}),
+ * up to <code>ingestLaneMaxBatch</code> values, conflating the values of the
+ * same tag across messages if enabled (see {@link UpdateConflator}). The
+ * calling JMS thread waits for its values to be written, so that messages are
+ * only acknowledged once processed; if they are not written within
+ * <code>ingestLaneTimeout</code>, or the lanes are stopped, an exception is
+ * thrown and the message is rolled back.
+ *
+ * <p>Only active if <code>c2mon.server.daq.jms.update.ingestLanes</code> is
+ * set; in that case each Process queue is also read by a single consumer, so
+ * that the messages of a Process are processed in order.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "cern.c2mon:name=updateIngestLanes")
+public class UpdateIngestLanes {
+
+  private final DataTagFacade dataTagFacade;
+
+  private final DaqProperties properties;
+
+  private final UpdateConflator updateConflator;
+
+  private Lane[] lanes = new Lane[0];
+
+  @Autowired
+  public UpdateIngestLanes(final DataTagFacade dataTagFacade, final DaqProperties properties,
+                           final UpdateConflator updateConflator) {
+    this.dataTagFacade = dataTagFacade;
+    this.properties = properties;
+    this.updateConflator = updateConflator;
+  }
+
+  /**
+   * Starts the lane threads, if enabled.
+   */
+  @PostConstruct
+  public void init() {
+    int laneCount = properties.getJms().getUpdate().getIngestLanes();
+    if (laneCount > 0) {
+      log.info("Processing incoming DataTag values on {} ingest lanes", laneCount);
+      lanes = new Lane[laneCount];
+      for (int i = 0; i < laneCount; i++) {
+        lanes[i] = new Lane("IngestLane-" + i, properties.getJms().getUpdate().getIngestLaneMaxBatch());
+        lanes[i].thread.start();
+      }
+    }
+  }
+
+  /**
+   * Stops the lane threads; values still queued are not written, and their
+   * callers (as well as any later ones) receive an exception.
+   */
+  @PreDestroy
+  public void shutdown() {
+    for (Lane lane : lanes) {
+      lane.stop();
+    }
+  }
+
+  /**
+   * @return true if the incoming values are processed on the lanes
+   */
+  public boolean isEnabled() {
+    return lanes.length > 0;
+  }
+
+  /**
+   * Writes the values to the cache on their lanes, and waits for completion.
+   *
+   * @param sourceDataTagValues the incoming DataTag values
+   * @return the results of the cache updates, in the order of the values (see
+   *         {@link DataTagFacade#updateFromSource(java.util.Collection)})
+   * @throws IllegalStateException if the values were not written in time, or
+   *         the lanes are stopped
+   */
+  public List<Event<Boolean>> updateFromSource(final List<SourceDataTagValue> sourceDataTagValues) {
+    int[] laneOfValue = new int[sourceDataTagValues.size()];
+    List<List<SourceDataTagValue>> valuesByLane = new ArrayList<>(lanes.length);
+    for (int i = 0; i < lanes.length; i++) {
+      valuesByLane.add(null);
+    }
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      int lane = Math.floorMod(Long.hashCode(sourceDataTagValues.get(i).getId()), lanes.length);
+      laneOfValue[i] = lane;
+      if (valuesByLane.get(lane) == null) {
+        valuesByLane.set(lane, new ArrayList<>());
+      }
+      valuesByLane.get(lane).add(sourceDataTagValues.get(i));
+    }
+
+    List<CompletableFuture<List<Event<Boolean>>>> futures = new ArrayList<>(lanes.length);
+    for (int i = 0; i < lanes.length; i++) {
+      futures.add(valuesByLane.get(i) == null ? null : lanes[i].submit(valuesByLane.get(i)));
+    }
+
+    List<List<Event<Boolean>>> resultsByLane = new ArrayList<>(lanes.length);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getJms().getUpdate().getIngestLaneTimeout());
+    for (CompletableFuture<List<Event<Boolean>>> future : futures) {
+      resultsByLane.add(future == null ? null : await(future, deadline));
+    }
+
+    List<Event<Boolean>> results = new ArrayList<>(sourceDataTagValues.size());
+    int[] nextResultOfLane = new int[lanes.length];
+    for (int i = 0; i < sourceDataTagValues.size(); i++) {
+      int lane = laneOfValue[i];
+      results.add(resultsByLane.get(lane).get(nextResultOfLane[lane]++));
+    }
+    return results;
+  }
+
+  /**
+   * Waits for the write of a lane task, until the deadline.
+   *
+   * @param future the result of the task
+   * @param deadline the deadline, as {@link System#nanoTime()}
+   * @return the results of the cache updates of the task
+   * @throws IllegalStateException if the task failed with an error, was not
+   *         completed in time, or the waiting thread was interrupted
+   */
+  private static List<Event<Boolean>> await(final CompletableFuture<List<Event<Boolean>>> future, final long deadline) {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Error while writing the incoming values", e.getCause());
+    } catch (TimeoutException e) {
+      throw new IllegalStateException("Incoming values not written by the ingest lane in time", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the ingest lane", e);
+    }
+  }
+
+  /**
+   * For management only.
+   *
+   * @return the number of values waiting in each lane
+   */
+  @ManagedAttribute(description = "Number of DataTag values waiting in each ingest lane")
+  public List<Integer> getLaneBacklogs() {
+    List<Integer> backlogs = new ArrayList<>(lanes.length);
+    for (Lane lane : lanes) {
+      backlogs.add(lane.backlog.get());
+    }
+    return backlogs;
+  }
+
+  /**
+   * Values of one message for one lane, with the result of their write.
+   */
+  private static final class LaneTask {
+
+    private final List<SourceDataTagValue> values;
+
+    private final CompletableFuture<List<Event<Boolean>>> result = new CompletableFuture<>();
+
+    private LaneTask(final List<SourceDataTagValue> values) {
+      this.values = values;
+    }
+  }
+
+  /**
+   * Writes the queued values of its tags in batches, on a single thread.
+   */
+  private final class Lane implements Runnable {
+
+    private final BlockingQueue<LaneTask> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Number of values queued.
+     */
+    private final AtomicInteger backlog = new AtomicInteger(0);
+
+    private final int maxBatch;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private Lane(final String name, final int maxBatch) {
+      this.maxBatch = maxBatch;
+      this.thread = new Thread(this, name);
+      thread.setDaemon(true);
+    }
+
+    /**
+     * Queues the values, unless the lane is stopped.
+     *
+     * <p>The lane is checked again once the task is queued: if it stopped in
+     * the meantime, the task is either taken back here or failed by the lane
+     * thread, so it is always completed.
+     */
+    private CompletableFuture<List<Event<Boolean>>> submit(final List<SourceDataTagValue> values) {
+      LaneTask task = new LaneTask(values);
+      if (!running) {
+        task.result.completeExceptionally(new IllegalStateException("Ingest lane stopped"));
+        return task.result;
+      }
+      backlog.addAndGet(values.size());
+      queue.add(task);
+      if (!running && queue.remove(task)) {
+        backlog.addAndGet(-values.size());
+        task.result.completeExceptionally(new IllegalStateException("Ingest lane stopped"));
+      }
+      return task.result;
+    }
+
+    private void stop() {
+      running = false;
+      thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+      List<LaneTask> tasks = new ArrayList<>();
+      List<SourceDataTagValue> batch = new ArrayList<>();
+      try {
+        while (running) {
+          try {
+            tasks.add(queue.take());
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+          int batchSize = tasks.get(0).values.size();
+          LaneTask next;
+          while (batchSize < maxBatch && (next = queue.peek()) != null && batchSize + next.values.size() <= maxBatch) {
+            tasks.add(queue.poll());
+            batchSize += next.values.size();
+          }
+          for (LaneTask task : tasks) {
+            batch.addAll(task.values);
+          }
+          backlog.addAndGet(-batch.size());
+          write(tasks, batch);
+          tasks.clear();
+          batch.clear();
+        }
+      } finally {
+        running = false;
+        IllegalStateException stopped = new IllegalStateException("Ingest lane stopped");
+        for (LaneTask task : tasks) {
+          task.result.completeExceptionally(stopped);
+        }
+        LaneTask task;
+        while ((task = queue.poll()) != null) {
+          backlog.addAndGet(-task.values.size());
+          task.result.completeExceptionally(stopped);
+        }
+      }
+    }
+
+    private void write(final List<LaneTask> tasks, final List<SourceDataTagValue> batch) {
+      try {
+        List<Event<Boolean>> results = tasks.size() > 1
+            ? updateConflator.conflateBatch(batch, dataTagFacade::updateFromSource)
+            : dataTagFacade.updateFromSource(batch);
+        int offset = 0;
+        for (LaneTask task : tasks) {
+          task.result.complete(new ArrayList<>(results.subList(offset, offset + task.values.size())));
+          offset += task.values.size();
+        }
+      } catch (Throwable e) {
+        log.error("Exception caught while writing a batch of " + batch.size() + " incoming values", e);
+        for (LaneTask task : tasks) {
+          task.result.completeExceptionally(e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the processing load of the incoming DAQ update messages, per
+ * Process, for scaling the JMS consumers of each Process (see
+ * {@link ConsumerScalingPolicy}).
+ */
+@Component
+public class UpdateLoadMonitor {
+
+  /**
+   * Load since the last call to {@link #drainLoads()}, by Process id.
+   */
+  private final ConcurrentMap<Long, LoadCounter> loads = new ConcurrentHashMap<>();
+
+  /**
+   * Highest number of update threads active at once since the last drain.
+   */
+  private final AtomicInteger peakActiveThreads = new AtomicInteger(0);
+
+  /**
+   * Records the processing of one update message.
+   *
+   * @param processId the Process the message was received from
+   * @param busyNanos time spent processing the message
+   * @param activeThreads number of update threads active while processing it
+   */
+  public void record(final Long processId, final long busyNanos, final int activeThreads) {
+    LoadCounter counter = loads.get(processId);
+    if (counter == null) {
+      counter = loads.computeIfAbsent(processId, id -> new LoadCounter());
+    }
+    counter.messages.increment();
+    counter.busyNanos.add(busyNanos);
+    peakActiveThreads.accumulateAndGet(activeThreads, Math::max);
+  }
+
+  /**
+   * Returns and resets the load recorded for each Process.
+   *
+   * @return the load of each Process since the last call (Processes without
+   *         messages are not included)
+   */
+  public Map<Long, ConsumerLoad> drainLoads() {
+    Map<Long, ConsumerLoad> result = new HashMap<>();
+    for (Map.Entry<Long, LoadCounter> entry : loads.entrySet()) {
+      long messages = entry.getValue().messages.sumThenReset();
+      long busyNanos = entry.getValue().busyNanos.sumThenReset();
+      if (messages > 0) {
+        result.put(entry.getKey(), new ConsumerLoad(messages, busyNanos));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns and resets the peak number of active update threads.
+   *
+   * @return the highest number of update threads active at once since the
+   *         last call
+   */
+  public int drainPeakActiveThreads() {
+    return peakActiveThreads.getAndSet(0);
+  }
+
+  /**
+   * Load of the consumers of one Process over an interval.
+   */
+  public static final class ConsumerLoad {
+
+    private final long messages;
+
+    private final long busyNanos;
+
+    public ConsumerLoad(final long messages, final long busyNanos) {
+      this.messages = messages;
+      this.busyNanos = busyNanos;
+    }
+
+    /**
+     * @return the number of messages processed
+     */
+    public long getMessages() {
+      return messages;
+    }
+
+    /**
+     * @return the total processing time of the messages
+     */
+    public long getBusyNanos() {
+      return busyNanos;
+    }
+  }
+
+  private static final class LoadCounter {
+
+    private final LongAdder messages = new LongAdder();
+
+    private final LongAdder busyNanos = new LongAdder();
+  }
+}
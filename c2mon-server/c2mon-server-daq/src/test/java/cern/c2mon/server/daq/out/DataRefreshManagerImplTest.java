@@ -0,0 +1,201 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.out;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.DataTagFacade;
+import cern.c2mon.server.cache.ProcessCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.process.ProcessCacheObject;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.server.daq.update.UpdateConflator;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.DataTagValueUpdate;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+import cern.c2mon.shared.daq.datatag.SourceDataTagValueRequest;
+import cern.c2mon.shared.daq.datatag.SourceDataTagValueResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link DataRefreshManagerImpl}.
+ */
+public class DataRefreshManagerImplTest {
+
+  private DataRefreshManagerImpl dataRefreshManager;
+
+  private ProcessCommunicationManager processCommunicationManager;
+
+  /**
+   * Batches written to the cache.
+   */
+  private List<List<SourceDataTagValue>> batches = new CopyOnWriteArrayList<>();
+
+  /**
+   * Tag whose value cannot be written to the cache.
+   */
+  private static final long FAILING_TAG = 102L;
+
+  private DaqProperties properties;
+
+  /**
+   * Number of Processes being refreshed, and the maximum reached.
+   */
+  private AtomicInteger activeRefreshes = new AtomicInteger(0);
+  private AtomicInteger maxActiveRefreshes = new AtomicInteger(0);
+
+  /**
+   * Holds the value requests until the expected number of Processes are
+   * being refreshed together.
+   */
+  private volatile CyclicBarrier concurrentRequests;
+
+  @Before
+  public void setUp() {
+    DataTagFacade dataTagFacade = EasyMock.createMock(DataTagFacade.class);
+    EasyMock.expect(dataTagFacade.updateFromSource(EasyMock.<Collection<SourceDataTagValue>>anyObject())).andAnswer(() -> {
+      @SuppressWarnings("unchecked")
+      Collection<SourceDataTagValue> values = (Collection<SourceDataTagValue>) EasyMock.getCurrentArguments()[0];
+      for (SourceDataTagValue value : values) {
+        if (value.getId() == FAILING_TAG) {
+          throw new ClassCastException("Test exception");
+        }
+      }
+      batches.add(new ArrayList<>(values));
+      List<Event<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < values.size(); i++) {
+        results.add(new Event<>(System.currentTimeMillis(), Boolean.TRUE));
+      }
+      return results;
+    }).anyTimes();
+    EasyMock.expect(dataTagFacade.updateFromSource(EasyMock.anyLong(), EasyMock.anyObject(SourceDataTagValue.class))).andAnswer(() -> {
+      if ((Long) EasyMock.getCurrentArguments()[0] == FAILING_TAG) {
+        throw new ClassCastException("Test exception");
+      }
+      batches.add(Arrays.asList((SourceDataTagValue) EasyMock.getCurrentArguments()[1]));
+      return new Event<>(System.currentTimeMillis(), Boolean.TRUE);
+    }).anyTimes();
+
+    ProcessCache processCache = EasyMock.createMock(ProcessCache.class);
+    EasyMock.expect(processCache.getKeys()).andReturn(Arrays.asList(1L, 2L, 3L)).anyTimes();
+    processCommunicationManager = EasyMock.createMock(ProcessCommunicationManager.class);
+    for (long processId = 1; processId <= 3; processId++) {
+      EasyMock.expect(processCache.get(processId)).andReturn(new ProcessCacheObject(processId, "P_TEST" + processId, null, 100, 100)).anyTimes();
+    }
+    EasyMock.expect(processCache.get(4L)).andThrow(new CacheElementNotFoundException()).anyTimes();
+    // the answers are run concurrently, one per Process being refreshed
+    EasyMock.makeThreadSafe(processCommunicationManager, false);
+    EasyMock.expect(processCommunicationManager.requestDataTagValues(EasyMock.anyObject(SourceDataTagValueRequest.class)))
+        .andAnswer(() -> {
+          maxActiveRefreshes.accumulateAndGet(activeRefreshes.incrementAndGet(), Math::max);
+          try {
+            concurrentRequests.await(5, TimeUnit.SECONDS);
+          } finally {
+            activeRefreshes.decrementAndGet();
+          }
+          return createResponse(((SourceDataTagValueRequest) EasyMock.getCurrentArguments()[0]).getId(), 5);
+        }).times(3);
+    EasyMock.replay(dataTagFacade, processCache, processCommunicationManager);
+
+    properties = new DaqProperties();
+    properties.setRefreshBatchSize(2);
+    dataRefreshManager = new DataRefreshManagerImpl(dataTagFacade, processCommunicationManager, processCache,
+        new UpdateConflator(null, properties), properties);
+  }
+
+  @Test
+  public void testRefreshAllProcessesInBatches() {
+    properties.setRefreshParallelism(3);
+    concurrentRequests = new CyclicBarrier(3);
+    dataRefreshManager.refreshTagsForAllProcess();
+
+    EasyMock.verify(processCommunicationManager);
+    assertEquals(3, maxActiveRefreshes.get());
+    // 5 values per process in batches of 2; the failing batch of Process 1 is
+    // written one by one, only the value of tag 103 succeeding
+    assertEquals(9, batches.size());
+    int values = 0;
+    for (List<SourceDataTagValue> batch : batches) {
+      assertTrue(batch.size() <= 2);
+      values += batch.size();
+    }
+    assertEquals(14, values);
+    assertEquals(3, dataRefreshManager.getRefreshProgress().size());
+    assertTrue(dataRefreshManager.getRefreshProgress().get("P_TEST1").startsWith("refreshed 4 of 5 values"));
+    assertTrue(dataRefreshManager.getRefreshProgress().get("P_TEST2").startsWith("refreshed 5 of 5 values"));
+    assertTrue(dataRefreshManager.getRefreshProgress().get("P_TEST3").startsWith("refreshed 5 of 5 values"));
+  }
+
+  @Test
+  public void testRefreshParallelismBounded() {
+    properties.setRefreshParallelism(1);
+    concurrentRequests = new CyclicBarrier(1);
+    dataRefreshManager.refreshTagsForAllProcess();
+
+    EasyMock.verify(processCommunicationManager);
+    assertEquals(1, maxActiveRefreshes.get());
+    assertEquals(3, dataRefreshManager.getRefreshProgress().size());
+  }
+
+  @Test
+  public void testRefreshParallelismLimitedToProcessCount() {
+    properties.setRefreshParallelism(10);
+    concurrentRequests = new CyclicBarrier(3);
+    dataRefreshManager.refreshTagsForAllProcess();
+
+    EasyMock.verify(processCommunicationManager);
+    assertEquals(3, maxActiveRefreshes.get());
+  }
+
+  /**
+   * The values of a Process not in the cache are still requested, and its
+   * progress is published under its id.
+   */
+  @Test
+  public void testRefreshProcessNotInCache() {
+    concurrentRequests = new CyclicBarrier(1);
+    dataRefreshManager.refreshValuesForProcess(4L);
+
+    assertTrue(dataRefreshManager.getRefreshProgress().get("#4").startsWith("refreshed 5 of 5 values"));
+  }
+
+  private static SourceDataTagValueResponse createResponse(final long processId, final int size) {
+    DataTagValueUpdate update = new DataTagValueUpdate(processId);
+    for (int i = 0; i < size; i++) {
+      long id = processId * 100 + i;
+      update.addValue(new SourceDataTagValue(id, "tag " + id, false, i, new SourceDataTagQuality(),
+          new Timestamp(System.currentTimeMillis()), DataTagAddress.PRIORITY_LOW, false, null, DataTagAddress.TTL_FOREVER));
+    }
+    return new SourceDataTagValueResponse(update);
+  }
+}
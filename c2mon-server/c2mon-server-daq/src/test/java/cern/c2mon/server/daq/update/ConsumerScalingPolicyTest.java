@@ -0,0 +1,99 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cern.c2mon.server.daq.update.UpdateLoadMonitor.ConsumerLoad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link ConsumerScalingPolicy}.
+ */
+public class ConsumerScalingPolicyTest {
+
+  private static final long INTERVAL = 10000000000L;
+
+  private final ConsumerScalingPolicy policy = new ConsumerScalingPolicy(1, 50, 60, 0.5);
+
+  @Test
+  public void testScaleToLoad() {
+    // 4 consumers busy 2.5 times the interval in total: 5 needed at 50%
+    Map<Long, Integer> consumers = policy.scale(Collections.singletonMap(1L, 4),
+        Collections.singletonMap(1L, load(INTERVAL * 5 / 2)), INTERVAL, 4);
+    assertEquals(Integer.valueOf(5), consumers.get(1L));
+  }
+
+  @Test
+  public void testSaturatedConsumersAreDoubled() {
+    ConsumerLoad load = load(INTERVAL * 4);
+    assertTrue(policy.isSaturated(4, load, INTERVAL));
+    Map<Long, Integer> consumers = policy.scale(Collections.singletonMap(1L, 4),
+        Collections.singletonMap(1L, load), INTERVAL, 4);
+    assertEquals(Integer.valueOf(8), consumers.get(1L));
+    assertEquals(Integer.valueOf(50), policy.scale(Collections.singletonMap(1L, 40),
+        Collections.singletonMap(1L, load(INTERVAL * 40)), INTERVAL, 40).get(1L));
+  }
+
+  @Test
+  public void testGradualScaleDown() {
+    Map<Long, Integer> consumers = policy.scale(Collections.singletonMap(1L, 20),
+        Collections.<Long, ConsumerLoad>emptyMap(), INTERVAL, 0);
+    assertEquals(Integer.valueOf(15), consumers.get(1L));
+    assertFalse(policy.isSaturated(20, null, INTERVAL));
+
+    consumers = policy.scale(Collections.singletonMap(1L, 1), Collections.<Long, ConsumerLoad>emptyMap(), INTERVAL, 0);
+    assertEquals(Integer.valueOf(1), consumers.get(1L));
+  }
+
+  @Test
+  public void testBudgetIsSharedFairly() {
+    Map<Long, Integer> current = new HashMap<>();
+    current.put(1L, 40);
+    current.put(2L, 10);
+    current.put(3L, 5);
+    Map<Long, ConsumerLoad> loads = new HashMap<>();
+    loads.put(1L, load(INTERVAL * 40));
+    loads.put(2L, load(INTERVAL * 10));
+    loads.put(3L, load(INTERVAL));
+
+    Map<Long, Integer> consumers = policy.scale(current, loads, INTERVAL, 55);
+
+    // demands of 50, 20 and 4 within a budget of 60
+    assertEquals(Integer.valueOf(4), consumers.get(3L));
+    assertEquals(Integer.valueOf(20), consumers.get(2L));
+    assertEquals(Integer.valueOf(36), consumers.get(1L));
+  }
+
+  @Test
+  public void testNoScaleUpWhenBudgetReached() {
+    Map<Long, Integer> consumers = policy.scale(Collections.singletonMap(1L, 4),
+        Collections.singletonMap(1L, load(INTERVAL * 4)), INTERVAL, 60);
+    assertEquals(Integer.valueOf(4), consumers.get(1L));
+  }
+
+  private static ConsumerLoad load(final long busyNanos) {
+    return new ConsumerLoad(1000, busyNanos);
+  }
+}
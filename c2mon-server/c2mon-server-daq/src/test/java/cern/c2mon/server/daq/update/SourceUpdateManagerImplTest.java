@@ -0,0 +1,236 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.IMocksControl;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.C2monCacheListener;
+import cern.c2mon.server.cache.ControlTagFacade;
+import cern.c2mon.server.cache.DataTagFacade;
+import cern.c2mon.server.cache.ProcessCache;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.config.CacheProperties;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.config.ServerProperties;
+import cern.c2mon.server.common.process.Process;
+import cern.c2mon.server.common.process.ProcessCacheObject;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.DataTagValueUpdate;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the Process PIK check and of the order of the cache writes of
+ * the {@link SourceUpdateManagerImpl}.
+ */
+public class SourceUpdateManagerImplTest {
+
+  private static final Long PROCESS_ID = 50L;
+
+  private ProcessCache processCache;
+
+  private ProcessCacheObject process;
+
+  private CacheProperties cacheProperties;
+
+  private Capture<C2monCacheListener<? super Process>> listener;
+
+  @Before
+  public void setUp() {
+    processCache = EasyMock.createMock(ProcessCache.class);
+    process = new ProcessCacheObject(PROCESS_ID);
+    process.setName("P_TEST");
+    process.setProcessPIK(10L);
+    cacheProperties = new CacheProperties();
+    listener = EasyMock.newCapture();
+  }
+
+  /**
+   * Once checked against the cache, the PIK is accepted without locking the Process.
+   */
+  @Test
+  public void testFastPathAfterCacheCheck() {
+    SourceUpdateManagerImpl sourceUpdateManager = createManager();
+    expectCacheCheck(1);
+    EasyMock.replay(processCache);
+
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+
+    EasyMock.verify(processCache);
+  }
+
+  /**
+   * A new PIK set in the cache (e.g. on DAQ reconnection) is picked up through
+   * the listener, and the old PIK is rejected after a check against the cache.
+   */
+  @Test
+  public void testListenerRefreshesPIK() {
+    SourceUpdateManagerImpl sourceUpdateManager = createManager();
+    expectCacheCheck(2);
+    EasyMock.replay(processCache);
+
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+    process.setProcessPIK(20L);
+    notifyListener();
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 20L)));
+    assertFalse(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+
+    EasyMock.verify(processCache);
+  }
+
+  /**
+   * A PIK removed from the cache (on DAQ disconnection) is no longer accepted
+   * without a check against the cache.
+   */
+  @Test
+  public void testListenerRemovesPIK() {
+    SourceUpdateManagerImpl sourceUpdateManager = createManager();
+    expectCacheCheck(2);
+    EasyMock.replay(processCache);
+
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+    process.setProcessPIK(null);
+    notifyListener();
+    process.setProcessPIK(30L);
+    assertFalse(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+
+    EasyMock.verify(processCache);
+  }
+
+  /**
+   * After the Process is removed, its PIK is checked against the cache again.
+   */
+  @Test
+  public void testRemoveProcessPIK() {
+    SourceUpdateManagerImpl sourceUpdateManager = createManager();
+    expectCacheCheck(1);
+    processCache.acquireWriteLockOnKey(PROCESS_ID);
+    EasyMock.expect(processCache.get(PROCESS_ID)).andThrow(new CacheElementNotFoundException());
+    processCache.releaseWriteLockOnKey(PROCESS_ID);
+    EasyMock.replay(processCache);
+
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+    sourceUpdateManager.removeProcessPIK(PROCESS_ID);
+    sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L));
+
+    EasyMock.verify(processCache);
+  }
+
+  /**
+   * In "multi" mode the Process may be updated by another server, so the PIK
+   * is always checked against the cache.
+   */
+  @Test
+  public void testMultiModeAlwaysChecksCache() {
+    cacheProperties.setMode("multi");
+    SourceUpdateManagerImpl sourceUpdateManager = createManager();
+    assertFalse(listener.hasCaptured());
+
+    expectCacheCheck(2);
+    EasyMock.replay(processCache);
+
+    assertTrue(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+    process.setProcessPIK(20L);
+    assertFalse(sourceUpdateManager.checkProcessPIK(new DataTagValueUpdate(PROCESS_ID, 10L)));
+
+    EasyMock.verify(processCache);
+  }
+
+  /**
+   * The control tag and DataTag values are written in batches of consecutive
+   * values of the same kind, in the order of the message.
+   */
+  @Test
+  public void testMessageOrderKeptAcrossControlAndDataTags() {
+    IMocksControl control = EasyMock.createStrictControl();
+    DataTagFacade dataTagFacade = control.createMock(DataTagFacade.class);
+    ControlTagFacade controlTagFacade = control.createMock(ControlTagFacade.class);
+    UpdateLatencyMonitor updateLatencyMonitor = EasyMock.createNiceMock(UpdateLatencyMonitor.class);
+    SourceDataTagValue alive = createValue(1L, true);
+    SourceDataTagValue value2 = createValue(2L, false);
+    SourceDataTagValue value3 = createValue(3L, false);
+    SourceDataTagValue commFault = createValue(4L, true);
+    EasyMock.expect(controlTagFacade.updateFromSource(Collections.singletonList(alive))).andReturn(notUpdated(1));
+    EasyMock.expect(dataTagFacade.updateFromSource(Arrays.asList(value2, value3))).andReturn(notUpdated(2));
+    EasyMock.expect(controlTagFacade.updateFromSource(Collections.singletonList(commFault))).andReturn(notUpdated(1));
+    control.replay();
+    EasyMock.replay(updateLatencyMonitor);
+
+    DaqProperties daqProperties = new DaqProperties();
+    UpdateConflator updateConflator = new UpdateConflator(null, daqProperties);
+    SourceUpdateManagerImpl sourceUpdateManager = new SourceUpdateManagerImpl(dataTagFacade, controlTagFacade, null, null, null,
+        processCache, new ServerProperties(), cacheProperties, updateLatencyMonitor, null,
+        new UpdateIngestLanes(dataTagFacade, daqProperties, updateConflator), updateConflator, new UpdateAdmission(daqProperties));
+    DataTagValueUpdate update = new DataTagValueUpdate(PROCESS_ID);
+    update.setValues(new ArrayList<>(Arrays.asList(alive, value2, value3, commFault)));
+    sourceUpdateManager.processUpdates(update);
+
+    control.verify();
+  }
+
+  private static SourceDataTagValue createValue(final long id, final boolean controlTag) {
+    return new SourceDataTagValue(id, "tag " + id, controlTag, 1, new SourceDataTagQuality(),
+        new Timestamp(System.currentTimeMillis()), DataTagAddress.PRIORITY_LOW, false, null, DataTagAddress.TTL_FOREVER);
+  }
+
+  private static List<Event<Boolean>> notUpdated(final int count) {
+    return Collections.nCopies(count, new Event<>(System.currentTimeMillis(), Boolean.FALSE));
+  }
+
+  private SourceUpdateManagerImpl createManager() {
+    if (!"multi".equalsIgnoreCase(cacheProperties.getMode())) {
+      processCache.registerSynchronousListener(EasyMock.capture(listener));
+    }
+    EasyMock.replay(processCache);
+    SourceUpdateManagerImpl sourceUpdateManager = new SourceUpdateManagerImpl(null, null, null, null, null, processCache,
+        new ServerProperties(), cacheProperties, null, null, null, null, new UpdateAdmission(new DaqProperties()));
+    sourceUpdateManager.init();
+    EasyMock.verify(processCache);
+    EasyMock.reset(processCache);
+    return sourceUpdateManager;
+  }
+
+  private void expectCacheCheck(final int times) {
+    processCache.acquireWriteLockOnKey(PROCESS_ID);
+    EasyMock.expectLastCall().times(times);
+    EasyMock.expect(processCache.get(PROCESS_ID)).andReturn(process).times(times);
+    processCache.releaseWriteLockOnKey(PROCESS_ID);
+    EasyMock.expectLastCall().times(times);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void notifyListener() {
+    ((C2monCacheListener<Process>) listener.getValue()).notifyElementUpdated(process);
+  }
+}
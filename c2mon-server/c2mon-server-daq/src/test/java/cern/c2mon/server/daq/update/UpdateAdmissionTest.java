@@ -0,0 +1,368 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test of the {@link UpdateAdmission}, with a single worker.
+ */
+public class UpdateAdmissionTest {
+
+  private DaqProperties properties;
+
+  private UpdateAdmission admission;
+
+  /**
+   * Ids of the values processed, in order.
+   */
+  private List<Long> processed = new CopyOnWriteArrayList<>();
+
+  /**
+   * Holds the worker in the processing of the value with id 0.
+   */
+  private CountDownLatch release = new CountDownLatch(1);
+
+  /**
+   * Released once the worker holds the value with id 0.
+   */
+  private CountDownLatch blocked = new CountDownLatch(1);
+
+  private List<Thread> senders = new ArrayList<>();
+
+  /**
+   * Exceptions thrown to the senders.
+   */
+  private List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+
+  /**
+   * Value for which the processor throws an Error.
+   */
+  private static final long FAILING_VALUE = 7L;
+
+  @Before
+  public void setUp() {
+    properties = new DaqProperties();
+    properties.getJms().getUpdate().setAdmissionControl(true);
+    properties.getJms().getUpdate().setAdmissionWorkers(1);
+    properties.getJms().getUpdate().setAdmissionQueueCapacity(2);
+    admission = new UpdateAdmission(properties);
+    Consumer<List<SourceDataTagValue>> processor = values -> {
+      for (SourceDataTagValue value : values) {
+        if (value.getId() == FAILING_VALUE) {
+          throw new Error("Test error");
+        }
+        if (value.getId() == 0L) {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        processed.add(value.getId());
+      }
+    };
+    admission.start(processor, processor);
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    admission.shutdown();
+  }
+
+  @Test
+  public void testControlTagsBeforeQueuedLowPriorityValues() throws InterruptedException {
+    blockWorker();
+    send(createValue(1L, DataTagAddress.PRIORITY_LOW, false));
+    send(createValue(2L, DataTagAddress.PRIORITY_LOW, false));
+    awaitDepth("low", 2);
+    send(createValue(3L, DataTagAddress.PRIORITY_LOW, true));
+    awaitDepth("control", 1);
+
+    release.countDown();
+    joinSenders();
+
+    awaitProcessed(4);
+    assertEquals(0L, (long) processed.get(0));
+    assertEquals(3L, (long) processed.get(1));
+  }
+
+  /**
+   * The JMS thread does not wait for the low priority values to be processed,
+   * and the values not yet written are dropped on shutdown.
+   */
+  @Test
+  public void testLowPriorityValuesNotAwaited() throws InterruptedException {
+    blockWorker();
+    admission.process(Collections.singletonList(createValue(1L, DataTagAddress.PRIORITY_LOW, false)));
+    admission.process(Collections.singletonList(createValue(2L, DataTagAddress.PRIORITY_LOW, false)));
+    admission.process(Collections.singletonList(createValue(3L, DataTagAddress.PRIORITY_LOW, false)));
+    assertEquals(Integer.valueOf(2), admission.getQueueDepths().get("low"));
+    assertEquals(Integer.valueOf(1), admission.getQueueDepths().get("overflow"));
+
+    admission.shutdown();
+    assertEquals(Integer.valueOf(0), admission.getQueueDepths().get("low"));
+    assertEquals(Integer.valueOf(0), admission.getQueueDepths().get("overflow"));
+    assertEquals(0, failures.size());
+  }
+
+  @Test
+  public void testLowPriorityShedOnOverload() throws InterruptedException {
+    properties.getJms().getUpdate().setLowPriorityOverload(UpdateAdmission.SHED);
+    fillLowQueue();
+
+    // returns at once, the values are dropped
+    admission.process(Collections.singletonList(createValue(5L, DataTagAddress.PRIORITY_LOW, false)));
+    assertEquals(1, admission.getShedValues());
+
+    release.countDown();
+    joinSenders();
+    awaitProcessed(3);
+    assertFalse(processed.contains(5L));
+  }
+
+  @Test
+  public void testLowPriorityConflatedOnOverload() throws InterruptedException {
+    fillLowQueue();
+
+    admission.process(Collections.singletonList(createValue(5L, DataTagAddress.PRIORITY_LOW, false)));
+    admission.process(Collections.singletonList(createValue(5L, DataTagAddress.PRIORITY_LOW, false)));
+    assertEquals(1, admission.getConflatedValues());
+    assertEquals(Integer.valueOf(1), admission.getQueueDepths().get("overflow"));
+
+    release.countDown();
+    joinSenders();
+    awaitProcessed(4);
+    // the values set aside have their own turn in the round-robin
+    assertEquals(5L, (long) processed.get(1));
+  }
+
+  /**
+   * Once the low priority queue is full, the values set aside are processed in
+   * their turn, before the queue is empty.
+   */
+  @Test
+  public void testValuesSetAsideNotStarved() throws InterruptedException {
+    fillLowQueue(301L, 302L);
+    admission.process(Collections.singletonList(createValue(401L, DataTagAddress.PRIORITY_LOW, false)));
+    send(createValue(101L, DataTagAddress.PRIORITY_LOW, true));
+    send(createValue(102L, DataTagAddress.PRIORITY_LOW, true));
+    awaitDepth("control", 2);
+
+    release.countDown();
+    joinSenders();
+    awaitProcessed(6);
+    // the worker took the value 0 with the low priority credit of the first round
+    assertEquals("CCOLL", processedClasses());
+  }
+
+  /**
+   * The queues are drained 4:2:1 (control tags, high and low priority).
+   */
+  @Test
+  public void testWeightedRoundRobin() throws InterruptedException {
+    properties.getJms().getUpdate().setAdmissionQueueCapacity(20);
+    blockWorker();
+    for (int i = 0; i < 12; i++) {
+      send(createValue(100L + i, DataTagAddress.PRIORITY_LOW, true));
+    }
+    for (int i = 0; i < 6; i++) {
+      send(createValue(200L + i, DataTagAddress.PRIORITY_HIGH, false));
+    }
+    for (int i = 0; i < 3; i++) {
+      send(createValue(300L + i, DataTagAddress.PRIORITY_LOW, false));
+    }
+    awaitDepth("control", 12);
+    awaitDepth("high", 6);
+    awaitDepth("low", 3);
+
+    release.countDown();
+    joinSenders();
+    awaitProcessed(22);
+    // the worker took the value 0 with the low priority credit of the first round
+    assertEquals("CCCCHH" + "CCCCHHL" + "CCCCHHL" + "L", processedClasses());
+  }
+
+  @Test
+  public void testErrorDoesNotStopWorker() throws InterruptedException {
+    try {
+      admission.process(Collections.singletonList(createValue(FAILING_VALUE, DataTagAddress.PRIORITY_HIGH, false)));
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof Error);
+    }
+
+    admission.process(Collections.singletonList(createValue(8L, DataTagAddress.PRIORITY_HIGH, false)));
+    assertTrue(processed.contains(8L));
+  }
+
+  @Test
+  public void testTimeout() throws InterruptedException {
+    properties.getJms().getUpdate().setAdmissionTimeout(200);
+    blockWorker();
+    try {
+      admission.process(Collections.singletonList(createValue(1L, DataTagAddress.PRIORITY_HIGH, false)));
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertFalse(processed.contains(1L));
+    }
+  }
+
+  /**
+   * The values queued, or waiting for room, when the stage stops, and the
+   * values received later, fail instead of waiting.
+   */
+  @Test
+  public void testShutdownFailsWaitingSenders() throws InterruptedException {
+    properties.getJms().getUpdate().setLowPriorityOverload(UpdateAdmission.BLOCK);
+    fillLowQueue(1L, 2L);
+    send(createValue(3L, DataTagAddress.PRIORITY_LOW, false));
+    Thread.sleep(50);
+
+    admission.shutdown();
+    joinSenders();
+    // the value 0 was taken by the worker before the shutdown
+    assertEquals(3, failures.size());
+    try {
+      admission.process(Collections.singletonList(createValue(4L, DataTagAddress.PRIORITY_HIGH, false)));
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Admission stage stopped", e.getMessage());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoWorkersRejected() {
+    DaqProperties noWorkers = new DaqProperties();
+    noWorkers.getJms().getUpdate().setAdmissionControl(true);
+    noWorkers.getJms().getUpdate().setAdmissionWorkers(0);
+    new UpdateAdmission(noWorkers).start(values -> { }, values -> { });
+  }
+
+  @Test
+  public void testHighPriorityAndGuaranteedDeliveryNeverShed() throws InterruptedException {
+    properties.getJms().getUpdate().setLowPriorityOverload(UpdateAdmission.SHED);
+    blockWorker();
+    SourceDataTagValue guaranteed = createValue(2L, DataTagAddress.PRIORITY_LOW, false);
+    guaranteed.setGuaranteedDelivery(true);
+    send(createValue(1L, DataTagAddress.PRIORITY_HIGH, false));
+    send(guaranteed);
+    awaitDepth("high", 2);
+    send(createValue(3L, DataTagAddress.PRIORITY_HIGH, false));
+
+    release.countDown();
+    joinSenders();
+    assertEquals(4, processed.size());
+    assertEquals(0, admission.getShedValues());
+  }
+
+  /**
+   * Keeps the worker busy with the value 0, and fills the low priority queue.
+   */
+  private void fillLowQueue() throws InterruptedException {
+    fillLowQueue(1L, 2L);
+  }
+
+  private void fillLowQueue(final long first, final long second) throws InterruptedException {
+    blockWorker();
+    send(createValue(first, DataTagAddress.PRIORITY_LOW, false));
+    send(createValue(second, DataTagAddress.PRIORITY_LOW, false));
+    awaitDepth("low", 2);
+  }
+
+  private void blockWorker() throws InterruptedException {
+    send(createValue(0L, DataTagAddress.PRIORITY_LOW, false));
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Processes the value on a separate thread, as a JMS consumer.
+   */
+  private void send(final SourceDataTagValue value) {
+    Thread sender = new Thread(() -> {
+      try {
+        admission.process(Collections.singletonList(value));
+      } catch (IllegalStateException e) {
+        failures.add(e);
+      }
+    });
+    senders.add(sender);
+    sender.start();
+  }
+
+  private void joinSenders() throws InterruptedException {
+    for (Thread sender : senders) {
+      sender.join(5000);
+    }
+  }
+
+  private void awaitDepth(final String priorityClass, final int depth) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (admission.getQueueDepths().get(priorityClass) != depth && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(Integer.valueOf(depth), admission.getQueueDepths().get(priorityClass));
+  }
+
+  private void awaitProcessed(final int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (processed.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, processed.size());
+  }
+
+  /**
+   * @return the classes of the values processed after the value 0, from their
+   *         ids: C(ontrol) 1xx, H(igh) 2xx, L(ow) 3xx, O(verflow) 4xx
+   */
+  private String processedClasses() {
+    StringBuilder classes = new StringBuilder();
+    for (long id : processed.subList(1, processed.size())) {
+      classes.append("?CHLO".charAt((int) (id / 100)));
+    }
+    return classes.toString();
+  }
+
+  private static SourceDataTagValue createValue(final long id, final int priority, final boolean controlTag) {
+    return new SourceDataTagValue(id, "tag " + id, controlTag, 1, new SourceDataTagQuality(),
+        new Timestamp(System.currentTimeMillis()), priority, false, null, DataTagAddress.TTL_FOREVER);
+  }
+}
@@ -0,0 +1,179 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.DataTagCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link UpdateConflator}.
+ */
+public class UpdateConflatorTest {
+
+  private UpdateConflator conflator;
+
+  /**
+   * Values passed to the writer.
+   */
+  private List<SourceDataTagValue> written = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    DataTagCache dataTagCache = EasyMock.createNiceMock(DataTagCache.class);
+    DataTagCacheObject notLogged = new DataTagCacheObject(1L);
+    notLogged.setLogged(false);
+    DataTagCacheObject logged = new DataTagCacheObject(2L);
+    logged.setLogged(true);
+    EasyMock.expect(dataTagCache.get(1L)).andReturn(notLogged).anyTimes();
+    EasyMock.expect(dataTagCache.get(2L)).andReturn(logged).anyTimes();
+    EasyMock.replay(dataTagCache);
+
+    DaqProperties properties = new DaqProperties();
+    properties.getJms().getUpdate().getConflatedPriorities().add(DataTagAddress.PRIORITY_LOW);
+    conflator = new UpdateConflator(dataTagCache, properties);
+  }
+
+  @Test
+  public void testNewestValueOfTagWritten() {
+    List<SourceDataTagValue> values = Arrays.asList(createValue(1L, 1, 1000), createValue(2L, 2, 1000),
+        createValue(1L, 3, 2000), createValue(1L, 4, 3000));
+
+    List<Event<Boolean>> results = conflator.updateFromSource(values, this::write);
+
+    assertEquals(2, written.size());
+    assertEquals(2, written.get(0).getValue());
+    assertEquals(4, written.get(1).getValue());
+    assertEquals(Arrays.asList(false, true, false, true), returnValues(results));
+    assertEquals(4, conflator.getReceivedValues());
+    assertEquals(2, conflator.getConflatedValues());
+  }
+
+  @Test
+  public void testOlderValueReceivedLaterIsConflated() {
+    List<SourceDataTagValue> values = Arrays.asList(createValue(1L, 2, 2000), createValue(1L, 1, 1000));
+
+    List<Event<Boolean>> results = conflator.updateFromSource(values, this::write);
+
+    assertEquals(1, written.size());
+    assertEquals(2, written.get(0).getValue());
+    assertEquals(Arrays.asList(true, false), returnValues(results));
+  }
+
+  @Test
+  public void testLoggedTagNotConflated() {
+    List<SourceDataTagValue> values = Arrays.asList(createValue(2L, 1, 1000), createValue(2L, 2, 2000));
+
+    conflator.updateFromSource(values, this::write);
+
+    assertEquals(values, written);
+    assertEquals(0, conflator.getConflatedValues());
+  }
+
+  /**
+   * The cache is looked up once per duplicated tag, and the values of a tag
+   * not in the cache are all passed on.
+   */
+  @Test
+  public void testCacheLookedUpOncePerTag() {
+    DataTagCache dataTagCache = EasyMock.createMock(DataTagCache.class);
+    DataTagCacheObject notLogged = new DataTagCacheObject(1L);
+    notLogged.setLogged(false);
+    EasyMock.expect(dataTagCache.get(1L)).andReturn(notLogged);
+    EasyMock.expect(dataTagCache.get(3L)).andThrow(new CacheElementNotFoundException());
+    EasyMock.replay(dataTagCache);
+    DaqProperties properties = new DaqProperties();
+    properties.getJms().getUpdate().getConflatedPriorities().add(DataTagAddress.PRIORITY_LOW);
+    UpdateConflator conflator = new UpdateConflator(dataTagCache, properties);
+    List<SourceDataTagValue> values = Arrays.asList(createValue(1L, 1, 1000), createValue(3L, 2, 1000),
+        createValue(1L, 3, 2000), createValue(3L, 4, 2000), createValue(1L, 5, 3000), createValue(3L, 6, 3000));
+
+    conflator.updateFromSource(values, this::write);
+
+    assertEquals(Arrays.asList(values.get(1), values.get(3), values.get(4), values.get(5)), written);
+    EasyMock.verify(dataTagCache);
+  }
+
+  @Test
+  public void testOtherPrioritiesAndGuaranteedDeliveryNotConflated() {
+    SourceDataTagValue highPriority = createValue(1L, 1, 1000);
+    highPriority.setPriority(DataTagAddress.PRIORITY_HIGH);
+    SourceDataTagValue guaranteed = createValue(1L, 2, 2000);
+    guaranteed.setGuaranteedDelivery(true);
+    List<SourceDataTagValue> values = Arrays.asList(highPriority, guaranteed, createValue(1L, 3, 3000));
+
+    conflator.updateFromSource(values, this::write);
+
+    assertEquals(values, written);
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    UpdateConflator disabled = new UpdateConflator(null, new DaqProperties());
+    List<SourceDataTagValue> values = Arrays.asList(createValue(1L, 1, 1000), createValue(1L, 2, 2000));
+
+    disabled.updateFromSource(values, this::write);
+
+    assertFalse(disabled.isEnabled());
+    assertEquals(values, written);
+  }
+
+  /**
+   * Accepts the values with even value.
+   */
+  private List<Event<Boolean>> write(final List<SourceDataTagValue> values) {
+    written.addAll(values);
+    List<Event<Boolean>> results = new ArrayList<>();
+    for (SourceDataTagValue value : values) {
+      results.add(new Event<>(System.currentTimeMillis(), (Integer) value.getValue() % 2 == 0));
+    }
+    return results;
+  }
+
+  private static List<Boolean> returnValues(final List<Event<Boolean>> results) {
+    List<Boolean> returnValues = new ArrayList<>();
+    for (Event<Boolean> result : results) {
+      returnValues.add(result.getReturnValue());
+    }
+    return returnValues;
+  }
+
+  private static SourceDataTagValue createValue(final long id, final int value, final long timestamp) {
+    SourceDataTagValue sourceDataTagValue = new SourceDataTagValue(id, "tag " + id, false, value, new SourceDataTagQuality(),
+        new Timestamp(timestamp), DataTagAddress.PRIORITY_LOW, false, null, DataTagAddress.TTL_FOREVER);
+    sourceDataTagValue.setDaqTimestamp(new Timestamp(timestamp));
+    return sourceDataTagValue;
+  }
+}
@@ -0,0 +1,244 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.daq.update;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.DataTagFacade;
+import cern.c2mon.server.common.thread.Event;
+import cern.c2mon.server.daq.config.DaqProperties;
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test of the {@link UpdateIngestLanes}.
+ */
+public class UpdateIngestLanesTest {
+
+  private DataTagFacade dataTagFacade;
+
+  private UpdateIngestLanes lanes;
+
+  /**
+   * Batches written to the cache, in order.
+   */
+  private List<List<SourceDataTagValue>> batches = new CopyOnWriteArrayList<>();
+
+  /**
+   * Holds the write of tag {@link #BLOCKED_TAG} until released.
+   */
+  private CountDownLatch release = new CountDownLatch(1);
+
+  private static final long FAILING_TAG = 99L;
+
+  private static final long BLOCKED_TAG = 98L;
+
+  @Before
+  public void setUp() {
+    dataTagFacade = EasyMock.createMock(DataTagFacade.class);
+    EasyMock.expect(dataTagFacade.updateFromSource(EasyMock.<Collection<SourceDataTagValue>>anyObject())).andAnswer(() -> {
+      @SuppressWarnings("unchecked")
+      Collection<SourceDataTagValue> values = (Collection<SourceDataTagValue>) EasyMock.getCurrentArguments()[0];
+      batches.add(new ArrayList<>(values));
+      for (SourceDataTagValue value : values) {
+        if (value.getId() == FAILING_TAG) {
+          throw new Error("Test error");
+        } else if (value.getId() == BLOCKED_TAG) {
+          release.await();
+        }
+      }
+      List<Event<Boolean>> results = new ArrayList<>();
+      for (SourceDataTagValue value : values) {
+        // the event time identifies the value, only even values are accepted
+        results.add(new Event<>(value.getId() * 1000 + (Integer) value.getValue(), (Integer) value.getValue() % 2 == 0));
+      }
+      return results;
+    }).anyTimes();
+    EasyMock.replay(dataTagFacade);
+
+    DaqProperties properties = new DaqProperties();
+    properties.getJms().getUpdate().setIngestLanes(2);
+    properties.getJms().getUpdate().setIngestLaneTimeout(500);
+    lanes = new UpdateIngestLanes(dataTagFacade, properties, new UpdateConflator(null, properties));
+    lanes.init();
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    lanes.shutdown();
+  }
+
+  @Test
+  public void testResultsInOrderOfValues() {
+    assertTrue(lanes.isEnabled());
+    List<SourceDataTagValue> values = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      values.add(createValue(i, i));
+    }
+
+    List<Event<Boolean>> results = lanes.updateFromSource(values);
+
+    assertEquals(10, results.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i * 1000L + i, results.get(i).getEventTime());
+      assertEquals(i % 2 == 0, results.get(i).getReturnValue());
+    }
+  }
+
+  @Test
+  public void testTagsAreWrittenInOrderOnOneLane() {
+    for (int i = 0; i < 20; i++) {
+      List<SourceDataTagValue> values = new ArrayList<>();
+      values.add(createValue(1L, i));
+      values.add(createValue(2L, i));
+      lanes.updateFromSource(values);
+    }
+
+    List<Integer> valuesOfTag1 = new ArrayList<>();
+    for (List<SourceDataTagValue> batch : batches) {
+      for (SourceDataTagValue value : batch) {
+        // tags 1 and 2 are on different lanes
+        assertEquals(batch.get(0).getId(), value.getId());
+        if (value.getId() == 1L) {
+          valuesOfTag1.add((Integer) value.getValue());
+        }
+      }
+    }
+    assertEquals(20, valuesOfTag1.size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals(Integer.valueOf(i), valuesOfTag1.get(i));
+    }
+    for (int backlog : lanes.getLaneBacklogs()) {
+      assertEquals(0, backlog);
+    }
+  }
+
+  /**
+   * An Error thrown by the cache update fails the caller, and the lane keeps
+   * writing the following values.
+   */
+  @Test(timeout = 5000)
+  public void testErrorDoesNotStopLane() {
+    List<SourceDataTagValue> failing = new ArrayList<>();
+    failing.add(createValue(FAILING_TAG, 0));
+    try {
+      lanes.updateFromSource(failing);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof Error);
+    }
+
+    List<SourceDataTagValue> values = new ArrayList<>();
+    values.add(createValue(FAILING_TAG + 2, 2));
+    List<Event<Boolean>> results = lanes.updateFromSource(values);
+    assertEquals(1, results.size());
+    assertTrue(results.get(0).getReturnValue());
+  }
+
+  /**
+   * The caller stops waiting once the timeout is reached.
+   */
+  @Test(timeout = 5000)
+  public void testTimeout() {
+    List<SourceDataTagValue> values = new ArrayList<>();
+    values.add(createValue(BLOCKED_TAG, 0));
+    long start = System.nanoTime();
+    try {
+      lanes.updateFromSource(values);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 500);
+    }
+  }
+
+  /**
+   * Values queued behind a stopped lane, or submitted after it stopped, fail
+   * instead of waiting.
+   */
+  @Test(timeout = 5000)
+  public void testSubmitAfterShutdownFails() throws InterruptedException {
+    List<SourceDataTagValue> blocked = new ArrayList<>();
+    blocked.add(createValue(BLOCKED_TAG, 0));
+    List<SourceDataTagValue> queued = new ArrayList<>();
+    queued.add(createValue(BLOCKED_TAG + 2, 0));
+    Thread blockedCaller = new Thread(() -> {
+      try {
+        lanes.updateFromSource(blocked);
+      } catch (RuntimeException e) {
+        // interrupted by the shutdown
+      }
+    });
+    blockedCaller.start();
+    while (batches.isEmpty()) {
+      Thread.sleep(10);
+    }
+    Thread queuedCaller = new Thread(() -> {
+      try {
+        lanes.updateFromSource(queued);
+      } catch (IllegalStateException e) {
+        batches.add(queued);
+      }
+    });
+    queuedCaller.start();
+    // the second value is on the same lane, behind the blocked one
+    while (lanes.getLaneBacklogs().stream().mapToInt(Integer::intValue).sum() == 0) {
+      Thread.sleep(10);
+    }
+
+    lanes.shutdown();
+    queuedCaller.join();
+    assertTrue(batches.contains(queued));
+    try {
+      lanes.updateFromSource(queued);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals("Ingest lane stopped", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    DaqProperties defaultProperties = new DaqProperties();
+    UpdateIngestLanes disabled = new UpdateIngestLanes(dataTagFacade, defaultProperties, new UpdateConflator(null, defaultProperties));
+    disabled.init();
+    assertFalse(disabled.isEnabled());
+    assertTrue(disabled.getLaneBacklogs().isEmpty());
+  }
+
+  private static SourceDataTagValue createValue(final long id, final int value) {
+    return new SourceDataTagValue(id, "tag " + id, false, value, new SourceDataTagQuality(),
+        new Timestamp(System.currentTimeMillis()), DataTagAddress.PRIORITY_LOW, false, null, DataTagAddress.TTL_FOREVER);
+  }
+}
@@ -30,6 +30,8 @@ import org.springframework.stereotype.Service;
 
 import cern.c2mon.server.cache.C2monBufferedCacheListener;
 import cern.c2mon.server.cache.CacheRegistrationService;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.UpdateStage;
 import cern.c2mon.server.common.component.Lifecycle;
 import cern.c2mon.server.common.config.ServerConstants;
 import cern.c2mon.server.common.tag.Tag;
@@ -60,6 +62,11 @@ public class TagRecordListener implements C2monBufferedCacheListener<Tag>, Smart
    */
   private BatchLogger<Tag> tagLogger;
 
+  /**
+   * Records the latency of the tag updates once logged.
+   */
+  private UpdateLatencyMonitor updateLatencyMonitor;
+
   /**
    * Listener container lifecycle hook.
    */
@@ -75,12 +82,15 @@ public class TagRecordListener implements C2monBufferedCacheListener<Tag>, Smart
    *
    * @param cacheRegistrationService for registering cache listeners
    * @param tagLogger for logging cache objects to the STL
+   * @param updateLatencyMonitor for recording the latency of the logged updates
    */
   @Autowired
-  public TagRecordListener(final CacheRegistrationService cacheRegistrationService, @Qualifier("tagLogger") final BatchLogger<Tag> tagLogger) {
+  public TagRecordListener(final CacheRegistrationService cacheRegistrationService, @Qualifier("tagLogger") final BatchLogger<Tag> tagLogger,
+                           final UpdateLatencyMonitor updateLatencyMonitor) {
     super();
     this.cacheRegistrationService = cacheRegistrationService;
     this.tagLogger = tagLogger;
+    this.updateLatencyMonitor = updateLatencyMonitor;
   }
 
   /**
@@ -109,6 +119,9 @@ public class TagRecordListener implements C2monBufferedCacheListener<Tag>, Smart
         tagsToLog.add(tag);
     }
     tagLogger.log(tagsToLog);
+    for (Tag tag : tagsToLog) {
+      updateLatencyMonitor.record(UpdateStage.HISTORY, tag);
+    }
   }
 
   @Override
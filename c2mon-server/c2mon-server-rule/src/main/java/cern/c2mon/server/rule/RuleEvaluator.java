@@ -33,4 +33,12 @@ public interface RuleEvaluator {
    * @param ruleId id of the rule
    */
   void evaluateRule(Long ruleId);
+
+  /**
+   * Drops the evaluation state held for the rule (resolved inputs and last
+   * result). Called once the rule is removed from the server.
+   *
+   * @param ruleId id of the removed rule
+   */
+  void removeRule(Long ruleId);
 }
@@ -1,5 +1,8 @@
 package cern.c2mon.server.rule.config;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -14,4 +17,45 @@ public class RuleProperties {
    * Number of threads that the rule evaluation engine will use
    */
   private int numEvaluationThreads = 1;
+
+  /**
+   * Whether a tag update is propagated at once to all the rules depending on
+   * it directly or through other rules, each rule being evaluated once, after
+   * the rules it depends on. If disabled, the rules depending on a rule are
+   * evaluated once its result is written to the cache.
+   */
+  private boolean dependencyPropagation = true;
+
+  /**
+   * Interval in milliseconds at which the buffered rule results are written
+   * to the cache, if not updated since the previous interval
+   */
+  private int bufferTickMillis = 75;
+
+  /**
+   * Maximum number of intervals a continuously updated rule result is
+   * buffered before being written to the cache (the maximum delay is
+   * bufferMaxCycles times bufferTickMillis)
+   */
+  private int bufferMaxCycles = 6;
+
+  /**
+   * Number of shards of the rule result buffer, each written to the cache by
+   * its own thread
+   */
+  private int bufferShards = 4;
+
+  /**
+   * Whether the evaluation of a rule is skipped when the values and validity
+   * of its inputs are unchanged since its last evaluation (e.g. on a refresh
+   * of an input tag). The rules are always evaluated on configuration and on
+   * status confirmation.
+   */
+  private boolean inputMemoization = true;
+
+  /**
+   * Ids of the rules evaluated on each update of their inputs, even if
+   * unchanged, e.g. time-based rules
+   */
+  private Set<Long> alwaysEvaluatedRuleIds = new HashSet<>();
 }
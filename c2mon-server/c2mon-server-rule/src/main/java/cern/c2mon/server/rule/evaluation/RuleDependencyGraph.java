@@ -0,0 +1,245 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.rule.evaluation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import cern.c2mon.server.cache.RuleTagCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+
+/**
+ * The dependencies between the rules, as a directed acyclic graph: a rule
+ * depends on the rules among its input tags, as recorded in the
+ * <code>ruleIds</code> of these rules (see {@link cern.c2mon.server.common.tag.Tag#getRuleIds()}).
+ * The graph is read from the RuleTag cache, which is kept up to date by the
+ * configuration; the cycles are rejected when configuring the rules.
+ *
+ * <p>Plans the propagation waves of the tag updates: all rules depending
+ * directly or indirectly on the updated tag, in an order in which each rule
+ * comes after the rules it depends on (topological order), so that each rule
+ * is evaluated once per wave. The size and depth of the waves are exposed
+ * over JMX.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "cern.c2mon:name=ruleDependencyGraph")
+public class RuleDependencyGraph {
+
+  private final RuleTagCache ruleTagCache;
+
+  private final LongAdder waveCount = new LongAdder();
+
+  private final LongAdder totalWaveSize = new LongAdder();
+
+  private final LongAdder totalWaveDepth = new LongAdder();
+
+  private final AtomicInteger maxWaveSize = new AtomicInteger();
+
+  private final AtomicInteger maxWaveDepth = new AtomicInteger();
+
+  private final LongAdder cyclicWaveCount = new LongAdder();
+
+  @Autowired
+  public RuleDependencyGraph(final RuleTagCache ruleTagCache) {
+    this.ruleTagCache = ruleTagCache;
+  }
+
+  /**
+   * Plans the propagation wave of the given rules, i.e. the rules depending
+   * directly on an updated tag.
+   *
+   * @param ruleIds the rules to evaluate first
+   * @return all rules to evaluate, in topological order
+   */
+  public Wave plan(final Collection<Long> ruleIds) {
+    // the rules of the wave, with the rules depending on them
+    Map<Long, Collection<Long>> dependents = new LinkedHashMap<>();
+    Deque<Long> toVisit = new ArrayDeque<>(ruleIds);
+    while (!toVisit.isEmpty()) {
+      Long ruleId = toVisit.poll();
+      if (!dependents.containsKey(ruleId)) {
+        Collection<Long> ruleDependents = getDependents(ruleId);
+        dependents.put(ruleId, ruleDependents);
+        toVisit.addAll(ruleDependents);
+      }
+    }
+
+    Map<Long, Integer> inputCounts = new HashMap<>();
+    for (Collection<Long> ruleDependents : dependents.values()) {
+      for (Long dependent : ruleDependents) {
+        inputCounts.merge(dependent, 1, Integer::sum);
+      }
+    }
+
+    // Kahn's algorithm, level by level (each level depends on the previous ones)
+    List<Long> order = new ArrayList<>(dependents.size());
+    List<Long> level = new ArrayList<>();
+    for (Long ruleId : dependents.keySet()) {
+      if (!inputCounts.containsKey(ruleId)) {
+        level.add(ruleId);
+      }
+    }
+    int depth = 0;
+    while (!level.isEmpty()) {
+      depth++;
+      order.addAll(level);
+      List<Long> nextLevel = new ArrayList<>();
+      for (Long ruleId : level) {
+        for (Long dependent : dependents.get(ruleId)) {
+          if (inputCounts.merge(dependent, -1, Integer::sum) == 0) {
+            nextLevel.add(dependent);
+          }
+        }
+      }
+      level = nextLevel;
+    }
+
+    if (order.size() < dependents.size()) {
+      // cycle configured before cycles were rejected: evaluated once, in any order
+      cyclicWaveCount.increment();
+      log.warn("Cycle of rules depending on each other found among rules {}", dependents.keySet());
+      for (Long ruleId : dependents.keySet()) {
+        if (inputCounts.getOrDefault(ruleId, 0) > 0) {
+          order.add(ruleId);
+        }
+      }
+    }
+
+    record(order.size(), depth);
+    return new Wave(order, dependents, depth);
+  }
+
+  /**
+   * @return the rules having the given rule as input
+   */
+  private Collection<Long> getDependents(final Long ruleId) {
+    try {
+      Collection<Long> ruleIds = ruleTagCache.get(ruleId).getRuleIds();
+      return ruleIds.isEmpty() ? Collections.<Long>emptyList() : new ArrayList<>(ruleIds);
+    } catch (CacheElementNotFoundException e) {
+      return Collections.emptyList();
+    }
+  }
+
+  private void record(final int size, final int depth) {
+    waveCount.increment();
+    totalWaveSize.add(size);
+    totalWaveDepth.add(depth);
+    maxWaveSize.accumulateAndGet(size, Math::max);
+    maxWaveDepth.accumulateAndGet(depth, Math::max);
+  }
+
+  @ManagedAttribute(description = "Number of rule propagation waves")
+  public long getWaveCount() {
+    return waveCount.sum();
+  }
+
+  @ManagedAttribute(description = "Average number of rules evaluated per wave")
+  public double getAverageWaveSize() {
+    long waves = waveCount.sum();
+    return waves == 0 ? 0 : (double) totalWaveSize.sum() / waves;
+  }
+
+  @ManagedAttribute(description = "Largest number of rules evaluated in a wave")
+  public int getMaxWaveSize() {
+    return maxWaveSize.get();
+  }
+
+  @ManagedAttribute(description = "Average number of rule levels per wave")
+  public double getAverageWaveDepth() {
+    long waves = waveCount.sum();
+    return waves == 0 ? 0 : (double) totalWaveDepth.sum() / waves;
+  }
+
+  @ManagedAttribute(description = "Largest number of rule levels in a wave")
+  public int getMaxWaveDepth() {
+    return maxWaveDepth.get();
+  }
+
+  @ManagedAttribute(description = "Number of waves that contained a cycle of rules")
+  public long getCyclicWaveCount() {
+    return cyclicWaveCount.sum();
+  }
+
+  @ManagedOperation(description = "Resets the wave statistics")
+  public void resetStatistics() {
+    waveCount.reset();
+    totalWaveSize.reset();
+    totalWaveDepth.reset();
+    maxWaveSize.set(0);
+    maxWaveDepth.set(0);
+    cyclicWaveCount.reset();
+  }
+
+  /**
+   * The rules of a propagation wave, in evaluation order.
+   */
+  public static final class Wave {
+
+    private final List<Long> ruleIds;
+
+    private final Map<Long, Collection<Long>> dependents;
+
+    private final int depth;
+
+    private Wave(final List<Long> ruleIds, final Map<Long, Collection<Long>> dependents, final int depth) {
+      this.ruleIds = ruleIds;
+      this.dependents = dependents;
+      this.depth = depth;
+    }
+
+    /**
+     * @return the rules, each after the rules it depends on
+     */
+    public List<Long> getRuleIds() {
+      return ruleIds;
+    }
+
+    /**
+     * @param ruleId a rule of the wave
+     * @return true if other rules of the wave depend on it
+     */
+    public boolean hasDependents(final Long ruleId) {
+      Collection<Long> ruleDependents = dependents.get(ruleId);
+      return ruleDependents != null && !ruleDependents.isEmpty();
+    }
+
+    /**
+     * @return the number of levels of dependent rules
+     */
+    public int getDepth() {
+      return depth;
+    }
+  }
+}
@@ -17,10 +17,12 @@
 package cern.c2mon.server.rule.evaluation;
 
 import java.sql.Timestamp;
-import java.util.Collection;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PostConstruct;
 
@@ -33,6 +35,8 @@ import cern.c2mon.server.cache.C2monCacheListener;
 import cern.c2mon.server.cache.CacheRegistrationService;
 import cern.c2mon.server.cache.RuleTagCache;
 import cern.c2mon.server.cache.TagLocationService;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.UpdateStage;
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
 import cern.c2mon.server.common.component.Lifecycle;
 import cern.c2mon.server.common.config.ServerConstants;
@@ -41,9 +45,9 @@ import cern.c2mon.server.common.rule.RuleTag;
 import cern.c2mon.server.common.tag.Tag;
 import cern.c2mon.server.rule.config.RuleProperties;
 import cern.c2mon.server.rule.RuleEvaluator;
+import cern.c2mon.shared.common.rule.RuleInputValue;
 import cern.c2mon.shared.rule.RuleEvaluationException;
-
-import static cern.c2mon.shared.common.type.TypeConverter.*;
+import cern.c2mon.shared.rule.RuleInputs;
 
 /**
  * Contains evaluate methods wrapping calls to the rule engine.
@@ -70,6 +74,27 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
 
   private final RuleProperties properties;
 
+  /** Records the latency of the input tag updates once the rules are evaluated. */
+  private final UpdateLatencyMonitor updateLatencyMonitor;
+
+  /** The resolved inputs of the rules, by rule id; rebuilt on reconfiguration. */
+  private final ConcurrentMap<Long, RuleInputBinding> inputBindings = new ConcurrentHashMap<>();
+
+  /** The input map of each evaluation thread, refilled for every evaluation. */
+  private final ThreadLocal<RuleInputs> threadInputs = ThreadLocal.withInitial(RuleInputs::new);
+
+  /** Plans the propagation of the tag updates through the rules. */
+  private final RuleDependencyGraph dependencyGraph;
+
+  /**
+   * The results of the rules already propagated to the rules depending on
+   * them, by rule id: the dependent rules are not evaluated again when the
+   * same result is written to the cache. Until then, these results are also
+   * the inputs of the rules evaluated in later waves, in place of the values
+   * still in the cache.
+   */
+  private final ConcurrentMap<Long, RuleInputValue> propagatedResults = new ConcurrentHashMap<>();
+
   /**
    * Listener container lifecycle hook.
    */
@@ -85,13 +110,17 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
                            RuleUpdateBuffer ruleUpdateBuffer,
                            TagLocationService tagLocationService,
                            CacheRegistrationService cacheRegistrationService,
-                           RuleProperties properties) {
+                           RuleProperties properties,
+                           UpdateLatencyMonitor updateLatencyMonitor,
+                           RuleDependencyGraph dependencyGraph) {
     super();
     this.ruleTagCache = ruleTagCache;
     this.ruleUpdateBuffer = ruleUpdateBuffer;
     this.tagLocationService = tagLocationService;
     this.cacheRegistrationService = cacheRegistrationService;
     this.properties = properties;
+    this.updateLatencyMonitor = updateLatencyMonitor;
+    this.dependencyGraph = dependencyGraph;
   }
 
   /**
@@ -104,8 +133,20 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
 
   @Override
   public void notifyElementUpdated(Tag tag) {
+    notifyElementUpdated(tag, false);
+  }
+
+  /**
+   * @param tag the updated tag
+   * @param force true if the rules must be evaluated even if their inputs are
+   *              unchanged
+   */
+  private void notifyElementUpdated(final Tag tag, final boolean force) {
     try {
-      evaluateRules(tag);
+      evaluateRules(tag, force);
+      if (!tag.getRuleIds().isEmpty()) {
+        updateLatencyMonitor.record(UpdateStage.RULE_EVALUATION, tag);
+      }
     } catch (Exception e) {
       log.error(tag.getId() + " Error caught when evaluating rules (these are " + tag.getRuleIds() + ")", e);
     }
@@ -122,21 +163,74 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
    * to be ensured by the DataTagCacheObject
    * </UL>
    *
-   * evaluates rules that depend on tag
+   * evaluates rules that depend on tag; the rules whose inputs are unchanged
+   * since their last evaluation are skipped
    */
   public void evaluateRules(final Tag tag) {
+    evaluateRules(tag, false);
+  }
+
+  /**
+   * @param tag the updated tag
+   * @param force true if the rules must be evaluated even if their inputs are
+   *              unchanged
+   */
+  private void evaluateRules(final Tag tag, final boolean force) {
     //TODO no synch here, since no harm if rule is removed or added ?
     Iterator<Long> rulesIterator = tag.getRuleIds().iterator(); // Rule Ids Collection
     // For each rule id related to the tag
     if (tag.getRuleIds().size() > 0) {
+      if (properties.isDependencyPropagation()) {
+        if (!force && isPropagated(tag)) {
+          log.trace(tag.getId() + " Rule result already propagated to rules " + tag.getRuleIds());
+          return;
+        }
+        log.trace(tag.getId() + " Triggering propagation wave for " + tag.getRuleIds().size() + " rules : " + tag.getRuleIds());
+        evaluateWave(tag, force);
+      } else {
         log.trace(tag.getId() + " Triggering re-evaluation for " + tag.getRuleIds().size() + " rules : " + tag.getRuleIds());
 
         while (rulesIterator.hasNext()) {
-           evaluateRule(rulesIterator.next());
+           evaluateRule(rulesIterator.next(), null, force);
         }
+      }
+    }
+  }
+
+  /**
+   * Evaluates all rules depending directly or indirectly on the tag, each
+   * once, after the rules it depends on. The rules see the new results of
+   * the rules they depend on, before these are written to the cache.
+   *
+   * @param tag the updated tag
+   * @param force true if the rules must be evaluated even if their inputs are
+   *              unchanged
+   */
+  private void evaluateWave(final Tag tag, final boolean force) {
+    RuleDependencyGraph.Wave wave = dependencyGraph.plan(tag.getRuleIds());
+    Map<Long, RuleInputValue> results = wave.getDepth() > 1 ? new HashMap<>() : null;
+    for (Long ruleId : wave.getRuleIds()) {
+      RuleInputValue result = evaluateRule(ruleId, results, force);
+      if (results != null && result != null && wave.hasDependents(ruleId)) {
+        results.put(ruleId, result);
+        propagatedResults.put(ruleId, result);
+      }
     }
   }
 
+  /**
+   * @param tag an updated tag
+   * @return true if the tag is a rule whose result, as written to the cache,
+   *         was already propagated to the rules depending on it
+   */
+  private boolean isPropagated(final Tag tag) {
+    if (tag instanceof RuleTag) {
+      RuleInputValue propagated = propagatedResults.remove(tag.getId());
+      return propagated != null && propagated.isValid() == tag.isValid() && Objects.equals(propagated.getValue(), tag.getValue());
+    }
+    return false;
+  }
+
   /**
    * Performs the rule evaluation for a given tag id. In case that
    * the id does not belong to a rule a warning message is logged to
@@ -146,6 +240,31 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
    */
   @Override
   public final void evaluateRule(final Long pRuleId) {
+    // the result will be propagated once written to the cache
+    propagatedResults.remove(pRuleId);
+    evaluateRule(pRuleId, null, true);
+  }
+
+  @Override
+  public void removeRule(final Long ruleId) {
+    inputBindings.remove(ruleId);
+    propagatedResults.remove(ruleId);
+  }
+
+  /**
+   * Evaluates the rule.
+   *
+   * @param pRuleId The id of a rule.
+   * @param upstreamResults the new results of the input rules, by rule id
+   *                        (the other inputs are taken from the results not
+   *                        yet written to the cache, or from the caches);
+   *                        null if none
+   * @param force true if the rule must be evaluated even if its inputs are
+   *              unchanged since the last evaluation
+   * @return the result of the rule, as it will be written to the cache (value
+   *         and validity), or null if the rule was not evaluated
+   */
+  private RuleInputValue evaluateRule(final Long pRuleId, final Map<Long, RuleInputValue> upstreamResults, final boolean force) {
     log.trace((new StringBuffer("").append(pRuleId).append(" evaluateRule() called")).toString());
 
     final Timestamp ruleResultTimestamp = new Timestamp(System.currentTimeMillis());
@@ -163,36 +282,48 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
       RuleTag rule = ruleTagCache.get(pRuleId);
 
       if (rule.getRuleExpression() != null) {
-        final Collection<Long> ruleInputTagIds = rule.getRuleExpression().getInputTagIds();
+        final RuleInputBinding binding = getInputBinding(rule);
 
-        // Retrieve all input tags for the rule
-        final Map<Long, Object> tags = new Hashtable<Long, Object>(ruleInputTagIds.size());
+        // Retrieve all input tags for the rule, by slot
+        RuleInputs tags = threadInputs.get();
+        if (tags.isBound()) {
+          // nested evaluation in this thread
+          tags = new RuleInputs();
+        }
+        binding.bind(tags);
 
-        Tag tag = null;
         Long actualTag = null;
         try {
-          for (Long inputTagId : ruleInputTagIds) {
-            actualTag = inputTagId;
+          for (int slot = 0; slot < binding.getInputCount(); slot++) {
+            actualTag = binding.getInputId(slot);
             // We don't use a read lock here, because a tag change would anyway
             // result in another rule evaluation
-            // look for tag in datatag, rule and control caches
-            tag = tagLocationService.get(inputTagId);
-
             // put reference to cache object in map
-            tags.put(inputTagId, tag);
+            RuleInputValue upstreamResult = upstreamResults != null ? upstreamResults.get(actualTag) : null;
+            if (upstreamResult == null) {
+              // result of an earlier wave, not yet written to the cache
+              upstreamResult = propagatedResults.get(actualTag);
+            }
+            tags.set(slot, upstreamResult != null ? upstreamResult : binding.getInput(slot, tagLocationService));
           }
 
-          // Retrieve class type of resulting value, in order to cast correctly
-          // the evaluation result
-          Class<?> ruleResultClass = getType(rule.getDataType());
+          if (!force && isMemoized(pRuleId) && binding.isUnchanged(tags, rule)) {
+            log.trace(pRuleId + " evaluateRule - Inputs unchanged since the last evaluation - skipping evaluation");
+            return binding.getLastResult();
+          }
 
-          Object value = rule.getRuleExpression().evaluate(tags, ruleResultClass);
+          Object value = rule.getRuleExpression().evaluate(tags, binding.getResultClass());
           ruleUpdateBuffer.update(pRuleId, value, "Rule result", ruleResultTimestamp);
+          RuleInputValue result = new RuleResult(pRuleId, value, true);
+          binding.remember(tags, result);
+          return result;
         } catch (CacheElementNotFoundException cacheEx) {
           log.warn(pRuleId + " evaluateRule - Failed to locate tag with id " + actualTag + " in any tag cache (during rule evaluation) - unable to evaluate rule.",
               cacheEx);
           ruleUpdateBuffer.invalidate(pRuleId, TagQualityStatus.UNKNOWN_REASON,
               "Unable to evaluate rule as cannot find required Tag in cache: " + cacheEx.getMessage(), ruleResultTimestamp);
+          binding.forget();
+          return new RuleResult(pRuleId, rule.getValue(), false);
         } catch (RuleEvaluationException re) {
           // TODO change in rule engine: this should NOT be done using an
           // exception since it is normal behavior switched to trace
@@ -200,16 +331,27 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
               + re.getMessage() + ").");
           // switched from INACCESSIBLE in old code
           ruleUpdateBuffer.invalidate(pRuleId, TagQualityStatus.UNKNOWN_REASON, re.getMessage(), ruleResultTimestamp);
+          RuleInputValue result = new RuleResult(pRuleId, rule.getValue(), false);
+          binding.remember(tags, result);
+          return result;
         } catch (Exception e) {
           log.error(pRuleId +
               " evaluateRule - Unexpected Error evaluating expresion of rule with Id (" + pRuleId + ") - invalidating rule with quality UNKNOWN_REASON", e);
           // switched from INACCESSIBLE in old code
           ruleUpdateBuffer.invalidate(pRuleId, TagQualityStatus.UNKNOWN_REASON, e.getMessage(), ruleResultTimestamp);
+          binding.forget();
+          return new RuleResult(pRuleId, rule.getValue(), false);
+        } finally {
+          tags.clear();
+          if (binding.isStale()) {
+            inputBindings.remove(pRuleId, binding);
+          }
         }
       } else {
         log.error(pRuleId + " evaluateRule - Unable to evaluate rule with Id (" + pRuleId + ") as RuleExpression is null.");
       }
     } catch (CacheElementNotFoundException cacheEx) {
+      inputBindings.remove(pRuleId);
       log.error(pRuleId + " evaluateRule - Rule with id " + pRuleId + " not found in cache - unable to evaluate it.", cacheEx);
     } catch (Exception e) {
       log.error("evaluateRule - Unexpected Error caught while retrieving " + pRuleId + " from rule cache.", e);
@@ -218,14 +360,41 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
     } finally {
       ruleTagCache.releaseWriteLockOnKey(pRuleId);
     }
+    return null;
   }
 
   /**
-   * Will evaluate the rule and put in cache (listeners will get update notification).
+   * Returns the resolved inputs of the rule, resolving them again if the
+   * rule was reconfigured or an input tag was not found in its cache.
+   *
+   * @param rule the rule, with a non-null expression
+   * @return the input binding of the current rule configuration
+   */
+  private RuleInputBinding getInputBinding(final RuleTag rule) {
+    RuleInputBinding binding = inputBindings.get(rule.getId());
+    if (binding == null || binding.isStale() || !binding.isBindingOf(rule)) {
+      binding = new RuleInputBinding(rule, tagLocationService);
+      inputBindings.put(rule.getId(), binding);
+    }
+    return binding;
+  }
+
+  /**
+   * Will evaluate the rule and put in cache (listeners will get update notification),
+   * even if its inputs are unchanged.
    */
   @Override
   public void confirmStatus(Tag tag) {
-    notifyElementUpdated(tag);
+    notifyElementUpdated(tag, true);
+  }
+
+  /**
+   * @param ruleId a rule
+   * @return true if the evaluation of the rule may be skipped when its inputs
+   *         are unchanged
+   */
+  private boolean isMemoized(final Long ruleId) {
+    return properties.isInputMemoization() && !properties.getAlwaysEvaluatedRuleIds().contains(ruleId);
   }
 
   @Override
@@ -262,4 +431,37 @@ public class RuleEvaluatorImpl implements C2monCacheListener<Tag>, SmartLifecycl
   public int getPhase() {
     return ServerConstants.PHASE_INTERMEDIATE;
   }
+
+  /**
+   * The result of a rule evaluation, as input of the rules depending on it.
+   */
+  private static final class RuleResult implements RuleInputValue {
+
+    private final Long id;
+
+    private final Object value;
+
+    private final boolean valid;
+
+    RuleResult(final Long id, final Object value, final boolean valid) {
+      this.id = id;
+      this.value = value;
+      this.valid = valid;
+    }
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean isValid() {
+      return valid;
+    }
+  }
 }
@@ -0,0 +1,219 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.rule.evaluation;
+
+import java.util.Objects;
+import java.util.Set;
+
+import cern.c2mon.server.cache.C2monCache;
+import cern.c2mon.server.cache.TagLocationService;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.rule.RuleTag;
+import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.shared.common.rule.RuleInputValue;
+import cern.c2mon.shared.rule.RuleExpression;
+import cern.c2mon.shared.rule.RuleInputs;
+
+import static cern.c2mon.shared.common.type.TypeConverter.getType;
+
+/**
+ * The inputs of a rule, resolved once for all its evaluations: the input tag
+ * ids by slot (in the order of {@link RuleExpression#getInputTagIds()}), the
+ * cache containing each input tag and the class of the rule result.
+ *
+ * <p>A binding is for a given rule expression and data type: it must be
+ * rebuilt when the rule is reconfigured (see {@link #isBindingOf(RuleTag)}).
+ * It becomes stale when an input tag is no longer in the cache it was
+ * resolved in (tag removed or recreated): the tag is then located by the
+ * {@link TagLocationService} and the binding should be rebuilt.
+ *
+ * <p>The binding also remembers the value and validity of each input at the
+ * last evaluation, with its result, so that an evaluation with the same inputs
+ * can be skipped (see {@link #isUnchanged(RuleInputs, RuleTag)}). These are
+ * only accessed under the write lock of the rule.
+ */
+final class RuleInputBinding {
+
+  private final RuleExpression ruleExpression;
+
+  private final String ruleText;
+
+  private final String dataType;
+
+  private final Class<?> resultClass;
+
+  private final Long[] inputIds;
+
+  /** The cache of each input tag, null if it was not found. */
+  private final C2monCache<Long, ? extends Tag>[] caches;
+
+  private volatile boolean stale = false;
+
+  /** The value of each input at the last evaluation. */
+  private Object[] lastValues;
+
+  /** The validity of each input at the last evaluation. */
+  private boolean[] lastValidities;
+
+  /** The result of the last evaluation, null if not remembered. */
+  private RuleInputValue lastResult;
+
+  /**
+   * Resolves the inputs of the rule.
+   *
+   * @param rule the rule, with a non-null expression
+   * @param tagLocationService locates the input tags
+   */
+  @SuppressWarnings("unchecked")
+  RuleInputBinding(final RuleTag rule, final TagLocationService tagLocationService) {
+    this.ruleExpression = rule.getRuleExpression();
+    this.ruleText = rule.getRuleText();
+    this.dataType = rule.getDataType();
+    this.resultClass = getType(dataType);
+    Set<Long> ids = ruleExpression.getInputTagIds();
+    this.inputIds = ids.toArray(new Long[ids.size()]);
+    this.caches = new C2monCache[inputIds.length];
+    for (int slot = 0; slot < inputIds.length; slot++) {
+      try {
+        caches[slot] = tagLocationService.getTagCache(inputIds[slot]);
+      } catch (CacheElementNotFoundException e) {
+        // reported on evaluation
+        stale = true;
+      }
+    }
+  }
+
+  /**
+   * @param rule a rule
+   * @return true if this binding was built for the current expression and
+   *         data type of the rule
+   */
+  boolean isBindingOf(final RuleTag rule) {
+    return (rule.getRuleExpression() == ruleExpression || ruleText.equals(rule.getRuleText()))
+        && dataType.equals(rule.getDataType());
+  }
+
+  /**
+   * @return true if an input tag could not be found in its resolved cache
+   */
+  boolean isStale() {
+    return stale;
+  }
+
+  /**
+   * @return the class of the rule result
+   */
+  Class<?> getResultClass() {
+    return resultClass;
+  }
+
+  /**
+   * @return the number of input tags
+   */
+  int getInputCount() {
+    return inputIds.length;
+  }
+
+  /**
+   * @param slot an input slot
+   * @return the id of the input tag of the slot
+   */
+  Long getInputId(final int slot) {
+    return inputIds[slot];
+  }
+
+  /**
+   * Binds the given input map to the input ids of the rule.
+   *
+   * @param inputs the (unbound) input map of the evaluation
+   */
+  void bind(final RuleInputs inputs) {
+    inputs.bind(inputIds);
+  }
+
+  /**
+   * @param slot an input slot
+   * @param tagLocationService locates the input tag if not found in its cache
+   * @return a reference to the input tag of the slot in the cache
+   * @throws CacheElementNotFoundException if the tag is not found in any cache
+   */
+  Tag getInput(final int slot, final TagLocationService tagLocationService) {
+    C2monCache<Long, ? extends Tag> cache = caches[slot];
+    if (cache != null) {
+      try {
+        return cache.get(inputIds[slot]);
+      } catch (CacheElementNotFoundException e) {
+        // moved or removed
+      }
+    }
+    stale = true;
+    return tagLocationService.get(inputIds[slot]);
+  }
+
+  /**
+   * @param inputs the inputs of an evaluation, all slots set
+   * @param rule the rule, as in the cache
+   * @return true if the inputs have the same values and validities as at the
+   *         last evaluation, and the rule still has the result of that
+   *         evaluation (not yet written to the cache, or changed since)
+   */
+  boolean isUnchanged(final RuleInputs inputs, final RuleTag rule) {
+    if (lastResult == null || lastResult.isValid() != rule.isValid() || !Objects.equals(lastResult.getValue(), rule.getValue())) {
+      return false;
+    }
+    for (int slot = 0; slot < inputIds.length; slot++) {
+      RuleInputValue input = (RuleInputValue) inputs.getSlot(slot);
+      if (input.isValid() != lastValidities[slot] || !Objects.equals(input.getValue(), lastValues[slot])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the result of the last evaluation, null if not remembered
+   */
+  RuleInputValue getLastResult() {
+    return lastResult;
+  }
+
+  /**
+   * Remembers the inputs and result of an evaluation.
+   *
+   * @param inputs the inputs of the evaluation, all slots set
+   * @param result the result of the evaluation
+   */
+  void remember(final RuleInputs inputs, final RuleInputValue result) {
+    if (lastValues == null) {
+      lastValues = new Object[inputIds.length];
+      lastValidities = new boolean[inputIds.length];
+    }
+    for (int slot = 0; slot < inputIds.length; slot++) {
+      RuleInputValue input = (RuleInputValue) inputs.getSlot(slot);
+      lastValues[slot] = input.getValue();
+      lastValidities[slot] = input.isValid();
+    }
+    lastResult = result;
+  }
+
+  /**
+   * Forgets the last evaluation, after an evaluation that failed.
+   */
+  void forget() {
+    lastResult = null;
+  }
+}
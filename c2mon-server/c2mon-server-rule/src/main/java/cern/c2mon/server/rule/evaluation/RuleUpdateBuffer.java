@@ -17,14 +17,36 @@
 package cern.c2mon.server.rule.evaluation;
 
 import java.sql.Timestamp;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
 import cern.c2mon.server.cache.RuleTagFacade;
 import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.rule.config.RuleProperties;
 import cern.c2mon.shared.common.datatag.TagQualityStatus;
 
 /**
@@ -34,64 +56,96 @@ import cern.c2mon.shared.common.datatag.TagQualityStatus;
  * in this cases like a time-deadband which sends only the latest value after it did
  * not receive any further evaluations after the last cacheUpdate intervals.
  *
+ * <p>The rules are partitioned between shards by id. Each shard holds the
+ * pending result of its rules in a concurrent map, and is flushed every
+ * <code>bufferTickMillis</code> on its own thread: the rules not updated since
+ * the previous tick, or delayed for <code>bufferMaxCycles</code> ticks, are
+ * written to the cache in one batch. The rule evaluation threads never wait
+ * for each other or for a flush.
+ *
  * In C2MON, instantiated as a Spring singleton using annotations.
  *
  * @author Matthias Braeger
  */
 @Slf4j
 @Service
-public final class RuleUpdateBuffer {
-  
-  /** The initial buffer size */
-  private static final int INITIAL_BUFFER_SIZE = 1000;
-  
-  /** The schedule interval for the <code>CacheUpdaterTask</code> */
-  private static final int BUFFER_TIMER_MILLIS = 75; // we chose this value due to the JMS message delivering delay
-  
-  /** 
-   * The maximum amount of check cycles that the cache updater shall 
-   * wait before forcing a cache update for a particular rule.
-   */
-  private static final int MAX_CYCLES_WAIT = 6; // 6 * 75 = 450 ms <== max delay
-  
-  /** thread synchronization object */
-  private static final Object BUFFER_LOCK = new Object();
-  
+@ManagedResource(objectName = "cern.c2mon:name=ruleUpdateBuffer")
+public class RuleUpdateBuffer {
+
+  /** Result of a slot already written to the cache (see {@link ResultSlot#close()}) */
+  private static final RuleResult CLOSED = new RuleResult(null, null, null, null);
+
+  private final RuleTagFacade ruleTagFacade;
+
+  /** The schedule interval of the shard flushes */
+  private final int tickMillis;
+
   /**
-   * Reference to the local home interface of the
-   * <code>DataTagFacade</code> session bean.
+   * The maximum amount of ticks that a shard shall wait before forcing
+   * a cache update for a particular rule.
    */
-  private static RuleTagFacade ruleTagFacade;
-  
-  /** The internal buffer used for the */
-  private static final Map<Long, RuleBufferObject> RULE_OBJECT_BUF = new Hashtable<Long, RuleBufferObject>(INITIAL_BUFFER_SIZE);
-  
-  /** 
-   * Map containing the flags which indicates that an update was received
-   * within the last cache updater cycle.
+  private final int maxCycles;
+
+  private final Shard[] shards;
+
+  private ScheduledExecutorService scheduler;
+
+  private final LongAdder flushCount = new LongAdder();
+
+  private final LongAdder flushedResultCount = new LongAdder();
+
+  private final LongAdder totalFlushNanos = new LongAdder();
+
+  private final AtomicLong maxFlushNanos = new AtomicLong();
+
+  /**
+   * Constructor
    */
-  private static final Map<Long, Boolean> UPDATE_RECEIVED_FLAGS  = new Hashtable<Long, Boolean>(INITIAL_BUFFER_SIZE);
-  
+  @Autowired
+  public RuleUpdateBuffer(final RuleTagFacade ruleTagFacade, final RuleProperties properties) {
+    this.ruleTagFacade = ruleTagFacade;
+    this.tickMillis = properties.getBufferTickMillis();
+    this.maxCycles = properties.getBufferMaxCycles();
+    this.shards = new Shard[Math.max(1, properties.getBufferShards())];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+  }
+
   /**
-   * The counters for checking the cycles that a specific rule is already been buffered.
-   * When the counter exceeds the MAX_CYCLES_WAIT the <code>CacheUpdaterTask</code> forces
-   * a cache update.
+   * Starts the periodic flush of the shards.
    */
-  private static final Map<Long, Integer> CYCLE_COUNTERS = new Hashtable<Long, Integer>(INITIAL_BUFFER_SIZE);
-  
-  /** Timer instance that schedules the <code>CacheUpdaterTask</code> */
-  private final Timer timer;
-  
-  /** will be set to true, once the timer is running */ 
-  private static boolean isCacheUpdaterRunning = false;
-  
+  @PostConstruct
+  public void init() {
+    AtomicInteger threadCount = new AtomicInteger(0);
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(shards.length, runnable -> {
+      Thread thread = new Thread(runnable, "RuleUpdater-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    for (Shard shard : shards) {
+      executor.scheduleAtFixedRate(() -> flush(shard), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+    scheduler = executor;
+  }
+
   /**
-   * Constructor 
+   * Stops the periodic flush, and writes the pending results to the cache.
    */
-  @Autowired
-  private RuleUpdateBuffer(RuleTagFacade ruleTagFacade) {
-    this.timer = new Timer("RuleUpdater");
-    RuleUpdateBuffer.ruleTagFacade = ruleTagFacade;
+  @PreDestroy
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      try {
+        scheduler.awaitTermination(tickMillis * 10L, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (Shard shard : shards) {
+      write(shard.drain());
+    }
   }
 
   /**
@@ -102,19 +156,12 @@ public final class RuleUpdateBuffer {
    * @param pTimestamp the timestamp of the rule evaluation.
    */
   public void update(final Long pId, final Object pValue, final String pValueDesc, final Timestamp pTimestamp) {
-    final RuleBufferObject bufferObj;
-    
     log.trace(pId + " entering update()");
-    synchronized (BUFFER_LOCK) {
-      if (!RULE_OBJECT_BUF.containsKey(pId)) {
-        bufferObj = new RuleBufferObject(pId, pValue, pValueDesc, pTimestamp);
-        RULE_OBJECT_BUF.put(pId, bufferObj);
-      }
-      else {
-        bufferObj = (RuleBufferObject) RULE_OBJECT_BUF.get(pId);
-        bufferObj.update(pValue, pValueDesc, pTimestamp);
-      }
-      scheduleCacheUpdaterTask(pId);
+    ConcurrentMap<Long, ResultSlot> slots = shardOf(pId).slots;
+    ResultSlot slot;
+    while (!(slot = slots.computeIfAbsent(pId, ResultSlot::new)).update(pValue, pValueDesc, pTimestamp)) {
+      // slot being written to the cache: retry with a new one
+      slots.remove(pId, slot);
     }
     log.trace(pId + " leaving update()");
   }
@@ -127,251 +174,293 @@ public final class RuleUpdateBuffer {
    * @param pTimestamp the timestamp of the rule evaluation
    */
   public void invalidate(final Long pId, final TagQualityStatus pReason, final String pDescription, final Timestamp pTimestamp) {
-    final RuleBufferObject bufferObj;
-    
+    if (pReason == null) {
+      throw new IllegalArgumentException("invalidate(..) method called with null TagQualityStatus argument.");
+    }
     log.trace(pId + " entering invalidate()");
-    synchronized (BUFFER_LOCK) {
-      if (!RULE_OBJECT_BUF.containsKey(pId)) {
-        bufferObj = new RuleBufferObject(pId, null, pReason, pDescription, null, pTimestamp);
-        RULE_OBJECT_BUF.put(pId, bufferObj);
+    ConcurrentMap<Long, ResultSlot> slots = shardOf(pId).slots;
+    ResultSlot slot;
+    while (!(slot = slots.computeIfAbsent(pId, ResultSlot::new)).invalidate(pReason, pDescription, pTimestamp)) {
+      slots.remove(pId, slot);
+    }
+    log.trace(pId + " leaving invalidate()");
+  }
+
+  private Shard shardOf(final Long pId) {
+    return shards[Math.floorMod(pId.hashCode(), shards.length)];
+  }
+
+  /**
+   * Writes to the cache the results of the shard that were not updated since
+   * the previous tick, or were delayed for the maximum number of ticks.
+   * Called on the shard thread (package-private for tests).
+   */
+  void flush(final Shard shard) {
+    //keep logic in try clause as exception will cancel the periodic flush
+    try {
+      long start = System.nanoTime();
+      List<RuleResult> rulesToUpdate = new ArrayList<>();
+      for (ResultSlot slot : shard.slots.values()) {
+        boolean forceCacheUpdate = slot.cycles >= maxCycles;
+        if (!slot.updated || forceCacheUpdate) {
+          // no recent update of that rule, or the buffer was updated more than maxCycles ticks in a row
+          if (forceCacheUpdate) {
+            log.debug("flush() - Forcing a cache update for rule " + slot.id
+                + " since it was already delayed by " + maxCycles * tickMillis + " ms.");
+          }
+          RuleResult result = slot.close();
+          shard.slots.remove(slot.id, slot);
+          if (result != null) {
+            rulesToUpdate.add(result);
+          }
+        } else {
+          // reset the flag in order to update the cache at the next tick
+          slot.updated = false;
+          slot.cycles++;
+        }
       }
-      else {
-        bufferObj = (RuleBufferObject) RULE_OBJECT_BUF.get(pId);
-        bufferObj.invalidate(pReason, pDescription, pTimestamp);
+      if (!rulesToUpdate.isEmpty()) {
+        write(rulesToUpdate);
+        long nanos = System.nanoTime() - start;
+        flushCount.increment();
+        flushedResultCount.add(rulesToUpdate.size());
+        totalFlushNanos.add(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
       }
-      scheduleCacheUpdaterTask(pId);
+    } catch (Exception ex) {
+      log.error("Exception caught during rule update - should not be ignored!", ex);
     }
-    log.trace(pId + " leaving invalidate()");
   }
 
   /**
-   * Registers an update for the given rule id and triggers
-   * the start of the <code>CacheUpdaterTask</code>, if not
-   * yet done.
-   * @param pId the rule process id that has been updated. 
+   * Writes the results to the cache.
    */
-  private void scheduleCacheUpdaterTask(final Long pId) {
-    UPDATE_RECEIVED_FLAGS.put(pId, Boolean.TRUE);
-    if (!isCacheUpdaterRunning) {
-      try {
-        log.trace(pId + " scheduleCacheUpdaterTask() - Initialize new cache updater task");
-        timer.schedule(new CacheUpdaterTask(), BUFFER_TIMER_MILLIS, BUFFER_TIMER_MILLIS);
-        isCacheUpdaterRunning = true;
-      } catch (IllegalStateException ise) {
-        log.error(pId + "scheduleCacheUpdaterTask() - Catched illegal state exception", ise);
-      }      
+  private void write(final List<RuleResult> rulesToUpdate) {
+    for (RuleResult result : rulesToUpdate) {
+      if (result.qualityCollection.isEmpty()) {
+        log.trace("write() - updating cache for rule id " + result.id
+            + ": value=" + result.value
+            + ", description=" + result.valueDesc
+            + ", timestamp=" + result.timestamp);
+        try {
+          ruleTagFacade.updateAndValidate(result.id, result.value, result.valueDesc, result.timestamp);
+        } catch (CacheElementNotFoundException cacheEx) {
+          log.warn("Unable to update rule (can happen during rule reconfiguration)", cacheEx);
+        } catch (Exception exception) {
+          log.warn("Unexpected error during rule evaluation", exception);
+        }
+      } else {
+        log.trace("write() - invalidating cache for rule id " + result.id
+            + ": reasons=" + result.qualityCollection
+            + ", descriptions=" + result.qualityDescriptions
+            + ", timestamp=" + result.timestamp);
+        try {
+          ruleTagFacade.setQuality(result.id, result.qualityCollection, null, result.qualityDescriptions, result.timestamp);
+        } catch (CacheElementNotFoundException cacheEx) {
+          log.warn("Unable to update rule as could not be located in cache (normal during rule reconfiguration)", cacheEx);
+        }
+      }
     }
   }
-  
+
   /**
-   * Inner class which is used to store the rule update
-   * information for the cache of the given rule data tag.
+   * For management only.
    *
-   * @author Matthias Braeger
+   * @return the number of rule results waiting in each shard
    */
-  private static final class RuleBufferObject {
-    /** Rule data tag id */
-    private Long id = null;
-    /** rule result object */
-    private Object value = null;
-    /** quality flag */
-    private HashSet<TagQualityStatus> qualityCollection = new HashSet<TagQualityStatus>();
-    /** quality flag description */
-    private HashMap<TagQualityStatus, String> qualityDescriptions = new HashMap<TagQualityStatus, String>();
-    /** value description */
-    private String valueDesc = null; 
-    /** rule evaluation timestamp */
-    private Timestamp timestamp = null;
+  @ManagedAttribute(description = "Number of rule results waiting in each shard of the buffer")
+  public List<Integer> getShardOccupancies() {
+    List<Integer> occupancies = new ArrayList<>(shards.length);
+    for (Shard shard : shards) {
+      occupancies.add(shard.slots.size());
+    }
+    return occupancies;
+  }
 
-    /**
-     * Copy Constructor
-     * @param rbo The object to be copied
-     */
-    @SuppressWarnings("unchecked")
-    private RuleBufferObject(final RuleBufferObject rbo) {
-      this.id = rbo.id;
-      this.value = rbo.value;
-      this.qualityCollection = (HashSet<TagQualityStatus>) rbo.qualityCollection.clone();
-      this.qualityDescriptions = (HashMap<TagQualityStatus, String>) rbo.qualityDescriptions.clone();
-      this.valueDesc = rbo.valueDesc;     
-      this.timestamp = new Timestamp(rbo.timestamp.getTime());
+  @ManagedAttribute(description = "Number of rule results waiting in the buffer")
+  public int getOccupancy() {
+    int occupancy = 0;
+    for (Shard shard : shards) {
+      occupancy += shard.slots.size();
     }
+    return occupancy;
+  }
+
+  @ManagedAttribute(description = "Number of shard flushes that wrote rule results to the cache")
+  public long getFlushCount() {
+    return flushCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of rule results written to the cache")
+  public long getFlushedResultCount() {
+    return flushedResultCount.sum();
+  }
+
+  @ManagedAttribute(description = "Average time of a shard flush, in milliseconds")
+  public double getAverageFlushMillis() {
+    long flushes = flushCount.sum();
+    return flushes == 0 ? 0 : totalFlushNanos.sum() / 1e6 / flushes;
+  }
+
+  @ManagedAttribute(description = "Longest shard flush, in milliseconds")
+  public double getMaxFlushMillis() {
+    return maxFlushNanos.get() / 1e6;
+  }
+
+  @ManagedOperation(description = "Resets the flush statistics")
+  public void resetStatistics() {
+    flushCount.reset();
+    flushedResultCount.reset();
+    totalFlushNanos.reset();
+    maxFlushNanos.set(0);
+  }
+
+  /**
+   * @return the shards (package-private for tests)
+   */
+  Shard[] getShards() {
+    return shards;
+  }
+
+  /**
+   * The pending results of a part of the rules.
+   */
+  static final class Shard {
+
+    private final ConcurrentMap<Long, ResultSlot> slots = new ConcurrentHashMap<>();
 
     /**
-     * Constructor
-     * @param pId rule data tag id
-     * @param pValue rule result
-     * @param pValueDesc description
-     * @param pTimestamp rule evaluation timestamp
+     * Closes all slots, for a last write.
      */
-    private RuleBufferObject(final Long pId, final Object pValue, final String pValueDesc, final Timestamp pTimestamp) {
-      this(pId, pValue, null, null, pValueDesc, pTimestamp);
+    private List<RuleResult> drain() {
+      List<RuleResult> results = new ArrayList<>();
+      for (ResultSlot slot : slots.values()) {
+        RuleResult result = slot.close();
+        slots.remove(slot.id, slot);
+        if (result != null) {
+          results.add(result);
+        }
+      }
+      return results;
     }
+  }
 
-    /**
-     * Constructor
-     * @param pId rule data tag id
-     * @param pValue rule result
-     * @param pQuality error quality flag
-     * @param pValueDesc description
-     * @param pTimestamp rule evaluation timestamp
-     */
-    private RuleBufferObject(final Long pId, final Object pValue, final TagQualityStatus pStatus, final String pQualityDesc, final String pValueDesc, final Timestamp pTimestamp) {
-        this.id = pId;
-        this.value = pValue;
-        if (pStatus != null) {
-          this.qualityCollection.add(pStatus);
-          if (pQualityDesc != null) {
-            this.qualityDescriptions.put(pStatus, pQualityDesc);
-          }          
-        }        
-        this.valueDesc = pValueDesc;
-        this.timestamp = pTimestamp;
+  /**
+   * The pending result of a rule. The result is replaced atomically by the
+   * evaluation threads; the flags are only reset by the shard thread.
+   */
+  private static final class ResultSlot {
+
+    private final Long id;
+
+    /** The latest result, null if none yet, CLOSED once written */
+    private final AtomicReference<RuleResult> result = new AtomicReference<>();
+
+    /** Flag indicating that an update was received within the last tick */
+    private volatile boolean updated;
+
+    /** The number of ticks this rule has already been buffered */
+    private int cycles;
+
+    private ResultSlot(final Long id) {
+      this.id = id;
     }
 
     /**
-     * Updates the values of this <code>BufferObject</code> instance (all invalid status' are removed)
-     * @param pValue rule result
-     * @param pValueDesc description
-     * @param pTimestamp rule evaluation timestamp
-     * @return <code>true</code>, if object was updated, else <code>false</code>
+     * Replaces the result, unless more recent (all invalid status' are removed).
+     *
+     * @return false if the slot is closed
      */
     private boolean update(final Object pValue, final String pValueDesc, final Timestamp pTimestamp) {
-      boolean retval = false;
-      synchronized (BUFFER_LOCK) {
-        if (this.timestamp.before(pTimestamp) || this.timestamp.equals(pTimestamp)) {
-          this.value = pValue;
-          this.qualityCollection.clear();
-          this.qualityDescriptions.clear();
-          this.valueDesc = pValueDesc;
-          this.timestamp = pTimestamp;
-          retval = true;
+      RuleResult current;
+      do {
+        current = result.get();
+        if (current == CLOSED) {
+          return false;
         }
-      }      
-      return retval;
+        if (current != null && current.timestamp.after(pTimestamp)) {
+          break;
+        }
+      } while (!result.compareAndSet(current, new RuleResult(id, pValue, pValueDesc, pTimestamp)));
+      updated = true;
+      return true;
     }
 
     /**
-     * Updates the values of this <code>BufferObject</code> instance
-     * @param pQuality the error quality code
-     * @param pDescription error description
-     * @param pTimestamp rule evaluation timestamp
-     * @return <code>true</code>, if object was updated, else <code>false</code>
+     * Adds the invalid status to the result, unless more recent.
+     *
+     * @return false if the slot is closed
      */
     private boolean invalidate(final TagQualityStatus pQuality, final String pDescription, final Timestamp pTimestamp) {
-      if (pQuality == null) {
-        throw new IllegalArgumentException("invalidate(..) method called with null TagQualityStatus argument.");
-      }
-      boolean retval = false;
-      if (this.timestamp.before(pTimestamp) || this.timestamp.equals(pTimestamp)) {
-        this.qualityCollection.add(pQuality);
-        this.qualityDescriptions.put(pQuality, pDescription);        
-        this.timestamp = pTimestamp;
-        retval = true;
-      }      
-      return retval;
+      RuleResult current;
+      do {
+        current = result.get();
+        if (current == CLOSED) {
+          return false;
+        }
+        if (current != null && current.timestamp.after(pTimestamp)) {
+          break;
+        }
+      } while (!result.compareAndSet(current,
+          (current == null ? new RuleResult(id, null, null, null) : current).invalidate(pQuality, pDescription, pTimestamp)));
+      updated = true;
+      return true;
+    }
+
+    /**
+     * @return the latest result, no more updated
+     */
+    private RuleResult close() {
+      return result.getAndSet(CLOSED);
     }
-  } // end of RuleBufferObject class
+  }
 
   /**
-   * This class extends the Java <code>TimerTask</code> and
-   * takes care of updating the oc4j cache via the <code>DataTagFacadeBean</code>.
-   *
-   * @author Matthias Braeger
+   * The rule update information for the cache of the given rule data tag.
+   * Not modified once in a slot.
    */
-  private static class CacheUpdaterTask extends TimerTask {
+  private static final class RuleResult {
+    /** Rule data tag id */
+    private final Long id;
+    /** rule result object */
+    private final Object value;
+    /** quality flags */
+    private final Set<TagQualityStatus> qualityCollection;
+    /** quality flag descriptions */
+    private final Map<TagQualityStatus, String> qualityDescriptions;
+    /** value description */
+    private final String valueDesc;
+    /** rule evaluation timestamp */
+    private final Timestamp timestamp;
+
     /**
-     * This method is executed when it gets triggered
-     * by its <code>Timer</code> instance. It then takes
-     * care of the cache update for all rules that haven't 
-     * been updated since the last check.
+     * Constructor of a valid result
      */
-    public void run() {
-      //keep logic in try clause as exception will kill the timer thread here
-      try {        
-        Collection<RuleBufferObject> rulesToUpdate = null;
-  
-        // create first a copy of all rule objects that needs to be updated
-        synchronized (BUFFER_LOCK) {
-          rulesToUpdate = new ArrayList<RuleBufferObject>(); // List of rules where the cache shall be updated
-          Integer actCounter = null; // actual cycle counter
-          boolean hasJustBeenUpdated = false; // flag indicating, if the actual rule was updated since the last check
-          boolean forceCacheUpdate = false; // true, if a cache update shall be forced due to an exceed of the MAX_CYCLE_WAIT
-          for (Long actTagId : UPDATE_RECEIVED_FLAGS.keySet()) {
-            hasJustBeenUpdated = ((Boolean) UPDATE_RECEIVED_FLAGS.get(actTagId)).booleanValue();
-            actCounter = (Integer) CYCLE_COUNTERS.get(actTagId);
-            forceCacheUpdate = (actCounter != null && actCounter.intValue() >= MAX_CYCLES_WAIT);
-              
-            if (!hasJustBeenUpdated || forceCacheUpdate) {
-              // False ==> then we update the cache since there was no recent update of that rule
-              // OR we the buffer was updated more than MAX_CYCLES_WAIT cycle in a row ==> force update 
-              RuleBufferObject rbo = new RuleBufferObject((RuleBufferObject) RULE_OBJECT_BUF.get(actTagId));
-              rulesToUpdate.add(rbo);
-              if (forceCacheUpdate) {
-                log.debug("CacheUpdaterTask() - Forcing a cache update for rule "
-                    + actTagId + " since it was already delayed by "
-                    + MAX_CYCLES_WAIT * BUFFER_TIMER_MILLIS + " ms.");
-              }
-            }
-            else {
-              // Set the flag to FALSE in order indicate a cache update at the next check
-              UPDATE_RECEIVED_FLAGS.put(actTagId, Boolean.FALSE);
-              if (actCounter == null) {
-                CYCLE_COUNTERS.put(actTagId, new Integer(1));
-              }
-              else { // Increasing the counter
-                CYCLE_COUNTERS.put(actTagId, new Integer(actCounter.intValue() + 1));
-              }
-            }
-          }
-          
-          // Cleaning the buffer from all objects that are going to be put into the cache.
-          Long actTagId;
-          for (RuleBufferObject rbo : rulesToUpdate) {
-            actTagId = rbo.id;
-            UPDATE_RECEIVED_FLAGS.remove(actTagId);
-            RULE_OBJECT_BUF.remove(actTagId);
-            CYCLE_COUNTERS.remove(actTagId);
-          }
-          
-          if (UPDATE_RECEIVED_FLAGS.size() == 0) {
-            log.trace("CacheUpdaterTask() - Canceling next cache updater check, because there are no more updates registered.");
-            this.cancel();
-            isCacheUpdaterRunning = false;
-          }
-        } // end of synchronization
-        
-        if (rulesToUpdate.size() > 0) {
-          // Updating the cache
-          for (RuleBufferObject rbo : rulesToUpdate) {
-            if (rbo.qualityCollection.isEmpty()) {
-              log.trace("CacheUpdaterTask() - updating cache for rule id " + rbo.id
-                  + ": value=" + rbo.value
-                  + ", description=" + rbo.valueDesc
-                  + ", timestamp=" + rbo.timestamp);
-              try {
-                ruleTagFacade.updateAndValidate(rbo.id, rbo.value, rbo.valueDesc, rbo.timestamp);            
-              } catch (CacheElementNotFoundException cacheEx) {
-                log.warn("Unable to update rule (can happen during rule reconfiguration)", cacheEx);
-              } catch (Exception exception) {
-                log.warn("Unexpected error during rule evaluation", exception);
-              }
-            } else {
-              log.trace("CacheUpdaterTask() - invalidating cache for rule id " + rbo.id
-                  + ": reasons=" + rbo.qualityCollection
-                  + ", descriptions=" + rbo.qualityDescriptions
-                  + ", timestamp=" + rbo.timestamp);
-              try {                
-                ruleTagFacade.setQuality(rbo.id, rbo.qualityCollection, null, rbo.qualityDescriptions, rbo.timestamp);
-              } catch (CacheElementNotFoundException cacheEx) {
-                log.warn("Unable to update rule as could not be located in cache (normal during rule reconfiguration)", cacheEx);
-              }                          
-            }
-          } // end for                    
-        }      
-      } catch (Exception ex) {
-        log.error("Exception caught during rule update - should not be ignored!", ex);
-      }
+    private RuleResult(final Long id, final Object value, final String valueDesc, final Timestamp timestamp) {
+      this(id, value, valueDesc, timestamp, Collections.<TagQualityStatus>emptySet(), Collections.<TagQualityStatus, String>emptyMap());
     }
-  } // end of CacheUpdaterTask class
+
+    private RuleResult(final Long id, final Object value, final String valueDesc, final Timestamp timestamp,
+                       final Set<TagQualityStatus> qualityCollection, final Map<TagQualityStatus, String> qualityDescriptions) {
+      this.id = id;
+      this.value = value;
+      this.valueDesc = valueDesc;
+      this.timestamp = timestamp;
+      this.qualityCollection = qualityCollection;
+      this.qualityDescriptions = qualityDescriptions;
+    }
+
+    /**
+     * @return a copy of this result with the additional invalid status
+     */
+    private RuleResult invalidate(final TagQualityStatus pQuality, final String pDescription, final Timestamp pTimestamp) {
+      Set<TagQualityStatus> qualities = EnumSet.noneOf(TagQualityStatus.class);
+      qualities.addAll(qualityCollection);
+      qualities.add(pQuality);
+      Map<TagQualityStatus, String> descriptions = new EnumMap<>(TagQualityStatus.class);
+      descriptions.putAll(qualityDescriptions);
+      descriptions.put(pQuality, pDescription);
+      return new RuleResult(id, value, valueDesc, pTimestamp, qualities, descriptions);
+    }
+  }
 }
@@ -0,0 +1,137 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.rule.evaluation;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.RuleTagCache;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link RuleDependencyGraph}.
+ */
+public class RuleDependencyGraphTest {
+
+  private RuleTagCache ruleTagCache;
+
+  private RuleDependencyGraph graph;
+
+  @Before
+  public void setUp() {
+    ruleTagCache = createNiceMock(RuleTagCache.class);
+    graph = new RuleDependencyGraph(ruleTagCache);
+  }
+
+  /**
+   * Diamond: 2 and 3 depend on 1, 4 on 2 and 3 and 5 on 4 and 1.
+   */
+  @Test
+  public void testDiamondInTopologicalOrder() {
+    expectRule(1L, 2L, 3L, 5L);
+    expectRule(2L, 4L);
+    expectRule(3L, 4L);
+    expectRule(4L, 5L);
+    expectRule(5L);
+    replay(ruleTagCache);
+
+    RuleDependencyGraph.Wave wave = graph.plan(Collections.singletonList(1L));
+
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), wave.getRuleIds());
+    assertEquals(4, wave.getDepth());
+    assertTrue(wave.hasDependents(1L));
+    assertTrue(wave.hasDependents(4L));
+    assertFalse(wave.hasDependents(5L));
+  }
+
+  @Test
+  public void testSeveralUpdatedRules() {
+    expectRule(1L, 3L);
+    expectRule(2L, 1L);
+    expectRule(3L);
+    replay(ruleTagCache);
+
+    RuleDependencyGraph.Wave wave = graph.plan(Arrays.asList(1L, 2L));
+
+    assertEquals(Arrays.asList(2L, 1L, 3L), wave.getRuleIds());
+    assertEquals(3, wave.getDepth());
+  }
+
+  @Test
+  public void testRuleNotInCache() {
+    expectRule(1L, 2L);
+    expect(ruleTagCache.get(2L)).andThrow(new CacheElementNotFoundException());
+    replay(ruleTagCache);
+
+    RuleDependencyGraph.Wave wave = graph.plan(Collections.singletonList(1L));
+
+    assertEquals(Arrays.asList(1L, 2L), wave.getRuleIds());
+    assertFalse(wave.hasDependents(2L));
+  }
+
+  @Test
+  public void testCycleEvaluatedOnce() {
+    expectRule(1L, 2L);
+    expectRule(2L, 3L);
+    expectRule(3L, 2L);
+    replay(ruleTagCache);
+
+    RuleDependencyGraph.Wave wave = graph.plan(Collections.singletonList(1L));
+
+    assertEquals(Arrays.asList(1L, 2L, 3L), wave.getRuleIds());
+    assertEquals(1, graph.getCyclicWaveCount());
+  }
+
+  @Test
+  public void testStatistics() {
+    expectRule(1L, 2L);
+    expectRule(2L);
+    replay(ruleTagCache);
+
+    graph.plan(Collections.singletonList(1L));
+    graph.plan(Collections.singletonList(2L));
+
+    assertEquals(2, graph.getWaveCount());
+    assertEquals(1.5, graph.getAverageWaveSize(), 0);
+    assertEquals(2, graph.getMaxWaveSize());
+    assertEquals(1.5, graph.getAverageWaveDepth(), 0);
+    assertEquals(2, graph.getMaxWaveDepth());
+    assertEquals(0, graph.getCyclicWaveCount());
+
+    graph.resetStatistics();
+    assertEquals(0, graph.getWaveCount());
+    assertEquals(0, graph.getMaxWaveSize());
+  }
+
+  private void expectRule(final Long id, final Long... dependentRuleIds) {
+    RuleTagCacheObject rule = new RuleTagCacheObject(id, "RULE" + id, "Integer", DataTagConstants.MODE_OPERATIONAL, "1");
+    rule.getRuleIds().addAll(Arrays.asList(dependentRuleIds));
+    expect(ruleTagCache.get(id)).andReturn(rule).anyTimes();
+  }
+}
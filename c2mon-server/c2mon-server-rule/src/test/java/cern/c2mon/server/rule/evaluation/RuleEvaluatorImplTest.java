@@ -0,0 +1,353 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.server.rule.evaluation;
+
+import java.sql.Timestamp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.c2mon.server.cache.C2monCache;
+import cern.c2mon.server.cache.RuleTagCache;
+import cern.c2mon.server.cache.TagLocationService;
+import cern.c2mon.server.cache.UpdateLatencyMonitor;
+import cern.c2mon.server.cache.exception.CacheElementNotFoundException;
+import cern.c2mon.server.common.datatag.DataTagCacheObject;
+import cern.c2mon.server.common.rule.RuleTagCacheObject;
+import cern.c2mon.server.common.tag.Tag;
+import cern.c2mon.server.rule.config.RuleProperties;
+import cern.c2mon.shared.common.datatag.DataTagConstants;
+import cern.c2mon.shared.common.datatag.TagQualityStatus;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+/**
+ * Unit test of the input binding, of the propagation and of the skipping of
+ * unchanged evaluations of the {@link RuleEvaluatorImpl}.
+ */
+public class RuleEvaluatorImplTest {
+
+  private static final Long RULE_ID = 10L;
+
+  private static final Long DEPENDENT_RULE_ID = 20L;
+
+  private static final Long OTHER_RULE_ID = 30L;
+
+  private RuleTagCache ruleTagCache;
+
+  private RuleUpdateBuffer ruleUpdateBuffer;
+
+  private TagLocationService tagLocationService;
+
+  private C2monCache<Long, Tag> dataTagCache;
+
+  private RuleProperties properties;
+
+  private RuleEvaluatorImpl ruleEvaluator;
+
+  private RuleTagCacheObject rule;
+
+  private RuleTagCacheObject dependentRule;
+
+  private RuleTagCacheObject otherRule;
+
+  private DataTagCacheObject tag1;
+
+  private DataTagCacheObject tag2;
+
+  private DataTagCacheObject tag3;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    ruleTagCache = createNiceMock(RuleTagCache.class);
+    ruleUpdateBuffer = createMock(RuleUpdateBuffer.class);
+    tagLocationService = createMock(TagLocationService.class);
+    dataTagCache = createMock(C2monCache.class);
+    properties = new RuleProperties();
+    UpdateLatencyMonitor updateLatencyMonitor = createNiceMock(UpdateLatencyMonitor.class);
+    replay(updateLatencyMonitor);
+    ruleEvaluator = new RuleEvaluatorImpl(ruleTagCache, ruleUpdateBuffer, tagLocationService, null, properties, updateLatencyMonitor,
+        new RuleDependencyGraph(ruleTagCache));
+
+    rule = new RuleTagCacheObject(RULE_ID, "RULE", "Double", DataTagConstants.MODE_OPERATIONAL, "#1000 + #1001");
+    rule.getRuleIds().add(DEPENDENT_RULE_ID);
+    dependentRule = new RuleTagCacheObject(DEPENDENT_RULE_ID, "DEPENDENT_RULE", "Double", DataTagConstants.MODE_OPERATIONAL,
+        "#" + RULE_ID + " * 2");
+    tag1 = createTag(1000L, 1f);
+    tag1.getRuleIds().add(RULE_ID);
+    tag2 = createTag(1001L, 2f);
+    otherRule = new RuleTagCacheObject(OTHER_RULE_ID, "OTHER_RULE", "Double", DataTagConstants.MODE_OPERATIONAL, "#1002 * 3");
+    otherRule.getRuleIds().add(DEPENDENT_RULE_ID);
+    tag3 = createTag(1002L, 4f);
+    tag3.getRuleIds().add(OTHER_RULE_ID);
+    expect(ruleTagCache.get(RULE_ID)).andReturn(rule).anyTimes();
+    expect(ruleTagCache.get(DEPENDENT_RULE_ID)).andReturn(dependentRule).anyTimes();
+    expect(ruleTagCache.get(OTHER_RULE_ID)).andReturn(otherRule).anyTimes();
+    replay(ruleTagCache);
+  }
+
+  @Test
+  public void testInputsResolvedOnce() {
+    expectBinding(1000L, 1001L);
+    expect(dataTagCache.get(1000L)).andReturn(tag1).times(3);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(3);
+    expectUpdate(3.0d, 3);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    for (int i = 0; i < 3; i++) {
+      ruleEvaluator.evaluateRule(RULE_ID);
+    }
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testBindingDroppedOnRuleRemoval() {
+    expectBinding(1000L, 1001L);
+    expect(dataTagCache.get(1000L)).andReturn(tag1).times(2);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(2);
+    expectUpdate(3.0d, 1);
+    // a rule created again with the same id is resolved and evaluated again
+    expectBinding(1000L, 1001L);
+    expectUpdate(3.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    rule.getRuleIds().clear();
+    ruleEvaluator.evaluateRules(tag1);
+    writeBack();
+    ruleEvaluator.removeRule(RULE_ID);
+    ruleEvaluator.evaluateRules(tag1);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testRebindOnRuleReconfiguration() {
+    expectBinding(1000L, 1001L);
+    expect(dataTagCache.get(1000L)).andReturn(tag1);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(2);
+    expectUpdate(3.0d, 1);
+    expectBinding(1001L);
+    expectUpdate(4.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRule(RULE_ID);
+    rule.setRuleText("#1001 * 2");
+    ruleEvaluator.evaluateRule(RULE_ID);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testInputTagNoLongerInResolvedCache() {
+    expectBinding(1000L, 1001L);
+    expect(dataTagCache.get(1000L)).andThrow(new CacheElementNotFoundException("moved"));
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(2);
+    expect(tagLocationService.get(1000L)).andReturn(tag1);
+    expectUpdate(3.0d, 2);
+    // the stale binding is resolved again
+    expectBinding(1000L, 1001L);
+    expect(dataTagCache.get(1000L)).andReturn(tag1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRule(RULE_ID);
+    ruleEvaluator.evaluateRule(RULE_ID);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testResultPropagatedToDependentRule() {
+    expectBinding(1000L, 1001L, RULE_ID);
+    expect(dataTagCache.get(1000L)).andReturn(tag1);
+    expect(dataTagCache.get(1001L)).andReturn(tag2);
+    expectUpdate(3.0d, 1);
+    // the dependent rule sees the new result before it is written to the cache
+    expectUpdate(DEPENDENT_RULE_ID, 6.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRules(tag1);
+    // write-back of the propagated result: nothing to re-evaluate
+    rule.setValue(3.0d);
+    rule.getDataTagQuality().validate();
+    ruleEvaluator.evaluateRules(rule);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testDifferentWriteBackReevaluatesDependentRule() {
+    expectBinding(1000L, 1001L, RULE_ID);
+    expect(dataTagCache.get(1000L)).andReturn(tag1);
+    expect(dataTagCache.get(1001L)).andReturn(tag2);
+    expectUpdate(3.0d, 1);
+    expectUpdate(DEPENDENT_RULE_ID, 6.0d, 1);
+    expect(dataTagCache.get(RULE_ID)).andReturn(rule);
+    expectUpdate(DEPENDENT_RULE_ID, 10.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRules(tag1);
+    // the rule was updated in the meantime
+    rule.setValue(5.0d);
+    rule.getDataTagQuality().validate();
+    ruleEvaluator.evaluateRules(rule);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testResultsOfSeparateWavesPropagatedBeforeWriteBack() {
+    dependentRule.setRuleText("#" + RULE_ID + " + #" + OTHER_RULE_ID);
+    rule.setValue(0d);
+    rule.getDataTagQuality().validate();
+    otherRule.setValue(0d);
+    otherRule.getDataTagQuality().validate();
+    expectBinding(1000L, 1001L, RULE_ID, OTHER_RULE_ID, 1002L);
+    expect(dataTagCache.get(1000L)).andReturn(tag1);
+    expect(dataTagCache.get(1001L)).andReturn(tag2);
+    expect(dataTagCache.get(OTHER_RULE_ID)).andReturn(otherRule);
+    expect(dataTagCache.get(1002L)).andReturn(tag3);
+    expectUpdate(3.0d, 1);
+    expectUpdate(DEPENDENT_RULE_ID, 3.0d, 1);
+    expectUpdate(OTHER_RULE_ID, 12.0d, 1);
+    // the second wave sees the result of the first one, not yet written
+    expectUpdate(DEPENDENT_RULE_ID, 15.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRules(tag1);
+    ruleEvaluator.evaluateRules(tag3);
+    // write-back of both propagated results: nothing to re-evaluate
+    rule.setValue(3.0d);
+    ruleEvaluator.evaluateRules(rule);
+    otherRule.setValue(12.0d);
+    ruleEvaluator.evaluateRules(otherRule);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testUnchangedInputsSkipped() {
+    expectBinding(1000L, 1001L, RULE_ID);
+    expect(dataTagCache.get(1000L)).andReturn(tag1).times(3);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(3);
+    expectUpdate(3.0d, 1);
+    expectUpdate(DEPENDENT_RULE_ID, 6.0d, 1);
+    expectUpdate(4.0d, 1);
+    expectUpdate(DEPENDENT_RULE_ID, 8.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRules(tag1);
+    writeBack();
+    // refresh of the input tag
+    ruleEvaluator.evaluateRules(tag1);
+    tag1.setValue(2f);
+    ruleEvaluator.evaluateRules(tag1);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testConfirmStatusForcesEvaluation() {
+    expectBinding(1000L, 1001L, RULE_ID);
+    expect(dataTagCache.get(1000L)).andReturn(tag1).times(2);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(2);
+    expectUpdate(3.0d, 2);
+    expectUpdate(DEPENDENT_RULE_ID, 6.0d, 2);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.notifyElementUpdated(tag1);
+    writeBack();
+    ruleEvaluator.confirmStatus(tag1);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testAlwaysEvaluatedRule() {
+    properties.getAlwaysEvaluatedRuleIds().add(RULE_ID);
+    expectBinding(1000L, 1001L, RULE_ID);
+    expect(dataTagCache.get(1000L)).andReturn(tag1).times(2);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(2);
+    expectUpdate(3.0d, 2);
+    expectUpdate(DEPENDENT_RULE_ID, 6.0d, 1);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    ruleEvaluator.evaluateRules(tag1);
+    writeBack();
+    ruleEvaluator.evaluateRules(tag1);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  @Test
+  public void testExternallyInvalidatedRuleEvaluated() {
+    expectBinding(1000L, 1001L);
+    expect(dataTagCache.get(1000L)).andReturn(tag1).times(2);
+    expect(dataTagCache.get(1001L)).andReturn(tag2).times(2);
+    expectUpdate(3.0d, 2);
+    replay(ruleUpdateBuffer, tagLocationService, dataTagCache);
+
+    rule.getRuleIds().clear();
+    ruleEvaluator.evaluateRules(tag1);
+    writeBack();
+    rule.getDataTagQuality().addInvalidStatus(TagQualityStatus.INACCESSIBLE);
+    ruleEvaluator.evaluateRules(tag1);
+
+    verify(ruleUpdateBuffer, tagLocationService, dataTagCache);
+  }
+
+  /**
+   * Writes the results of the rules to the cache, as the update buffer.
+   */
+  private void writeBack() {
+    rule.setValue(3.0d);
+    rule.getDataTagQuality().validate();
+    dependentRule.setValue(6.0d);
+    dependentRule.getDataTagQuality().validate();
+  }
+
+  private void expectBinding(final Long... inputIds) {
+    for (Long id : inputIds) {
+      tagLocationService.getTagCache(id);
+      expectLastCall().andReturn(dataTagCache);
+    }
+  }
+
+  private void expectUpdate(final Object value, final int times) {
+    expectUpdate(RULE_ID, value, times);
+  }
+
+  private void expectUpdate(final Long ruleId, final Object value, final int times) {
+    ruleUpdateBuffer.update(eq(ruleId), eq(value), eq("Rule result"), anyObject(Timestamp.class));
+    expectLastCall().times(times);
+  }
+
+  private static DataTagCacheObject createTag(final Long id, final Float value) {
+    DataTagCacheObject tag = new DataTagCacheObject(id, "TAG" + id, "Float", DataTagConstants.MODE_OPERATIONAL);
+    tag.setValue(value);
+    tag.getDataTagQuality().validate();
+    return tag;
+  }
+}
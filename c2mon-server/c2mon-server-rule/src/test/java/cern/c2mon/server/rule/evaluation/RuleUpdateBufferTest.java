@@ -17,60 +17,173 @@
 package cern.c2mon.server.rule.evaluation;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
 
 import org.junit.Before;
+import org.junit.Test;
 
+import cern.c2mon.server.cache.RuleTagFacade;
+import cern.c2mon.server.rule.config.RuleProperties;
 import cern.c2mon.shared.common.datatag.TagQualityStatus;
 
-import static org.junit.Assert.*;
-
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isNull;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 
 /**
- * It is difficult to test the full <code>RuleUpdateBuffer</code> logic,
- * since it uses JNDI and needs a J2EE container. However, you can comment
- * out the call to the <code>DataTagFacadeBean</code> and test the basic
- * behavior.
- * 
- * TODO need to adapt this to C2MON code ... only started so far
+ * Unit test of the {@link RuleUpdateBuffer} logic, ticking the shards by hand
+ * (the periodic flush is not started).
  *
  * @author Matthias Braeger
  */
 public class RuleUpdateBufferTest {
-  
-  /** Singleton instance */
-  private RuleUpdateBuffer rub = null;
-  
-  
+
+  private static final Long RULE_ID = 1234L;
+
+  private RuleTagFacade ruleTagFacade;
+
+  private RuleUpdateBuffer rub;
+
   /**
    * It is called before running any of the tests defined on this class
    */
   @Before
-  protected final void setUp() {
-    //rub = RuleUpdateBuffer.getInstance();
+  public final void setUp() {
+    ruleTagFacade = createMock(RuleTagFacade.class);
+    RuleProperties properties = new RuleProperties();
+    properties.setBufferShards(2);
+    rub = new RuleUpdateBuffer(ruleTagFacade, properties);
+  }
+
+  @Test
+  public final void testUpdateWrittenAfterQuietTick() {
+    Timestamp timestamp = new Timestamp(1000);
+    replay(ruleTagFacade);
+
+    rub.update(RULE_ID, "test 1", "testUpdate", new Timestamp(900));
+    rub.update(RULE_ID, "test 2", "testUpdate", timestamp);
+    tick();
+    assertEquals(1, rub.getOccupancy());
+    verify(ruleTagFacade);
+
+    reset(ruleTagFacade);
+    ruleTagFacade.updateAndValidate(RULE_ID, "test 2", "testUpdate", timestamp);
+    replay(ruleTagFacade);
+    tick();
+    verify(ruleTagFacade);
+    assertEquals(0, rub.getOccupancy());
+    assertEquals(1, rub.getFlushedResultCount());
+  }
+
+  @Test
+  public final void testOlderUpdateIgnored() {
+    Timestamp timestamp = new Timestamp(1000);
+    ruleTagFacade.updateAndValidate(RULE_ID, "test 2", "testUpdate", timestamp);
+    replay(ruleTagFacade);
+
+    rub.update(RULE_ID, "test 2", "testUpdate", timestamp);
+    rub.update(RULE_ID, "test 1", "testUpdate", new Timestamp(900));
+    tick();
+    tick();
+
+    verify(ruleTagFacade);
   }
-  
-  
-  public final void testUpdate() {
-    for (int i = 0; i < 100; i++) {
-      rub.update(new Long(1234L), (Object) ("test " + i), "testUpdate " + i, new Timestamp(System.currentTimeMillis()));
-//      try {Thread.sleep(40);} catch (InterruptedException e) {}
-      rub.update(new Long(1235L), (Object) ("test " + i), "testUpdate " + i, new Timestamp(System.currentTimeMillis()));
-      try {Thread.sleep(65);} catch (InterruptedException e) {}
-      System.out.println(i);
+
+  @Test
+  public final void testContinuousUpdatesForcedAfterMaxCycles() {
+    replay(ruleTagFacade);
+    for (int i = 0; i < 6; i++) {
+      rub.update(RULE_ID, "test " + i, "testUpdate", new Timestamp(1000 + i));
+      tick();
     }
-    
-    try {Thread.sleep(1000);} catch (InterruptedException e) {}
-    assertTrue(true);
+    verify(ruleTagFacade);
+
+    reset(ruleTagFacade);
+    ruleTagFacade.updateAndValidate(RULE_ID, "test 6", "testUpdate", new Timestamp(1006));
+    replay(ruleTagFacade);
+    rub.update(RULE_ID, "test 6", "testUpdate", new Timestamp(1006));
+    tick();
+    verify(ruleTagFacade);
   }
-  
+
+  @Test
+  @SuppressWarnings("unchecked")
   public final void testInvalidate() {
-    for (int i = 0; i < 100; i++) {
-      rub.invalidate(new Long(12345L), TagQualityStatus.INACCESSIBLE, "testUpdate " + i, new Timestamp(System.currentTimeMillis()));
-      try {Thread.sleep(60);} catch (InterruptedException e) {}
-      System.out.println(i);
+    Timestamp timestamp = new Timestamp(1002);
+    Map<TagQualityStatus, String> descriptions = new EnumMap<>(TagQualityStatus.class);
+    descriptions.put(TagQualityStatus.INACCESSIBLE, "testInvalidate 1");
+    descriptions.put(TagQualityStatus.UNKNOWN_REASON, "testInvalidate 2");
+    ruleTagFacade.setQuality(eq(RULE_ID), eq((Collection<TagQualityStatus>) EnumSet.of(TagQualityStatus.INACCESSIBLE, TagQualityStatus.UNKNOWN_REASON)),
+        (Collection<TagQualityStatus>) isNull(), eq(descriptions), eq(timestamp));
+    replay(ruleTagFacade);
+
+    rub.update(RULE_ID, "test", "testUpdate", new Timestamp(1000));
+    rub.invalidate(RULE_ID, TagQualityStatus.INACCESSIBLE, "testInvalidate 1", new Timestamp(1001));
+    rub.invalidate(RULE_ID, TagQualityStatus.UNKNOWN_REASON, "testInvalidate 2", timestamp);
+    tick();
+    tick();
+
+    verify(ruleTagFacade);
+  }
+
+  @Test
+  public final void testUpdateClearsInvalidation() {
+    Timestamp timestamp = new Timestamp(1001);
+    ruleTagFacade.updateAndValidate(RULE_ID, "test", "testUpdate", timestamp);
+    replay(ruleTagFacade);
+
+    rub.invalidate(RULE_ID, TagQualityStatus.INACCESSIBLE, "testInvalidate", new Timestamp(1000));
+    rub.update(RULE_ID, "test", "testUpdate", timestamp);
+    tick();
+    tick();
+
+    verify(ruleTagFacade);
+  }
+
+  @Test
+  public final void testShardsFlushedIndependently() {
+    for (long id = 0; id < 10; id++) {
+      ruleTagFacade.updateAndValidate(id, "test " + id, "testUpdate", new Timestamp(1000));
+    }
+    replay(ruleTagFacade);
+
+    for (long id = 0; id < 10; id++) {
+      rub.update(id, "test " + id, "testUpdate", new Timestamp(1000));
+    }
+    assertEquals(Arrays.asList(5, 5), rub.getShardOccupancies());
+    tick();
+    rub.flush(rub.getShards()[0]);
+    assertEquals(Arrays.asList(0, 5), rub.getShardOccupancies());
+    rub.flush(rub.getShards()[1]);
+    assertEquals(Collections.nCopies(2, 0), rub.getShardOccupancies());
+
+    verify(ruleTagFacade);
+  }
+
+  @Test
+  public final void testPendingResultsWrittenOnShutdown() {
+    ruleTagFacade.updateAndValidate(RULE_ID, "test", "testUpdate", new Timestamp(1000));
+    replay(ruleTagFacade);
+
+    rub.update(RULE_ID, "test", "testUpdate", new Timestamp(1000));
+    rub.shutdown();
+
+    verify(ruleTagFacade);
+  }
+
+  private void tick() {
+    for (RuleUpdateBuffer.Shard shard : rub.getShards()) {
+      rub.flush(shard);
     }
-    
-    try {Thread.sleep(1000);} catch (InterruptedException e) {}
-    assertTrue(true);
   }
 }
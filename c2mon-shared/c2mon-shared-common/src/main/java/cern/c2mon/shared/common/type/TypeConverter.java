@@ -20,6 +20,8 @@ import java.awt.Color;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.text.DateFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -33,6 +35,11 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public final class TypeConverter  {
 
+  /**
+   * The converters by data type name, each resolved on first use.
+   */
+  private static final ConcurrentMap<String, ValueConverter> CONVERTERS = new ConcurrentHashMap<>();
+
   /**
    * Hidden default constructor
    */
@@ -533,33 +540,28 @@ public final class TypeConverter  {
    * @return The casted object or <code>null</code>, if casting wasn't possible
    */
   public static final Object cast(final Object value, final String className) {
-    Object result = null;
-
-    if (value != null && className != null && !className.isEmpty()) {
-      try {
-
-        Class<?> type = getType(className);
-
-        if (type != null) {
-
-          if (type.equals(String.class)) {
-            result = value.toString();
-          } else {
-            result = castToType(value, type);
-          }
-        }
-
-        if (result == null) {
-          log.error("Conversion error: Could not cast input value [" + value + "] of type "
-              + value.getClass().getName() + " to resulting type " + className);
-        }
-      } catch (ClassCastException cce) {
-        log.error("Conversion error: {}", cce.getMessage());
-        result = null;
-      }
+    if (value == null || className == null || className.isEmpty()) {
+      return null;
     }
+    return getConverter(className).cast(value);
+  }
 
-    return result;
+  /**
+   * Returns the converter for the given data type. The type is resolved once
+   * and the converter is shared by all callers, so it can be kept by the tags
+   * or looked up for each value.
+   *
+   * @param typeName a simple class name within the java.lang.* package or the
+   *                 fully qualified class name
+   * @return the converter for this data type (also for unknown types, see
+   *         {@link ValueConverter#isKnownType()})
+   */
+  public static ValueConverter getConverter(final String typeName) {
+    ValueConverter converter = CONVERTERS.get(typeName);
+    if (converter == null) {
+      converter = CONVERTERS.computeIfAbsent(typeName, name -> new ValueConverter(name, loadType(name)));
+    }
+    return converter;
   }
 
 
@@ -577,13 +579,11 @@ public final class TypeConverter  {
    * @return returns true if the data type is a subclass of {@link Number}
    */
   public static boolean isNumber(String dataType) {
-    Class<?> type = getType(dataType);
-    return type != null && Number.class.isAssignableFrom(type);
+    return getConverter(dataType).isNumber();
   }
 
   public static boolean isKnownClass(String typeName) {
-    Class<?> result = typeName != null ? getType(typeName) : null;
-    return result != null;
+    return typeName != null && getConverter(typeName).isKnownType();
   }
 
   /**
@@ -592,6 +592,10 @@ public final class TypeConverter  {
    * @return the class for the given name if known, {@literal null} otherwise
    */
   public static Class<?> getType(String typeName) {
+    return getConverter(typeName).getType();
+  }
+
+  private static Class<?> loadType(String typeName) {
     String fullPath = !typeName.contains(".") ? "java.lang." + typeName : typeName;
 
     try {
@@ -0,0 +1,126 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.common.type;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Converter of values into one data type, resolved once by
+ * {@link TypeConverter#getConverter(String)} and shared by all tags of this
+ * type. Avoids resolving the type name on every conversion.
+ */
+@Slf4j
+public final class ValueConverter {
+
+  /**
+   * The data type name, as passed to {@link TypeConverter#getConverter(String)}.
+   */
+  private final String typeName;
+
+  /**
+   * The resolved type, null if the type name is not a known class.
+   */
+  private final Class<?> type;
+
+  /**
+   * Whether the type is a {@link Number} type.
+   */
+  private final boolean number;
+
+  /**
+   * @param typeName the data type name
+   * @param type the class resolved from the type name, or null if unknown
+   */
+  ValueConverter(final String typeName, final Class<?> type) {
+    this.typeName = typeName;
+    this.type = type;
+    this.number = type != null && Number.class.isAssignableFrom(type);
+  }
+
+  /**
+   * @return the data type name of this converter
+   */
+  public String getTypeName() {
+    return typeName;
+  }
+
+  /**
+   * @return the class of the data type, {@literal null} if not a known class
+   */
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * @return true if the data type is a known class
+   */
+  public boolean isKnownType() {
+    return type != null;
+  }
+
+  /**
+   * @return true if the data type is a subclass of {@link Number}
+   */
+  public boolean isNumber() {
+    return number;
+  }
+
+  /**
+   * Casts the value into the data type of this converter, with the same rules
+   * as {@link TypeConverter#cast(Object, String)}.
+   *
+   * @param value the value to cast
+   * @return the cast value or {@literal null}, if casting wasn't possible
+   */
+  public Object cast(final Object value) {
+    if (value == null) {
+      return null;
+    }
+    // most values already arrive with the right type
+    if (type != null && type.isInstance(value)) {
+      return value;
+    }
+
+    Object result = null;
+    try {
+      if (type != null) {
+        if (type.equals(String.class)) {
+          result = value.toString();
+        } else {
+          result = TypeConverter.castToType(value, type);
+        }
+      }
+
+      if (result == null) {
+        log.error("Conversion error: Could not cast input value [" + value + "] of type "
+            + value.getClass().getName() + " to resulting type " + typeName);
+      }
+    } catch (ClassCastException cce) {
+      log.error("Conversion error: {}", cce.getMessage());
+      result = null;
+    }
+    return result;
+  }
+
+  /**
+   * @param value the value to check
+   * @return true if the value can be cast into the data type of this converter
+   */
+  public boolean isConvertible(final Object value) {
+    return cast(value) != null;
+  }
+}
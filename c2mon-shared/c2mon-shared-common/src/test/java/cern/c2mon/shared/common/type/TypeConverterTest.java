@@ -829,6 +829,35 @@ public class TypeConverterTest {
     castTest(new Exception("test"), Short.class);
   }
 
+  @Test
+  public void testGetConverter() {
+    ValueConverter converter = TypeConverter.getConverter("Float");
+    assertSame(converter, TypeConverter.getConverter("Float"));
+    assertEquals(Float.class, converter.getType());
+    assertTrue(converter.isKnownType());
+    assertTrue(converter.isNumber());
+    Float value = 1.5f;
+    assertSame(value, converter.cast(value));
+    assertEquals(25f, converter.cast(25));
+    assertEquals(25f, converter.cast("25"));
+    assertNull(converter.cast("not a number"));
+    assertFalse(converter.isConvertible(new Exception("test")));
+
+    assertEquals(String.class, TypeConverter.getConverter("java.lang.String").getType());
+    assertFalse(TypeConverter.getConverter("java.lang.String").isNumber());
+  }
+
+  @Test
+  public void testUnknownTypeConverter() {
+    ValueConverter converter = TypeConverter.getConverter("cern.c2mon.UnknownType");
+    assertSame(converter, TypeConverter.getConverter("cern.c2mon.UnknownType"));
+    assertNull(converter.getType());
+    assertFalse(converter.isKnownType());
+    assertNull(converter.cast(1));
+    assertFalse(TypeConverter.isKnownClass("cern.c2mon.UnknownType"));
+    assertFalse(TypeConverter.isKnownClass(null));
+  }
+
   private static void castTest(final Object pValue, final Class<?> pTargetClass) {
     castTest(pValue, pTargetClass, null);
   }
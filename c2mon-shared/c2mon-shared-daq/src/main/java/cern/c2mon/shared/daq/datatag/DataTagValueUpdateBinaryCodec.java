@@ -0,0 +1,471 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.daq.datatag;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import cern.c2mon.shared.common.datatag.DataTagValueUpdate;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagQualityCode;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+/**
+ * Compact binary encoding of {@link DataTagValueUpdate} messages, used instead
+ * of JSON by the {@link DataTagValueUpdateConverter} when enabled on the DAQ.
+ *
+ * <p>Ids and other integers are written as variable-length integers, values
+ * are written with their type (only the types returned by {@link #canEncode}
+ * are supported) and timestamps are written as the difference to the previous
+ * timestamp of the message. Java timestamps are only kept to the millisecond,
+ * as with JSON.
+ *
+ * <p>Messages are decoded directly into {@link SourceDataTagValue} objects.
+ */
+public final class DataTagValueUpdateBinaryCodec {
+
+  /**
+   * Version of the encoding, written as the first byte of each message.
+   */
+  static final byte FORMAT_VERSION = 1;
+
+  /** Message flags */
+  private static final int HAS_PROCESS_ID = 1;
+  private static final int HAS_PROCESS_PIK = 1 << 1;
+
+  /** Value flags */
+  private static final int CONTROL_TAG = 1;
+  private static final int GUARANTEED_DELIVERY = 1 << 1;
+  private static final int SIMULATED = 1 << 2;
+  private static final int HAS_QUALITY = 1 << 3;
+  private static final int HAS_TIMESTAMP = 1 << 4;
+  private static final int HAS_DAQ_TIMESTAMP = 1 << 5;
+
+  /** Value types */
+  private static final byte TYPE_NULL = 0;
+  private static final byte TYPE_BOOLEAN = 1;
+  private static final byte TYPE_BYTE = 2;
+  private static final byte TYPE_SHORT = 3;
+  private static final byte TYPE_INTEGER = 4;
+  private static final byte TYPE_LONG = 5;
+  private static final byte TYPE_FLOAT = 6;
+  private static final byte TYPE_DOUBLE = 7;
+  private static final byte TYPE_STRING = 8;
+
+  /**
+   * Quality codes by their numeric code.
+   */
+  private static final SourceDataTagQualityCode[] QUALITY_CODES;
+
+  static {
+    int maxCode = 0;
+    for (SourceDataTagQualityCode code : SourceDataTagQualityCode.values()) {
+      maxCode = Math.max(maxCode, code.getQualityCode());
+    }
+    QUALITY_CODES = new SourceDataTagQualityCode[maxCode + 1];
+    for (SourceDataTagQualityCode code : SourceDataTagQualityCode.values()) {
+      QUALITY_CODES[code.getQualityCode()] = code;
+    }
+  }
+
+  private DataTagValueUpdateBinaryCodec() {
+    // only static methods
+  }
+
+  /**
+   * @param update the update to encode
+   * @return true if all values of the update are of a type supported by the
+   *         binary encoding (null, Boolean, Byte, Short, Integer, Long, Float,
+   *         Double or String)
+   */
+  public static boolean canEncode(final DataTagValueUpdate update) {
+    if (update.getValues() == null) {
+      return true;
+    }
+    for (SourceDataTagValue value : update.getValues()) {
+      if (value == null || typeOf(value.getValue()) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Encodes the update.
+   *
+   * @param update the update to encode
+   * @return the encoded message
+   * @throws IllegalArgumentException if a value is of an unsupported type
+   *                                  (see {@link #canEncode})
+   */
+  public static byte[] encode(final DataTagValueUpdate update) {
+    int size = update.getValues() == null ? 0 : update.getValues().size();
+    Writer writer = new Writer(32 + size * 48);
+    writer.writeByte(FORMAT_VERSION);
+    writer.writeByte((update.getProcessId() != null ? HAS_PROCESS_ID : 0)
+        | (update.getProcessPIK() != null ? HAS_PROCESS_PIK : 0));
+    if (update.getProcessId() != null) {
+      writer.writeVarLong(update.getProcessId());
+    }
+    if (update.getProcessPIK() != null) {
+      writer.writeSignedVarLong(update.getProcessPIK());
+    }
+    writer.writeVarLong(size);
+    if (size > 0) {
+      long previousTime = 0;
+      for (SourceDataTagValue value : update.getValues()) {
+        previousTime = writeValue(writer, value, previousTime);
+      }
+    }
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes an encoded update.
+   *
+   * @param bytes the encoded message
+   * @return the decoded update
+   * @throws IllegalArgumentException if the message is not a valid encoded update
+   */
+  public static DataTagValueUpdate decode(final byte[] bytes) {
+    Reader reader = new Reader(bytes);
+    try {
+      byte version = reader.readByte();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unsupported binary update format version: " + version);
+      }
+      int flags = reader.readByte();
+      Long processId = (flags & HAS_PROCESS_ID) != 0 ? reader.readVarLong() : null;
+      Long processPIK = (flags & HAS_PROCESS_PIK) != 0 ? reader.readSignedVarLong() : null;
+      long size = reader.readVarLong();
+      // each value takes at least one byte: reject a corrupt size before allocating
+      if (size < 0 || size > bytes.length - reader.position) {
+        throw new IllegalArgumentException("Invalid number of values in binary update: " + size);
+      }
+
+      ArrayList<SourceDataTagValue> values = new ArrayList<>((int) size);
+      long previousTime = 0;
+      for (int i = 0; i < size; i++) {
+        SourceDataTagValue value = new SourceDataTagValue();
+        previousTime = readValue(reader, value, previousTime);
+        values.add(value);
+      }
+      if (reader.position != bytes.length) {
+        throw new IllegalArgumentException("Unexpected bytes at the end of the binary update");
+      }
+
+      DataTagValueUpdate update = new DataTagValueUpdate(processId, processPIK);
+      update.setValues(values);
+      return update;
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated binary update", e);
+    }
+  }
+
+  private static long writeValue(final Writer writer, final SourceDataTagValue value, final long previousTime) {
+    // the default quality (returned if none is set) is not written
+    SourceDataTagQuality quality = value.getQuality();
+    boolean defaultQuality = quality.getQualityCode() == SourceDataTagQualityCode.OK
+        && (quality.getDescription() == null || quality.getDescription().isEmpty());
+    int flags = (value.isControlTag() ? CONTROL_TAG : 0)
+        | (value.isGuaranteedDelivery() ? GUARANTEED_DELIVERY : 0)
+        | (value.isSimulated() ? SIMULATED : 0)
+        | (!defaultQuality ? HAS_QUALITY : 0)
+        | (value.getTimestamp() != null ? HAS_TIMESTAMP : 0)
+        | (value.getDaqTimestamp() != null ? HAS_DAQ_TIMESTAMP : 0);
+    writer.writeByte(flags);
+    writer.writeVarLong(value.getId());
+    writer.writeString(value.getName());
+    writeTypedValue(writer, value.getValue());
+    writer.writeString(value.getValueDescription());
+    if (!defaultQuality) {
+      SourceDataTagQualityCode code = quality.getQualityCode();
+      writer.writeVarLong(code == null ? 0 : code.getQualityCode() + 1L);
+      writer.writeString(quality.getDescription());
+    }
+    long time = previousTime;
+    if (value.getTimestamp() != null) {
+      writer.writeSignedVarLong(value.getTimestamp().getTime() - time);
+      time = value.getTimestamp().getTime();
+    }
+    if (value.getDaqTimestamp() != null) {
+      writer.writeSignedVarLong(value.getDaqTimestamp().getTime() - time);
+      time = value.getDaqTimestamp().getTime();
+    }
+    writer.writeSignedVarLong(value.getPriority());
+    writer.writeSignedVarLong(value.getTimeToLive());
+    return time;
+  }
+
+  private static long readValue(final Reader reader, final SourceDataTagValue value, final long previousTime) {
+    int flags = reader.readByte();
+    value.setControlTag((flags & CONTROL_TAG) != 0);
+    value.setGuaranteedDelivery((flags & GUARANTEED_DELIVERY) != 0);
+    value.setSimulated((flags & SIMULATED) != 0);
+    value.setId(reader.readVarLong());
+    value.setName(reader.readString());
+    value.setValue(readTypedValue(reader));
+    value.setValueDescription(reader.readString());
+    SourceDataTagQuality quality = new SourceDataTagQuality();
+    if ((flags & HAS_QUALITY) != 0) {
+      long code = reader.readVarLong();
+      quality.setQualityCode(code == 0 ? null : qualityCode((int) code - 1));
+      quality.setDescription(reader.readString());
+    }
+    value.setQuality(quality);
+    long time = previousTime;
+    if ((flags & HAS_TIMESTAMP) != 0) {
+      time += reader.readSignedVarLong();
+      value.setTimestamp(new Timestamp(time));
+    }
+    if ((flags & HAS_DAQ_TIMESTAMP) != 0) {
+      time += reader.readSignedVarLong();
+      value.setDaqTimestamp(new Timestamp(time));
+    }
+    value.setPriority((int) reader.readSignedVarLong());
+    value.setTimeToLive((int) reader.readSignedVarLong());
+    return time;
+  }
+
+  private static SourceDataTagQualityCode qualityCode(final int code) {
+    if (code < 0 || code >= QUALITY_CODES.length || QUALITY_CODES[code] == null) {
+      return SourceDataTagQualityCode.UNKNOWN;
+    }
+    return QUALITY_CODES[code];
+  }
+
+  /**
+   * @return the type written for the value, or -1 if not supported
+   */
+  private static byte typeOf(final Object value) {
+    if (value == null) {
+      return TYPE_NULL;
+    }
+    Class<?> type = value.getClass();
+    if (type == Float.class) {
+      return TYPE_FLOAT;
+    } else if (type == Double.class) {
+      return TYPE_DOUBLE;
+    } else if (type == Integer.class) {
+      return TYPE_INTEGER;
+    } else if (type == Long.class) {
+      return TYPE_LONG;
+    } else if (type == Boolean.class) {
+      return TYPE_BOOLEAN;
+    } else if (type == String.class) {
+      return TYPE_STRING;
+    } else if (type == Short.class) {
+      return TYPE_SHORT;
+    } else if (type == Byte.class) {
+      return TYPE_BYTE;
+    }
+    return -1;
+  }
+
+  private static void writeTypedValue(final Writer writer, final Object value) {
+    byte type = typeOf(value);
+    if (type < 0) {
+      throw new IllegalArgumentException("Unsupported value type for binary encoding: " + value.getClass().getName());
+    }
+    writer.writeByte(type);
+    switch (type) {
+      case TYPE_BOOLEAN:
+        writer.writeByte((Boolean) value ? 1 : 0);
+        break;
+      case TYPE_BYTE:
+        writer.writeByte((Byte) value);
+        break;
+      case TYPE_SHORT:
+      case TYPE_INTEGER:
+      case TYPE_LONG:
+        writer.writeSignedVarLong(((Number) value).longValue());
+        break;
+      case TYPE_FLOAT:
+        writer.writeFixed(Float.floatToIntBits((Float) value), 4);
+        break;
+      case TYPE_DOUBLE:
+        writer.writeFixed(Double.doubleToLongBits((Double) value), 8);
+        break;
+      case TYPE_STRING:
+        writer.writeString((String) value);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static Object readTypedValue(final Reader reader) {
+    byte type = reader.readByte();
+    switch (type) {
+      case TYPE_NULL:
+        return null;
+      case TYPE_BOOLEAN:
+        return reader.readByte() != 0;
+      case TYPE_BYTE:
+        return reader.readByte();
+      case TYPE_SHORT:
+        return (short) reader.readSignedVarLong();
+      case TYPE_INTEGER:
+        return (int) reader.readSignedVarLong();
+      case TYPE_LONG:
+        return reader.readSignedVarLong();
+      case TYPE_FLOAT:
+        return Float.intBitsToFloat((int) reader.readFixed(4));
+      case TYPE_DOUBLE:
+        return Double.longBitsToDouble(reader.readFixed(8));
+      case TYPE_STRING:
+        return reader.readString();
+      default:
+        throw new IllegalArgumentException("Unknown value type in binary update: " + type);
+    }
+  }
+
+  /**
+   * Growable byte array with the primitive encodings.
+   */
+  private static final class Writer {
+
+    private byte[] buffer;
+
+    private int position;
+
+    private Writer(final int initialCapacity) {
+      buffer = new byte[initialCapacity];
+    }
+
+    private void ensureCapacity(final int additional) {
+      if (position + additional > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+      }
+    }
+
+    private void writeByte(final int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Unsigned LEB128 encoding (negative values take 10 bytes).
+     */
+    private void writeVarLong(final long value) {
+      ensureCapacity(10);
+      long remaining = value;
+      while ((remaining & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      buffer[position++] = (byte) remaining;
+    }
+
+    /**
+     * Zigzag then LEB128 encoding, for values that may be negative.
+     */
+    private void writeSignedVarLong(final long value) {
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Little-endian encoding on the given number of bytes.
+     */
+    private void writeFixed(final long value, final int bytes) {
+      ensureCapacity(bytes);
+      for (int i = 0; i < bytes; i++) {
+        buffer[position++] = (byte) (value >>> (8 * i));
+      }
+    }
+
+    /**
+     * UTF-8 bytes preceded by their length + 1 (0 for a null String).
+     */
+    private void writeString(final String value) {
+      if (value == null) {
+        writeVarLong(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(bytes.length + 1L);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+  }
+
+  /**
+   * Reads the primitive encodings of the {@link Writer} from a byte array.
+   */
+  private static final class Reader {
+
+    private final byte[] buffer;
+
+    private int position;
+
+    private Reader(final byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    private byte readByte() {
+      return buffer[position++];
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      byte current;
+      do {
+        if (shift > 63) {
+          throw new IllegalArgumentException("Malformed variable-length integer in binary update");
+        }
+        current = buffer[position++];
+        value |= (long) (current & 0x7F) << shift;
+        shift += 7;
+      } while ((current & 0x80) != 0);
+      return value;
+    }
+
+    private long readSignedVarLong() {
+      long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readFixed(final int bytes) {
+      long value = 0;
+      for (int i = 0; i < bytes; i++) {
+        value |= (long) (buffer[position++] & 0xFF) << (8 * i);
+      }
+      return value;
+    }
+
+    private String readString() {
+      long length = readVarLong() - 1;
+      if (length < 0) {
+        return null;
+      }
+      if (length > buffer.length - position) {
+        throw new ArrayIndexOutOfBoundsException("String length " + length + " exceeds the message size");
+      }
+      String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+      position += (int) length;
+      return value;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import org.springframework.jms.support.converter.MessageConversionException;
 import org.springframework.jms.support.converter.MessageConverter;
 
 import javax.annotation.PostConstruct;
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.Session;
@@ -35,14 +36,46 @@ import java.io.IOException;
  * Converter class used to convert between JSON messages and
  * {@link DataTagValueUpdate} instances.
  *
+ * <p>Updates can also be sent in the compact binary encoding of
+ * {@link DataTagValueUpdateBinaryCodec}, as a {@link BytesMessage} with the
+ * {@link #ENCODING_PROPERTY} set to {@link #BINARY_ENCODING}. Incoming messages
+ * are decoded according to this property, so DAQs using either encoding can
+ * publish to the same server.
+ *
  * @author Mark Brightwell
  */
 @Slf4j
 public class DataTagValueUpdateConverter implements MessageConverter {
 
+  /**
+   * JMS property giving the encoding of an update message (JSON if not set).
+   */
+  public static final String ENCODING_PROPERTY = "c2monEncoding";
+
+  /**
+   * Value of the {@link #ENCODING_PROPERTY} for binary encoded updates.
+   */
+  public static final String BINARY_ENCODING = "binary";
+
   private ObjectMapper mapper;
 
+  /**
+   * Send updates in the binary encoding (updates with values not supported by
+   * the binary encoding are still sent as JSON).
+   */
+  private final boolean binaryEncoding;
+
   public DataTagValueUpdateConverter() {
+    this(false);
+  }
+
+  /**
+   * @param binaryEncoding if true, updates are sent in the binary encoding
+   *                       where possible (incoming updates are always decoded
+   *                       according to their encoding)
+   */
+  public DataTagValueUpdateConverter(final boolean binaryEncoding) {
+    this.binaryEncoding = binaryEncoding;
     this.mapper = new ObjectMapper();
     mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     mapper.enable(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY);
@@ -62,13 +95,17 @@ public class DataTagValueUpdateConverter implements MessageConverter {
       throw new MessageConversionException("Message must not be null!");
     }
 
+    if (BINARY_ENCODING.equals(message.getStringProperty(ENCODING_PROPERTY))) {
+      return fromBinaryMessage(message);
+    }
+
     if (!(message instanceof TextMessage)) {
       throw new MessageConversionException("Message must be an instance of TextMessage!");
     }
 
     try {
       String json = ((TextMessage) message).getText();
-      log.trace("Update received from DAQ:\n" + json);
+      log.trace("Update received from DAQ:\n{}", json);
 
       return mapper.readValue(json, DataTagValueUpdate.class);
     } catch (IOException | RuntimeException e) {
@@ -77,6 +114,29 @@ public class DataTagValueUpdateConverter implements MessageConverter {
     }
   }
 
+  /**
+   * Decodes a binary encoded update.
+   *
+   * @param message the incoming tag update
+   * @return the decoded update
+   * @throws JMSException if an error occurs reading the message
+   */
+  private DataTagValueUpdate fromBinaryMessage(final Message message) throws JMSException {
+    if (!(message instanceof BytesMessage)) {
+      throw new MessageConversionException("Binary encoded message must be an instance of BytesMessage!");
+    }
+
+    BytesMessage bytesMessage = (BytesMessage) message;
+    byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+    bytesMessage.readBytes(bytes);
+    try {
+      return DataTagValueUpdateBinaryCodec.decode(bytes);
+    } catch (RuntimeException e) {
+      log.error("Exception caught while decoding incoming binary update", e);
+      throw new MessageConversionException("Exception caught while decoding incoming binary update of " + bytes.length + " bytes", e);
+    }
+  }
+
   /**
    * Converts a {@link DataTagValueUpdate} to a JMS {@link Message}
    *
@@ -88,6 +148,14 @@ public class DataTagValueUpdateConverter implements MessageConverter {
    */
   @Override
   public Message toMessage(final Object tag, final Session session) throws JMSException {
+    if (binaryEncoding && tag instanceof DataTagValueUpdate
+        && DataTagValueUpdateBinaryCodec.canEncode((DataTagValueUpdate) tag)) {
+      BytesMessage message = session.createBytesMessage();
+      message.setStringProperty(ENCODING_PROPERTY, BINARY_ENCODING);
+      message.writeBytes(DataTagValueUpdateBinaryCodec.encode((DataTagValueUpdate) tag));
+      return message;
+    }
+
     try {
       String json = mapper.writeValueAsString(tag);
       return session.createTextMessage(json);
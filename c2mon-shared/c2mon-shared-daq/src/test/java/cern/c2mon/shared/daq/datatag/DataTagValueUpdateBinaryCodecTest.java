@@ -0,0 +1,145 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.daq.datatag;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import cern.c2mon.shared.common.datatag.DataTagAddress;
+import cern.c2mon.shared.common.datatag.DataTagValueUpdate;
+import cern.c2mon.shared.common.datatag.SourceDataTagQuality;
+import cern.c2mon.shared.common.datatag.SourceDataTagQualityCode;
+import cern.c2mon.shared.common.datatag.SourceDataTagValue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the {@link DataTagValueUpdateBinaryCodec}.
+ */
+public class DataTagValueUpdateBinaryCodecTest {
+
+  @Test
+  public void testAllValueTypes() {
+    List<Object> values = Arrays.<Object>asList(null, true, false, (byte) -3, (short) 300, -70000, Integer.MAX_VALUE,
+        Long.MIN_VALUE, 1234567890123L, 1.5f, Float.NaN, -2.25d, "", "a value with accents: éà");
+    DataTagValueUpdate update = new DataTagValueUpdate(12L, -4567891234L);
+    long id = 1000L;
+    for (Object value : values) {
+      update.addValue(createValue(id++, value));
+    }
+
+    DataTagValueUpdate decoded = roundTrip(update);
+
+    assertEquals(Long.valueOf(12L), decoded.getProcessId());
+    assertEquals(Long.valueOf(-4567891234L), decoded.getProcessPIK());
+    assertEquals(new ArrayList<>(update.getValues()), new ArrayList<>(decoded.getValues()));
+    for (SourceDataTagValue value : decoded.getValues()) {
+      Object expected = values.get((int) (value.getId() - 1000L));
+      if (expected != null) {
+        assertEquals(expected.getClass(), value.getValue().getClass());
+      }
+    }
+  }
+
+  @Test
+  public void testFlagsQualityAndTimestamps() {
+    SourceDataTagValue value = createValue(Long.MAX_VALUE, 2f);
+    value.setControlTag(true);
+    value.setGuaranteedDelivery(true);
+    value.setSimulated(true);
+    value.setQuality(new SourceDataTagQuality(SourceDataTagQualityCode.OUT_OF_BOUNDS, "too high"));
+    value.setTimestamp(new Timestamp(0L));
+    value.setPriority(DataTagAddress.PRIORITY_HIGH);
+    value.setTimeToLive(DataTagAddress.TTL_FOREVER);
+    SourceDataTagValue noTimestamps = createValue(3L, null);
+    noTimestamps.setTimestamp(null);
+    noTimestamps.setDaqTimestamp(null);
+    noTimestamps.setName(null);
+    DataTagValueUpdate update = new DataTagValueUpdate(null, (Long) null);
+    update.addValue(value);
+    update.addValue(noTimestamps);
+
+    DataTagValueUpdate decoded = roundTrip(update);
+
+    assertNull(decoded.getProcessId());
+    assertNull(decoded.getProcessPIK());
+    assertEquals(new ArrayList<>(update.getValues()), new ArrayList<>(decoded.getValues()));
+  }
+
+  @Test
+  public void testEmptyUpdate() {
+    DataTagValueUpdate decoded = roundTrip(new DataTagValueUpdate(1L));
+    assertTrue(decoded.getValues().isEmpty());
+  }
+
+  @Test
+  public void testUnsupportedValueType() {
+    DataTagValueUpdate update = new DataTagValueUpdate(1L);
+    update.addValue(createValue(1L, 1f));
+    assertTrue(DataTagValueUpdateBinaryCodec.canEncode(update));
+    update.addValue(createValue(2L, new Integer[] {1, 2}));
+    assertFalse(DataTagValueUpdateBinaryCodec.canEncode(update));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedMessage() {
+    DataTagValueUpdate update = new DataTagValueUpdate(1L);
+    update.addValue(createValue(1L, "value"));
+    byte[] bytes = DataTagValueUpdateBinaryCodec.encode(update);
+    DataTagValueUpdateBinaryCodec.decode(Arrays.copyOf(bytes, bytes.length - 3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownVersion() {
+    byte[] bytes = DataTagValueUpdateBinaryCodec.encode(new DataTagValueUpdate(1L));
+    bytes[0] = DataTagValueUpdateBinaryCodec.FORMAT_VERSION + 1;
+    DataTagValueUpdateBinaryCodec.decode(bytes);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSizeLargerThanMessage() {
+    // 2^40 values announced in a 9 byte message
+    DataTagValueUpdateBinaryCodec.decode(new byte[] {DataTagValueUpdateBinaryCodec.FORMAT_VERSION, 0,
+        (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x20, 0});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSize() {
+    byte[] bytes = new byte[12];
+    bytes[0] = DataTagValueUpdateBinaryCodec.FORMAT_VERSION;
+    Arrays.fill(bytes, 2, 11, (byte) 0xFF);
+    bytes[11] = 1;
+    DataTagValueUpdateBinaryCodec.decode(bytes);
+  }
+
+  private static DataTagValueUpdate roundTrip(final DataTagValueUpdate update) {
+    return DataTagValueUpdateBinaryCodec.decode(DataTagValueUpdateBinaryCodec.encode(update));
+  }
+
+  private static SourceDataTagValue createValue(final long id, final Object value) {
+    return new SourceDataTagValue(id, "TAG." + id, false, value, new SourceDataTagQuality(),
+        new Timestamp(System.currentTimeMillis() - id % 1000), DataTagAddress.PRIORITY_LOW, false,
+        "description " + id, 60000);
+  }
+}
@@ -0,0 +1,167 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.rule;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Input values of a rule evaluation, by input slot: a {@link Map} of the input
+ * tag ids to the values, backed by arrays that are refilled for each
+ * evaluation and can be reused by the same thread, instead of a new
+ * {@link java.util.Hashtable} per evaluation.
+ *
+ * <p>Rules have few inputs: a value is looked up by a linear scan of the
+ * ids, with no hashing and no allocation. Slots without value are not part of
+ * the map. Not thread-safe.
+ */
+public final class RuleInputs extends AbstractMap<Long, Object> {
+
+  private static final Long[] NO_IDS = new Long[0];
+
+  private Long[] ids = NO_IDS;
+
+  private Object[] values = new Object[8];
+
+  private boolean bound = false;
+
+  /**
+   * Prepares the map for an evaluation.
+   *
+   * @param inputIds the input tag ids, by slot (not copied: must not be modified)
+   */
+  public void bind(final Long[] inputIds) {
+    if (values.length < inputIds.length) {
+      values = new Object[inputIds.length];
+    }
+    ids = inputIds;
+    bound = true;
+  }
+
+  /**
+   * @return true if the map is bound to input ids, i.e. in use for an evaluation
+   */
+  public boolean isBound() {
+    return bound;
+  }
+
+  /**
+   * @param slot the input slot
+   * @param value the value of the input of the slot
+   */
+  public void set(final int slot, final Object value) {
+    values[slot] = value;
+  }
+
+  /**
+   * @param slot the input slot
+   * @return the value of the input of the slot, null if not set
+   */
+  public Object getSlot(final int slot) {
+    return values[slot];
+  }
+
+  /**
+   * Releases the values and the ids, once the evaluation is over.
+   */
+  @Override
+  public void clear() {
+    for (int i = 0; i < ids.length; i++) {
+      values[i] = null;
+    }
+    ids = NO_IDS;
+    bound = false;
+  }
+
+  @Override
+  public Object get(final Object key) {
+    if (key instanceof Long) {
+      long id = ((Long) key).longValue();
+      for (int i = 0; i < ids.length; i++) {
+        if (ids[i].longValue() == id) {
+          return values[i];
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (values[i] != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public Set<Entry<Long, Object>> entrySet() {
+    return new AbstractSet<Entry<Long, Object>>() {
+
+      @Override
+      public Iterator<Entry<Long, Object>> iterator() {
+        return new Iterator<Entry<Long, Object>>() {
+
+          private int next = nextSlot(0);
+
+          @Override
+          public boolean hasNext() {
+            return next < ids.length;
+          }
+
+          @Override
+          public Entry<Long, Object> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Entry<Long, Object> entry = new SimpleImmutableEntry<>(ids[next], values[next]);
+            next = nextSlot(next + 1);
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return RuleInputs.this.size();
+      }
+    };
+  }
+
+  /**
+   * @return the first slot from the given one that has a value
+   */
+  private int nextSlot(final int from) {
+    int slot = from;
+    while (slot < ids.length && values[slot] == null) {
+      slot++;
+    }
+    return slot;
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 
 import cern.c2mon.shared.common.rule.RuleInputValue;
+import cern.c2mon.shared.rule.parser.CompiledExpression;
 import cern.c2mon.shared.rule.parser.InvalidExpressionParser;
 import cern.c2mon.shared.rule.parser.Parser;
 import cern.c2mon.shared.rule.parser.RuleConstant;
@@ -36,9 +37,19 @@ public class SimpleRuleExpression extends RuleExpression implements Cloneable {
      */
     private Object[] tokens = null;
 
+    /**
+     * The tokens compiled into an expression tree, evaluated instead of the
+     * tokens when possible; null if the expression could not be compiled.
+     * Not serialized: compiled again on first evaluation.
+     */
+    private transient CompiledExpression compiledExpression;
+
+    private transient boolean compiled = false;
+
     public SimpleRuleExpression(final String pExpression) throws RuleFormatException {
         super(pExpression, RuleType.Simple);
         this.tokens = tokenize(pExpression);
+        getCompiledExpression();
     }
 
     public Object clone() {
@@ -87,7 +98,7 @@ public class SimpleRuleExpression extends RuleExpression implements Cloneable {
     /**
      * Extract all "tokens" (terminal symbols) from a rule expression.
      */
-    protected static Object[] tokenize(String pExpression) throws RuleFormatException {
+    public static Object[] tokenize(String pExpression) throws RuleFormatException {
         char[] chars = pExpression.toCharArray();
         char currentChar;
         StringBuffer tempStr = null;
@@ -311,8 +322,7 @@ public class SimpleRuleExpression extends RuleExpression implements Cloneable {
           if (tokens[i] instanceof RuleInputTagId) {
 
             final RuleInputTagId tagInput = (RuleInputTagId) tokens[i];
-            final long tagId = tagInput.getId();
-            final Object val = pInputParams.get(tagId);
+            final Object val = pInputParams.get(tagInput.getId());
             
             if (val != null && val instanceof RuleInputValue) {
               tag = (RuleInputValue) val;
@@ -471,6 +481,71 @@ public class SimpleRuleExpression extends RuleExpression implements Cloneable {
       return valueTokens;
     }
     
+    /**
+     * @return the compiled expression, or null if the expression could not be compiled
+     */
+    private CompiledExpression getCompiledExpression() {
+      if (!compiled) {
+        compiledExpression = CompiledExpression.compile(tokens);
+        compiled = true;
+      }
+      return compiledExpression;
+    }
+
+    /**
+     * Same as {@link #splitToTokens(Map)} and {@link #splitToTokensAndAllowInvalidTags(Map)},
+     * but for the input slots of the compiled expression.
+     *
+     * @return The input values by slot, or null if the values cannot be bound
+     * (a tag is missing or null, or a value would change how the parser reads
+     * the expression); the tokens must then be evaluated by the parser
+     *
+     * @param expression the compiled expression
+     * @param pInputParams Map of value objects related to the input tag ids
+     * @param allowInvalidTags whether invalid tags are bound to {@link RuleConstant#INTERNAL_INVALID}
+     */
+    private Object[] bindInputs(final CompiledExpression expression, final Map<Long, Object> pInputParams,
+        final boolean allowInvalidTags) {
+
+      final Object[] inputs = new Object[expression.getSlotCount()];
+      for (int i = 0; i < inputs.length; i++) {
+        Object value = pInputParams.get(expression.getSlotId(i));
+        if (value instanceof RuleInputValue) {
+          final RuleInputValue tag = (RuleInputValue) value;
+          value = allowInvalidTags && !tag.isValid() ? RuleConstant.INTERNAL_INVALID.toString() : tag.getValue();
+        }
+        if (value == null || !CompiledExpression.isNeutral(value)) {
+          return null;
+        }
+        inputs[i] = value;
+      }
+      return inputs;
+    }
+
+    /**
+     * Evaluates the compiled expression.
+     *
+     * @return The result of the expression, or null if it must be evaluated
+     * by the parser (not compiled, inputs not bound, or evaluation error: the
+     * parser reports the error)
+     */
+    private Object evaluateCompiled(final Map<Long, Object> pInputParams, final Parser parser,
+        final boolean allowInvalidTags) {
+
+      final CompiledExpression expression = getCompiledExpression();
+      if (expression != null) {
+        final Object[] inputs = bindInputs(expression, pInputParams, allowInvalidTags);
+        if (inputs != null) {
+          try {
+            return expression.eval(inputs, parser);
+          } catch (Exception e) {
+            return null;
+          }
+        }
+      }
+      return null;
+    }
+
     /**
      * @return True if the result of the evaluation is INVALID.
      * (As a convention the RuleParser returns 
@@ -515,6 +590,10 @@ public class SimpleRuleExpression extends RuleExpression implements Cloneable {
     private Object handleRuleWithNoInvalidTags(final Map<Long, Object> pInputParams)
         throws RuleEvaluationException {
 
+      final Object compiledResult = evaluateCompiled(pInputParams, Parser.getInstance(), false);
+      if (compiledResult != null) {
+        return compiledResult;
+      }
       final Object[] valueTokens = splitToTokens(pInputParams);
       final Object result = Parser.getInstance().eval(valueTokens); // => evaluate the expression as normal
       return result;
@@ -550,6 +629,10 @@ public class SimpleRuleExpression extends RuleExpression implements Cloneable {
     private Object tryToIgnoreInvalidTags(final Map<Long, Object> pInputParams) 
         throws RuleEvaluationException {
       
+      final Object compiledResult = evaluateCompiled(pInputParams, InvalidExpressionParser.getInstance(), true);
+      if (compiledResult != null) {
+        return compiledResult;
+      }
       final Object[] valueTokens = splitToTokensAndAllowInvalidTags(pInputParams);
       final Object result = InvalidExpressionParser.getInstance().eval(valueTokens);
       
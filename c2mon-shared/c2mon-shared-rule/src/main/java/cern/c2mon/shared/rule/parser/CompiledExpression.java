@@ -0,0 +1,295 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ * 
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ * 
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.rule.parser;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cern.c2mon.shared.rule.RuleEvaluationException;
+import cern.c2mon.shared.rule.RuleInputTagId;
+
+/**
+ * A rule expression in token format compiled into an expression tree, so
+ * that it can be evaluated without parsing or copying the tokens.
+ *
+ * <p>The tree is built once, by decomposing the tokens exactly as
+ * {@link AbstractParser#eval(Object[])} does at every evaluation (same
+ * grouping and operator order), with the input tags bound to fixed slots. The
+ * binary operations are computed by the given {@link AbstractParser}, except
+ * for the operations on two numbers, computed directly with the same
+ * semantics as the {@link Parser}.
+ *
+ * <p>The tree assumes that the input values do not change the decomposition:
+ * String input values such as "(" or "-" are parsed as symbols by the
+ * {@link AbstractParser} (see {@link #isNeutral(Object)}). Expressions that
+ * the {@link AbstractParser} cannot decompose are not compiled.
+ */
+public final class CompiledExpression {
+
+  private final Node root;
+
+  private final Long[] slotIds;
+
+  private CompiledExpression(final Node root, final Long[] slotIds) {
+    this.root = root;
+    this.slotIds = slotIds;
+  }
+
+  /**
+   * @param tokens the rule in token format, with {@link RuleInputTagId} tokens
+   *               for the input tags
+   * @return the compiled expression, or null if the expression cannot be
+   *         decomposed by the {@link AbstractParser} (it then fails at every
+   *         evaluation, or its decomposition depends on the input values)
+   */
+  public static CompiledExpression compile(final Object[] tokens) {
+    Map<Long, Slot> slots = new LinkedHashMap<>();
+    Object[] template = new Object[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      if (tokens[i] instanceof RuleInputTagId) {
+        Long id = ((RuleInputTagId) tokens[i]).getId();
+        Slot slot = slots.get(id);
+        if (slot == null) {
+          slot = new Slot(slots.size());
+          slots.put(id, slot);
+        }
+        template[i] = slot;
+      } else {
+        template[i] = tokens[i];
+      }
+    }
+    Node root;
+    try {
+      root = compileNode(template);
+    } catch (RuntimeException e) {
+      // not decomposable: left to the parser
+      return null;
+    }
+    return new CompiledExpression(root, slots.keySet().toArray(new Long[slots.size()]));
+  }
+
+  /**
+   * Mirrors {@link AbstractParser#eval(Object[])}.
+   */
+  private static Node compileNode(final Object[] token) {
+    Parser parser = Parser.getInstance();
+    if (!parser.isParenthesisBalanced(token)) {
+      throw new IllegalArgumentException("Parenthesis not balanced");
+    }
+    if (token.length == 1) {
+      return token[0] instanceof Slot ? (Slot) token[0] : new Constant(token[0]);
+    }
+
+    Object[] x = parser.extractExpressionFromTheLeft(token);
+    if (token[0] instanceof String
+        && token[token.length - 1] instanceof String
+        && x.length == token.length - 2
+        && token[0].equals("(")
+        && token[token.length - 1].equals(")")) {
+      return compileNode(x);
+    }
+    if (x.length == token.length) {
+      Node operand = compileNode(Arrays.copyOfRange(x, 1, x.length));
+      if (x[0] instanceof String && x[0].equals("!")) {
+        return new Not(operand);
+      } else if (x[0] instanceof String && x[0].equals("-")) {
+        return new Negation(operand);
+      }
+      throw new IllegalArgumentException("Unknown unary operator " + x[0]);
+    }
+
+    int operatorIndex = token[0] instanceof String && ((String) token[0]).compareTo("(") == 0 ? x.length + 2 : x.length;
+    Operator operator = Operator.fromString((String) token[operatorIndex]);
+    if (operator == null) {
+      throw new IllegalArgumentException("Unknown operator " + token[operatorIndex]);
+    }
+    return new Binary(operator, compileNode(x), compileNode(Arrays.copyOfRange(token, operatorIndex + 1, token.length)));
+  }
+
+  /**
+   * @return the number of input slots
+   */
+  public int getSlotCount() {
+    return slotIds.length;
+  }
+
+  /**
+   * @param slot an input slot
+   * @return the id of the input tag of the slot (the slots are numbered in
+   *         order of first appearance of the tags in the expression)
+   */
+  public Long getSlotId(final int slot) {
+    return slotIds[slot];
+  }
+
+  /**
+   * @param value an input value
+   * @return false if the value would be parsed as a symbol by the
+   *         {@link AbstractParser}, changing the decomposition of the
+   *         expression (the expression must then be evaluated by the parser)
+   */
+  public static boolean isNeutral(final Object value) {
+    if (value instanceof String) {
+      String string = (String) value;
+      return !string.isEmpty() && string.charAt(0) != '(' && string.charAt(0) != ')'
+          && !string.equals("!") && !string.equals("-");
+    } else if (value instanceof Character) {
+      char c = ((Character) value).charValue();
+      return c != '(' && c != ')';
+    }
+    return true;
+  }
+
+  /**
+   * Evaluates the expression. Errors are reported as by the parser in most
+   * cases, but not always with the same exception: on exception, evaluate the
+   * expression with the parser to report the error.
+   *
+   * @param inputs the input values, by slot; all must be neutral (see
+   *               {@link #isNeutral(Object)})
+   * @param calculator computes the binary operations
+   * @return the result, as returned by {@link AbstractParser#eval(Object[])}
+   * @throws RuleEvaluationException if an operation cannot be computed
+   */
+  public Object eval(final Object[] inputs, final AbstractParser calculator) throws RuleEvaluationException {
+    return root.eval(inputs, calculator);
+  }
+
+  /**
+   * Node of the expression tree.
+   */
+  private interface Node {
+    Object eval(Object[] inputs, AbstractParser calculator) throws RuleEvaluationException;
+  }
+
+  private static final class Constant implements Node {
+
+    private final Object value;
+
+    private Constant(final Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object eval(final Object[] inputs, final AbstractParser calculator) {
+      return value;
+    }
+  }
+
+  /**
+   * Input tag value; also used as token in the template being compiled.
+   */
+  private static final class Slot implements Node {
+
+    private final int index;
+
+    private Slot(final int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Object eval(final Object[] inputs, final AbstractParser calculator) {
+      return inputs[index];
+    }
+  }
+
+  private static final class Not implements Node {
+
+    private final Node operand;
+
+    private Not(final Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    public Object eval(final Object[] inputs, final AbstractParser calculator) throws RuleEvaluationException {
+      return operand.eval(inputs, calculator).equals(Boolean.TRUE) ? Boolean.FALSE : Boolean.TRUE;
+    }
+  }
+
+  private static final class Negation implements Node {
+
+    private final Node operand;
+
+    private Negation(final Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    public Object eval(final Object[] inputs, final AbstractParser calculator) throws RuleEvaluationException {
+      return new Double(-((Number) operand.eval(inputs, calculator)).doubleValue());
+    }
+  }
+
+  private static final class Binary implements Node {
+
+    private final Operator operator;
+
+    private final Node left;
+
+    private final Node right;
+
+    private Binary(final Operator operator, final Node left, final Node right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public Object eval(final Object[] inputs, final AbstractParser calculator) throws RuleEvaluationException {
+      // both operands are always evaluated, as by the parser
+      Object x = left.eval(inputs, calculator);
+      Object y = right.eval(inputs, calculator);
+      if (x instanceof Number && y instanceof Number) {
+        double a = ((Number) x).doubleValue();
+        double b = ((Number) y).doubleValue();
+        switch (operator) {
+          case ADDITION:
+            return new Double(a + b);
+          case SUBTRACTION:
+            return new Double(a - b);
+          case MULTIPLICATION:
+            return new Double(a * b);
+          case DIVISION:
+            return new Double(a / b);
+          case RAISE_TO_POWER:
+            return new Double(Math.pow(a, b));
+          case BITWISE_AND:
+            return new Double(((Number) x).longValue() & ((Number) y).longValue());
+          case BITWISE_OR:
+            return new Double(((Number) x).longValue() | ((Number) y).longValue());
+          case GREATER_THAN_COMPARISON:
+            return a > b ? Boolean.TRUE : Boolean.FALSE;
+          case LESS_THAN_COMPARISON:
+            return a < b ? Boolean.TRUE : Boolean.FALSE;
+          case LESS_THAN_OR_EQUALS_COMPARISON:
+            return a <= b ? Boolean.TRUE : Boolean.FALSE;
+          case GREATER_THAN_OR_EQUALS_COMPARISON:
+            return a >= b ? Boolean.TRUE : Boolean.FALSE;
+          case EQUALS_COMPARISON:
+            return a == b ? Boolean.TRUE : Boolean.FALSE;
+          case NOT_EQUALS_COMPARISON:
+            return a != b ? Boolean.TRUE : Boolean.FALSE;
+          default:
+            break;
+        }
+      }
+      return calculator.calculateExpr(x, y, operator);
+    }
+  }
+}
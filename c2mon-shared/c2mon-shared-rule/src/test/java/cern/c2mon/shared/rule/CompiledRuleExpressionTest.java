@@ -0,0 +1,358 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cern.c2mon.shared.common.rule.RuleInputValue;
+import cern.c2mon.shared.rule.parser.AbstractParser;
+import cern.c2mon.shared.rule.parser.CompiledExpression;
+import cern.c2mon.shared.rule.parser.InvalidExpressionParser;
+import cern.c2mon.shared.rule.parser.Parser;
+import cern.c2mon.shared.rule.parser.RuleConstant;
+
+/**
+ * Differential test of the compiled rule expressions: random expressions are
+ * evaluated with random inputs by the {@link SimpleRuleExpression} (compiled
+ * when possible) and by the parser on the tokens, and must give the same
+ * result, or fail with the same exception. The same is done for random
+ * {@link ConditionedRuleExpression} and {@link MultipleReturnValueRuleExpression}
+ * rules, whose conditions are each evaluated by the parser.
+ */
+public class CompiledRuleExpressionTest {
+
+  private static final String[] OPERATORS = {"+", "-", "*", "/", "^", "|", "&", "&&", "||", ">", "<", "<=", ">=", "=", "!="};
+
+  private static final String[] SYMBOLS = {"(", ")", "!", "-", "+", "=", "#1", "#2", "2", "true", "\"a\""};
+
+  private static final Object[] VALUES = {0, 1, 3L, 2.5f, -4.0d, Double.NaN, 0.0d, true, false,
+      "a", "b", "$INVALID", "+", "(", ")", "(x", "!", "-", ""};
+
+  private static final Long[] INPUT_IDS = {1L, 2L, 3L};
+
+  private static final String[] RESULT_VALUES = {"0", "1", "2", "OK", "true", "false"};
+
+  private static final int CASES = 20000;
+
+  private static final int CONDITIONED_CASES = 5000;
+
+  private final Random random = new Random(42);
+
+  @Test
+  public void testCompiledEvaluationMatchesParser() throws RuleFormatException {
+    int compiledCount = 0;
+    for (int i = 0; i < CASES; i++) {
+      String expression = random.nextInt(10) == 0 ? randomSymbols() : randomExpression(4);
+      SimpleRuleExpression rule = new SimpleRuleExpression(expression);
+      if (CompiledExpression.compile(SimpleRuleExpression.tokenize(expression)) != null) {
+        compiledCount++;
+      }
+      for (int j = 0; j < 5; j++) {
+        Map<Long, Object> inputs = randomInputs();
+        Object expected = interpret(rule, inputs);
+        assertEquals(expression + " with " + inputs, expected, outcome(rule, inputs));
+        assertEquals(expression + " with " + inputs + " by slot", expected, outcome(rule, bySlot(inputs)));
+      }
+    }
+    // most generated expressions are well formed
+    assertTrue(compiledCount > CASES / 2);
+  }
+
+  @Test
+  public void testConditionedRulesMatchParser() throws RuleFormatException {
+    int resultCount = 0;
+    for (int i = 0; i < CONDITIONED_CASES; i++) {
+      boolean multipleReturnValue = random.nextBoolean();
+      List<String> conditions = new ArrayList<>();
+      List<String> resultValues = new ArrayList<>();
+      StringBuilder expression = new StringBuilder();
+      int conditionCount = 2 + random.nextInt(3);
+      for (int c = 0; c < conditionCount; c++) {
+        // the last condition of a conditioned rule is often the default one
+        String condition = !multipleReturnValue && c == conditionCount - 1 && random.nextBoolean() ? "true" : randomExpression(3);
+        String resultValue = RESULT_VALUES[random.nextInt(RESULT_VALUES.length)];
+        conditions.add(condition);
+        resultValues.add(resultValue);
+        if (c > 0) {
+          expression.append(multipleReturnValue ? " | " : ", ");
+        }
+        expression.append(condition).append(" [").append(resultValue).append("]");
+      }
+      RuleExpression rule = multipleReturnValue
+          ? new MultipleReturnValueRuleExpression(expression.toString())
+          : new ConditionedRuleExpression(expression.toString());
+      for (int j = 0; j < 5; j++) {
+        Map<Long, Object> inputs = randomInputs();
+        Object expected = interpretConditions(conditions, resultValues, multipleReturnValue, inputs);
+        if (expected != null && !(expected instanceof Class)) {
+          resultCount++;
+        }
+        assertEquals(expression + " with " + inputs, expected, outcome(rule, inputs));
+        assertEquals(expression + " with " + inputs + " by slot", expected, outcome(rule, bySlot(inputs)));
+      }
+    }
+    // many evaluations reach a condition giving a result
+    assertTrue(resultCount > CONDITIONED_CASES / 2);
+  }
+
+  @Test
+  public void testUndecomposableExpressionIsNotCompiled() throws RuleFormatException {
+    assertNull(CompiledExpression.compile(SimpleRuleExpression.tokenize("(#1 + 2")));
+    assertNull(CompiledExpression.compile(SimpleRuleExpression.tokenize("#1 #2 3")));
+    assertNull(CompiledExpression.compile(SimpleRuleExpression.tokenize("\"\" = #1")));
+  }
+
+  @Test
+  public void testInputSlotsInOrderOfAppearance() throws RuleFormatException, RuleEvaluationException {
+    CompiledExpression expression = CompiledExpression.compile(SimpleRuleExpression.tokenize("(#7 > 2) | (#3 < #7)"));
+    assertEquals(2, expression.getSlotCount());
+    assertEquals(Long.valueOf(7), expression.getSlotId(0));
+    assertEquals(Long.valueOf(3), expression.getSlotId(1));
+    assertEquals(Boolean.TRUE, expression.eval(new Object[] {1f, 0}, Parser.getInstance()));
+  }
+
+  @Test
+  public void testDeserializedExpressionIsCompiledAgain() throws Exception {
+    SimpleRuleExpression rule = new SimpleRuleExpression("(#1 * 2) + #2");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(rule);
+    }
+    SimpleRuleExpression copy;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (SimpleRuleExpression) in.readObject();
+    }
+    Map<Long, Object> inputs = new HashMap<>();
+    inputs.put(1L, new TestInputValue(1L, 3, true));
+    inputs.put(2L, 1.5f);
+    assertEquals(7.5d, copy.evaluate(inputs));
+  }
+
+  /**
+   * @return the result of the evaluation, or the class of the exception
+   */
+  private static Object outcome(final RuleExpression rule, final Map<Long, Object> inputs) {
+    try {
+      return rule.evaluate(inputs);
+    } catch (Exception e) {
+      return e.getClass();
+    }
+  }
+
+  /**
+   * Reference evaluation: the input values are substituted in the tokens,
+   * which are evaluated by the parser.
+   */
+  private static Object interpret(final SimpleRuleExpression rule, final Map<Long, Object> inputs) {
+    Object[] tokens;
+    try {
+      tokens = SimpleRuleExpression.tokenize(rule.getExpression());
+    } catch (RuleFormatException e) {
+      throw new IllegalStateException(e);
+    }
+    boolean allowInvalid = rule.hasInvalidTags(inputs) || rule.usesTheInvalidKeyword();
+    AbstractParser parser = allowInvalid ? InvalidExpressionParser.getInstance() : Parser.getInstance();
+    try {
+      Object[] valueTokens = new Object[tokens.length];
+      for (int i = 0; i < valueTokens.length; i++) {
+        if (tokens[i] instanceof RuleInputTagId) {
+          Object value = inputs.get(((RuleInputTagId) tokens[i]).getId());
+          if (value instanceof RuleInputValue) {
+            RuleInputValue tag = (RuleInputValue) value;
+            value = allowInvalid && !tag.isValid() ? RuleConstant.INTERNAL_INVALID.toString() : tag.getValue();
+          }
+          if (value == null) {
+            throw new RuleEvaluationException("Missing or null input");
+          }
+          valueTokens[i] = value;
+        } else {
+          valueTokens[i] = tokens[i];
+        }
+      }
+      Object result = parser.eval(valueTokens);
+      if (allowInvalid && RuleConstant.INTERNAL_INVALID.toString().equals(result)) {
+        throw new RuleEvaluationException("Invalid result");
+      }
+      return result;
+    } catch (Exception e) {
+      return e.getClass();
+    }
+  }
+
+  /**
+   * Reference evaluation of a conditioned rule (or of a rule with multiple
+   * return values): the conditions are evaluated in order by the parser (see
+   * {@link #interpret(SimpleRuleExpression, Map)}), up to the first true one.
+   *
+   * @return the result value of the first true condition, null if none is
+   *         true (multiple return values only), or the class of the exception
+   */
+  private static Object interpretConditions(final List<String> conditions, final List<String> resultValues,
+                                            final boolean multipleReturnValue, final Map<Long, Object> inputs)
+      throws RuleFormatException {
+    boolean failed = false;
+    for (int c = 0; c < conditions.size(); c++) {
+      Object result = interpret(new SimpleRuleExpression(conditions.get(c)), inputs);
+      if (!(result instanceof Boolean)) {
+        // error, or not a boolean
+        if (!multipleReturnValue) {
+          return RuleEvaluationException.class;
+        }
+        failed = true;
+      } else if ((Boolean) result) {
+        String resultValue = resultValues.get(c);
+        if ("true".equals(resultValue) || "false".equals(resultValue)) {
+          return Boolean.valueOf(resultValue);
+        }
+        return resultValue;
+      }
+    }
+    if (!multipleReturnValue || failed) {
+      return RuleEvaluationException.class;
+    }
+    return null;
+  }
+
+  /**
+   * @return the same inputs, in a {@link RuleInputs}
+   */
+  private static RuleInputs bySlot(final Map<Long, Object> inputs) {
+    RuleInputs slots = new RuleInputs();
+    slots.bind(INPUT_IDS);
+    for (int i = 0; i < INPUT_IDS.length; i++) {
+      slots.set(i, inputs.get(INPUT_IDS[i]));
+    }
+    return slots;
+  }
+
+  private String randomExpression(final int depth) {
+    int choice = depth == 0 ? 0 : random.nextInt(8);
+    switch (choice) {
+      case 0:
+      case 1:
+        return randomOperand();
+      case 2:
+        return "(" + randomExpression(depth - 1) + ")";
+      case 3:
+        return (random.nextBoolean() ? "!" : "-") + "(" + randomExpression(depth - 1) + ")";
+      case 4:
+        return "(" + randomExpression(depth - 1) + ") " + randomOperator() + " " + randomExpression(depth - 1);
+      default:
+        return randomOperand() + " " + randomOperator() + " " + randomExpression(depth - 1);
+    }
+  }
+
+  private String randomOperand() {
+    switch (random.nextInt(6)) {
+      case 0:
+        return Integer.toString(random.nextInt(4));
+      case 1:
+        return random.nextBoolean() ? "true" : "false";
+      case 2:
+        return random.nextBoolean() ? "\"a\"" : "$INVALID";
+      default:
+        return "#" + (1 + random.nextInt(3));
+    }
+  }
+
+  private String randomOperator() {
+    return OPERATORS[random.nextInt(OPERATORS.length)];
+  }
+
+  private String randomSymbols() {
+    StringBuilder expression = new StringBuilder();
+    int length = 1 + random.nextInt(6);
+    for (int i = 0; i < length; i++) {
+      expression.append(SYMBOLS[random.nextInt(SYMBOLS.length)]).append(' ');
+    }
+    return expression.toString();
+  }
+
+  private Map<Long, Object> randomInputs() {
+    Map<Long, Object> inputs = new HashMap<>();
+    for (long id = 1; id <= 3; id++) {
+      Object value = VALUES[random.nextInt(VALUES.length)];
+      switch (random.nextInt(6)) {
+        case 0:
+          // missing input
+          break;
+        case 1:
+          inputs.put(id, value);
+          break;
+        case 2:
+          inputs.put(id, new TestInputValue(id, value, false));
+          break;
+        case 3:
+          inputs.put(id, new TestInputValue(id, null, random.nextBoolean()));
+          break;
+        default:
+          inputs.put(id, new TestInputValue(id, value, true));
+          break;
+      }
+    }
+    return inputs;
+  }
+
+  private static final class TestInputValue implements RuleInputValue {
+
+    private final Long id;
+
+    private final Object value;
+
+    private final boolean valid;
+
+    private TestInputValue(final Long id, final Object value, final boolean valid) {
+      this.id = id;
+      this.value = value;
+      this.valid = valid;
+    }
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean isValid() {
+      return valid;
+    }
+
+    @Override
+    public String toString() {
+      return (valid ? "" : "invalid ") + value;
+    }
+  }
+}
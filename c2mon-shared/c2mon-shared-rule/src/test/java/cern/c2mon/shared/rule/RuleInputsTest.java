@@ -0,0 +1,75 @@
+/******************************************************************************
+ * Copyright (C) 2010-2016 CERN. All rights not expressly granted are reserved.
+ *
+ * This file is part of the CERN Control and Monitoring Platform 'C2MON'.
+ * C2MON is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the license.
+ *
+ * C2MON is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with C2MON. If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+package cern.c2mon.shared.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link RuleInputs} map.
+ */
+public class RuleInputsTest {
+
+  @Test
+  public void testLookupBySlotId() {
+    RuleInputs inputs = new RuleInputs();
+    inputs.bind(new Long[] {1000L, 2000L, 3000L});
+    inputs.set(0, 1f);
+    inputs.set(2, "on");
+
+    assertTrue(inputs.isBound());
+    assertEquals(1f, inputs.get(1000L));
+    assertEquals("on", inputs.get(3000L));
+    assertNull(inputs.get(2000L));
+    assertNull(inputs.get(4000L));
+    assertNull(inputs.get("1000"));
+    assertEquals("on", inputs.getSlot(2));
+    assertNull(inputs.getSlot(1));
+    assertFalse(inputs.containsKey(2000L));
+    assertEquals(2, inputs.size());
+
+    Map<Long, Object> expected = new HashMap<>();
+    expected.put(1000L, 1f);
+    expected.put(3000L, "on");
+    assertEquals(expected, new HashMap<>(inputs));
+  }
+
+  @Test
+  public void testReuse() {
+    RuleInputs inputs = new RuleInputs();
+    inputs.bind(new Long[] {1L, 2L});
+    inputs.set(0, true);
+    inputs.set(1, false);
+    inputs.clear();
+
+    assertFalse(inputs.isBound());
+    assertTrue(inputs.isEmpty());
+
+    inputs.bind(new Long[] {3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L});
+    inputs.set(8, 2d);
+    assertEquals(2d, inputs.get(11L));
+    assertNull(inputs.get(1L));
+    assertEquals(1, inputs.size());
+  }
+}